@@ -0,0 +1,221 @@
+package com.bulletjournal.authz;
+
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.repository.SharedProjectItemRepository;
+import com.bulletjournal.repository.UserGroupRepository;
+import com.bulletjournal.repository.models.ProjectItemModel;
+import com.bulletjournal.repository.utils.DaoHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * In-memory index used by {@link AuthorizationService}
+ * <p>
+ * - user -> ids of groups the user belongs to
+ * - user -> ids of project items shared with the user, by content type
+ * <p>
+ * Entries are loaded lazily on miss and invalidated by group and share mutation paths.
+ * <p>
+ * - A load is not cached if its user was invalidated meanwhile, as it may have read the state
+ * from before the invalidating transaction committed. Invalidations are counted per stripe of users
+ * so that the counters do not grow with the number of users.
+ * - Entries expire after ttlMillis to bound staleness, and at most maxUsers users are kept per map.
+ */
+@Component
+public class AuthorizationIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthorizationIndex.class);
+    static final int DEFAULT_MAX_USERS = 10000;
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long LOG_STATS_INTERVAL = 10000;
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final Map<String, Entry<Set<Long>>> userGroups = new ConcurrentHashMap<>();
+    private final Map<String, Entry<Map<ContentType, Set<Long>>>> userSharedItems = new ConcurrentHashMap<>();
+    // invalidation count by stripe of users
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final int maxUsers;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Autowired
+    private UserGroupRepository userGroupRepository;
+
+    @Autowired
+    private SharedProjectItemRepository sharedProjectItemRepository;
+
+    public AuthorizationIndex() {
+        this(null, null, DEFAULT_MAX_USERS, DEFAULT_TTL_MILLIS, System::currentTimeMillis);
+    }
+
+    AuthorizationIndex(UserGroupRepository userGroupRepository, SharedProjectItemRepository sharedProjectItemRepository,
+                       int maxUsers, long ttlMillis, LongSupplier clock) {
+        this.userGroupRepository = userGroupRepository;
+        this.sharedProjectItemRepository = sharedProjectItemRepository;
+        this.maxUsers = maxUsers;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    public boolean isInGroup(String user, Long groupId) {
+        return getGroupIds(user).contains(groupId);
+    }
+
+    /**
+     * @return ids of groups user belongs to
+     */
+    public Set<Long> getGroupIds(String user) {
+        return get(this.userGroups, user, () -> Collections.unmodifiableSet(
+                new HashSet<>(this.userGroupRepository.findGroupIdsByUsername(user))));
+    }
+
+    public <T extends ProjectItemModel> boolean isSharedWith(String user, T projectItem) {
+        return isSharedWith(user, projectItem.getContentType(), projectItem.getId());
+    }
+
+    public boolean isSharedWith(String user, ContentType contentType, Long projectItemId) {
+        return getSharedItems(user).getOrDefault(contentType, Collections.emptySet()).contains(projectItemId);
+    }
+
+    /**
+     * @return ids of project items shared with user, by content type
+     */
+    public Map<ContentType, Set<Long>> getSharedItems(String user) {
+        return get(this.userSharedItems, user, () -> loadSharedItems(user));
+    }
+
+    private <T> T get(Map<String, Entry<T>> entries, String user, Supplier<T> loader) {
+        long now = this.clock.getAsLong();
+        Entry<T> entry = entries.get(user);
+        if (entry != null && entry.expiresAt > now) {
+            recordHit();
+            return entry.value;
+        }
+        recordMiss();
+        int stripe = getStripe(user);
+        long generation = this.generations.get(stripe);
+        T value = loader.get();
+        Entry<T> loaded = new Entry<>(value, now + this.ttlMillis);
+        // checked and cached atomically, an invalidation bumps the generation before evicting
+        entries.compute(user, (k, current) -> this.generations.get(stripe) == generation ? loaded : null);
+        if (entries.size() > this.maxUsers) {
+            evict(entries, now);
+        }
+        return value;
+    }
+
+    /**
+     * Drop expired entries, then arbitrary ones until at most maxUsers are left
+     */
+    private <T> void evict(Map<String, Entry<T>> entries, long now) {
+        int size = entries.size();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        Iterator<String> users = entries.keySet().iterator();
+        while (entries.size() > this.maxUsers && users.hasNext()) {
+            users.next();
+            users.remove();
+        }
+        this.evictions.addAndGet(Math.max(0, size - entries.size()));
+    }
+
+    private Map<ContentType, Set<Long>> loadSharedItems(String user) {
+        Map<ContentType, Set<Long>> sharedItems = new EnumMap<>(ContentType.class);
+        for (Object[] row : this.sharedProjectItemRepository.findSharedItemIdsByUsername(user)) {
+            if (row[0] != null) {
+                sharedItems.computeIfAbsent(ContentType.TASK, k -> new HashSet<>()).add((Long) row[0]);
+            } else if (row[1] != null) {
+                sharedItems.computeIfAbsent(ContentType.NOTE, k -> new HashSet<>()).add((Long) row[1]);
+            } else if (row[2] != null) {
+                sharedItems.computeIfAbsent(ContentType.TRANSACTION, k -> new HashSet<>()).add((Long) row[2]);
+            }
+        }
+        return Collections.unmodifiableMap(sharedItems);
+    }
+
+    /**
+     * Evict user's group membership now and again once the surrounding transaction completes,
+     * so that a concurrent reader cannot cache uncommitted state.
+     */
+    public void invalidateGroups(String user) {
+        evictNowAndAfterCompletion(this.userGroups, user);
+    }
+
+    public void invalidateGroups(Collection<String> users) {
+        users.forEach(this::invalidateGroups);
+    }
+
+    public void invalidateSharedItems(String user) {
+        evictNowAndAfterCompletion(this.userSharedItems, user);
+    }
+
+    private void evictNowAndAfterCompletion(Map<String, ?> entries, String user) {
+        this.invalidations.incrementAndGet();
+        int stripe = getStripe(user);
+        Runnable eviction = () -> {
+            this.generations.incrementAndGet(stripe);
+            entries.remove(user);
+        };
+        eviction.run();
+        DaoHelper.afterCompletion(eviction);
+    }
+
+    private static int getStripe(String user) {
+        return (user.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    private void recordHit() {
+        logStats(this.hits.incrementAndGet() + this.misses.get());
+    }
+
+    private void recordMiss() {
+        logStats(this.hits.get() + this.misses.incrementAndGet());
+    }
+
+    private void logStats(long lookups) {
+        if (lookups % LOG_STATS_INTERVAL == 0) {
+            LOGGER.info("AuthorizationIndex hits: {}, misses: {}, invalidations: {}, evictions: {}",
+                    this.hits.get(), this.misses.get(), this.invalidations.get(), this.evictions.get());
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static final class Entry<T> {
+        private final T value;
+        private final long expiresAt;
+
+        private Entry(T value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,20 +1,18 @@
 package com.bulletjournal.authz;
 
 import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.exceptions.ResourceNotFoundException;
 import com.bulletjournal.exceptions.UnAuthorizedException;
-import com.bulletjournal.repository.SharedProjectItemDaoJpa;
+import com.bulletjournal.repository.ProjectRepository;
 import com.bulletjournal.repository.models.Project;
 import com.bulletjournal.repository.models.ProjectItemModel;
 import com.google.common.collect.ImmutableSet;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Component
 public class AuthorizationService {
@@ -24,11 +22,13 @@ public class AuthorizationService {
     private static Set<String> ADMINS = ImmutableSet.of(SUPER_USER);
 
     @Autowired
-    @Lazy
-    private SharedProjectItemDaoJpa sharedProjectItemDaoJpa;
+    private AuthorizationIndex authorizationIndex;
+
+    @Autowired
+    private ProjectRepository projectRepository;
 
     public <T extends ProjectItemModel> void validateRequesterInProjectGroup(String requester, T projectItem) {
-        if (this.sharedProjectItemDaoJpa.getSharedProjectItems(requester).contains(projectItem)) {
+        if (this.authorizationIndex.isSharedWith(requester, projectItem)) {
             return;
         }
         validateRequesterInProjectGroup(requester, projectItem.getProject());
@@ -39,14 +39,24 @@ public class AuthorizationService {
             return;
         }
 
-        List<String> projectGroupUsers = project.getGroup()
-                .getUsers().stream().map(u -> u.getUser().getName()).collect(Collectors.toList());
-        if (!projectGroupUsers.stream().anyMatch(u -> Objects.equals(requester, u))) {
+        if (!this.authorizationIndex.isInGroup(requester, project.getGroup().getId())) {
             throw new UnAuthorizedException("User " + requester + " not in Project "
                     + project.getName());
         }
     }
 
+    /**
+     * Checks group membership without loading the project, so cached responses such as 304s are
+     * not served to users who cannot read the project
+     */
+    public void validateRequesterInProject(String requester, Long projectId) {
+        Long groupId = this.projectRepository.findGroupIdById(projectId)
+                .orElseThrow(() -> new ResourceNotFoundException("Project " + projectId + " not found"));
+        if (!this.authorizationIndex.isInGroup(requester, groupId)) {
+            throw new UnAuthorizedException("User " + requester + " not in Project " + projectId);
+        }
+    }
+
     public void checkAuthorizedToOperateOnContent(
             String owner, String requester, ContentType contentType,
             Operation operation, Long contentId, Object... other)
@@ -137,7 +147,7 @@ public class AuthorizationService {
         switch (operation) {
             case DELETE:
             case UPDATE:
-                if (this.sharedProjectItemDaoJpa.getSharedProjectItems(requester).contains(projectItem)) {
+                if (this.authorizationIndex.isSharedWith(requester, projectItem)) {
                     return;
                 }
                 if (!Objects.equals(owner, requester) && !Objects.equals(projectOwner, requester)
@@ -9,6 +9,8 @@ import com.bulletjournal.repository.UserDaoJpa;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -18,8 +20,11 @@ import org.springframework.web.client.RestTemplate;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.LinkedHashMap;
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class UserClient {
@@ -29,21 +34,39 @@ public class UserClient {
     private static final String THUMBNAIL_SIZE = "37";
     private static final String SIZE_HOLDER = "{size}";
     private static final String DEFAULT_USER_TIME_ZONE = "America/Los_Angeles";
+    private static final String REDIS_USER_KEY_PREFIX = "User:";
+    private static final int MAX_CACHED_USERS = 10000;
+    private static final long CACHED_USER_TTL_MILLIS = 60000;
 
     private final RestTemplate restClient;
     private final URI ssoEndPoint;
     private final String ssoAPIKey;
     private final RedisUserRepository redisUserRepository;
     private final UserDaoJpa userDaoJpa;
+    private final RedisConnectionFactory redisConnectionFactory;
+    private final Map<String, CachedUser> cachedUsers = Collections.synchronizedMap(
+            new LinkedHashMap<String, CachedUser>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                    return size() > MAX_CACHED_USERS;
+                }
+            });
+    private final Map<String, CompletableFuture<User>> ssoLookups = new ConcurrentHashMap<>();
 
-    @Autowired
     public UserClient(SSOConfig ssoConfig, RedisUserRepository redisUserRepository, UserDaoJpa userDaoJpa)
             throws URISyntaxException {
+        this(ssoConfig, redisUserRepository, userDaoJpa, null);
+    }
+
+    @Autowired
+    public UserClient(SSOConfig ssoConfig, RedisUserRepository redisUserRepository, UserDaoJpa userDaoJpa,
+                      RedisConnectionFactory redisConnectionFactory) throws URISyntaxException {
         this.restClient = new RestTemplate();
         this.ssoEndPoint = new URI(ssoConfig.getEndpoint());
         this.ssoAPIKey = ssoConfig.getAPIKey();
         this.redisUserRepository = redisUserRepository;
         this.userDaoJpa = userDaoJpa;
+        this.redisConnectionFactory = redisConnectionFactory;
     }
 
     public void logout(String username) {
@@ -61,15 +84,150 @@ public class UserClient {
     /**
      * DO NOT wrap this function inside @Transactional
      */
-    @SuppressWarnings("rawtypes")
     public User getUser(String username) {
-        User user;
+        User user = getCachedUser(username);
+        if (user != null) {
+            return user;
+        }
+
         Optional<User> userOptional = redisUserRepository.findById(username);
         if (userOptional.isPresent()) {
             user = userOptional.get();
+            cacheUser(user);
             return user;
         }
 
+        return getSSOUser(username);
+    }
+
+    /**
+     * Get users in bulk: local cache first, then one pipelined Redis round trip, then SSO for the rest.
+     * DO NOT wrap this function inside @Transactional
+     *
+     * @param usernames usernames, duplicates and nulls are ignored
+     * @return Map<String, User> - users by username, in the order of usernames
+     */
+    public Map<String, User> getUsers(Collection<String> usernames) {
+        Map<String, User> users = new LinkedHashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String username : usernames) {
+            if (username == null || users.containsKey(username)) {
+                continue;
+            }
+            User user = getCachedUser(username);
+            users.put(username, user);
+            if (user == null) {
+                misses.add(username);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            Map<String, User> redisUsers = getRedisUsers(misses);
+            for (String username : misses) {
+                User user = redisUsers.get(username);
+                if (user != null) {
+                    cacheUser(user);
+                } else {
+                    user = getSSOUser(username);
+                }
+                users.put(username, user);
+            }
+        }
+        return users;
+    }
+
+    private User getCachedUser(String username) {
+        CachedUser cachedUser = this.cachedUsers.get(username);
+        if (cachedUser == null) {
+            return null;
+        }
+        if (cachedUser.expiresAt < System.currentTimeMillis()) {
+            this.cachedUsers.remove(username);
+            return null;
+        }
+        return cachedUser.user;
+    }
+
+    private void cacheUser(User user) {
+        this.cachedUsers.put(user.getName(), new CachedUser(user, System.currentTimeMillis() + CACHED_USER_TTL_MILLIS));
+    }
+
+    /**
+     * Read users saved by {@link RedisUserRepository} with one pipelined HGETALL per user
+     */
+    private Map<String, User> getRedisUsers(List<String> usernames) {
+        Map<String, User> users = new HashMap<>();
+        if (this.redisConnectionFactory == null || usernames.size() == 1) {
+            for (String username : usernames) {
+                this.redisUserRepository.findById(username).ifPresent(u -> users.put(username, u));
+            }
+            return users;
+        }
+
+        List<Object> hashes;
+        try (RedisConnection connection = this.redisConnectionFactory.getConnection()) {
+            connection.openPipeline();
+            for (String username : usernames) {
+                connection.hGetAll((REDIS_USER_KEY_PREFIX + username).getBytes(StandardCharsets.UTF_8));
+            }
+            hashes = connection.closePipeline();
+        }
+
+        for (int i = 0; i < usernames.size(); i++) {
+            User user = toUser(hashes.get(i));
+            if (user != null) {
+                users.put(usernames.get(i), user);
+            }
+        }
+        return users;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static User toUser(Object hash) {
+        if (!(hash instanceof Map) || ((Map) hash).isEmpty()) {
+            return null;
+        }
+        Map<String, String> fields = new HashMap<>();
+        ((Map<byte[], byte[]>) hash).forEach((k, v) -> fields.put(
+                new String(k, StandardCharsets.UTF_8), new String(v, StandardCharsets.UTF_8)));
+        if (fields.get("name") == null) {
+            return null;
+        }
+        String id = fields.get("id");
+        return new User(id == null ? null : Integer.valueOf(id),
+                fields.get("name"), fields.get("thumbnail"), fields.get("avatar"));
+    }
+
+    /**
+     * Look up user from SSO, concurrent lookups of the same username share one request
+     */
+    private User getSSOUser(String username) {
+        CompletableFuture<User> lookup = new CompletableFuture<>();
+        CompletableFuture<User> existing = this.ssoLookups.putIfAbsent(username, lookup);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException ex) {
+                throw (RuntimeException) ex.getCause();
+            }
+        }
+
+        try {
+            User user = loadSSOUser(username);
+            cacheUser(user);
+            lookup.complete(user);
+            return user;
+        } catch (RuntimeException ex) {
+            lookup.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            this.ssoLookups.remove(username, lookup);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private User loadSSOUser(String username) {
+        User user;
         LinkedHashMap userInfo;
         try {
             userInfo = getSSOUserInfo(username);
@@ -124,6 +282,16 @@ public class UserClient {
                 .exchange(url, HttpMethod.GET, buildHeaders(), LinkedHashMap.class).getBody().get("user");
     }
 
+    private static class CachedUser {
+        private final User user;
+        private final long expiresAt;
+
+        CachedUser(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+
     private HttpEntity<LinkedHashMap> buildHeaders() {
         if (this.ssoAPIKey == null) {
             return null;
@@ -7,6 +7,8 @@ import org.springframework.context.annotation.Configuration;
 @ConfigurationProperties(prefix = "revision")
 public class ContentRevisionConfig {
     private Integer maxRevisionNumber;
+    private Integer checkpointInterval;
+    private Integer coalesceWindowSeconds;
 
     public Integer getMaxRevisionNumber() {
         return maxRevisionNumber;
@@ -15,4 +17,20 @@ public class ContentRevisionConfig {
     public void setMaxRevisionNumber(Integer maxRevisionNumber) {
         this.maxRevisionNumber = maxRevisionNumber;
     }
+
+    public Integer getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval(Integer checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public Integer getCoalesceWindowSeconds() {
+        return coalesceWindowSeconds;
+    }
+
+    public void setCoalesceWindowSeconds(Integer coalesceWindowSeconds) {
+        this.coalesceWindowSeconds = coalesceWindowSeconds;
+    }
 }
@@ -0,0 +1,35 @@
+package com.bulletjournal.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "ledger")
+public class LedgerConfig {
+
+    private Rollup rollup = new Rollup();
+
+    public LedgerConfig() {
+    }
+
+    public Rollup getRollup() {
+        return rollup;
+    }
+
+    public void setRollup(Rollup rollup) {
+        this.rollup = rollup;
+    }
+
+    public static class Rollup {
+        private int verifyIntervalInSeconds;
+
+        public int getVerifyIntervalInSeconds() {
+            return verifyIntervalInSeconds;
+        }
+
+        public void setVerifyIntervalInSeconds(int verifyIntervalInSeconds) {
+            this.verifyIntervalInSeconds = verifyIntervalInSeconds;
+        }
+    }
+
+}
@@ -9,6 +9,8 @@ public class NotificationConfig {
 
     private Cleaner cleaner = new Cleaner();
 
+    private Pipeline pipeline = new Pipeline();
+
     public NotificationConfig() {
     }
 
@@ -20,9 +22,19 @@ public class NotificationConfig {
         this.cleaner = cleaner;
     }
 
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(Pipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
     public static class Cleaner {
         private int maxRetentionTimeInDays;
         private int intervalInSeconds;
+        private int chunkSize;
+        private long chunkPauseMillis;
 
         public int getMaxRetentionTimeInDays() {
             return maxRetentionTimeInDays;
@@ -39,7 +51,69 @@ public class NotificationConfig {
         public void setIntervalInSeconds(int intervalInSeconds) {
             this.intervalInSeconds = intervalInSeconds;
         }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public long getChunkPauseMillis() {
+            return chunkPauseMillis;
+        }
+
+        public void setChunkPauseMillis(long chunkPauseMillis) {
+            this.chunkPauseMillis = chunkPauseMillis;
+        }
     }
 
-}
+    public static class Pipeline {
+        private int workers;
+        private int queueCapacity;
+        private int batchSize;
+        private long offerTimeoutMillis;
+        private int recoveryIntervalInSeconds;
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
 
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getOfferTimeoutMillis() {
+            return offerTimeoutMillis;
+        }
+
+        public void setOfferTimeoutMillis(long offerTimeoutMillis) {
+            this.offerTimeoutMillis = offerTimeoutMillis;
+        }
+
+        public int getRecoveryIntervalInSeconds() {
+            return recoveryIntervalInSeconds;
+        }
+
+        public void setRecoveryIntervalInSeconds(int recoveryIntervalInSeconds) {
+            this.recoveryIntervalInSeconds = recoveryIntervalInSeconds;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.bulletjournal.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "search")
+public class SearchConfig {
+
+    private Reindex reindex = new Reindex();
+
+    public SearchConfig() {
+    }
+
+    public Reindex getReindex() {
+        return reindex;
+    }
+
+    public void setReindex(Reindex reindex) {
+        this.reindex = reindex;
+    }
+
+    public static class Reindex {
+        /**
+         * Reindex on startup even if the current index is complete
+         */
+        private boolean force;
+        private int pageSize;
+        private int workers;
+        private int maxDocsPerSecond;
+
+        public boolean isForce() {
+            return force;
+        }
+
+        public void setForce(boolean force) {
+            this.force = force;
+        }
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public int getMaxDocsPerSecond() {
+            return maxDocsPerSecond;
+        }
+
+        public void setMaxDocsPerSecond(int maxDocsPerSecond) {
+            this.maxDocsPerSecond = maxDocsPerSecond;
+        }
+    }
+
+}
@@ -2,7 +2,7 @@ package com.bulletjournal.controller;
 
 import com.bulletjournal.clients.UserClient;
 import com.bulletjournal.controller.models.*;
-import com.bulletjournal.controller.utils.EtagGenerator;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.notifications.*;
 import com.bulletjournal.repository.GroupDaoJpa;
 import com.google.common.collect.ImmutableList;
@@ -20,6 +20,8 @@ import javax.validation.constraints.NotNull;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+
 @RestController
 public class GroupController {
 
@@ -39,6 +41,9 @@ public class GroupController {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private EtagRegistry etagRegistry;
+
     @PostMapping(GROUPS_ROUTE)
     @ResponseStatus(HttpStatus.CREATED)
     public Group createGroup(@Valid @RequestBody CreateGroupParams group) {
@@ -80,13 +85,16 @@ public class GroupController {
     }
 
     @GetMapping(GROUPS_ROUTE)
-    public ResponseEntity<List<GroupsWithOwner>> getGroups() {
+    public ResponseEntity<List<GroupsWithOwner>> getGroups(
+            @RequestHeader(IF_NONE_MATCH) Optional<String> groupsRequestEtag) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
+        String groupsEtag = this.etagRegistry.getEtag(EtagRegistry.Scope.USER_GROUPS, username);
+        if (EtagRegistry.matches(groupsEtag, groupsRequestEtag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(groupsEtag).build();
+        }
+
         List<Group> groups = this.groupDaoJpa.getGroups(username);
         Long defaultGroupId = groups.get(0).getId();
-        String groupsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                EtagGenerator.HashType.TO_HASHCODE,
-                groups);
         groups = addUserAvatarToGroups(groups);
         // owner name -> groups (order by owner)
         Map<String, List<Group>> m = new TreeMap<>();
@@ -156,19 +164,18 @@ public class GroupController {
     }
 
     private List<Group> addUserAvatarToGroups(List<Group> groups) {
-        groups.stream().forEach(g -> {
-            addUserAvatarToGroup(g);
-        });
+        Map<String, User> users = this.userClient.getUsers(groups.stream()
+                .flatMap(g -> g.getUsers().stream()).map(UserGroup::getName).collect(Collectors.toList()));
+        groups.forEach(g -> g.setUsers(g.getUsers().stream()
+                .map(user -> {
+                    User u = users.get(user.getName());
+                    return new UserGroup(u.getName(), u.getThumbnail(), u.getAvatar(), user.isAccepted());
+                }).collect(Collectors.toList())));
         return groups;
     }
 
     private Group addUserAvatarToGroup(Group g) {
-        List<UserGroup> users = g.getUsers().stream()
-                .map(user -> {
-                    User u = this.userClient.getUser(user.getName());
-                    return new UserGroup(u.getName(), u.getThumbnail(), u.getAvatar(), user.isAccepted());
-                }).collect(Collectors.toList());
-        g.setUsers(users);
+        addUserAvatarToGroups(Collections.singletonList(g));
         return g;
     }
 
@@ -177,7 +184,7 @@ public class GroupController {
             @Valid @RequestBody AddUserGroupsParams addUserGroupsParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         this.notificationService.inform(this.groupDaoJpa.addUserGroups(username, addUserGroupsParams.getUserGroups()));
-        return getGroups();
+        return getGroups(Optional.empty());
     }
 
     @PostMapping(ADD_USER_GROUP_ROUTE)
@@ -1,9 +1,10 @@
 package com.bulletjournal.controller;
 
+import com.bulletjournal.authz.AuthorizationService;
 import com.bulletjournal.clients.UserClient;
 import com.bulletjournal.controller.models.*;
 import com.bulletjournal.controller.utils.EtagGenerator;
-import com.bulletjournal.es.SearchService;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.notifications.Event;
 import com.bulletjournal.notifications.Informed;
 import com.bulletjournal.notifications.NotificationService;
@@ -19,9 +20,14 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+
 @RestController
 public class NoteController {
 
@@ -35,6 +41,7 @@ public class NoteController {
     protected static final String ADD_CONTENT_ROUTE = "/api/notes/{noteId}/addContent";
     protected static final String CONTENT_ROUTE = "/api/notes/{noteId}/contents/{contentId}";
     protected static final String CONTENTS_ROUTE = "/api/notes/{noteId}/contents";
+    protected static final String CONTENT_SUMMARIES_ROUTE = "/api/notes/{noteId}/contentSummaries";
     protected static final String CONTENT_REVISIONS_ROUTE = "/api/notes/{noteId}/contents/{contentId}/revisions/{revisionId}";
 
     @Autowired
@@ -47,15 +54,27 @@ public class NoteController {
     private UserClient userClient;
 
     @Autowired
-    private SearchService searchService;
+    private EtagRegistry etagRegistry;
+
+    @Autowired
+    private AuthorizationService authorizationService;
 
     @GetMapping(NOTES_ROUTE)
-    public ResponseEntity<List<Note>> getNotes(@NotNull @PathVariable Long projectId) {
+    public ResponseEntity<List<Note>> getNotes(
+            @NotNull @PathVariable Long projectId,
+            @RequestHeader(IF_NONE_MATCH) Optional<String> notesRequestEtag) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        List<Note> notes = this.noteDaoJpa.getNotes(projectId, username)
-                .stream().map(n -> addAvatar(n)).collect(Collectors.toList());
-        String notesEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                EtagGenerator.HashType.TO_HASHCODE, notes);
+        this.authorizationService.validateRequesterInProject(username, projectId);
+        String notesEtag = this.etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_NOTES, projectId);
+        if (EtagRegistry.matches(notesEtag, notesRequestEtag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(notesEtag).build();
+        }
+
+        List<Note> notes = addAvatar(this.noteDaoJpa.getNotes(projectId, username));
+        if (this.etagRegistry.isUnversioned(EtagRegistry.Scope.PROJECT_NOTES, projectId)) {
+            notesEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
+                    EtagGenerator.HashType.TO_HASHCODE, notes);
+        }
 
         HttpHeaders responseHeader = new HttpHeaders();
         responseHeader.setETag(notesEtag);
@@ -63,14 +82,30 @@ public class NoteController {
         return ResponseEntity.ok().headers(responseHeader).body(notes);
     }
 
-    private Note addAvatar(Note note) {
-        note.setOwnerAvatar(this.userClient.getUser(note.getOwner()).getAvatar());
+    private List<Note> addAvatar(List<Note> notes) {
+        List<String> owners = new ArrayList<>();
+        collectOwners(notes, owners);
+        Map<String, User> users = this.userClient.getUsers(owners);
+        notes.forEach(note -> addAvatar(note, users));
+        return notes;
+    }
+
+    private static void collectOwners(List<Note> notes, List<String> owners) {
+        for (Note note : notes) {
+            owners.add(note.getOwner());
+            if (note.getSubNotes() != null) {
+                collectOwners(note.getSubNotes(), owners);
+            }
+        }
+    }
+
+    private static void addAvatar(Note note, Map<String, User> users) {
+        note.setOwnerAvatar(users.get(note.getOwner()).getAvatar());
         if (note.getSubNotes() != null) {
             for (Note subNote : note.getSubNotes()) {
-                addAvatar(subNote);
+                addAvatar(subNote, users);
             }
         }
-        return note;
     }
 
     @PostMapping(NOTES_ROUTE)
@@ -78,9 +113,7 @@ public class NoteController {
     public Note createNote(@NotNull @PathVariable Long projectId,
                            @Valid @RequestBody CreateNoteParams note) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        Note createdNote = noteDaoJpa.create(projectId, username, note).toPresentationModel();
-        searchService.saveToES(createdNote, username);
-        return createdNote;
+        return noteDaoJpa.create(projectId, username, note).toPresentationModel();
     }
 
     @GetMapping(NOTE_ROUTE)
@@ -148,9 +181,9 @@ public class NoteController {
     public ProjectItemSharables getSharables(@NotNull @PathVariable Long noteId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         ProjectItemSharables result = this.noteDaoJpa.getSharables(noteId, username);
-        List<User> users = result.getUsers().stream().map((u) -> this.userClient.getUser(u.getName()))
-                .collect(Collectors.toList());
-        result.setUsers(users);
+        Map<String, User> users = this.userClient.getUsers(
+                result.getUsers().stream().map(User::getName).collect(Collectors.toList()));
+        result.setUsers(new ArrayList<>(users.values()));
         return result;
     }
 
@@ -170,16 +203,32 @@ public class NoteController {
                 .toPresentationModel();
     }
 
+    @GetMapping(CONTENT_SUMMARIES_ROUTE)
+    public List<ContentSummary> getContentSummaries(@NotNull @PathVariable Long noteId) {
+        String username = MDC.get(UserClient.USER_NAME_KEY);
+        List<ContentSummary> contents = this.noteDaoJpa.getContentSummaries(noteId, username);
+        Map<String, User> users = this.userClient.getUsers(
+                contents.stream().map(ContentSummary::getOwner).collect(Collectors.toList()));
+        contents.forEach(content -> content.setOwnerAvatar(users.get(content.getOwner()).getAvatar()));
+        return contents;
+    }
+
+    @GetMapping(CONTENT_ROUTE)
+    public Content getContent(@NotNull @PathVariable Long noteId, @NotNull @PathVariable Long contentId) {
+        String username = MDC.get(UserClient.USER_NAME_KEY);
+        Content content = this.noteDaoJpa.getContentWithRevisions(contentId, noteId, username);
+        content.setOwnerAvatar(this.userClient.getUser(content.getOwner()).getAvatar());
+        return content;
+    }
+
     @GetMapping(CONTENTS_ROUTE)
     public List<Content> getContents(@NotNull @PathVariable Long noteId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        return this.noteDaoJpa.getContents(noteId, username).stream()
-                .map(t -> {
-                    Content content = t.toPresentationModel();
-                    content.setOwnerAvatar(this.userClient.getUser(content.getOwner()).getAvatar());
-                    return content;
-                })
-                .collect(Collectors.toList());
+        List<Content> contents = this.noteDaoJpa.getContentsWithRevisions(noteId, username);
+        Map<String, User> users = this.userClient.getUsers(
+                contents.stream().map(Content::getOwner).collect(Collectors.toList()));
+        contents.forEach(content -> content.setOwnerAvatar(users.get(content.getOwner()).getAvatar()));
+        return contents;
     }
 
     @DeleteMapping(CONTENT_ROUTE)
@@ -1,9 +1,11 @@
 package com.bulletjournal.controller;
 
+import com.bulletjournal.authz.AuthorizationIndex;
 import com.bulletjournal.clients.UserClient;
 import com.bulletjournal.controller.models.AnswerNotificationParams;
 import com.bulletjournal.controller.models.Notification;
-import com.bulletjournal.controller.utils.EtagGenerator;
+import com.bulletjournal.controller.utils.EtagRegistry;
+import com.bulletjournal.exceptions.BadRequestException;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
 import com.bulletjournal.notifications.*;
 import com.bulletjournal.repository.*;
@@ -11,12 +13,15 @@ import com.bulletjournal.repository.models.Group;
 import com.bulletjournal.repository.models.User;
 import com.bulletjournal.repository.models.UserGroup;
 import com.bulletjournal.repository.models.UserGroupKey;
+import com.bulletjournal.repository.utils.DaoHelper;
 import com.google.common.base.Preconditions;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,11 +30,17 @@ import org.springframework.web.bind.annotation.*;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.util.List;
+import java.util.Optional;
+
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
 
 @RestController
 public class NotificationController {
     protected static final String NOTIFICATIONS_ROUTE = "/api/notifications";
+    protected static final String NOTIFICATION_COUNT_ROUTE = "/api/notifications/count";
     protected static final String ANSWER_NOTIFICATION_ROUTE = "/api/notifications/{notificationId}/answer";
+    protected static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_PAGE_SIZE = 100;
     private static final Logger LOGGER = LoggerFactory.getLogger(NotificationController.class);
     @Autowired
     private NotificationDaoJpa notificationDaoJpa;
@@ -49,19 +60,50 @@ public class NotificationController {
     @Autowired
     private GroupRepository groupRepository;
 
-    @GetMapping(NOTIFICATIONS_ROUTE)
-    public ResponseEntity<List<Notification>> getNotification() {
-        String username = MDC.get(UserClient.USER_NAME_KEY);
-        List<Notification> notificationList = this.notificationDaoJpa.getNotifications(username);
+    @Autowired
+    private AuthorizationIndex authorizationIndex;
 
-        String notificationsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                EtagGenerator.HashType.TO_HASHCODE,
-                notificationList);
+    @Autowired
+    private EtagRegistry etagRegistry;
 
+    /**
+     * Get a page of notifications, actionable ones first then latest first
+     *
+     * @param cursor cursor of the previous page, returned in the X-Next-Cursor header, to get the next page
+     */
+    @GetMapping(NOTIFICATIONS_ROUTE)
+    public ResponseEntity<List<Notification>> getNotification(
+            @RequestHeader(IF_NONE_MATCH) Optional<String> notificationsRequestEtag,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        String username = MDC.get(UserClient.USER_NAME_KEY);
         HttpHeaders responseHeader = new HttpHeaders();
-        responseHeader.setETag(notificationsEtag);
+        if (cursor == null) {
+            // the etag covers all notifications of the user, so only the first page is revalidated with it
+            String notificationsEtag = this.etagRegistry.getEtag(EtagRegistry.Scope.USER_NOTIFICATIONS, username);
+            responseHeader.setETag(notificationsEtag);
+            if (EtagRegistry.matches(notificationsEtag, notificationsRequestEtag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(responseHeader).build();
+            }
+        }
+
+        Pair<List<Notification>, String> page = this.notificationDaoJpa.getNotifications(username, cursor, size);
+        if (page.getRight() != null) {
+            responseHeader.set(NEXT_CURSOR_HEADER, page.getRight());
+        }
+        return ResponseEntity.ok().headers(responseHeader).body(page.getLeft());
+    }
 
-        return ResponseEntity.ok().headers(responseHeader).body(notificationList);
+    /**
+     * Count notifications, all of which are pending: answered notifications are deleted
+     */
+    @GetMapping(NOTIFICATION_COUNT_ROUTE)
+    public long getNotificationCount() {
+        String username = MDC.get(UserClient.USER_NAME_KEY);
+        return this.notificationDaoJpa.getNotificationCount(username);
     }
 
     @PostMapping(ANSWER_NOTIFICATION_ROUTE)
@@ -84,6 +126,7 @@ public class NotificationController {
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     void deleteNotification(com.bulletjournal.repository.models.Notification notification) {
         this.notificationRepository.delete(notification);
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_NOTIFICATIONS, notification.getTargetUser());
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -108,10 +151,14 @@ public class NotificationController {
                 } else {
                     // remove UserGroup
                     this.userGroupRepository.delete(userGroup);
+                    this.authorizationIndex.invalidateGroups(user.getName());
                 }
 
                 Group group = this.groupRepository.findById(notification.getContentId()).orElseThrow(() ->
                         new ResourceNotFoundException("Group " + notification.getContentId() + " not found"));
+                this.etagRegistry.bump(EtagRegistry.Scope.USER_GROUPS, DaoHelper.getUsernames(group));
+                this.etagRegistry.bump(EtagRegistry.Scope.USER_GROUPS, user.getName());
+                this.etagRegistry.bump(EtagRegistry.Scope.USER_PROJECTS, user.getName());
                 Event event = new Event(
                         notification.getOriginator(),
                         notification.getContentId(),
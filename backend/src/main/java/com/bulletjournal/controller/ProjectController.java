@@ -2,7 +2,7 @@ package com.bulletjournal.controller;
 
 import com.bulletjournal.clients.UserClient;
 import com.bulletjournal.controller.models.*;
-import com.bulletjournal.controller.utils.EtagGenerator;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.notifications.*;
 import com.bulletjournal.repository.ProjectDaoJpa;
 import org.slf4j.Logger;
@@ -19,6 +19,9 @@ import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
 
 @RestController
 public class ProjectController {
@@ -35,21 +38,22 @@ public class ProjectController {
     @Autowired
     private UserClient userClient;
 
+    @Autowired
+    private EtagRegistry etagRegistry;
+
     @GetMapping(PROJECTS_ROUTE)
-    public ResponseEntity<Projects> getProjects() {
+    public ResponseEntity<Projects> getProjects(
+            @RequestHeader(IF_NONE_MATCH) Optional<String> projectsRequestEtag) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        Projects projects = this.projectDaoJpa.getProjects(username);
-
-        String ownedProjectsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                EtagGenerator.HashType.TO_HASHCODE,
-                projects.getOwned());
-
-        String sharedProjectsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                EtagGenerator.HashType.TO_HASHCODE,
-                projects.getShared());
+        String projectsEtag = getOwnedProjectsEtag(username) + "|" + getSharedProjectsEtag(username);
 
         HttpHeaders responseHeader = new HttpHeaders();
-        responseHeader.setETag(ownedProjectsEtag + "|" + sharedProjectsEtag);
+        responseHeader.setETag(projectsEtag);
+        if (EtagRegistry.matches(projectsEtag, projectsRequestEtag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(responseHeader).build();
+        }
+
+        Projects projects = this.projectDaoJpa.getProjects(username);
 
         projects.getOwned().forEach((p) -> addOwnerAvatar(p));
         projects.getShared().forEach((p) -> {
@@ -59,6 +63,14 @@ public class ProjectController {
         return ResponseEntity.ok().headers(responseHeader).body(projects);
     }
 
+    String getOwnedProjectsEtag(String username) {
+        return this.etagRegistry.getEtag(EtagRegistry.Scope.USER_PROJECTS, username, "owned");
+    }
+
+    String getSharedProjectsEtag(String username) {
+        return this.etagRegistry.getEtag(EtagRegistry.Scope.USER_PROJECTS, username, "shared");
+    }
+
     @GetMapping(PROJECT_ROUTE)
     public Project getProject(@NotNull @PathVariable Long projectId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -127,6 +139,6 @@ public class ProjectController {
     public ResponseEntity<Projects> updateProjectRelations(@Valid @RequestBody List<Project> projects) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         this.projectDaoJpa.updateUserOwnedProjects(username, projects);
-        return getProjects();
+        return getProjects(Optional.empty());
     }
 }
\ No newline at end of file
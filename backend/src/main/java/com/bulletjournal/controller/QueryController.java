@@ -1,19 +1,16 @@
 package com.bulletjournal.controller;
 
+import com.bulletjournal.authz.AuthorizationIndex;
 import com.bulletjournal.clients.UserClient;
+import com.bulletjournal.controller.models.SearchResult;
+import com.bulletjournal.exceptions.BadRequestException;
+import com.bulletjournal.es.SearchPage;
 import com.bulletjournal.es.SearchService;
-import org.elasticsearch.action.search.SearchRequest;
-import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.client.RequestOptions;
-import org.elasticsearch.client.RestHighLevelClient;
-import org.elasticsearch.common.unit.Fuzziness;
-import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.search.builder.SearchSourceBuilder;
+import com.bulletjournal.repository.SearchIndexDaoJpa;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
@@ -26,36 +23,38 @@ import java.io.IOException;
 public class QueryController {
 
     protected static final String SEARCH_ROUTE = "/api/query";
+    private static final int MAX_PAGE_SIZE = 100;
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(NoteController.class);
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryController.class);
 
-    @Qualifier("client")
-    @Autowired(required = false)
-    private RestHighLevelClient highLevelClient;
+    @Autowired
+    private SearchService searchService;
 
+    @Autowired
+    private SearchIndexDaoJpa searchIndexDaoJpa;
+
+    @Autowired
+    private AuthorizationIndex authorizationIndex;
+
+    /**
+     * Search project items the requester can access by name and contents
+     *
+     * @param cursor cursor of the previous result, to get the next page
+     */
     @CrossOrigin(origins = "http://localhost:3000")
     @GetMapping(SEARCH_ROUTE)
     @ResponseStatus(HttpStatus.OK)
-    public SearchResponse searchItems(@Valid @RequestParam @NotBlank String term) throws IOException {
-
-        if (highLevelClient == null) {
-            LOGGER.info("ES is not enabled.");
-            return null;
+    public SearchResult searchItems(@Valid @RequestParam @NotBlank String term,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(defaultValue = "20") int size) throws IOException {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE);
         }
-        // return List<ProjectItems>
-        // search by title and comment
-        // const project_item in service
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        SearchRequest searchRequest = new SearchRequest(SearchService.PROJECT_ITEM);
-        searchRequest.source(new SearchSourceBuilder().query(
-                QueryBuilders.matchQuery("name", term)
-                        .fuzziness(Fuzziness.AUTO)
-                        .prefixLength(3)
-                        .maxExpansions(10)
-        ));
-
-        SearchResponse response = highLevelClient.search(searchRequest, RequestOptions.DEFAULT);
-        LOGGER.info(response.toString());
-        return response;
+        SearchPage page = this.searchService.search(term,
+                this.authorizationIndex.getGroupIds(username),
+                this.authorizationIndex.getSharedItems(username),
+                cursor, size);
+        return new SearchResult(this.searchIndexDaoJpa.getProjectItems(username, page.getIds()), page.getCursor());
     }
 }
@@ -1,19 +1,32 @@
 package com.bulletjournal.controller;
 
+import com.bulletjournal.authz.AuthorizationIndex;
 import com.bulletjournal.authz.AuthorizationService;
 import com.bulletjournal.clients.UserClient;
 import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.controller.models.*;
 import com.bulletjournal.controller.utils.EtagGenerator;
+import com.bulletjournal.controller.utils.EtagRegistry;
+import com.bulletjournal.controller.utils.PublicItemResponseCache;
 import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
+import com.bulletjournal.daemon.ReminderScheduler;
 import com.bulletjournal.exceptions.BadRequestException;
 import com.bulletjournal.exceptions.UnAuthorizedException;
+import com.bulletjournal.notifications.UpdateTarget;
+import com.bulletjournal.notifications.UpdatesPublisher;
 import com.bulletjournal.repository.*;
 import com.bulletjournal.repository.models.ProjectItemModel;
+import com.bulletjournal.repository.utils.PublicItemLinkCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.constraints.NotNull;
 import java.util.*;
@@ -24,29 +37,27 @@ import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
 public class SystemController {
 
     public static final String UPDATES_ROUTE = "/api/system/updates";
+    public static final String UPDATES_STREAM_ROUTE = "/api/system/updates/stream";
     public static final String PUBLIC_ITEM_ROUTE_PREFIX = "/api/public/items/";
     public static final String PUBLIC_ITEM_ROUTE = PUBLIC_ITEM_ROUTE_PREFIX + "{itemId}";
 
     @Autowired
-    private ProjectDaoJpa projectDaoJpa;
-
-    @Autowired
-    private NotificationDaoJpa notificationDaoJpa;
+    private TaskDaoJpa taskDaoJpa;
 
     @Autowired
-    private GroupDaoJpa groupDaoJpa;
+    private NoteDaoJpa noteDaoJpa;
 
     @Autowired
-    private TaskDaoJpa taskDaoJpa;
+    private PublicProjectItemDaoJpa publicProjectItemDaoJpa;
 
     @Autowired
-    private NoteDaoJpa noteDaoJpa;
+    private AuthorizationIndex authorizationIndex;
 
     @Autowired
-    private PublicProjectItemDaoJpa publicProjectItemDaoJpa;
+    private ReminderScheduler reminderScheduler;
 
     @Autowired
-    private SharedProjectItemDaoJpa sharedProjectItemDaoJpa;
+    private UpdatesPublisher updatesPublisher;
 
     @Autowired
     private NoteController noteController;
@@ -54,6 +65,18 @@ public class SystemController {
     @Autowired
     private TaskController taskController;
 
+    @Autowired
+    private ProjectController projectController;
+
+    @Autowired
+    private EtagRegistry etagRegistry;
+
+    @Autowired
+    private PublicItemResponseCache publicItemResponseCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping(UPDATES_ROUTE)
     public SystemUpdates getUpdates(@RequestParam(name = "targets", required = false) String targets,
                                     @RequestHeader(IF_NONE_MATCH) Optional<String> remindingTaskRequestEtag) {
@@ -69,29 +92,18 @@ public class SystemController {
         String remindingTaskEtag = null;
         List<Task> remindingTasks = null;
 
-        if (targetEtags == null || targetEtags.contains("projectsEtag")) {
-            Projects projects = this.projectDaoJpa.getProjects(username);
-            ownedProjectsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                    EtagGenerator.HashType.TO_HASHCODE,
-                    projects.getOwned());
-            sharedProjectsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                    EtagGenerator.HashType.TO_HASHCODE,
-                    projects.getShared());
+        if (targetEtags == null || targetEtags.contains(UpdateTarget.PROJECTS.getName())) {
+            ownedProjectsEtag = this.projectController.getOwnedProjectsEtag(username);
+            sharedProjectsEtag = this.projectController.getSharedProjectsEtag(username);
         }
-        if (targetEtags == null || targetEtags.contains("notificationsEtag")) {
-            List<Notification> notificationList = this.notificationDaoJpa.getNotifications(username);
-            notificationsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                    EtagGenerator.HashType.TO_HASHCODE,
-                    notificationList);
+        if (targetEtags == null || targetEtags.contains(UpdateTarget.NOTIFICATIONS.getName())) {
+            notificationsEtag = this.etagRegistry.getEtag(EtagRegistry.Scope.USER_NOTIFICATIONS, username);
         }
-        if (targetEtags == null || targetEtags.contains("groupsEtag")) {
-            List<Group> groupList = this.groupDaoJpa.getGroups(username);
-            groupsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                    EtagGenerator.HashType.TO_HASHCODE,
-                    groupList);
+        if (targetEtags == null || targetEtags.contains(UpdateTarget.GROUPS.getName())) {
+            groupsEtag = this.etagRegistry.getEtag(EtagRegistry.Scope.USER_GROUPS, username);
         }
-        if (targetEtags == null || targetEtags.contains("taskReminders")) {
-            remindingTasks = this.taskDaoJpa.getRemindingTasks(username, ZonedDateTimeHelper.getNow());
+        if (targetEtags == null || targetEtags.contains(UpdateTarget.TASK_REMINDERS.getName())) {
+            remindingTasks = this.reminderScheduler.getRemindingTasks(username, ZonedDateTimeHelper.getNow());
             remindingTaskEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
                     EtagGenerator.HashType.TO_HASHCODE,
                     remindingTasks);
@@ -110,59 +122,101 @@ public class SystemController {
         return systemUpdates;
     }
 
+    /**
+     * Stream of "update" events, each carrying the comma separated targets of
+     * {@link #getUpdates} that changed for the user
+     */
+    @GetMapping(UPDATES_STREAM_ROUTE)
+    public ResponseEntity<SseEmitter> subscribeUpdates() {
+        String username = MDC.get(UserClient.USER_NAME_KEY);
+        return ResponseEntity.ok()
+                .header("X-Accel-Buffering", "no")
+                .body(this.updatesPublisher.subscribe(username));
+    }
+
+    /**
+     * Get a public item with its contents, served from {@link PublicItemResponseCache} with
+     * ETag and Last-Modified validation
+     */
     @GetMapping(PUBLIC_ITEM_ROUTE)
-    public <T extends ProjectItemModel> PublicProjectItem getPublicProjectItem(
-            @NotNull @PathVariable String itemId) {
+    public <T extends ProjectItemModel> ResponseEntity<byte[]> getPublicProjectItem(
+            @NotNull @PathVariable String itemId, WebRequest request) {
         String originalUser = MDC.get(UserClient.USER_NAME_KEY);
         String username = AuthorizationService.SUPER_USER;
         MDC.put(UserClient.USER_NAME_KEY, username);
 
-        T item;
+        ContentType contentType;
+        Long projectItemId;
         if (!isUUID(itemId)) {
             if (StringUtils.isBlank(originalUser)) {
                 throw new UnAuthorizedException("User not logged in");
             }
+            T item;
             Long id = Long.parseLong(itemId.substring(4));
             if (itemId.startsWith(ProjectItemType.TASK.name())) {
-                if (!this.sharedProjectItemDaoJpa.getSharedProjectItems(originalUser, ProjectType.TODO)
-                    .stream().anyMatch(m -> m.getId().equals(id))) {
+                if (!this.authorizationIndex.isSharedWith(originalUser, ContentType.TASK, id)) {
                     throw new UnAuthorizedException("Task not shared with user " + originalUser);
                 }
                 item = this.taskDaoJpa.getProjectItem(id, username);
             } else if (itemId.startsWith(ProjectItemType.NOTE.name())) {
-                if (!this.sharedProjectItemDaoJpa.getSharedProjectItems(originalUser, ProjectType.NOTE)
-                        .stream().anyMatch(m -> m.getId().equals(id))) {
+                if (!this.authorizationIndex.isSharedWith(originalUser, ContentType.NOTE, id)) {
                     throw new UnAuthorizedException("Note not shared with user " + originalUser);
                 }
                 item = this.noteDaoJpa.getProjectItem(id, username);
             } else {
                 throw new BadRequestException("Invalid itemId " + itemId);
             }
+            if (item == null) {
+                return null;
+            }
+            contentType = item.getContentType();
+            projectItemId = item.getId();
         } else {
-            item = this.publicProjectItemDaoJpa.getPublicItem(itemId);
+            PublicItemLinkCache.Link link = this.publicProjectItemDaoJpa.getPublicItem(itemId);
+            if (link == null) {
+                return null;
+            }
+            contentType = link.getContentType();
+            projectItemId = link.getItemId();
         }
-        if (item == null) {
+
+        // read the etag before rendering, so that a concurrent update leaves a stale response untagged
+        String etag = this.etagRegistry.getEtag(EtagRegistry.Scope.getItemScope(contentType), projectItemId);
+        PublicItemResponseCache.Response response = this.publicItemResponseCache.get(
+                contentType, projectItemId, etag, () -> renderPublicProjectItem(contentType, projectItemId));
+        if (request.checkNotModified(response.getEtag(), response.getLastModified())) {
             return null;
         }
+        return ResponseEntity.ok()
+                .eTag(response.getEtag())
+                .lastModified(response.getLastModified())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response.getBody());
+    }
+
+    private byte[] renderPublicProjectItem(ContentType contentType, Long projectItemId) {
         List<Content> contents;
         ProjectItem projectItem;
-        ContentType contentType = item.getContentType();
         switch (contentType) {
             case NOTE:
-                Note note = this.noteController.getNote(item.getId());
+                Note note = this.noteController.getNote(projectItemId);
                 projectItem = note;
-                contents = this.noteController.getContents(item.getId());
+                contents = this.noteController.getContents(projectItemId);
                 break;
             case TASK:
-                Task task = this.taskController.getTask(item.getId());
+                Task task = this.taskController.getTask(projectItemId);
                 projectItem = task;
-                contents = this.taskController.getContents(item.getId());
+                contents = this.taskController.getContents(projectItemId);
                 break;
             default:
                 throw new IllegalArgumentException();
         }
 
-        return new PublicProjectItem(contentType, contents, projectItem);
+        try {
+            return this.objectMapper.writeValueAsBytes(new PublicProjectItem(contentType, contents, projectItem));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize public item " + contentType + projectItemId, ex);
+        }
     }
 
     private boolean isUUID(String itemId) {
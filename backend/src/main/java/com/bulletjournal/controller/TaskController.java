@@ -1,8 +1,10 @@
 package com.bulletjournal.controller;
 
+import com.bulletjournal.authz.AuthorizationService;
 import com.bulletjournal.clients.UserClient;
 import com.bulletjournal.controller.models.*;
 import com.bulletjournal.controller.utils.EtagGenerator;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.notifications.*;
 import com.bulletjournal.repository.TaskDaoJpa;
 import com.bulletjournal.repository.models.CompletedTask;
@@ -18,9 +20,12 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+
 @RestController
 public class TaskController {
 
@@ -38,6 +43,7 @@ public class TaskController {
     protected static final String ADD_CONTENT_ROUTE = "/api/tasks/{taskId}/addContent";
     protected static final String CONTENT_ROUTE = "/api/tasks/{taskId}/contents/{contentId}";
     protected static final String CONTENTS_ROUTE = "/api/tasks/{taskId}/contents";
+    protected static final String CONTENT_SUMMARIES_ROUTE = "/api/tasks/{taskId}/contentSummaries";
     protected static final String COMPLETED_TASK_CONTENTS_ROUTE = "/api/completedTasks/{taskId}/contents";
     protected static final String CONTENT_REVISIONS_ROUTE = "/api/tasks/{taskId}/contents/{contentId}/revisions/{revisionId}";
 
@@ -50,13 +56,29 @@ public class TaskController {
     @Autowired
     private UserClient userClient;
 
+    @Autowired
+    private EtagRegistry etagRegistry;
+
+    @Autowired
+    private AuthorizationService authorizationService;
+
     @GetMapping(TASKS_ROUTE)
-    public ResponseEntity<List<Task>> getTasks(@NotNull @PathVariable Long projectId) {
+    public ResponseEntity<List<Task>> getTasks(
+            @NotNull @PathVariable Long projectId,
+            @RequestHeader(IF_NONE_MATCH) Optional<String> tasksRequestEtag) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
+        this.authorizationService.validateRequesterInProject(username, projectId);
+        String tasksEtag = this.etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TASKS, projectId);
+        if (EtagRegistry.matches(tasksEtag, tasksRequestEtag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tasksEtag).build();
+        }
+
         List<Task> tasks = this.taskDaoJpa.getTasks(projectId, username)
                 .stream().map(t -> addAvatar(t)).collect(Collectors.toList());
-        String tasksEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                EtagGenerator.HashType.TO_HASHCODE, tasks);
+        if (this.etagRegistry.isUnversioned(EtagRegistry.Scope.PROJECT_TASKS, projectId)) {
+            tasksEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
+                    EtagGenerator.HashType.TO_HASHCODE, tasks);
+        }
 
         HttpHeaders responseHeader = new HttpHeaders();
         responseHeader.setETag(tasksEtag);
@@ -215,12 +237,29 @@ public class TaskController {
                 .toPresentationModel();
     }
 
+    @GetMapping(CONTENT_SUMMARIES_ROUTE)
+    public List<ContentSummary> getContentSummaries(@NotNull @PathVariable Long taskId) {
+        String username = MDC.get(UserClient.USER_NAME_KEY);
+        List<ContentSummary> contents = this.taskDaoJpa.getContentSummaries(taskId, username);
+        Map<String, User> users = this.userClient.getUsers(
+                contents.stream().map(ContentSummary::getOwner).collect(Collectors.toList()));
+        contents.forEach(content -> content.setOwnerAvatar(users.get(content.getOwner()).getAvatar()));
+        return contents;
+    }
+
+    @GetMapping(CONTENT_ROUTE)
+    public Content getContent(@NotNull @PathVariable Long taskId, @NotNull @PathVariable Long contentId) {
+        String username = MDC.get(UserClient.USER_NAME_KEY);
+        Content content = this.taskDaoJpa.getContentWithRevisions(contentId, taskId, username);
+        content.setOwnerAvatar(this.userClient.getUser(content.getOwner()).getAvatar());
+        return content;
+    }
+
     @GetMapping(CONTENTS_ROUTE)
     public List<Content> getContents(@NotNull @PathVariable Long taskId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        return this.taskDaoJpa.getContents(taskId, username).stream()
-                .map(t -> {
-                    Content content = t.toPresentationModel();
+        return this.taskDaoJpa.getContentsWithRevisions(taskId, username).stream()
+                .map(content -> {
                     content.setOwnerAvatar(this.userClient.getUser(content.getOwner()).getAvatar());
                     return content;
                 })
@@ -251,7 +290,8 @@ public class TaskController {
                                  @NotNull @PathVariable Long contentId,
                                  @NotNull @RequestBody UpdateContentParams updateContentParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        return this.taskDaoJpa.updateContent(contentId, taskId, username, updateContentParams).toPresentationModel();
+        return this.taskDaoJpa.getContentWithRevisions(
+                this.taskDaoJpa.updateContent(contentId, taskId, username, updateContentParams));
     }
 
     @GetMapping(CONTENT_REVISIONS_ROUTE)
@@ -1,11 +1,13 @@
 package com.bulletjournal.controller;
 
+import com.bulletjournal.authz.AuthorizationService;
 import com.bulletjournal.clients.UserClient;
 import com.bulletjournal.controller.models.*;
-import com.bulletjournal.controller.utils.EtagGenerator;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
 import com.bulletjournal.exceptions.BadRequestException;
 import com.bulletjournal.ledger.FrequencyType;
+import com.bulletjournal.ledger.LedgerGrouping;
 import com.bulletjournal.ledger.LedgerSummary;
 import com.bulletjournal.ledger.LedgerSummaryCalculator;
 import com.bulletjournal.ledger.LedgerSummaryType;
@@ -25,9 +27,15 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+
 @RestController
 public class TransactionController {
     protected static final String TRANSACTIONS_ROUTE = "/api/projects/{projectId}/transactions";
@@ -38,6 +46,7 @@ public class TransactionController {
     protected static final String ADD_CONTENT_ROUTE = "/api/transactions/{transactionId}/addContent";
     protected static final String CONTENT_ROUTE = "/api/transactions/{transactionId}/contents/{contentId}";
     protected static final String CONTENTS_ROUTE = "/api/transactions/{transactionId}/contents";
+    protected static final String CONTENT_SUMMARIES_ROUTE = "/api/transactions/{transactionId}/contentSummaries";
     protected static final String CONTENT_REVISIONS_ROUTE = "/api/transactions/{transactionId}/contents/{contentId}/revisions/{revisionId}";
 
     @Autowired
@@ -52,6 +61,12 @@ public class TransactionController {
     @Autowired
     private UserClient userClient;
 
+    @Autowired
+    private EtagRegistry etagRegistry;
+
+    @Autowired
+    private AuthorizationService authorizationService;
+
     @GetMapping(TRANSACTIONS_ROUTE)
     public ResponseEntity<LedgerSummary> getTransactions(
             @NotNull @PathVariable Long projectId,
@@ -59,32 +74,48 @@ public class TransactionController {
             @NotBlank @RequestParam String timezone,
             @NotNull @RequestParam LedgerSummaryType ledgerSummaryType,
             @RequestParam(required = false) String startDate,
-            @RequestParam(required = false) String endDate) {
+            @RequestParam(required = false) String endDate,
+            @RequestHeader(IF_NONE_MATCH) Optional<String> transactionsRequestEtag) {
+        String username = MDC.get(UserClient.USER_NAME_KEY);
+        this.authorizationService.validateRequesterInProject(username, projectId);
 
         Pair<ZonedDateTime, ZonedDateTime> startEndTime = getStartEndTime(frequencyType, timezone, startDate, endDate);
         ZonedDateTime startTime = startEndTime.getLeft();
         ZonedDateTime endTime = startEndTime.getRight();
 
-        String username = MDC.get(UserClient.USER_NAME_KEY);
-        List<Transaction> transactions = this.transactionDaoJpa.getTransactions(projectId, startTime, endTime, username)
-                .stream().map(t -> addAvatar(t)).collect(Collectors.toList());
-
-        String transactionsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                EtagGenerator.HashType.TO_HASHCODE, transactions);
-
+        // the summary depends on the resolved range as well as the transactions
+        String transactionsEtag = this.etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TRANSACTIONS, projectId,
+                frequencyType, ledgerSummaryType, startTime, endTime);
         HttpHeaders responseHeader = new HttpHeaders();
         responseHeader.setETag(transactionsEtag);
+        if (EtagRegistry.matches(transactionsEtag, transactionsRequestEtag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(responseHeader).build();
+        }
+
+        List<Transaction> transactions = addAvatar(
+                this.transactionDaoJpa.getTransactions(projectId, startTime, endTime, username));
 
+        LedgerGrouping grouping = LedgerGrouping.of(ledgerSummaryType, frequencyType);
         final LedgerSummary ledgerSummary = this.ledgerSummaryCalculator.getLedgerSummary(
-                ledgerSummaryType, startTime, endTime, transactions, frequencyType);
+                grouping, startTime, endTime, transactions,
+                this.transactionDaoJpa.getTransactionSums(projectId, startTime, endTime, grouping, username),
+                this.transactionDaoJpa.getTransactionSums(projectId, startTime, endTime, null, username));
 
         return ResponseEntity.ok().headers(responseHeader).body(ledgerSummary);
     }
 
-    private Transaction addAvatar(Transaction transaction) {
-        transaction.setOwnerAvatar(this.userClient.getUser(transaction.getOwner()).getAvatar());
-        transaction.setPayerAvatar(this.userClient.getUser(transaction.getPayer()).getAvatar());
-        return transaction;
+    private List<Transaction> addAvatar(List<Transaction> transactions) {
+        List<String> usernames = new ArrayList<>(transactions.size() * 2);
+        transactions.forEach(t -> {
+            usernames.add(t.getOwner());
+            usernames.add(t.getPayer());
+        });
+        Map<String, User> users = this.userClient.getUsers(usernames);
+        transactions.forEach(t -> {
+            t.setOwnerAvatar(users.get(t.getOwner()).getAvatar());
+            t.setPayerAvatar(users.get(t.getPayer()).getAvatar());
+        });
+        return transactions;
     }
 
     @PostMapping(TRANSACTIONS_ROUTE)
@@ -99,8 +130,7 @@ public class TransactionController {
     public Transaction getTransaction(@NotNull @PathVariable Long transactionId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         Transaction transaction = this.transactionDaoJpa.getTransaction(username, transactionId);
-        transaction.setOwnerAvatar(this.userClient.getUser(transaction.getOwner()).getAvatar());
-        transaction.setPayerAvatar(this.userClient.getUser(transaction.getPayer()).getAvatar());
+        addAvatar(Collections.singletonList(transaction));
         return transaction;
     }
 
@@ -179,15 +209,32 @@ public class TransactionController {
                 new TransactionContent(createContentParams.getText())).toPresentationModel();
     }
 
+    @GetMapping(CONTENT_SUMMARIES_ROUTE)
+    public List<ContentSummary> getContentSummaries(@NotNull @PathVariable Long transactionId) {
+        String username = MDC.get(UserClient.USER_NAME_KEY);
+        List<ContentSummary> contents = this.transactionDaoJpa.getContentSummaries(transactionId, username);
+        Map<String, User> users = this.userClient.getUsers(
+                contents.stream().map(ContentSummary::getOwner).collect(Collectors.toList()));
+        contents.forEach(content -> content.setOwnerAvatar(users.get(content.getOwner()).getAvatar()));
+        return contents;
+    }
+
+    @GetMapping(CONTENT_ROUTE)
+    public Content getContent(@NotNull @PathVariable Long transactionId, @NotNull @PathVariable Long contentId) {
+        String username = MDC.get(UserClient.USER_NAME_KEY);
+        Content content = this.transactionDaoJpa.getContentWithRevisions(contentId, transactionId, username);
+        content.setOwnerAvatar(this.userClient.getUser(content.getOwner()).getAvatar());
+        return content;
+    }
+
     @GetMapping(CONTENTS_ROUTE)
     public List<Content> getContents(@NotNull @PathVariable Long transactionId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        return this.transactionDaoJpa.getContents(transactionId, username).stream()
-                .map(t -> {
-                    Content content = t.toPresentationModel();
-                    content.setOwnerAvatar(this.userClient.getUser(content.getOwner()).getAvatar());
-                    return content;
-                }).collect(Collectors.toList());
+        List<Content> contents = this.transactionDaoJpa.getContentsWithRevisions(transactionId, username);
+        Map<String, User> users = this.userClient.getUsers(
+                contents.stream().map(Content::getOwner).collect(Collectors.toList()));
+        contents.forEach(content -> content.setOwnerAvatar(users.get(content.getOwner()).getAvatar()));
+        return contents;
     }
 
     @DeleteMapping(CONTENT_ROUTE)
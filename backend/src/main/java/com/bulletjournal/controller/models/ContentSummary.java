@@ -0,0 +1,112 @@
+package com.bulletjournal.controller.models;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Content in a listing: the start of its text, without revisions
+ */
+public class ContentSummary {
+
+    @NotNull
+    private Long id;
+
+    @NotBlank
+    private String owner;
+
+    private String ownerAvatar;
+
+    @NotNull
+    private String preview;
+
+    /**
+     * Whether the text is longer than preview
+     */
+    private boolean truncated;
+
+    @NotNull
+    private Long createdAt;
+
+    @NotNull
+    private Long updatedAt;
+
+    private int revisionCount;
+
+    public ContentSummary() {
+    }
+
+    public ContentSummary(@NotNull Long id, @NotBlank String owner, @NotNull String preview, boolean truncated,
+                          @NotNull Long createdAt, @NotNull Long updatedAt, int revisionCount) {
+        this.id = id;
+        this.owner = owner;
+        this.preview = preview;
+        this.truncated = truncated;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.revisionCount = revisionCount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public String getOwnerAvatar() {
+        return ownerAvatar;
+    }
+
+    public void setOwnerAvatar(String ownerAvatar) {
+        this.ownerAvatar = ownerAvatar;
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+
+    public void setPreview(String preview) {
+        this.preview = preview;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    public Long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public int getRevisionCount() {
+        return revisionCount;
+    }
+
+    public void setRevisionCount(int revisionCount) {
+        this.revisionCount = revisionCount;
+    }
+}
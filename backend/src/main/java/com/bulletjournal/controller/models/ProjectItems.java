@@ -8,6 +8,7 @@ import javax.validation.constraints.Size;
 import java.time.DayOfWeek;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class ProjectItems {
 
@@ -32,22 +33,35 @@ public class ProjectItems {
 
     public static List<ProjectItems> addOwnerAvatar(
             List<ProjectItems> projectItems, final UserClient userClient) {
+        List<String> usernames = new ArrayList<>();
         projectItems.forEach(items -> {
-            items.getNotes().forEach(item -> addOwnerAvatar(item, userClient));
-            items.getTransactions().forEach(item -> addOwnerAvatar(item, userClient));
-            items.getTasks().forEach(item -> addOwnerAvatar(item, userClient));
+            items.getNotes().forEach(item -> usernames.add(item.getOwner()));
+            items.getTransactions().forEach(item -> {
+                usernames.add(item.getOwner());
+                usernames.add(item.getPayer());
+            });
+            items.getTasks().forEach(item -> {
+                usernames.add(item.getOwner());
+                usernames.add(item.getAssignedTo());
+            });
+        });
+        Map<String, User> users = userClient.getUsers(usernames);
+        projectItems.forEach(items -> {
+            items.getNotes().forEach(item -> addOwnerAvatar(item, users));
+            items.getTransactions().forEach(item -> addOwnerAvatar(item, users));
+            items.getTasks().forEach(item -> addOwnerAvatar(item, users));
         });
         return projectItems;
     }
 
-    private static void addOwnerAvatar(ProjectItem projectItem, UserClient userClient) {
-        projectItem.setOwnerAvatar(userClient.getUser(projectItem.getOwner()).getAvatar());
+    private static void addOwnerAvatar(ProjectItem projectItem, Map<String, User> users) {
+        projectItem.setOwnerAvatar(users.get(projectItem.getOwner()).getAvatar());
         if (projectItem instanceof Transaction) {
             Transaction transaction = ((Transaction) projectItem);
-            transaction.setPayerAvatar(userClient.getUser(transaction.getPayer()).getAvatar());
+            transaction.setPayerAvatar(users.get(transaction.getPayer()).getAvatar());
         } else if (projectItem instanceof Task) {
             Task task = ((Task) projectItem);
-            task.setAssignedToAvatar(userClient.getUser(task.getAssignedTo()).getAvatar());
+            task.setAssignedToAvatar(users.get(task.getAssignedTo()).getAvatar());
         }
     }
 
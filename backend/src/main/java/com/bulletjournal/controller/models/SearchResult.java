@@ -0,0 +1,38 @@
+package com.bulletjournal.controller.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SearchResult {
+
+    private List<ProjectItem> items = new ArrayList<>();
+
+    /**
+     * Pass as cursor to get the next page, null on the last page
+     */
+    private String cursor;
+
+    public SearchResult() {
+    }
+
+    public SearchResult(List<ProjectItem> items, String cursor) {
+        this.items = items;
+        this.cursor = cursor;
+    }
+
+    public List<ProjectItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<ProjectItem> items) {
+        this.items = items;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+}
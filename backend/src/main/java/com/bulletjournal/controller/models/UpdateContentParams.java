@@ -1,19 +1,29 @@
 package com.bulletjournal.controller.models;
 
-import javax.validation.constraints.NotBlank;
-
+/**
+ * Either the full new text, or a diff-match-patch patch to apply to revision baseRevisionId,
+ * 0 for a content without revisions
+ */
 public class UpdateContentParams {
 
-    @NotBlank
     private String text;
 
+    private String diff;
+
+    private Long baseRevisionId;
+
     public UpdateContentParams() {
     }
 
-    public UpdateContentParams(@NotBlank String text) {
+    public UpdateContentParams(String text) {
         this.text = text;
     }
 
+    public UpdateContentParams(String diff, Long baseRevisionId) {
+        this.diff = diff;
+        this.baseRevisionId = baseRevisionId;
+    }
+
     public String getText() {
         return text;
     }
@@ -21,4 +31,20 @@ public class UpdateContentParams {
     public void setText(String text) {
         this.text = text;
     }
+
+    public String getDiff() {
+        return diff;
+    }
+
+    public void setDiff(String diff) {
+        this.diff = diff;
+    }
+
+    public Long getBaseRevisionId() {
+        return baseRevisionId;
+    }
+
+    public void setBaseRevisionId(Long baseRevisionId) {
+        this.baseRevisionId = baseRevisionId;
+    }
 }
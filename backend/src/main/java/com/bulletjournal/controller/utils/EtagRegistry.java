@@ -0,0 +1,193 @@
+package com.bulletjournal.controller.utils;
+
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.notifications.UpdateTarget;
+import com.bulletjournal.notifications.UpdatesPublisher;
+import com.bulletjournal.repository.utils.DaoHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Etags derived from version counters instead of hashing responses, so that
+ * a request with a matching If-None-Match is answered without loading anything.
+ * <p>
+ * - Every (scope, id) has a version, bumped by DAO writes after their transaction commits.
+ * - At most {@code maxVersions} versions are kept per scope, evicting the least recently used. An evicted id
+ * reads a version above any it had before, so its etags stop matching instead of matching stale data.
+ * - Every scope has a generation, bumped by writes whose affected ids are unknown,
+ * which invalidates all etags of the scope.
+ * - Etags are prefixed with the process start time, so they never match across restarts.
+ * - Ids whose content is not covered by the bumps (e.g. users' shared projects) are marked
+ * unversioned, callers hash the response for those instead.
+ * <p>
+ * Bumping a user scope also publishes its {@link UpdateTarget} through {@link UpdatesPublisher}.
+ */
+@Component
+public class EtagRegistry {
+
+    static final int DEFAULT_MAX_VERSIONS = 20000;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final Map<Scope, Versions> versions = new EnumMap<>(Scope.class);
+    private final Map<Scope, AtomicLong> generations = new EnumMap<>(Scope.class);
+    private final Set<String> unversioned = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    private UpdatesPublisher updatesPublisher;
+
+    public EtagRegistry() {
+        this(DEFAULT_MAX_VERSIONS);
+    }
+
+    EtagRegistry(int maxVersions) {
+        for (Scope scope : Scope.values()) {
+            this.versions.put(scope, new Versions(maxVersions));
+            this.generations.put(scope, new AtomicLong());
+        }
+    }
+
+    /**
+     * Get etag of (scope, id), read it before loading the data it stands for
+     *
+     * @param scope    the scope
+     * @param id       the username of user scopes, the project id of project scopes, or the item id of item scopes
+     * @param variants request parameters the response depends on besides (scope, id)
+     * @return String - the quoted etag, or null if (scope, id) is unversioned
+     */
+    public String getEtag(Scope scope, Object id, Object... variants) {
+        if (isUnversioned(scope, id)) {
+            return null;
+        }
+        StringBuilder etag = new StringBuilder("\"").append(this.epoch)
+                .append('-').append(this.generations.get(scope).get())
+                .append('-').append(getVersion(scope, id));
+        if (variants.length > 0) {
+            etag.append('-').append(Integer.toHexString(Objects.hash(variants)));
+        }
+        return etag.append('"').toString();
+    }
+
+    public long getVersion(Scope scope, Object id) {
+        return this.versions.get(scope).get(String.valueOf(id));
+    }
+
+    public boolean isUnversioned(Scope scope, Object id) {
+        return this.unversioned.contains(getKey(scope, id));
+    }
+
+    public void setUnversioned(Scope scope, Object id) {
+        this.unversioned.add(getKey(scope, id));
+    }
+
+    public static boolean matches(String etag, Optional<String> ifNoneMatch) {
+        return etag != null && ifNoneMatch.isPresent() && etag.equals(ifNoneMatch.get());
+    }
+
+    public void bump(Scope scope, Object id) {
+        bump(scope, Collections.singletonList(id));
+    }
+
+    public void bump(Scope scope, Collection<?> ids) {
+        List<?> targets = new ArrayList<>(ids);
+        DaoHelper.afterCommit(() -> {
+            for (Object id : targets) {
+                this.versions.get(scope).bump(String.valueOf(id));
+                if (scope.getUpdateTarget() != null) {
+                    this.updatesPublisher.publishNow((String) id, scope.getUpdateTarget());
+                }
+            }
+        });
+    }
+
+    public void bumpAll(Scope scope) {
+        DaoHelper.afterCommit(() -> this.generations.get(scope).incrementAndGet());
+    }
+
+    private static String getKey(Scope scope, Object id) {
+        return scope.name() + ':' + id;
+    }
+
+    /**
+     * Versions of one scope, ids not present read the floor, which is raised above every evicted version
+     */
+    private static final class Versions {
+
+        private final Map<String, Long> versions;
+        private long floor;
+
+        private Versions(int maxVersions) {
+            this.versions = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    if (size() <= maxVersions) {
+                        return false;
+                    }
+                    floor = Math.max(floor, eldest.getValue()) + 1;
+                    return true;
+                }
+            };
+        }
+
+        private synchronized long get(String id) {
+            Long version = this.versions.get(id);
+            return version == null ? this.floor : version;
+        }
+
+        private synchronized void bump(String id) {
+            this.versions.put(id, get(id) + 1);
+        }
+    }
+
+    public enum Scope {
+        USER_PROJECTS(UpdateTarget.PROJECTS),
+        USER_GROUPS(UpdateTarget.GROUPS),
+        USER_NOTIFICATIONS(UpdateTarget.NOTIFICATIONS),
+        PROJECT_TASKS(null),
+        PROJECT_NOTES(null),
+        PROJECT_TRANSACTIONS(null),
+        TASK(null),
+        NOTE(null);
+
+        private final UpdateTarget updateTarget;
+
+        Scope(UpdateTarget updateTarget) {
+            this.updateTarget = updateTarget;
+        }
+
+        public UpdateTarget getUpdateTarget() {
+            return this.updateTarget;
+        }
+
+        public static Scope getProjectItemScope(ContentType contentType) {
+            switch (contentType) {
+                case TASK:
+                    return PROJECT_TASKS;
+                case NOTE:
+                    return PROJECT_NOTES;
+                case TRANSACTION:
+                    return PROJECT_TRANSACTIONS;
+                default:
+                    throw new IllegalArgumentException("No etag scope for " + contentType);
+            }
+        }
+
+        /**
+         * @return scope whose ids are the ids of single items, e.g. for rendering one item with its contents,
+         * or null if items of contentType are not versioned one by one
+         */
+        public static Scope getItemScope(ContentType contentType) {
+            switch (contentType) {
+                case TASK:
+                    return TASK;
+                case NOTE:
+                    return NOTE;
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.bulletjournal.controller.utils;
+
+import com.bulletjournal.contents.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Serialized public item responses, so that views of a popular public item skip authorization,
+ * label and avatar lookups.
+ * <p>
+ * - A response is keyed by item and tagged with the item's etag from {@link EtagRegistry}, which
+ * item and content writes bump. A response whose etag is no longer current is rendered again.
+ * - Responses are kept at most ttlMillis, for what the etag does not cover, e.g. owner avatars.
+ * - At most maxResponses responses are kept, least recently used ones are evicted.
+ */
+@Component
+public class PublicItemResponseCache {
+
+    static final int DEFAULT_MAX_RESPONSES = 1000;
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final Logger LOGGER = LoggerFactory.getLogger(PublicItemResponseCache.class);
+    private static final long LOG_STATS_INTERVAL = 10000;
+
+    private final Map<String, Response> responses;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PublicItemResponseCache() {
+        this(DEFAULT_MAX_RESPONSES, DEFAULT_TTL_MILLIS, System::currentTimeMillis);
+    }
+
+    PublicItemResponseCache(int maxResponses, long ttlMillis, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.responses = Collections.synchronizedMap(new LinkedHashMap<String, Response>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Response> eldest) {
+                return size() > maxResponses;
+            }
+        });
+    }
+
+    /**
+     * Get the response of an item, rendering it on a miss
+     *
+     * @param etag     the item's current etag, read before rendering
+     * @param renderer renders and serializes the response
+     */
+    public Response get(ContentType contentType, Long itemId, String etag, Supplier<byte[]> renderer) {
+        String key = contentType.name() + '@' + itemId;
+        long now = this.clock.getAsLong();
+        Response response = this.responses.get(key);
+        if (response != null && response.etag.equals(etag) && now - response.lastModified < this.ttlMillis) {
+            logStats(this.hits.incrementAndGet() + this.misses.get());
+            return response;
+        }
+        logStats(this.hits.get() + this.misses.incrementAndGet());
+
+        response = new Response(etag, renderer.get(), now);
+        this.responses.put(key, response);
+        return response;
+    }
+
+    public int size() {
+        return this.responses.size();
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    private void logStats(long lookups) {
+        if (lookups % LOG_STATS_INTERVAL == 0) {
+            LOGGER.info("PublicItemResponseCache hits: {}, misses: {}, responses: {}",
+                    this.hits.get(), this.misses.get(), size());
+        }
+    }
+
+    public static final class Response {
+        private final String etag;
+        private final byte[] body;
+        private final long lastModified;
+
+        private Response(String etag, byte[] body, long lastModified) {
+            this.etag = etag;
+            this.body = body;
+            this.lastModified = lastModified;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return time the response was rendered, no earlier than the last change it reflects
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.bulletjournal.daemon;
 
 import com.bulletjournal.config.NotificationConfig;
+import com.bulletjournal.repository.ContentRevisionDaoJpa;
 import com.bulletjournal.repository.NotificationDaoJpa;
 import com.bulletjournal.repository.PublicProjectItemDaoJpa;
 import com.bulletjournal.util.CustomThreadFactory;
@@ -16,6 +17,9 @@ import java.util.Objects;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
 
 @Service
 public class Cleaner {
@@ -24,16 +28,32 @@ public class Cleaner {
     private final ScheduledExecutorService executorService;
     private final NotificationDaoJpa notificationDaoJpa;
     private final PublicProjectItemDaoJpa publicProjectItemDaoJpa;
+    private final ContentRevisionDaoJpa contentRevisionDaoJpa;
+    private final AtomicLong notificationsDeleted = new AtomicLong();
+    private final AtomicLong notificationCleaningMillis = new AtomicLong();
+    private final AtomicLong publicProjectItemsDeleted = new AtomicLong();
+    private final AtomicLong publicProjectItemCleaningMillis = new AtomicLong();
+    private final AtomicLong contentRevisionsDeleted = new AtomicLong();
+    private final LongSupplier clock;
 
     @Autowired
     private NotificationConfig notificationConfig;
 
     @Autowired
-    public Cleaner(NotificationDaoJpa notificationDaoJpa, PublicProjectItemDaoJpa publicProjectItemDaoJpa) {
+    public Cleaner(NotificationDaoJpa notificationDaoJpa, PublicProjectItemDaoJpa publicProjectItemDaoJpa,
+                   ContentRevisionDaoJpa contentRevisionDaoJpa) {
+        this(notificationDaoJpa, publicProjectItemDaoJpa, contentRevisionDaoJpa, null, System::currentTimeMillis);
+    }
+
+    Cleaner(NotificationDaoJpa notificationDaoJpa, PublicProjectItemDaoJpa publicProjectItemDaoJpa,
+            ContentRevisionDaoJpa contentRevisionDaoJpa, NotificationConfig notificationConfig, LongSupplier clock) {
         this.executorService = Executors.newSingleThreadScheduledExecutor(
                 new CustomThreadFactory("cleaner"));
         this.notificationDaoJpa = notificationDaoJpa;
         this.publicProjectItemDaoJpa = publicProjectItemDaoJpa;
+        this.contentRevisionDaoJpa = contentRevisionDaoJpa;
+        this.notificationConfig = notificationConfig;
+        this.clock = clock;
     }
 
     @PostConstruct
@@ -42,27 +62,103 @@ public class Cleaner {
         if (intervalInSeconds <= 0) {
             throw new IllegalArgumentException("Invalid intervalInSeconds: " + intervalInSeconds);
         }
+        int chunkSize = notificationConfig.getCleaner().getChunkSize();
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunkSize: " + chunkSize);
+        }
 
         this.executorService.scheduleWithFixedDelay(this::clean, 0, intervalInSeconds, TimeUnit.SECONDS);
     }
 
     public void clean() {
         Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
-        cleanNotification();
-        cleanPublicProjectItems();
+        try {
+            cleanNotification();
+            cleanPublicProjectItems();
+            cleanContentRevisions();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            // keep the schedule running, what is left is deleted on the next run
+            LOGGER.error("Cleaning failed", ex);
+        }
     }
 
-    private void cleanNotification() {
+    private void cleanNotification() throws InterruptedException {
         int maxRetentionTimeInDays = notificationConfig.getCleaner().getMaxRetentionTimeInDays();
-        long expirationTime = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxRetentionTimeInDays);
+        Timestamp expirationTime = new Timestamp(
+                this.clock.getAsLong() - TimeUnit.DAYS.toMillis(maxRetentionTimeInDays));
+
+        long start = this.clock.getAsLong();
+        long deleted = deleteInChunks(limit -> this.notificationDaoJpa.deleteExpiredNotifications(expirationTime, limit));
+        long elapsed = this.clock.getAsLong() - start;
+        this.notificationsDeleted.addAndGet(deleted);
+        this.notificationCleaningMillis.addAndGet(elapsed);
+        LOGGER.info("Notification Cleaning Done: {} deleted in {} ms", deleted, elapsed);
+    }
+
+    private void cleanPublicProjectItems() throws InterruptedException {
+        Timestamp expirationTime = new Timestamp(this.clock.getAsLong());
+
+        long start = this.clock.getAsLong();
+        long deleted = deleteInChunks(limit -> this.publicProjectItemDaoJpa.deleteExpiredPublicItems(expirationTime, limit));
+        long elapsed = this.clock.getAsLong() - start;
+        this.publicProjectItemsDeleted.addAndGet(deleted);
+        this.publicProjectItemCleaningMillis.addAndGet(elapsed);
+        LOGGER.info("PublicProjectItems Cleaning Done: {} deleted in {} ms", deleted, elapsed);
+    }
+
+    /**
+     * Delete revisions of contents removed along with their project items or projects
+     */
+    private void cleanContentRevisions() throws InterruptedException {
+        long start = this.clock.getAsLong();
+        long deleted = deleteInChunks(this.contentRevisionDaoJpa::deleteOrphanRevisions);
+        long elapsed = this.clock.getAsLong() - start;
+        this.contentRevisionsDeleted.addAndGet(deleted);
+        LOGGER.info("ContentRevisions Cleaning Done: {} deleted in {} ms", deleted, elapsed);
+    }
+
+    /**
+     * Delete in chunks of chunkSize rows, each in its own short transaction, pausing between chunks
+     * so that a backlog after a long downtime does not hold locks or starve other queries
+     *
+     * @param deleteChunk deletes up to the given number of rows and returns how many it deleted
+     * @return number of rows deleted
+     */
+    private long deleteInChunks(IntUnaryOperator deleteChunk) throws InterruptedException {
+        int chunkSize = notificationConfig.getCleaner().getChunkSize();
+        long chunkPauseMillis = notificationConfig.getCleaner().getChunkPauseMillis();
+        long deleted = 0;
+        int count;
+        do {
+            count = deleteChunk.applyAsInt(chunkSize);
+            deleted += count;
+            if (count == chunkSize && chunkPauseMillis > 0) {
+                Thread.sleep(chunkPauseMillis);
+            }
+        } while (count == chunkSize);
+        return deleted;
+    }
+
+    public long getNotificationsDeleted() {
+        return this.notificationsDeleted.get();
+    }
+
+    public long getNotificationCleaningMillis() {
+        return this.notificationCleaningMillis.get();
+    }
+
+    public long getPublicProjectItemsDeleted() {
+        return this.publicProjectItemsDeleted.get();
+    }
 
-        notificationDaoJpa.deleteAllExpiredNotifications(new Timestamp(expirationTime));
-        LOGGER.info("Notification Cleaning Done");
+    public long getPublicProjectItemCleaningMillis() {
+        return this.publicProjectItemCleaningMillis.get();
     }
 
-    private void cleanPublicProjectItems() {
-        this.publicProjectItemDaoJpa.deleteAllExpiredPublicItems();
-        LOGGER.info("PublicProjectItems Cleaning Done");
+    public long getContentRevisionsDeleted() {
+        return this.contentRevisionsDeleted.get();
     }
 
     @Override
@@ -0,0 +1,76 @@
+package com.bulletjournal.daemon;
+
+import com.bulletjournal.config.ContentRevisionConfig;
+import com.bulletjournal.repository.ContentRevisionDaoJpa;
+import com.bulletjournal.util.CustomThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds pending content revisions once their coalescing window closes, see {@link ContentRevisionDaoJpa}
+ */
+@Service
+public class ContentRevisionFlusher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentRevisionFlusher.class);
+    private final ScheduledExecutorService executorService;
+    private final ContentRevisionDaoJpa contentRevisionDaoJpa;
+
+    @Autowired
+    private ContentRevisionConfig revisionConfig;
+
+    @Autowired
+    public ContentRevisionFlusher(ContentRevisionDaoJpa contentRevisionDaoJpa) {
+        this.executorService = Executors.newSingleThreadScheduledExecutor(
+                new CustomThreadFactory("content-revision-flusher"));
+        this.contentRevisionDaoJpa = contentRevisionDaoJpa;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        int coalesceWindowSeconds = this.revisionConfig.getCoalesceWindowSeconds();
+        if (coalesceWindowSeconds <= 0) {
+            return;
+        }
+        // a pending revision is added at most 1.5 windows after its first edit
+        long intervalInMillis = TimeUnit.SECONDS.toMillis(coalesceWindowSeconds) / 2;
+        this.executorService.scheduleWithFixedDelay(
+                this::flush, intervalInMillis, intervalInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void flush() {
+        for (String key : this.contentRevisionDaoJpa.getClosedPendingRevisions()) {
+            try {
+                this.contentRevisionDaoJpa.flushPendingRevision(key);
+            } catch (Exception ex) {
+                LOGGER.error("Failed to add pending revision of " + key, ex);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        this.executorService.shutdown();
+        try {
+            this.executorService.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        // add what is pending rather than losing it
+        this.contentRevisionDaoJpa.getPendingRevisionKeys().forEach(key -> {
+            try {
+                this.contentRevisionDaoJpa.flushPendingRevision(key);
+            } catch (Exception ex) {
+                LOGGER.error("Failed to add pending revision of " + key, ex);
+            }
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package com.bulletjournal.daemon;
+
+import com.bulletjournal.config.LedgerConfig;
+import com.bulletjournal.repository.LedgerRollupDaoJpa;
+import com.bulletjournal.util.CustomThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically compares ledger rollups with transactions and rebuilds the projects whose rollups drifted,
+ * e.g. transactions written without going through TransactionDaoJpa or rollups of deleted projects
+ */
+@Service
+public class LedgerRollupVerifier {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LedgerRollupVerifier.class);
+    private final ScheduledExecutorService executorService;
+    private final LedgerRollupDaoJpa ledgerRollupDaoJpa;
+
+    @Autowired
+    private LedgerConfig ledgerConfig;
+
+    @Autowired
+    public LedgerRollupVerifier(LedgerRollupDaoJpa ledgerRollupDaoJpa) {
+        this.executorService = Executors.newSingleThreadScheduledExecutor(
+                new CustomThreadFactory("ledger-rollup-verifier"));
+        this.ledgerRollupDaoJpa = ledgerRollupDaoJpa;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        int intervalInSeconds = ledgerConfig.getRollup().getVerifyIntervalInSeconds();
+        if (intervalInSeconds <= 0) {
+            throw new IllegalArgumentException("Invalid verifyIntervalInSeconds: " + intervalInSeconds);
+        }
+
+        this.executorService.scheduleWithFixedDelay(this::verify, 0, intervalInSeconds, TimeUnit.SECONDS);
+    }
+
+    public void verify() {
+        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+        try {
+            List<Long> projectIds = this.ledgerRollupDaoJpa.getProjectIds();
+            int rebuilt = 0;
+            for (Long projectId : projectIds) {
+                if (this.ledgerRollupDaoJpa.verify(projectId)) {
+                    rebuilt++;
+                }
+            }
+            int deleted = this.ledgerRollupDaoJpa.deleteEmptyRollups();
+            LOGGER.info("Ledger rollups verified: {} projects, {} rebuilt, {} empty rows deleted",
+                    projectIds.size(), rebuilt, deleted);
+        } catch (Exception ex) {
+            // keep the schedule running, drift is fixed on the next run
+            LOGGER.error("Ledger rollup verification failed", ex);
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        if (executorService != null) {
+            try {
+                executorService.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
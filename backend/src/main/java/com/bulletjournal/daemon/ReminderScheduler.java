@@ -0,0 +1,481 @@
+package com.bulletjournal.daemon;
+
+import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
+import com.bulletjournal.notifications.UpdateTarget;
+import com.bulletjournal.notifications.UpdatesPublisher;
+import com.bulletjournal.repository.LabelRepository;
+import com.bulletjournal.repository.TaskRepository;
+import com.bulletjournal.repository.models.Label;
+import com.bulletjournal.repository.models.Task;
+import com.bulletjournal.repository.models.TaskModel;
+import com.bulletjournal.repository.utils.DaoHelper;
+import com.bulletjournal.util.CustomThreadFactory;
+import com.bulletjournal.util.RecurrenceEngine;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps task reminders in memory so that polling for updates does not query tasks
+ * and expand recurrence rules every time.
+ * <p>
+ * - Pending reminder occurrences are kept in a min-heap ordered by the time they become due.
+ * A recurring task only keeps its next occurrence, the one after is scheduled once it becomes due.
+ * - A dispatcher thread moves due occurrences into the assignee's ready set and drops them once started.
+ * - Users are loaded on their first poll and unloaded after being idle for a day.
+ * - Changes to a ready set are pushed through {@link UpdatesPublisher}.
+ * - Only what schedules a reminder is kept, reminded tasks are read when they are polled, so that they show
+ * their current name and labels.
+ * <p>
+ * {@link com.bulletjournal.repository.TaskDaoJpa} and {@link com.bulletjournal.repository.ProjectDaoJpa}
+ * keep the schedule current, changes are applied after their transactions commit.
+ */
+@Service
+public class ReminderScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReminderScheduler.class);
+    private static final long DISPATCH_INTERVAL_IN_SECONDS = 5;
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_TIME_BEFORE = TimeUnit.HOURS.toMillis(ZonedDateTimeHelper.MAX_HOURS_BEFORE);
+    private static final long MAX_IDLE_TIME = TimeUnit.DAYS.toMillis(1);
+    private static final long PURGE_THRESHOLD = 10000;
+
+    private final ScheduledExecutorService executorService;
+    private final PriorityQueue<Trigger> triggers = new PriorityQueue<>(Comparator.comparingLong(t -> t.time));
+    private final Map<String, UserReminders> users = new ConcurrentHashMap<>();
+    private final AtomicLong cancellations = new AtomicLong();
+    private final LongSupplier clock;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private LabelRepository labelRepository;
+
+    @Autowired
+    private RecurrenceEngine recurrenceEngine;
+
+    @Autowired
+    private UpdatesPublisher updatesPublisher;
+
+    public ReminderScheduler() {
+        this(null, null, null, null, System::currentTimeMillis);
+    }
+
+    ReminderScheduler(TaskRepository taskRepository, LabelRepository labelRepository,
+                      RecurrenceEngine recurrenceEngine, UpdatesPublisher updatesPublisher, LongSupplier clock) {
+        this.executorService = Executors.newSingleThreadScheduledExecutor(
+                new CustomThreadFactory("reminder"));
+        this.taskRepository = taskRepository;
+        this.labelRepository = labelRepository;
+        this.recurrenceEngine = recurrenceEngine;
+        this.updatesPublisher = updatesPublisher;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        this.executorService.scheduleWithFixedDelay(this::dispatch,
+                DISPATCH_INTERVAL_IN_SECONDS, DISPATCH_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        this.executorService.shutdown();
+        try {
+            this.executorService.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get tasks of assignee that need reminding now, same as
+     * {@link com.bulletjournal.repository.TaskDaoJpa#getRemindingTasks} would return
+     *
+     * @param assignee the username of task assignee
+     * @param now      the ZonedDateTime object of the current time
+     * @return List<com.bulletjournal.controller.models.Task> - a list of tasks to be reminded
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public List<com.bulletjournal.controller.models.Task> getRemindingTasks(String assignee, ZonedDateTime now) {
+        UserReminders user = this.users.computeIfAbsent(assignee, k -> new UserReminders(k, this.clock.getAsLong()));
+        Timestamp currentTime = ZonedDateTimeHelper.getTimestamp(now);
+        List<Occurrence> occurrences;
+        synchronized (user) {
+            if (!user.loaded) {
+                load(user);
+            }
+            user.lastAccess = this.clock.getAsLong();
+            occurrences = user.ready.values().stream()
+                    .flatMap(List::stream)
+                    .filter(occurrence -> occurrence.needsReminding(currentTime))
+                    .sorted(Comparator.comparing((Occurrence o) -> o.startTime).thenComparing(o -> o.task.taskId))
+                    .collect(Collectors.toList());
+        }
+        return toPresentationModels(occurrences);
+    }
+
+    /**
+     * Read the tasks of occurrences with their labels, skipping tasks deleted since
+     */
+    private List<com.bulletjournal.controller.models.Task> toPresentationModels(List<Occurrence> occurrences) {
+        if (occurrences.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Task> tasks = this.taskRepository.findAllById(
+                occurrences.stream().map(o -> o.task.taskId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Task::getId, task -> task));
+        Map<Long, com.bulletjournal.controller.models.Label> labels = this.labelRepository.findAllById(
+                tasks.values().stream().flatMap(task -> task.getLabels().stream()).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Label::getId, Label::toPresentationModel));
+        return occurrences.stream()
+                .filter(o -> tasks.containsKey(o.task.taskId))
+                .map(o -> o.toPresentationModel(tasks.get(o.task.taskId), labels))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Schedule task reminders, replacing any previously scheduled for the same task
+     */
+    public void schedule(Task task) {
+        String assignee = task.getAssignedTo();
+        TaskReminder reminder = new TaskReminder(task);
+        DaoHelper.afterCommit(() -> update(assignee, user -> schedule(user, reminder, this.clock.getAsLong())));
+    }
+
+    public void cancel(String assignee, Long taskId) {
+        DaoHelper.afterCommit(() -> update(assignee, user -> unschedule(user, taskId)));
+    }
+
+    public void cancel(Collection<Task> tasks) {
+        tasks.forEach(task -> cancel(task.getAssignedTo(), task.getId()));
+    }
+
+    /**
+     * Cancel reminders of all tasks under projects, whose tasks are deleted by cascade
+     */
+    public void cancelProjects(Collection<Long> projectIds) {
+        Set<Long> ids = new HashSet<>(projectIds);
+        DaoHelper.afterCommit(() -> this.users.values().forEach(user -> {
+            synchronized (user) {
+                List<Long> taskIds = user.tasks.values().stream()
+                        .filter(reminder -> ids.contains(reminder.projectId))
+                        .map(reminder -> reminder.taskId)
+                        .collect(Collectors.toList());
+                if (!taskIds.isEmpty()) {
+                    taskIds.forEach(taskId -> unschedule(user, taskId));
+                    this.updatesPublisher.publishNow(user.username, UpdateTarget.TASK_REMINDERS);
+                }
+            }
+        }));
+    }
+
+    private void load(UserReminders user) {
+        long now = this.clock.getAsLong();
+        List<Task> tasks = this.taskRepository.findTasksWithPendingReminders(
+                user.username, new Timestamp(now - TimeUnit.MINUTES.toMillis(1)));
+        for (Task task : tasks) {
+            schedule(user, new TaskReminder(task), now);
+        }
+        user.loaded = true;
+        LOGGER.debug("Loaded {} reminding tasks of {}", tasks.size(), user.username);
+    }
+
+    /**
+     * A user not loaded yet reads committed state from database on load, so skip it
+     */
+    private void update(String assignee, Consumer<UserReminders> operation) {
+        UserReminders user = this.users.get(assignee);
+        if (user == null) {
+            return;
+        }
+        synchronized (user) {
+            if (user.loaded) {
+                operation.accept(user);
+                this.updatesPublisher.publishNow(assignee, UpdateTarget.TASK_REMINDERS);
+            }
+        }
+    }
+
+    private void schedule(UserReminders user, TaskReminder reminder, long now) {
+        unschedule(user, reminder.taskId);
+        user.tasks.put(reminder.taskId, reminder);
+        if (reminder.reminderDateTime != null && reminder.startTime != null) {
+            enqueue(user, new Occurrence(reminder, null, reminder.startTime, reminder.reminderDateTime), now);
+        }
+        if (reminder.recurrenceRule != null) {
+            enqueue(user, nextOccurrence(reminder, ZonedDateTimeHelper.getDateTime(now, reminder.timezone)), now);
+        }
+    }
+
+    private void unschedule(UserReminders user, Long taskId) {
+        if (user.tasks.remove(taskId) != null) {
+            this.cancellations.incrementAndGet();
+        }
+        user.ready.remove(taskId);
+    }
+
+    /**
+     * Occurrences already due are made ready right away, for a recurring task this
+     * continues with its following occurrences until one is not due yet
+     */
+    private void enqueue(UserReminders user, Occurrence occurrence, long now) {
+        while (occurrence != null && occurrence.getExpirationTime() > now) {
+            if (occurrence.getDueTime() > now) {
+                push(new Trigger(occurrence.getDueTime(), user, occurrence, false));
+                return;
+            }
+            makeReady(user, occurrence);
+            occurrence = occurrence.dateTime == null ? null : nextOccurrence(occurrence.task, occurrence.dateTime);
+        }
+    }
+
+    private void makeReady(UserReminders user, Occurrence occurrence) {
+        user.ready.computeIfAbsent(occurrence.task.taskId, k -> new ArrayList<>()).add(occurrence);
+        push(new Trigger(occurrence.getExpirationTime(), user, occurrence, true));
+    }
+
+    private Occurrence nextOccurrence(TaskReminder reminder, DateTime after) {
+        try {
+            DateTime next = after;
+            do {
+                next = this.recurrenceEngine.getNextOccurrence(
+                        reminder.taskId, reminder.recurrenceRule, reminder.timezone, next);
+            } while (next != null && reminder.completedSlots.contains(next));
+            return next == null ? null : new Occurrence(reminder, next);
+        } catch (InvalidRecurrenceRuleException | NumberFormatException e) {
+            LOGGER.error("Recurrence rule format invalid for task {}", reminder.taskId, e);
+            return null;
+        }
+    }
+
+    private void push(Trigger trigger) {
+        synchronized (this.triggers) {
+            this.triggers.offer(trigger);
+        }
+    }
+
+    private Trigger poll(long now) {
+        synchronized (this.triggers) {
+            Trigger trigger = this.triggers.peek();
+            if (trigger == null || trigger.time > now) {
+                return null;
+            }
+            return this.triggers.poll();
+        }
+    }
+
+    public void dispatch() {
+        try {
+            long now = this.clock.getAsLong();
+            Trigger trigger;
+            while ((trigger = poll(now)) != null) {
+                fire(trigger, now);
+            }
+            this.users.values().removeIf(user -> user.loaded && user.lastAccess < now - MAX_IDLE_TIME &&
+                    !this.updatesPublisher.isSubscribed(user.username));
+            purge();
+        } catch (Exception e) {
+            LOGGER.error("Dispatching reminders failed", e);
+        }
+    }
+
+    private void fire(Trigger trigger, long now) {
+        UserReminders user = trigger.user;
+        synchronized (user) {
+            if (!trigger.isLive(this.users)) {
+                return;
+            }
+            Occurrence occurrence = trigger.occurrence;
+            if (trigger.expiration) {
+                List<Occurrence> ready = user.ready.get(occurrence.task.taskId);
+                if (ready != null) {
+                    ready.remove(occurrence);
+                    if (ready.isEmpty()) {
+                        user.ready.remove(occurrence.task.taskId);
+                    }
+                }
+            } else {
+                enqueue(user, occurrence, now);
+            }
+        }
+        this.updatesPublisher.publishNow(user.username, UpdateTarget.TASK_REMINDERS);
+    }
+
+    /**
+     * Triggers of cancelled tasks and unloaded users are skipped when fired,
+     * drop them after enough cancellations so that far future ones do not pile up
+     */
+    private void purge() {
+        if (this.cancellations.get() < PURGE_THRESHOLD) {
+            return;
+        }
+        this.cancellations.set(0);
+        synchronized (this.triggers) {
+            int size = this.triggers.size();
+            this.triggers.removeIf(trigger -> !trigger.isLive(this.users));
+            LOGGER.info("Purged {} reminder triggers, {} left", size - this.triggers.size(), this.triggers.size());
+        }
+    }
+
+    private static final class UserReminders {
+        private final String username;
+        // task id -> reminder of the task currently scheduled
+        private final Map<Long, TaskReminder> tasks = new ConcurrentHashMap<>();
+        // task id -> occurrences of the task that are due and not started yet
+        private final Map<Long, List<Occurrence>> ready = new HashMap<>();
+        private volatile boolean loaded;
+        private volatile long lastAccess;
+
+        private UserReminders(String username, long now) {
+            this.username = username;
+            this.lastAccess = now;
+        }
+    }
+
+    /**
+     * Snapshot of the task fields reminders depend on, taken while the task is attached
+     */
+    private static final class TaskReminder {
+        private final Long taskId;
+        private final Long projectId;
+        private final Timestamp startTime;
+        private final Timestamp reminderDateTime;
+        private final Integer reminderBeforeTask;
+        private final String reminderDate;
+        private final String reminderTime;
+        private final String recurrenceRule;
+        private final String timezone;
+        private final Set<DateTime> completedSlots;
+
+        private TaskReminder(Task task) {
+            this.taskId = task.getId();
+            this.projectId = task.getProject().getId();
+            this.startTime = task.getStartTime();
+            this.reminderDateTime = task.getReminderDateTime();
+            this.reminderBeforeTask = task.getReminderBeforeTask();
+            this.reminderDate = task.getReminderDate();
+            this.reminderTime = task.getReminderTime();
+            this.recurrenceRule = task.getRecurrenceRule();
+            this.timezone = task.getTimezone();
+            this.completedSlots = ZonedDateTimeHelper.parseDateTimeSet(task.getCompletedSlots());
+        }
+    }
+
+    private static final class Occurrence {
+        private final TaskReminder task;
+        // null for the reminder of a non-recurring task
+        private final DateTime dateTime;
+        private final Timestamp startTime;
+        private final Timestamp reminderDateTime;
+
+        private Occurrence(TaskReminder task, DateTime dateTime, Timestamp startTime, Timestamp reminderDateTime) {
+            this.task = task;
+            this.dateTime = dateTime;
+            this.startTime = startTime;
+            this.reminderDateTime = reminderDateTime;
+        }
+
+        private Occurrence(TaskReminder task, DateTime dateTime) {
+            this.task = task;
+            this.dateTime = dateTime;
+            this.startTime = Timestamp.from(ZonedDateTimeHelper.getStartTime(
+                    ZonedDateTimeHelper.getDate(dateTime), ZonedDateTimeHelper.getTime(dateTime), task.timezone)
+                    .toInstant());
+            this.reminderDateTime = TaskModel.getReminderDateTime(this.startTime, task.reminderBeforeTask,
+                    task.reminderDate, task.reminderTime, task.timezone);
+        }
+
+        /**
+         * Same qualifications as TaskRepository#findRemindingTasks and TaskOccurrence#needsReminding
+         */
+        private boolean needsReminding(Timestamp now) {
+            if (this.dateTime == null) {
+                return !this.reminderDateTime.after(now) && !this.startTime.before(now);
+            }
+            return this.reminderDateTime != null && this.reminderDateTime.before(now) && this.startTime.after(now) &&
+                    this.dateTime.getTimestamp() <= now.getTime() + MAX_TIME_BEFORE;
+        }
+
+        /**
+         * First time {@link #needsReminding} holds, as it is checked against the current minute
+         */
+        private long getDueTime() {
+            if (this.reminderDateTime == null) {
+                return Long.MAX_VALUE;
+            }
+            if (this.dateTime == null) {
+                return ceilToMinute(this.reminderDateTime.getTime());
+            }
+            return ceilToMinute(Math.max(
+                    this.reminderDateTime.getTime() + 1, this.dateTime.getTimestamp() - MAX_TIME_BEFORE));
+        }
+
+        /**
+         * First time {@link #needsReminding} no longer holds
+         */
+        private long getExpirationTime() {
+            if (this.dateTime == null) {
+                return this.startTime.getTime() + MINUTE;
+            }
+            return this.startTime.getTime();
+        }
+
+        private static long ceilToMinute(long time) {
+            return (time + MINUTE - 1) / MINUTE * MINUTE;
+        }
+
+        private com.bulletjournal.controller.models.Task toPresentationModel(
+                Task task, Map<Long, com.bulletjournal.controller.models.Label> labels) {
+            com.bulletjournal.controller.models.Task presentation = task.toPresentationModel(task.getLabels().stream()
+                    .map(labels::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()));
+            if (this.dateTime != null) {
+                presentation.setDueDate(ZonedDateTimeHelper.getDate(this.dateTime));
+                presentation.setDueTime(ZonedDateTimeHelper.getTime(this.dateTime));
+            }
+            return presentation;
+        }
+    }
+
+    private static final class Trigger {
+        private final long time;
+        private final UserReminders user;
+        private final Occurrence occurrence;
+        // true to drop the occurrence from the ready set, false to make it ready
+        private final boolean expiration;
+
+        private Trigger(long time, UserReminders user, Occurrence occurrence, boolean expiration) {
+            this.time = time;
+            this.user = user;
+            this.occurrence = occurrence;
+            this.expiration = expiration;
+        }
+
+        private boolean isLive(Map<String, UserReminders> users) {
+            return users.get(this.user.username) == this.user &&
+                    this.user.tasks.get(this.occurrence.task.taskId) == this.occurrence.task;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.bulletjournal.daemon;
+
+import com.bulletjournal.repository.TextCompressionDaoJpa;
+import com.bulletjournal.util.CustomThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compresses, once after startup, the values of compressed text columns that were converted from text,
+ * see {@link com.bulletjournal.repository.utils.CompressedTextConverter}. Values are read either way,
+ * so this only reclaims space and runs in small chunks at low priority.
+ */
+@Service
+public class TextCompressionMigrator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextCompressionMigrator.class);
+    private static final long START_DELAY_IN_SECONDS = 60;
+    private static final int CHUNK_SIZE = 200;
+    private static final long CHUNK_PAUSE_MILLIS = 200;
+
+    private final ScheduledExecutorService executorService;
+    private final TextCompressionDaoJpa textCompressionDaoJpa;
+    private final AtomicLong valuesCompressed = new AtomicLong();
+
+    @Autowired
+    public TextCompressionMigrator(TextCompressionDaoJpa textCompressionDaoJpa) {
+        this.executorService = Executors.newSingleThreadScheduledExecutor(
+                new CustomThreadFactory("text-compression-migrator"));
+        this.textCompressionDaoJpa = textCompressionDaoJpa;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        this.executorService.schedule(this::migrate, START_DELAY_IN_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void migrate() {
+        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+        for (String[] column : TextCompressionDaoJpa.COMPRESSED_COLUMNS) {
+            long start = System.currentTimeMillis();
+            long compressed = 0;
+            try {
+                int count;
+                do {
+                    count = this.textCompressionDaoJpa.compressChunk(column[0], column[1], CHUNK_SIZE);
+                    compressed += count;
+                    if (count == CHUNK_SIZE) {
+                        Thread.sleep(CHUNK_PAUSE_MILLIS);
+                    }
+                } while (count == CHUNK_SIZE);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                // values left are still readable, they are compressed on their next write or next start
+                LOGGER.error("Compressing " + column[0] + "." + column[1] + " failed", ex);
+            }
+            this.valuesCompressed.addAndGet(compressed);
+            LOGGER.info("Compressed {} values of {}.{} in {} ms", compressed, column[0], column[1],
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    public long getValuesCompressed() {
+        return this.valuesCompressed.get();
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        this.executorService.shutdownNow();
+    }
+}
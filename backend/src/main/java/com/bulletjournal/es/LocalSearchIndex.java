@@ -0,0 +1,317 @@
+package com.bulletjournal.es;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index of project item documents, searched instead of ES when ES is not enabled
+ * <p>
+ * Documents are the ones built for ES by {@link SearchService#toDocument}. Their name and contents are split
+ * into lower-cased terms like the standard analyzer does, and every term keeps the documents and fields it
+ * occurs in. Terms are kept sorted, so the terms sharing the first {@link #PREFIX_LENGTH} characters with a
+ * query term are one range of the dictionary, which is where prefix and fuzzy matches are looked for, the
+ * same way ES does with prefix_length 3. Fuzzy matches allow the edit distance of Fuzziness.AUTO.
+ * <p>
+ * Operations carry versions and older ones are ignored like with external_gte versioning, so that
+ * loading the index from the database can run while live changes are applied. Deletes are only
+ * remembered while loading, since that is the only time an older copy can arrive after them.
+ */
+public class LocalSearchIndex {
+
+    static final int PREFIX_LENGTH = 3;
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int NAME = 1;
+    private static final int CONTENTS = 2;
+    private static final float NAME_BOOST = 2.0f;
+    private static final float PREFIX_WEIGHT = 0.5f;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Document> documents = new HashMap<>();
+    /**
+     * term -> document id -> fields the term occurs in
+     */
+    private final NavigableMap<String, Map<String, Integer>> postings = new TreeMap<>();
+    /**
+     * Versions of deleted documents, so that an older copy read from the database is not indexed again
+     */
+    private final Map<String, Long> deleted = new HashMap<>();
+    private boolean loading;
+
+    public void apply(SearchIndexOperation operation) {
+        this.lock.writeLock().lock();
+        try {
+            String id = operation.getId();
+            Document current = this.documents.get(id);
+            long version = current == null ? this.deleted.getOrDefault(id, -1L) : current.version;
+            if (operation.getVersion() < version) {
+                return;
+            }
+            if (current != null) {
+                removePostings(current);
+                this.documents.remove(id);
+            }
+            if (operation.isDelete()) {
+                if (this.loading) {
+                    this.deleted.put(id, operation.getVersion());
+                }
+                return;
+            }
+            this.deleted.remove(id);
+            Document document = new Document(operation);
+            this.documents.put(id, document);
+            document.terms.forEach((term, fields) -> this.postings.computeIfAbsent(term, k -> new HashMap<>())
+                    .put(id, fields));
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remember deleted documents until {@link #finishLoading()}, so that the copies being read from the
+     * database do not index them again
+     */
+    public void startLoading() {
+        this.lock.writeLock().lock();
+        try {
+            this.loading = true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forget deleted documents once nothing older than them can be applied anymore
+     */
+    public void finishLoading() {
+        this.lock.writeLock().lock();
+        try {
+            this.loading = false;
+            this.deleted.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.documents.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search documents in the groups or with the shared ids by name and contents, sorted by score then key
+     *
+     * @param cursor cursor returned with the previous page, null for the first page
+     */
+    public SearchPage search(String term, Set<Long> groupIds, Set<String> sharedIds, String cursor, int size) {
+        Object[] after = cursor == null ? null : SearchCursor.decode(cursor);
+        List<Hit> hits = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            Map<String, Float> scores = new HashMap<>();
+            for (String queryTerm : new LinkedHashSet<>(tokenize(term))) {
+                // a document scores the best match of each query term, like a match query in its best field
+                Map<String, Float> best = new HashMap<>();
+                for (Map.Entry<String, Map<String, Integer>> entry : getCandidates(queryTerm).entrySet()) {
+                    float weight = getWeight(queryTerm, entry.getKey());
+                    if (weight == 0) {
+                        continue;
+                    }
+                    Map<String, Integer> docs = entry.getValue();
+                    float idf = (float) Math.log(1 + (this.documents.size() + 1.0) / docs.size());
+                    docs.forEach((id, fields) -> best.merge(id,
+                            weight * idf * ((fields & NAME) != 0 ? NAME_BOOST : 1.0f), Math::max));
+                }
+                best.forEach((id, score) -> scores.merge(id, score, Float::sum));
+            }
+            scores.forEach((id, score) -> {
+                Document document = this.documents.get(id);
+                if (!groupIds.contains(document.groupId) && !sharedIds.contains(id)) {
+                    return;
+                }
+                Hit hit = new Hit(score, document.key, id);
+                if (after == null || hit.isAfter((Float) after[0], (String) after[1])) {
+                    hits.add(hit);
+                }
+            });
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        hits.sort(Hit.ORDER);
+        List<String> ids = new ArrayList<>(Math.min(size, hits.size()));
+        for (int i = 0; i < size && i < hits.size(); i++) {
+            ids.add(hits.get(i).id);
+        }
+        String next = null;
+        if (hits.size() > size) {
+            Hit last = hits.get(size - 1);
+            next = SearchCursor.encode(last.score, last.key);
+        }
+        return new SearchPage(ids, next);
+    }
+
+    private Map<String, Map<String, Integer>> getCandidates(String queryTerm) {
+        if (queryTerm.length() < PREFIX_LENGTH) {
+            Map<String, Integer> docs = this.postings.get(queryTerm);
+            return docs == null ? Collections.emptyMap() : Collections.singletonMap(queryTerm, docs);
+        }
+        String prefix = queryTerm.substring(0, PREFIX_LENGTH);
+        return this.postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * @return weight of term matching query term, 0 if it does not match
+     */
+    static float getWeight(String queryTerm, String term) {
+        if (term.equals(queryTerm)) {
+            return 1.0f;
+        }
+        if (term.startsWith(queryTerm)) {
+            return PREFIX_WEIGHT;
+        }
+        int maxEdits = getMaxEdits(queryTerm.length());
+        if (maxEdits == 0 || Math.abs(term.length() - queryTerm.length()) > maxEdits) {
+            return 0;
+        }
+        int edits = getDistance(queryTerm, term, maxEdits);
+        return edits > maxEdits ? 0 : 1.0f - (float) edits / queryTerm.length();
+    }
+
+    /**
+     * Edits allowed by Fuzziness.AUTO
+     */
+    static int getMaxEdits(int length) {
+        if (length < 3) {
+            return 0;
+        }
+        return length < 6 ? 1 : 2;
+    }
+
+    /**
+     * Damerau-Levenshtein distance counting a transposition as one edit, as ES does by default
+     *
+     * @return distance, or max + 1 if it is more than max
+     */
+    static int getDistance(String a, String b, int max) {
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], previous2[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] rotated = previous2;
+            previous2 = previous;
+            previous = current;
+            current = rotated;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    /**
+     * Split text into lower-cased runs of letters and digits, with every CJK ideograph a term of its own
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i < lowerCase.length(); i++) {
+            char c = lowerCase.charAt(i);
+            if (Character.isIdeographic(c)) {
+                addTerm(terms, lowerCase, start, i);
+                terms.add(String.valueOf(c));
+                start = -1;
+            } else if (Character.isLetterOrDigit(c)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else {
+                addTerm(terms, lowerCase, start, i);
+                start = -1;
+            }
+        }
+        addTerm(terms, lowerCase, start, lowerCase.length());
+        return terms;
+    }
+
+    private static void addTerm(List<String> terms, String text, int start, int end) {
+        if (start >= 0 && end - start <= MAX_TERM_LENGTH) {
+            terms.add(text.substring(start, end));
+        }
+    }
+
+    private void removePostings(Document document) {
+        for (String term : document.terms.keySet()) {
+            Map<String, Integer> docs = this.postings.get(term);
+            docs.remove(document.id);
+            if (docs.isEmpty()) {
+                this.postings.remove(term);
+            }
+        }
+    }
+
+    private static class Document {
+        final String id;
+        final String key;
+        final Long groupId;
+        final long version;
+        final Map<String, Integer> terms = new HashMap<>();
+
+        Document(SearchIndexOperation operation) {
+            Map<String, Object> source = operation.getSource();
+            this.id = operation.getId();
+            this.key = (String) source.getOrDefault(SearchService.KEY_FIELD, this.id);
+            this.groupId = (Long) source.get(SearchService.GROUP_ID_FIELD);
+            this.version = operation.getVersion();
+            addTerms((String) source.get(SearchService.NAME_FIELD), NAME);
+            Object contents = source.get(SearchService.CONTENTS_FIELD);
+            if (contents instanceof Collection) {
+                ((Collection<?>) contents).forEach(text -> addTerms((String) text, CONTENTS));
+            }
+        }
+
+        private void addTerms(String text, int field) {
+            tokenize(text).forEach(term -> this.terms.merge(term, field, (a, b) -> a | b));
+        }
+    }
+
+    private static class Hit {
+        static final Comparator<Hit> ORDER = Comparator.<Hit>comparingDouble(hit -> -hit.score)
+                .thenComparing(hit -> hit.key);
+
+        final float score;
+        final String key;
+        final String id;
+
+        Hit(float score, String key, String id) {
+            this.score = score;
+            this.key = key;
+            this.id = id;
+        }
+
+        boolean isAfter(float score, String key) {
+            return this.score < score || (this.score == score && this.key.compareTo(key) > 0);
+        }
+    }
+}
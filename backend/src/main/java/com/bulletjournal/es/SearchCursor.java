@@ -0,0 +1,37 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.exceptions.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursor of search results, holding the sort values (score, key) of the last hit of a page
+ * which are passed as search_after to get the next page
+ */
+public final class SearchCursor {
+
+    private static final char SEPARATOR = ':';
+
+    private SearchCursor() {
+    }
+
+    public static String encode(float score, String key) {
+        // Float.toString round trips exactly, unlike a double in JSON
+        String value = Float.toString(score) + SEPARATOR + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return search_after values
+     */
+    public static Object[] decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            return new Object[]{Float.parseFloat(value.substring(0, separator)), value.substring(separator + 1)};
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException ex) {
+            throw new BadRequestException("Invalid cursor " + cursor);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.bulletjournal.es;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Index or delete of one document, queued by {@link SearchIndexer}
+ */
+public final class SearchIndexOperation {
+
+    private final String id;
+    private final Map<String, Object> source;
+    private final long version;
+
+    private SearchIndexOperation(String id, Map<String, Object> source, long version) {
+        this.id = Objects.requireNonNull(id);
+        this.source = source;
+        this.version = version;
+    }
+
+    /**
+     * Versions are times, so that a document read before a concurrent change committed cannot
+     * overwrite it, e.g. when a reindex and live updates write to the same index
+     *
+     * @param version for a change, a time after it committed; for a document read from the database,
+     *                a time before the read started
+     */
+    public static SearchIndexOperation index(String id, Map<String, Object> source, long version) {
+        return new SearchIndexOperation(id, Objects.requireNonNull(source), version);
+    }
+
+    /**
+     * @param version a time after the deletion committed
+     */
+    public static SearchIndexOperation delete(String id, long version) {
+        return new SearchIndexOperation(id, null, version);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return document to index, null for delete
+     */
+    public Map<String, Object> getSource() {
+        return source;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isDelete() {
+        return this.source == null;
+    }
+
+    @Override
+    public String toString() {
+        return (isDelete() ? "delete " : "index ") + this.id;
+    }
+}
@@ -0,0 +1,206 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.util.CustomThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Indexes documents in the background, in bulk
+ * <p>
+ * Operations wait in a bounded queue and are sent once {@code batchSize} of them are queued
+ * or {@code flushIntervalMillis} after the first one, whichever comes first. Operations on the same
+ * document within a batch are coalesced into the last one. Batches and the items ES rejects with
+ * a retryable status are retried with exponential backoff.
+ * <p>
+ * When the queue is full, {@link #submit} waits up to {@code offerTimeoutMillis} for room and then
+ * drops the operation, so that callers are slowed down but never stuck behind an unavailable cluster.
+ * Dropped documents are caught up by the next reindex.
+ */
+public class SearchIndexer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndexer.class);
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long LOG_STATS_INTERVAL = 100;
+
+    private final BulkClient bulkClient;
+    private final BlockingQueue<SearchIndexOperation> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final ExecutorService executorService;
+    private volatile boolean running = true;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public SearchIndexer(BulkClient bulkClient, int capacity, int batchSize, long flushIntervalMillis,
+                         long offerTimeoutMillis, int maxRetries, long initialBackoffMillis) {
+        this.bulkClient = bulkClient;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.executorService = Executors.newSingleThreadExecutor(new CustomThreadFactory("search-indexer"));
+        this.executorService.submit(this::run);
+    }
+
+    /**
+     * Queue operation, waiting for room if the queue is full
+     *
+     * @return false if the operation was dropped
+     */
+    public boolean submit(SearchIndexOperation operation) {
+        try {
+            if (this.running && this.queue.offer(operation, this.offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                this.submitted.incrementAndGet();
+                return true;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        this.dropped.incrementAndGet();
+        LOGGER.warn("Search index queue full, dropped {}", operation);
+        return false;
+    }
+
+    public int getQueueSize() {
+        return this.queue.size();
+    }
+
+    public long getIndexed() {
+        return this.indexed.get();
+    }
+
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    public long getFailed() {
+        return this.failed.get();
+    }
+
+    public long getRetried() {
+        return this.retried.get();
+    }
+
+    private void run() {
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                List<SearchIndexOperation> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    send(coalesce(batch));
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                LOGGER.error("Search indexing failed", ex);
+            }
+        }
+    }
+
+    /**
+     * Wait for the first operation, then collect more until the batch is full or the flush interval passed
+     */
+    private List<SearchIndexOperation> nextBatch() throws InterruptedException {
+        List<SearchIndexOperation> batch = new ArrayList<>(this.batchSize);
+        SearchIndexOperation first = this.queue.poll(this.flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.flushIntervalMillis);
+        while (batch.size() < this.batchSize) {
+            this.queue.drainTo(batch, this.batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= this.batchSize || remaining <= 0 || !this.running) {
+                break;
+            }
+            SearchIndexOperation next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    static List<SearchIndexOperation> coalesce(List<SearchIndexOperation> batch) {
+        Map<String, SearchIndexOperation> latest = new LinkedHashMap<>();
+        for (SearchIndexOperation operation : batch) {
+            latest.remove(operation.getId());
+            latest.put(operation.getId(), operation);
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    private void send(List<SearchIndexOperation> operations) throws InterruptedException {
+        long backoff = this.initialBackoffMillis;
+        for (int attempt = 0; ; attempt++) {
+            List<SearchIndexOperation> retries;
+            try {
+                retries = this.bulkClient.bulk(operations);
+            } catch (IOException ex) {
+                LOGGER.warn("Bulk request of {} operations failed: {}", operations.size(), ex.getMessage());
+                retries = operations;
+            }
+            this.indexed.addAndGet(operations.size() - retries.size());
+            if (retries.isEmpty()) {
+                break;
+            }
+            if (attempt >= this.maxRetries) {
+                this.failed.addAndGet(retries.size());
+                LOGGER.error("Gave up indexing {} operations after {} retries", retries.size(), attempt);
+                break;
+            }
+            this.retried.addAndGet(retries.size());
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            operations = retries;
+        }
+        if (this.batches.incrementAndGet() % LOG_STATS_INTERVAL == 0) {
+            LOGGER.info("SearchIndexer submitted: {}, indexed: {}, retried: {}, failed: {}, dropped: {}, queued: {}",
+                    this.submitted.get(), this.indexed.get(), this.retried.get(), this.failed.get(),
+                    this.dropped.get(), this.queue.size());
+        }
+    }
+
+    /**
+     * Stop accepting operations and send the queued ones
+     */
+    public void shutdown(long timeoutMillis) {
+        this.running = false;
+        this.executorService.shutdown();
+        try {
+            if (!this.executorService.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("SearchIndexer stopped with {} operations queued", this.queue.size());
+                this.executorService.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public interface BulkClient {
+        /**
+         * Send operations in one bulk request
+         *
+         * @return operations that failed and should be retried
+         * @throws IOException if the request failed as a whole, all operations are retried
+         */
+        List<SearchIndexOperation> bulk(List<SearchIndexOperation> operations) throws IOException;
+    }
+}
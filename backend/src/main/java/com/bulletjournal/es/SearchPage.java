@@ -0,0 +1,31 @@
+package com.bulletjournal.es;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Document ids of a page of search hits, in score order
+ */
+public class SearchPage {
+
+    public static final SearchPage EMPTY = new SearchPage(Collections.emptyList(), null);
+
+    private final List<String> ids;
+    private final String cursor;
+
+    public SearchPage(List<String> ids, String cursor) {
+        this.ids = ids;
+        this.cursor = cursor;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    /**
+     * @return cursor of the next page, null if this is the last one
+     */
+    public String getCursor() {
+        return cursor;
+    }
+}
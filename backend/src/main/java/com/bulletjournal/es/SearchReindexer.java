@@ -0,0 +1,384 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.config.SearchConfig;
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.repository.SearchIndexDaoJpa;
+import com.bulletjournal.repository.models.SearchReindexJob;
+import com.bulletjournal.util.CustomThreadFactory;
+import com.google.common.util.concurrent.RateLimiter;
+import org.apache.commons.lang3.tuple.Pair;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.settings.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds the project item index from the database
+ * <p>
+ * Tasks, notes and transactions are read in id order, page by page, and written into a new
+ * index "project_item_v{mapping version}_{timestamp}" by parallel bulk workers, at most maxDocsPerSecond. Live changes
+ * are written into the new index as well while it is built. Once every item is indexed the
+ * {@link SearchService#PROJECT_ITEM} alias is moved to the new index in one atomic request and the
+ * previous index is deleted.
+ * <p>
+ * The last indexed id of each phase is checkpointed in search_reindex_jobs, so a reindex
+ * interrupted by a restart resumes where it stopped. It runs on startup when there is an unfinished
+ * reindex, when the alias does not point to an index with the current mapping yet (e.g. ES was just enabled)
+ * or when search.reindex.force is set.
+ * <p>
+ * Without ES, the {@link LocalSearchIndex} is loaded from the database the same way on startup instead.
+ */
+@Service
+public class SearchReindexer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchReindexer.class);
+    private static final List<ContentType> PHASES =
+            Arrays.asList(ContentType.TASK, ContentType.NOTE, ContentType.TRANSACTION);
+    private static final String INDEX_PREFIX = SearchService.PROJECT_ITEM + "_v" + SearchService.MAPPING_VERSION + "_";
+    private static final int MAX_RETRIES = 5;
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    @Qualifier("client")
+    @Autowired(required = false)
+    private RestHighLevelClient highLevelClient;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private SearchIndexDaoJpa searchIndexDaoJpa;
+
+    @Autowired
+    private SearchConfig searchConfig;
+
+    private final ExecutorService executorService;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private volatile boolean stopped;
+
+    public SearchReindexer() {
+        this(null, null, null, null);
+    }
+
+    SearchReindexer(RestHighLevelClient highLevelClient, SearchService searchService,
+                    SearchIndexDaoJpa searchIndexDaoJpa, SearchConfig searchConfig) {
+        this.highLevelClient = highLevelClient;
+        this.searchService = searchService;
+        this.searchIndexDaoJpa = searchIndexDaoJpa;
+        this.searchConfig = searchConfig;
+        this.executorService = Executors.newSingleThreadExecutor(new CustomThreadFactory("search-reindexer"));
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        if (this.highLevelClient != null) {
+            this.executorService.submit(() -> reindex(this.searchConfig.getReindex().isForce()));
+        } else {
+            this.executorService.submit(this::loadLocalIndex);
+        }
+    }
+
+    /**
+     * Start reindex in background
+     *
+     * @param force reindex even if the current index exists
+     * @return false if a reindex is already running
+     */
+    public boolean start(boolean force) {
+        if (this.highLevelClient == null || this.running.get()) {
+            return false;
+        }
+        this.executorService.submit(() -> reindex(force));
+        return true;
+    }
+
+    public boolean isRunning() {
+        return this.running.get();
+    }
+
+    public long getIndexed() {
+        return this.indexed.get();
+    }
+
+    public long getTotal() {
+        return this.total.get();
+    }
+
+    private void reindex(boolean force) {
+        if (!this.running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            SearchReindexJob job = getJob(force);
+            if (job != null) {
+                run(job);
+            }
+        } catch (Exception ex) {
+            LOGGER.error("Reindex failed, it resumes from the last checkpoint on the next start", ex);
+        } finally {
+            this.running.set(false);
+        }
+    }
+
+    /**
+     * @return unfinished job to resume, new job, or null if the index does not need to be rebuilt
+     */
+    private SearchReindexJob getJob(boolean force) throws IOException {
+        Optional<SearchReindexJob> unfinished = this.searchIndexDaoJpa.getUnfinishedJob();
+        if (unfinished.isPresent()) {
+            SearchReindexJob job = unfinished.get();
+            if (indexExists(job.getIndexName())) {
+                LOGGER.info("Resuming reindex into {} from {} {}", job.getIndexName(), job.getPhase(), job.getLastId());
+                return job;
+            }
+            this.searchIndexDaoJpa.delete(job);
+        }
+        if (!force && isCurrent()) {
+            return null;
+        }
+
+        String indexName = INDEX_PREFIX + System.currentTimeMillis();
+        this.highLevelClient.indices().create(new CreateIndexRequest(indexName)
+                        // nothing searches the new index until it is complete
+                        .settings(Settings.builder()
+                                .put("index.refresh_interval", "-1")
+                                .put("index.number_of_replicas", 0))
+                        .mapping(SearchService.DOCUMENT_TYPE, SearchService.getMapping()),
+                RequestOptions.DEFAULT);
+        LOGGER.info("Reindexing into {}", indexName);
+        return this.searchIndexDaoJpa.save(new SearchReindexJob(indexName, PHASES.get(0).name()));
+    }
+
+    private void run(SearchReindexJob job) throws IOException, InterruptedException, ExecutionException {
+        String indexName = job.getIndexName();
+        this.searchService.setReindexTarget(indexName);
+        long start = System.currentTimeMillis();
+        if (!index(job)) {
+            return;
+        }
+        swap(indexName);
+        job.setCompleted(true);
+        this.searchIndexDaoJpa.save(job);
+        this.searchService.setReindexTarget(null);
+        LOGGER.info("Reindexed {} items into {} in {} s", this.indexed.get(), indexName,
+                (System.currentTimeMillis() - start) / 1000);
+    }
+
+    /**
+     * Index items after the checkpoint of job into its index, checkpointing again after each round of pages
+     *
+     * @return false if stopped before every item was indexed
+     */
+    boolean index(SearchReindexJob job) throws InterruptedException, ExecutionException {
+        String indexName = job.getIndexName();
+        SearchConfig.Reindex config = this.searchConfig.getReindex();
+        this.indexed.set(job.getIndexed());
+        this.total.set(PHASES.stream().mapToLong(this.searchIndexDaoJpa::count).sum());
+        RateLimiter rateLimiter = RateLimiter.create(config.getMaxDocsPerSecond());
+        ExecutorService workers = Executors.newFixedThreadPool(config.getWorkers(),
+                new CustomThreadFactory("search-reindex-worker"));
+        long start = System.currentTimeMillis();
+        long startIndexed = this.indexed.get();
+        try {
+            for (int phase = PHASES.indexOf(ContentType.valueOf(job.getPhase())); phase < PHASES.size(); phase++) {
+                ContentType type = PHASES.get(phase);
+                if (!type.name().equals(job.getPhase())) {
+                    job.setPhase(type.name());
+                    job.setLastId(0L);
+                }
+                boolean more = true;
+                while (more) {
+                    if (this.stopped) {
+                        return false;
+                    }
+                    // read a page per worker, index them in parallel, then checkpoint
+                    List<Future<?>> futures = new ArrayList<>();
+                    Long lastId = job.getLastId();
+                    int count = 0;
+                    for (int i = 0; i < config.getWorkers(); i++) {
+                        Pair<Long, List<SearchIndexOperation>> page =
+                                this.searchIndexDaoJpa.readPage(type, lastId, config.getPageSize());
+                        if (page.getLeft() == null) {
+                            more = false;
+                            break;
+                        }
+                        List<SearchIndexOperation> documents = page.getRight();
+                        rateLimiter.acquire(documents.size());
+                        futures.add(workers.submit(() -> {
+                            bulk(indexName, documents);
+                            return null;
+                        }));
+                        lastId = page.getLeft();
+                        count += documents.size();
+                    }
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                    job.setLastId(lastId);
+                    job.setIndexed(this.indexed.addAndGet(count));
+                    this.searchIndexDaoJpa.save(job);
+                    logProgress(job, start, startIndexed);
+                }
+            }
+            return true;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Load every project item into the local index, while live changes are applied to it as well
+     */
+    private void loadLocalIndex() {
+        this.running.set(true);
+        LocalSearchIndex localSearchIndex = this.searchService.getLocalSearchIndex();
+        long start = System.currentTimeMillis();
+        localSearchIndex.startLoading();
+        try {
+            for (ContentType type : PHASES) {
+                Long lastId = 0L;
+                while (!this.stopped) {
+                    Pair<Long, List<SearchIndexOperation>> page =
+                            this.searchIndexDaoJpa.readPage(type, lastId, this.searchConfig.getReindex().getPageSize());
+                    if (page.getLeft() == null) {
+                        break;
+                    }
+                    page.getRight().forEach(localSearchIndex::apply);
+                    this.indexed.addAndGet(page.getRight().size());
+                    lastId = page.getLeft();
+                }
+            }
+            LOGGER.info("Loaded {} items into local search index in {} ms", localSearchIndex.size(),
+                    System.currentTimeMillis() - start);
+        } catch (Exception ex) {
+            LOGGER.error("Loading local search index failed", ex);
+        } finally {
+            // every copy read from the database is older than later deletes now
+            localSearchIndex.finishLoading();
+            this.running.set(false);
+        }
+    }
+
+    private void logProgress(SearchReindexJob job, long start, long startIndexed) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        long indexed = this.indexed.get();
+        LOGGER.info("Reindex into {}: {} after {}, {}/{} items ({}%), {} items/s",
+                job.getIndexName(), job.getPhase(), job.getLastId(), indexed, this.total.get(),
+                this.total.get() == 0 ? 100 : indexed * 100 / this.total.get(),
+                (indexed - startIndexed) * 1000 / elapsed);
+    }
+
+    private void bulk(String indexName, List<SearchIndexOperation> documents)
+            throws IOException, InterruptedException {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 0; ; attempt++) {
+            List<SearchIndexOperation> retries;
+            try {
+                retries = this.searchService.bulk(documents, indexName);
+            } catch (IOException ex) {
+                if (attempt >= MAX_RETRIES) {
+                    throw ex;
+                }
+                retries = documents;
+            }
+            if (retries.isEmpty()) {
+                return;
+            }
+            if (attempt >= MAX_RETRIES) {
+                throw new IOException("Failed to index " + retries.size() + " documents into " + indexName);
+            }
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            documents = retries;
+        }
+    }
+
+    /**
+     * Make the new index searchable and point the alias to it instead of the previous index
+     */
+    private void swap(String indexName) throws IOException {
+        this.highLevelClient.indices().putSettings(new UpdateSettingsRequest(indexName)
+                        .settings(Settings.builder()
+                                .put("index.refresh_interval", "1s")
+                                .put("index.number_of_replicas", 1)),
+                RequestOptions.DEFAULT);
+        this.highLevelClient.indices().refresh(new RefreshRequest(indexName), RequestOptions.DEFAULT);
+
+        IndicesAliasesRequest request = new IndicesAliasesRequest();
+        request.addAliasAction(IndicesAliasesRequest.AliasActions.add()
+                .index(indexName).alias(SearchService.PROJECT_ITEM));
+        Set<String> previous = new HashSet<>();
+        if (aliasExists()) {
+            previous.addAll(this.highLevelClient.indices()
+                    .getAlias(new GetAliasesRequest(SearchService.PROJECT_ITEM), RequestOptions.DEFAULT)
+                    .getAliases().keySet());
+            previous.remove(indexName);
+            for (String index : previous) {
+                request.addAliasAction(IndicesAliasesRequest.AliasActions.remove()
+                        .index(index).alias(SearchService.PROJECT_ITEM));
+            }
+        } else if (indexExists(SearchService.PROJECT_ITEM)) {
+            // index created by writes before the alias existed
+            request.addAliasAction(IndicesAliasesRequest.AliasActions.removeIndex().index(SearchService.PROJECT_ITEM));
+        }
+        this.highLevelClient.indices().updateAliases(request, RequestOptions.DEFAULT);
+        LOGGER.info("Alias {} moved to {} from {}", SearchService.PROJECT_ITEM, indexName, previous);
+
+        for (String index : previous) {
+            this.highLevelClient.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+        }
+    }
+
+    /**
+     * @return true if the alias points to an index built with the current mapping
+     */
+    private boolean isCurrent() throws IOException {
+        if (!aliasExists()) {
+            return false;
+        }
+        return this.highLevelClient.indices()
+                .getAlias(new GetAliasesRequest(SearchService.PROJECT_ITEM), RequestOptions.DEFAULT)
+                .getAliases().keySet().stream().allMatch(index -> index.startsWith(INDEX_PREFIX));
+    }
+
+    private boolean aliasExists() throws IOException {
+        return this.highLevelClient.indices().existsAlias(
+                new GetAliasesRequest(SearchService.PROJECT_ITEM), RequestOptions.DEFAULT);
+    }
+
+    private boolean indexExists(String indexName) throws IOException {
+        return this.highLevelClient.indices().exists(new GetIndexRequest().indices(indexName), RequestOptions.DEFAULT);
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        this.stopped = true;
+        this.executorService.shutdown();
+        try {
+            this.executorService.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
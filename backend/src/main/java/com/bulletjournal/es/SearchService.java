@@ -1,53 +1,321 @@
 package com.bulletjournal.es;
 
-import com.bulletjournal.config.SpringESConfig;
-import com.bulletjournal.controller.models.ProjectItem;
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.repository.models.ContentModel;
+import com.bulletjournal.repository.models.Project;
+import com.bulletjournal.repository.models.ProjectItemModel;
+import com.bulletjournal.repository.utils.DaoHelper;
+import org.apache.commons.lang3.tuple.Pair;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
-import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.Fuzziness;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Collectors;
 
+/**
+ * Keeps project items searchable in ES
+ * <p>
+ * Every project item is one document holding its name, the text of its contents and the project and
+ * group it belongs to, so that queries can match contents and filter by what the requester can access.
+ * Documents are built when the item changes and handed to {@link SearchIndexer} after the surrounding
+ * transaction commits, so requests never wait for ES.
+ * <p>
+ * Without ES the same documents are kept in a {@link LocalSearchIndex} instead, which
+ * {@link SearchReindexer} loads from the database on startup.
+ */
 @Service
 public class SearchService {
 
+    /**
+     * Alias of the index currently serving project items, see {@link SearchReindexer}
+     */
     public static final String PROJECT_ITEM = "project_item";
+    public static final String DOCUMENT_TYPE = "default";
+
+    /**
+     * Bumped when the mapping changes, so that indices built with an older mapping get rebuilt
+     */
+    public static final int MAPPING_VERSION = 2;
+
+    public static final String KEY_FIELD = "key";
+    public static final String NAME_FIELD = "name";
+    public static final String CONTENTS_FIELD = "contents";
+    public static final String OWNER_FIELD = "owner";
+    public static final String TYPE_FIELD = "type";
+    public static final String PROJECT_ID_FIELD = "projectId";
+    public static final String GROUP_ID_FIELD = "groupId";
+    public static final String UPDATED_AT_FIELD = "updatedAt";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SearchService.class);
+    private static final int MAX_CONTENTS_LENGTH = 32 * 1024;
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int BATCH_SIZE = 500;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final long OFFER_TIMEOUT_MILLIS = 50;
+    private static final int MAX_RETRIES = 5;
+    private static final long INITIAL_BACKOFF_MILLIS = 200;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
 
     @Qualifier("client")
     @Autowired(required = false)
     private RestHighLevelClient highLevelClient;
 
-    @Autowired
-    private SpringESConfig springESConfig;
+    private SearchIndexer searchIndexer;
+
+    private LocalSearchIndex localSearchIndex;
+
+    /**
+     * Index being built by a reindex, which receives live changes as well until it replaces the current one
+     */
+    private volatile String reindexTarget;
 
-    // TODO user -> project id -> group -> all users
-    public void saveToES(ProjectItem projectItem, String username) {
-        if (highLevelClient == null) {
+    @PostConstruct
+    public void postConstruct() {
+        if (this.highLevelClient == null) {
+            this.localSearchIndex = new LocalSearchIndex();
             return;
         }
+        this.searchIndexer = new SearchIndexer(this::bulkLive, QUEUE_CAPACITY, BATCH_SIZE, FLUSH_INTERVAL_MILLIS,
+                OFFER_TIMEOUT_MILLIS, MAX_RETRIES, INITIAL_BACKOFF_MILLIS);
+    }
 
-        Map<String, Object> json = new HashMap<>();
-        json.put("name", projectItem.getName());
-        json.put("user", username);
+    @PreDestroy
+    public void preDestroy() {
+        if (this.searchIndexer != null) {
+            this.searchIndexer.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * @return index searched instead of ES, null if ES is enabled
+     */
+    public LocalSearchIndex getLocalSearchIndex() {
+        return this.localSearchIndex;
+    }
+
+    public static String getDocumentId(ProjectItemModel projectItem) {
+        return getDocumentId(projectItem.getContentType(), projectItem.getId());
+    }
+
+    public static String getDocumentId(ContentType contentType, Long projectItemId) {
+        return contentType.name() + "@" + projectItemId;
+    }
 
-        String index = projectItem.getClass().getSimpleName() + "@" + projectItem.getId();
-        IndexRequest request = new IndexRequest(PROJECT_ITEM, "default", index)
-                .source(json)
-                .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
-        try {
-            highLevelClient.index(request, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            LOGGER.error("saveToES fail", e);
+    public static Pair<ContentType, Long> parseDocumentId(String documentId) {
+        int separator = documentId.indexOf('@');
+        return Pair.of(ContentType.valueOf(documentId.substring(0, separator)),
+                Long.valueOf(documentId.substring(separator + 1)));
+    }
+
+    /**
+     * Search project items in the groups or shared with the user, by name and contents
+     *
+     * @param groupIds    groups of the user
+     * @param sharedItems project items shared with the user, by content type
+     * @param cursor      cursor returned with the previous page, null for the first page
+     */
+    public SearchPage search(String term, Set<Long> groupIds, Map<ContentType, Set<Long>> sharedItems,
+                             String cursor, int size) throws IOException {
+        List<String> sharedIds = new ArrayList<>();
+        sharedItems.forEach((type, ids) -> ids.forEach(id -> sharedIds.add(getDocumentId(type, id))));
+        if (groupIds.isEmpty() && sharedIds.isEmpty()) {
+            return SearchPage.EMPTY;
+        }
+        if (this.localSearchIndex != null) {
+            return this.localSearchIndex.search(term, groupIds, new HashSet<>(sharedIds), cursor, size);
+        }
+
+        BoolQueryBuilder acl = QueryBuilders.boolQuery().minimumShouldMatch(1);
+        if (!groupIds.isEmpty()) {
+            acl.should(QueryBuilders.termsQuery(GROUP_ID_FIELD, groupIds));
+        }
+        if (!sharedIds.isEmpty()) {
+            acl.should(QueryBuilders.idsQuery().addIds(sharedIds.toArray(new String[0])));
+        }
+        SearchSourceBuilder source = new SearchSourceBuilder()
+                .query(QueryBuilders.boolQuery()
+                        .must(QueryBuilders.multiMatchQuery(term, NAME_FIELD, CONTENTS_FIELD)
+                                .fuzziness(Fuzziness.AUTO)
+                                .prefixLength(3)
+                                .maxExpansions(10))
+                        .filter(acl))
+                .fetchSource(false)
+                .size(size)
+                .sort(SortBuilders.scoreSort().order(SortOrder.DESC))
+                .sort(SortBuilders.fieldSort(KEY_FIELD).order(SortOrder.ASC));
+        if (cursor != null) {
+            source.searchAfter(SearchCursor.decode(cursor));
+        }
+
+        SearchHit[] hits = this.highLevelClient.search(
+                new SearchRequest(PROJECT_ITEM).source(source), RequestOptions.DEFAULT).getHits().getHits();
+        List<String> ids = new ArrayList<>(hits.length);
+        for (SearchHit hit : hits) {
+            ids.add(hit.getId());
+        }
+        String next = null;
+        if (hits.length == size) {
+            Object[] sortValues = hits[hits.length - 1].getSortValues();
+            next = SearchCursor.encode(((Number) sortValues[0]).floatValue(), sortValues[1].toString());
+        }
+        return new SearchPage(ids, next);
+    }
+
+    /**
+     * Index project item with its contents, after the surrounding transaction commits
+     */
+    public void index(ProjectItemModel projectItem, List<? extends ContentModel> contents) {
+        String id = getDocumentId(projectItem);
+        Map<String, Object> document = toDocument(projectItem, contents);
+        // versioned once committed, so that a copy a reindex read before the commit is older
+        DaoHelper.afterCommit(() -> submit(Collections.singletonList(
+                SearchIndexOperation.index(id, document, System.currentTimeMillis()))));
+    }
+
+    /**
+     * Remove project items from index, after the surrounding transaction commits
+     */
+    public void delete(Collection<? extends ProjectItemModel> projectItems) {
+        if (projectItems.isEmpty()) {
+            return;
+        }
+        List<String> ids = projectItems.stream().map(SearchService::getDocumentId).collect(Collectors.toList());
+        DaoHelper.afterCommit(() -> {
+            long version = System.currentTimeMillis();
+            submit(ids.stream().map(id -> SearchIndexOperation.delete(id, version)).collect(Collectors.toList()));
+        });
+    }
+
+    public void delete(ProjectItemModel projectItem) {
+        delete(Collections.singletonList(projectItem));
+    }
+
+    public void setReindexTarget(String reindexTarget) {
+        this.reindexTarget = reindexTarget;
+    }
+
+    /**
+     * Field mapping of project item indices
+     */
+    public static Map<String, Object> getMapping() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(KEY_FIELD, Collections.singletonMap("type", "keyword"));
+        properties.put(NAME_FIELD, Collections.singletonMap("type", "text"));
+        properties.put(CONTENTS_FIELD, Collections.singletonMap("type", "text"));
+        properties.put(OWNER_FIELD, Collections.singletonMap("type", "keyword"));
+        properties.put(TYPE_FIELD, Collections.singletonMap("type", "keyword"));
+        properties.put(PROJECT_ID_FIELD, Collections.singletonMap("type", "long"));
+        properties.put(GROUP_ID_FIELD, Collections.singletonMap("type", "long"));
+        properties.put(UPDATED_AT_FIELD, Collections.singletonMap("type", "long"));
+        return Collections.singletonMap("properties", properties);
+    }
+
+    public static Map<String, Object> toDocument(ProjectItemModel projectItem, List<? extends ContentModel> contents) {
+        Project project = projectItem.getProject();
+        Map<String, Object> document = new HashMap<>();
+        document.put(KEY_FIELD, getDocumentId(projectItem));
+        document.put(NAME_FIELD, projectItem.getName());
+        document.put(OWNER_FIELD, projectItem.getOwner());
+        document.put(TYPE_FIELD, projectItem.getContentType().name());
+        document.put(PROJECT_ID_FIELD, project.getId());
+        document.put(GROUP_ID_FIELD, project.getGroup().getId());
+        if (projectItem.getUpdatedAt() != null) {
+            document.put(UPDATED_AT_FIELD, projectItem.getUpdatedAt().getTime());
+        }
+        List<String> texts = new ArrayList<>(contents.size());
+        int length = 0;
+        for (ContentModel content : contents) {
+            String text = content.getText();
+            if (text == null || text.isEmpty()) {
+                continue;
+            }
+            if (length + text.length() > MAX_CONTENTS_LENGTH) {
+                texts.add(text.substring(0, MAX_CONTENTS_LENGTH - length));
+                break;
+            }
+            texts.add(text);
+            length += text.length();
+        }
+        document.put(CONTENTS_FIELD, texts);
+        return document;
+    }
+
+    private void submit(List<SearchIndexOperation> operations) {
+        if (this.localSearchIndex != null) {
+            operations.forEach(this.localSearchIndex::apply);
+        } else {
+            operations.forEach(this.searchIndexer::submit);
+        }
+    }
+
+    private List<SearchIndexOperation> bulkLive(List<SearchIndexOperation> operations) throws IOException {
+        String target = this.reindexTarget;
+        return target == null ? bulk(operations, PROJECT_ITEM) : bulk(operations, PROJECT_ITEM, target);
+    }
+
+    /**
+     * Send operations to every index in one bulk request, without forcing a refresh
+     *
+     * @return operations rejected by any index with a retryable status
+     */
+    public List<SearchIndexOperation> bulk(List<SearchIndexOperation> operations, String... indices)
+            throws IOException {
+        BulkRequest request = new BulkRequest();
+        for (SearchIndexOperation operation : operations) {
+            for (String index : indices) {
+                if (operation.isDelete()) {
+                    request.add(new DeleteRequest(index, DOCUMENT_TYPE, operation.getId())
+                            .versionType(VersionType.EXTERNAL_GTE).version(operation.getVersion()));
+                } else {
+                    request.add(new IndexRequest(index, DOCUMENT_TYPE, operation.getId())
+                            .source(operation.getSource())
+                            .versionType(VersionType.EXTERNAL_GTE).version(operation.getVersion()));
+                }
+            }
+        }
+        BulkResponse response = this.highLevelClient.bulk(request, RequestOptions.DEFAULT);
+        if (!response.hasFailures()) {
+            return Collections.emptyList();
+        }
+        Set<SearchIndexOperation> retries = new LinkedHashSet<>();
+        for (BulkItemResponse item : response.getItems()) {
+            if (!item.isFailed()) {
+                continue;
+            }
+            RestStatus status = item.getFailure().getStatus();
+            if (status == RestStatus.CONFLICT) {
+                // a newer version is indexed already
+                continue;
+            }
+            if (status == RestStatus.TOO_MANY_REQUESTS || status.getStatus() >= 500) {
+                retries.add(operations.get(item.getItemId() / indices.length));
+            } else {
+                LOGGER.error("Indexing {} into {} failed: {}", item.getId(), item.getIndex(), item.getFailureMessage());
+            }
         }
+        return new ArrayList<>(retries);
     }
 }
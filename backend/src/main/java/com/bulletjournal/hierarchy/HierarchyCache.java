@@ -0,0 +1,158 @@
+package com.bulletjournal.hierarchy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Keeps parsed {@link HierarchyTree}s of project tasks, project notes and user projects.
+ * <p>
+ * - Every access passes the relations just read from the database, and a cached tree
+ * is only used if it was decoded from or encoded to those same bytes. Writes of other instances
+ * or rolled back transactions therefore cost a reparse instead of serving stale relations.
+ * - Trees are mutated in place under the entry lock and re-encoded with {@link HierarchyCodec} once per update.
+ * - At most maxCachedTrees trees are kept, least recently used ones are evicted.
+ */
+@Component
+public class HierarchyCache {
+
+    static final int DEFAULT_MAX_CACHED_TREES = 2000;
+    private static final Logger LOGGER = LoggerFactory.getLogger(HierarchyCache.class);
+    private static final long LOG_STATS_INTERVAL = 10000;
+
+    private final Map<String, Entry> trees;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public HierarchyCache() {
+        this(DEFAULT_MAX_CACHED_TREES);
+    }
+
+    public HierarchyCache(int maxCachedTrees) {
+        this.trees = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxCachedTrees;
+            }
+        });
+    }
+
+    public static String getKey(Type type, Object id) {
+        return type.name() + ':' + id;
+    }
+
+    /**
+     * Read relations through their cached tree
+     *
+     * @param key       the key from {@link #getKey}
+     * @param relations the relations currently stored
+     * @param reader    reads the tree, must not keep references to it
+     */
+    public <R> R read(String key, byte[] relations, Function<HierarchyTree, R> reader) {
+        Entry entry = getEntry(key);
+        synchronized (entry) {
+            return reader.apply(entry.getTree(relations));
+        }
+    }
+
+    /**
+     * Update relations through their cached tree
+     *
+     * @param key       the key from {@link #getKey}
+     * @param relations the relations currently stored
+     * @param updater   mutates the tree
+     * @return byte[] - the relations to store
+     */
+    public byte[] update(String key, byte[] relations, Consumer<HierarchyTree> updater) {
+        Entry entry = getEntry(key);
+        synchronized (entry) {
+            HierarchyTree tree = entry.getTree(relations);
+            try {
+                updater.accept(tree);
+            } catch (RuntimeException ex) {
+                // the tree may be partially updated
+                entry.set(null, null);
+                throw ex;
+            }
+            byte[] encoded = HierarchyCodec.encode(tree);
+            entry.set(encoded, tree);
+            return encoded;
+        }
+    }
+
+    /**
+     * Replace relations with a new tree
+     *
+     * @return byte[] - the relations to store
+     */
+    public byte[] replace(String key, HierarchyTree tree) {
+        Entry entry = getEntry(key);
+        synchronized (entry) {
+            byte[] encoded = HierarchyCodec.encode(tree);
+            entry.set(encoded, tree);
+            return encoded;
+        }
+    }
+
+    public void evict(String key) {
+        this.trees.remove(key);
+    }
+
+    public int size() {
+        return this.trees.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Entry getEntry(String key) {
+        synchronized (this.trees) {
+            return this.trees.computeIfAbsent(key, k -> new Entry());
+        }
+    }
+
+    private void logStats(long lookups) {
+        if (lookups % LOG_STATS_INTERVAL == 0) {
+            LOGGER.info("HierarchyCache hits: {}, misses: {}, trees: {}", this.hits.get(), this.misses.get(), size());
+        }
+    }
+
+    public enum Type {
+        PROJECT_TASKS,
+        PROJECT_NOTES,
+        USER_PROJECTS
+    }
+
+    private class Entry {
+        private byte[] relations;
+        private HierarchyTree tree;
+
+        HierarchyTree getTree(byte[] relations) {
+            if (this.tree != null && (this.relations == relations || Arrays.equals(this.relations, relations))) {
+                logStats(hits.incrementAndGet() + misses.get());
+                return this.tree;
+            }
+            logStats(hits.get() + misses.incrementAndGet());
+            set(relations, HierarchyCodec.decode(relations));
+            return this.tree;
+        }
+
+        void set(byte[] relations, HierarchyTree tree) {
+            this.relations = relations;
+            this.tree = tree;
+        }
+    }
+}
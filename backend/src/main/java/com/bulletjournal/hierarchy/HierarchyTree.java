@@ -0,0 +1,346 @@
+package com.bulletjournal.hierarchy;
+
+import com.bulletjournal.exceptions.BadRequestException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Parsed form of the relations stored in ProjectTasks, ProjectNotes and UserProjects
+ * <p>
+ * - Nodes keep their parent, and an id -> node index makes lookups O(1) and
+ * detaching a subtree O(depth + siblings) instead of a full parse and scan.
+ * - {@link #encode()} writes the same JSON as before ([{"id":1,"s":[...]}]),
+ * omitting "s" for leaves. Stored relations use the binary {@link HierarchyCodec} format.
+ */
+public class HierarchyTree {
+
+    private final Node root = new Node(null);
+    private final Map<Long, Node> index = new HashMap<>();
+
+    public static HierarchyTree parse(String relations) {
+        HierarchyTree tree = new HierarchyTree();
+        if (StringUtils.isNotBlank(relations)) {
+            for (Node node : new Parser(relations).parseItems()) {
+                tree.attach(tree.root, node);
+            }
+        }
+        return tree;
+    }
+
+    public static <T> HierarchyTree of(
+            List<T> items, Function<T, Long> getId, Function<T, List<T>> getSubItems) {
+        HierarchyTree tree = new HierarchyTree();
+        addAll(tree, tree.root, items, getId, getSubItems);
+        return tree;
+    }
+
+    private static <T> void addAll(HierarchyTree tree, Node parent, List<T> items,
+                                   Function<T, Long> getId, Function<T, List<T>> getSubItems) {
+        if (items == null) {
+            return;
+        }
+        for (T item : items) {
+            Node node = tree.attach(parent, new Node(getId.apply(item)));
+            addAll(tree, node, getSubItems.apply(item), getId, getSubItems);
+        }
+    }
+
+    public List<Node> getRoots() {
+        return this.root.getChildren();
+    }
+
+    public int size() {
+        return this.index.size();
+    }
+
+    public boolean contains(Long id) {
+        return this.index.containsKey(id);
+    }
+
+    public Node getNode(Long id) {
+        Node node = this.index.get(id);
+        if (node == null) {
+            throw new BadRequestException("Target " + id + " not found ");
+        }
+        return node;
+    }
+
+    /**
+     * @return ids of target and all its descendants, target first
+     */
+    public List<Long> getSubItems(Long id) {
+        List<Long> result = new ArrayList<>();
+        collect(getNode(id), result);
+        return result;
+    }
+
+    private static void collect(Node node, List<Long> result) {
+        result.add(node.id);
+        for (Node child : node.children) {
+            collect(child, result);
+        }
+    }
+
+    /**
+     * Detach target and its descendants
+     *
+     * @return the detached subtree, which can be added to another tree
+     */
+    public Node remove(Long id) {
+        Node node = getNode(id);
+        node.parent.children.remove(node);
+        node.parent = null;
+        unindex(node);
+        return node;
+    }
+
+    private void unindex(Node node) {
+        this.index.remove(node.id);
+        for (Node child : node.children) {
+            unindex(child);
+        }
+    }
+
+    public Node add(Long id) {
+        return add(new Node(id));
+    }
+
+    /**
+     * Append a detached subtree at root level
+     */
+    public Node add(Node node) {
+        if (node.parent != null) {
+            throw new IllegalArgumentException("Node " + node.id + " is not detached");
+        }
+        checkAbsent(node);
+        this.root.children.add(node);
+        node.parent = this.root;
+        index(node);
+        return node;
+    }
+
+    private void checkAbsent(Node node) {
+        if (this.index.containsKey(node.id)) {
+            throw new BadRequestException("Item " + node.id + " already exists");
+        }
+        for (Node child : node.children) {
+            checkAbsent(child);
+        }
+    }
+
+    private void index(Node node) {
+        this.index.put(node.id, node);
+        for (Node child : node.children) {
+            index(child);
+        }
+    }
+
+    Node getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Append a new item under parent while building a tree
+     */
+    Node addChild(Node parent, Long id) {
+        return attach(parent, new Node(id));
+    }
+
+    private Node attach(Node parent, Node node) {
+        node.parent = parent;
+        parent.children.add(node);
+        indexUnique(node);
+        return node;
+    }
+
+    private void indexUnique(Node node) {
+        if (this.index.put(node.id, node) != null) {
+            throw new BadRequestException("Item " + node.id + " appears more than once in relations");
+        }
+        for (Node child : node.children) {
+            indexUnique(child);
+        }
+    }
+
+    public String encode() {
+        StringBuilder sb = new StringBuilder(this.index.size() * 12 + 2);
+        encode(this.root.children, sb);
+        return sb.toString();
+    }
+
+    private static void encode(List<Node> nodes, StringBuilder sb) {
+        sb.append('[');
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            Node node = nodes.get(i);
+            sb.append("{\"id\":").append(node.id);
+            if (!node.children.isEmpty()) {
+                sb.append(",\"").append(HierarchyItem.SUB_ITEMS_KEY_REPLACEMENT).append("\":");
+                encode(node.children, sb);
+            }
+            sb.append('}');
+        }
+        sb.append(']');
+    }
+
+    /**
+     * @return a detached subtree, which can be added to a tree
+     */
+    public static Node toNode(HierarchyItem item) {
+        Node node = new Node(item.getId());
+        for (HierarchyItem subItem : item.getS()) {
+            Node child = toNode(subItem);
+            child.parent = node;
+            node.children.add(child);
+        }
+        return node;
+    }
+
+    public static HierarchyItem toHierarchyItem(Node node) {
+        HierarchyItem item = new HierarchyItem(node.id);
+        item.setS(toHierarchyItems(node.children));
+        return item;
+    }
+
+    public List<HierarchyItem> toHierarchyItems() {
+        return toHierarchyItems(this.root.children);
+    }
+
+    private static List<HierarchyItem> toHierarchyItems(List<Node> nodes) {
+        List<HierarchyItem> items = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            items.add(toHierarchyItem(node));
+        }
+        return items;
+    }
+
+    public static class Node {
+        private final Long id;
+        private final List<Node> children = new ArrayList<>();
+        private Node parent;
+
+        private Node(Long id) {
+            this.id = id;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public List<Node> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+    }
+
+    /**
+     * Parser of [{"id":1,"s":[...]}], also accepting "s":[] on leaves as written by Gson
+     */
+    private static class Parser {
+        private final String input;
+        private int pos;
+
+        Parser(String input) {
+            this.input = input;
+        }
+
+        List<Node> parseItems() {
+            List<Node> nodes = new ArrayList<>();
+            expect('[');
+            if (peek() == ']') {
+                this.pos++;
+                return nodes;
+            }
+            do {
+                nodes.add(parseItem());
+            } while (next(',', ']') == ',');
+            return nodes;
+        }
+
+        private Node parseItem() {
+            Long id = null;
+            List<Node> children = Collections.emptyList();
+            expect('{');
+            if (peek() == '}') {
+                this.pos++;
+            } else {
+                do {
+                    String key = parseKey();
+                    expect(':');
+                    if ("id".equals(key)) {
+                        id = parseLong();
+                    } else if (peek() == '[') {
+                        children = parseItems();
+                    } else {
+                        throw new IllegalArgumentException("Unexpected value of " + key + " in relations at " + this.pos);
+                    }
+                } while (next(',', '}') == ',');
+            }
+            if (id == null) {
+                throw new IllegalArgumentException("Missing id in relations at " + this.pos);
+            }
+            Node node = new Node(id);
+            for (Node child : children) {
+                child.parent = node;
+                node.children.add(child);
+            }
+            return node;
+        }
+
+        private String parseKey() {
+            expect('"');
+            int end = this.input.indexOf('"', this.pos);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unterminated key in relations at " + this.pos);
+            }
+            String key = this.input.substring(this.pos, end);
+            this.pos = end + 1;
+            return key;
+        }
+
+        private Long parseLong() {
+            skipWhitespace();
+            int start = this.pos;
+            if (this.pos < this.input.length() && this.input.charAt(this.pos) == '-') {
+                this.pos++;
+            }
+            while (this.pos < this.input.length() && Character.isDigit(this.input.charAt(this.pos))) {
+                this.pos++;
+            }
+            return Long.valueOf(this.input.substring(start, this.pos));
+        }
+
+        private char peek() {
+            skipWhitespace();
+            if (this.pos >= this.input.length()) {
+                throw new IllegalArgumentException("Unexpected end of relations");
+            }
+            return this.input.charAt(this.pos);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' in relations at " + this.pos);
+            }
+            this.pos++;
+        }
+
+        private char next(char a, char b) {
+            char c = peek();
+            if (c != a && c != b) {
+                throw new IllegalArgumentException("Unexpected '" + c + "' in relations at " + this.pos);
+            }
+            this.pos++;
+            return c;
+        }
+
+        private void skipWhitespace() {
+            while (this.pos < this.input.length() && Character.isWhitespace(this.input.charAt(this.pos))) {
+                this.pos++;
+            }
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.bulletjournal.hierarchy;
 
 import com.bulletjournal.controller.models.Note;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -10,32 +8,39 @@ import java.util.Map;
 
 public class NoteRelationsProcessor {
 
-    private static final String SUB_NOTES_KEY = "subNotes";
-    private static final Gson GSON = new GsonBuilder()
-            .excludeFieldsWithoutExposeAnnotation().create();
-
     public static List<Note> processRelations(
             Map<Long, com.bulletjournal.repository.models.Note> noteMap, String relations) {
-        Note[] list = GSON.fromJson(
-                relations.replace(HierarchyItem.SUB_ITEMS_KEY_REPLACEMENT, SUB_NOTES_KEY), Note[].class);
+        return processRelations(noteMap, HierarchyTree.parse(relations));
+    }
+
+    public static List<Note> processRelations(
+            Map<Long, com.bulletjournal.repository.models.Note> noteMap, byte[] relations) {
+        return processRelations(noteMap, HierarchyCodec.decode(relations));
+    }
+
+    public static List<Note> processRelations(
+            Map<Long, com.bulletjournal.repository.models.Note> noteMap, HierarchyTree relations) {
         List<Note> notes = new ArrayList<>();
-        for (Note note : list) {
-            notes.add(merge(noteMap, note));
+        for (HierarchyTree.Node node : relations.getRoots()) {
+            notes.add(merge(noteMap, node));
         }
         return notes;
     }
 
-    private static Note merge(Map<Long, com.bulletjournal.repository.models.Note> noteMap, Note cur) {
-        cur.clone(noteMap.get(cur.getId()).toPresentationModel());
-        for (Note subNote : cur.getSubNotes()) {
-            merge(noteMap, subNote);
+    private static Note merge(Map<Long, com.bulletjournal.repository.models.Note> noteMap, HierarchyTree.Node cur) {
+        Note note = new Note();
+        note.clone(noteMap.get(cur.getId()).toPresentationModel());
+        for (HierarchyTree.Node subNote : cur.getChildren()) {
+            note.addSubNote(merge(noteMap, subNote));
         }
-        return cur;
+        return note;
+    }
+
+    public static HierarchyTree toHierarchyTree(List<Note> notes) {
+        return HierarchyTree.of(notes, Note::getId, Note::getSubNotes);
     }
 
     public static String processRelations(List<Note> notes) {
-        String jsonString = GSON.toJson(notes);
-        // replace "subNotes" with "s" to save space
-        return jsonString.replace(SUB_NOTES_KEY, HierarchyItem.SUB_ITEMS_KEY_REPLACEMENT);
+        return toHierarchyTree(notes).encode();
     }
-}
\ No newline at end of file
+}
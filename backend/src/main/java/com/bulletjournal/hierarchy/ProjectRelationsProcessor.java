@@ -2,8 +2,6 @@ package com.bulletjournal.hierarchy;
 
 import com.bulletjournal.controller.models.Project;
 import com.bulletjournal.controller.models.ProjectType;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,18 +10,25 @@ import java.util.Set;
 
 public class ProjectRelationsProcessor {
 
-    private static final String SUB_PROJECTS_KEY = "subProjects";
-    private static final Gson GSON = new GsonBuilder()
-            .excludeFieldsWithoutExposeAnnotation().create();
-
     public static List<Project> processRelations(
             Map<Long, com.bulletjournal.repository.models.Project> projectMap, String projectRelations,
             Set<Long> selectedProjects) {
-        Project[] list = GSON.fromJson(
-                projectRelations.replace(HierarchyItem.SUB_ITEMS_KEY_REPLACEMENT, SUB_PROJECTS_KEY), Project[].class);
+        return processRelations(projectMap, HierarchyTree.parse(projectRelations), selectedProjects);
+    }
+
+    public static List<Project> processRelations(
+            Map<Long, com.bulletjournal.repository.models.Project> projectMap, byte[] projectRelations,
+            Set<Long> selectedProjects) {
+        return processRelations(projectMap, HierarchyCodec.decode(projectRelations), selectedProjects);
+    }
+
+    public static List<Project> processRelations(
+            Map<Long, com.bulletjournal.repository.models.Project> projectMap, HierarchyTree projectRelations,
+            Set<Long> selectedProjects) {
         List<Project> projects = new ArrayList<>();
-        for (Project project : list) {
-            if (merge(projectMap, project, selectedProjects) > 0) {
+        for (HierarchyTree.Node node : projectRelations.getRoots()) {
+            Project project = new Project(node.getId());
+            if (merge(projectMap, node, project, selectedProjects) > 0) {
                 projects.add(project);
             }
         }
@@ -33,11 +38,11 @@ public class ProjectRelationsProcessor {
 
     private static int merge(
             Map<Long, com.bulletjournal.repository.models.Project> m,
+            HierarchyTree.Node node,
             Project project,
             Set<Long> selectedProjects) {
         int count = 0;
 
-        List<Project> subProjects = project.getSubProjects();
         if (selectedProjects == null || selectedProjects.contains(project.getId())) {
             project.clone(m.get(project.getId()).toPresentationModel());
             count++;
@@ -46,10 +51,10 @@ public class ProjectRelationsProcessor {
             project.setName(m.get(project.getId()).getName());
             project.setProjectType(ProjectType.getType(m.get(project.getId()).getType()));
         }
-        project.setSubProjects(new ArrayList<>());
 
-        for (Project subProject : subProjects) {
-            int subCount = merge(m, subProject, selectedProjects);
+        for (HierarchyTree.Node subNode : node.getChildren()) {
+            Project subProject = new Project(subNode.getId());
+            int subCount = merge(m, subNode, subProject, selectedProjects);
             count += subCount;
             if (subCount > 0) {
                 project.addSubProject(subProject);
@@ -59,9 +64,11 @@ public class ProjectRelationsProcessor {
         return count;
     }
 
+    public static HierarchyTree toHierarchyTree(List<Project> projects) {
+        return HierarchyTree.of(projects, Project::getId, Project::getSubProjects);
+    }
+
     public static String processRelations(List<Project> projects) {
-        String jsonString = GSON.toJson(projects);
-        // replace "subProjects" with "s" to save space
-        return jsonString.replace(SUB_PROJECTS_KEY, HierarchyItem.SUB_ITEMS_KEY_REPLACEMENT);
+        return toHierarchyTree(projects).encode();
     }
 }
@@ -1,8 +1,6 @@
 package com.bulletjournal.hierarchy;
 
 import com.bulletjournal.controller.models.Task;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -10,32 +8,39 @@ import java.util.Map;
 
 public class TaskRelationsProcessor {
 
-    private static final String SUB_TASKS_KEY = "subTasks";
-    private static final Gson GSON = new GsonBuilder()
-            .excludeFieldsWithoutExposeAnnotation().create();
-
     public static List<Task> processRelations(
             Map<Long, com.bulletjournal.repository.models.Task> taskMap, String relations) {
-        Task[] list = GSON.fromJson(
-                relations.replace(HierarchyItem.SUB_ITEMS_KEY_REPLACEMENT, SUB_TASKS_KEY), Task[].class);
+        return processRelations(taskMap, HierarchyTree.parse(relations));
+    }
+
+    public static List<Task> processRelations(
+            Map<Long, com.bulletjournal.repository.models.Task> taskMap, byte[] relations) {
+        return processRelations(taskMap, HierarchyCodec.decode(relations));
+    }
+
+    public static List<Task> processRelations(
+            Map<Long, com.bulletjournal.repository.models.Task> taskMap, HierarchyTree relations) {
         List<Task> tasks = new ArrayList<>();
-        for (Task task : list) {
-            tasks.add(merge(taskMap, task));
+        for (HierarchyTree.Node node : relations.getRoots()) {
+            tasks.add(merge(taskMap, node));
         }
         return tasks;
     }
 
-    private static Task merge(Map<Long, com.bulletjournal.repository.models.Task> taskMap, Task cur) {
-        cur.clone(taskMap.get(cur.getId()).toPresentationModel());
-        for (Task subNote : cur.getSubTasks()) {
-            merge(taskMap, subNote);
+    private static Task merge(Map<Long, com.bulletjournal.repository.models.Task> taskMap, HierarchyTree.Node cur) {
+        Task task = new Task();
+        task.clone(taskMap.get(cur.getId()).toPresentationModel());
+        for (HierarchyTree.Node subTask : cur.getChildren()) {
+            task.addSubTask(merge(taskMap, subTask));
         }
-        return cur;
+        return task;
+    }
+
+    public static HierarchyTree toHierarchyTree(List<Task> tasks) {
+        return HierarchyTree.of(tasks, Task::getId, Task::getSubTasks);
     }
 
     public static String processRelations(List<Task> tasks) {
-        String jsonString = GSON.toJson(tasks);
-        // replace "subTasks" with "s" to save space
-        return jsonString.replace(SUB_TASKS_KEY, HierarchyItem.SUB_ITEMS_KEY_REPLACEMENT);
+        return toHierarchyTree(tasks).encode();
     }
-}
\ No newline at end of file
+}
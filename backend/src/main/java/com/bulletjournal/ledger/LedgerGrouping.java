@@ -0,0 +1,44 @@
+package com.bulletjournal.ledger;
+
+/**
+ * What transactions are summed by for a ledger summary
+ */
+public enum LedgerGrouping {
+    WEEK,
+    MONTH,
+    YEAR,
+    DAY,
+    PAYER,
+    LABEL;
+
+    public static LedgerGrouping of(LedgerSummaryType ledgerSummaryType, FrequencyType frequencyType) {
+        switch (ledgerSummaryType) {
+            case DEFAULT:
+                switch (frequencyType) {
+                    case WEEKLY:
+                        return WEEK;
+                    case MONTHLY:
+                        return MONTH;
+                    case YEARLY:
+                        return YEAR;
+                    default:
+                        throw new IllegalArgumentException("Invalid FrequencyType " + frequencyType);
+                }
+            case PAYER:
+                return PAYER;
+            case LABEL:
+                return LABEL;
+            case TIMELINE:
+                return DAY;
+            default:
+                throw new IllegalArgumentException("Invalid LedgerSummaryType " + ledgerSummaryType);
+        }
+    }
+
+    /**
+     * Whether summaries are ordered by time rather than by name
+     */
+    public boolean isChronological() {
+        return this != PAYER && this != LABEL;
+    }
+}
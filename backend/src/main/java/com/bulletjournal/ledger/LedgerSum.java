@@ -0,0 +1,31 @@
+package com.bulletjournal.ledger;
+
+/**
+ * Sum of the amounts of one transaction type within one group, as aggregated by the database
+ */
+public class LedgerSum {
+
+    private final String key;
+
+    private final TransactionType transactionType;
+
+    private final double amount;
+
+    public LedgerSum(String key, TransactionType transactionType, double amount) {
+        this.key = key;
+        this.transactionType = transactionType;
+        this.amount = amount;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public TransactionType getTransactionType() {
+        return transactionType;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+}
@@ -1,170 +1,94 @@
 package com.bulletjournal.ledger;
 
-import com.bulletjournal.controller.models.Label;
 import com.bulletjournal.controller.models.Transaction;
 import com.bulletjournal.controller.models.TransactionsSummary;
 import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
 import org.springframework.stereotype.Component;
 
+import java.time.Month;
 import java.time.ZonedDateTime;
 import java.util.*;
-import java.util.function.Consumer;
-import java.util.function.Function;
 
 @Component
 public class LedgerSummaryCalculator {
 
+    /**
+     * Build ledger summary from sums aggregated by the database
+     *
+     * @param grouping     what sums are grouped by
+     * @param startTime    range start time
+     * @param endTime      range end time
+     * @param transactions transactions listed in the summary
+     * @param sums         sums of every (group, transaction type)
+     * @param totals       sums of every transaction type over the range, a transaction in several
+     *                     groups (e.g. with several labels) is only counted once
+     * @return LedgerSummary
+     */
     public LedgerSummary getLedgerSummary(
-            LedgerSummaryType ledgerSummaryType,
-            ZonedDateTime startTime, ZonedDateTime endTime, List<Transaction> transactions, FrequencyType frequencyType) {
+            LedgerGrouping grouping, ZonedDateTime startTime, ZonedDateTime endTime,
+            List<Transaction> transactions, List<LedgerSum> sums, List<LedgerSum> totals) {
         final LedgerSummary ledgerSummary = new LedgerSummary(transactions,
                 ZonedDateTimeHelper.getDate(startTime),
                 ZonedDateTimeHelper.getDate(endTime));
 
-        final Total total = new Total();
+        final Transactions total = new Transactions();
+        totals.forEach(total::add);
         Map<String, Transactions> m = new HashMap<>();
-
-        Function<? super TransactionsSummary, ? extends String> transactionsSummariesComparator =
-                TransactionsSummary::getName;
-
-        switch (ledgerSummaryType) {
-            case DEFAULT:
-
-                switch (frequencyType) {
-                    case MONTHLY:
-
-                        transactionsSummariesComparator = TransactionsSummary::getMetadata;
-
-                        processTransaction(transactions, total, (t -> {
-                            double amount = t.getAmount();
-                            Transactions tran = m.computeIfAbsent(t.getReadableYearMonth(), k -> new Transactions());
-                            tran.setMeta(t.getYearMonth());
-                            switch (TransactionType.getType(t.getTransactionType())) {
-                                case INCOME:
-                                    tran.addIncome(amount);
-                                    break;
-                                case EXPENSE:
-                                    tran.addExpense(amount);
-                                    break;
-                            }
-                        }));
-                        break;
-                    case YEARLY:
-                        break;
-                    case WEEKLY:
-                        break;
-                }
-
-
-                break;
-            case LABEL:
-                processTransaction(transactions, total, (t -> {
-                    double amount = t.getAmount();
-                    for (Label l : t.getLabels()) {
-                        Transactions tran = m.computeIfAbsent(l.getValue(), k -> new Transactions());
-                        switch (TransactionType.getType(t.getTransactionType())) {
-                            case INCOME:
-                                tran.addIncome(amount);
-                                break;
-                            case EXPENSE:
-                                tran.addExpense(amount);
-                                break;
-                        }
-                    }
-                }));
-                break;
-            case PAYER:
-                processTransaction(transactions, total, (t -> {
-                    Transactions tran = m.computeIfAbsent(t.getPayer(), k -> new Transactions());
-                    double amount = t.getAmount();
-                    switch (TransactionType.getType(t.getTransactionType())) {
-                        case INCOME:
-                            tran.addIncome(amount);
-                            break;
-                        case EXPENSE:
-                            tran.addExpense(amount);
-                            break;
-                    }
-                }));
-                break;
-            case TIMELINE:
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid LedgerSummaryType " + ledgerSummaryType);
+        for (LedgerSum sum : sums) {
+            m.computeIfAbsent(sum.getKey(), k -> new Transactions()).add(sum);
         }
 
-        ledgerSummary.setIncome(total.totalIncome);
-        ledgerSummary.setExpense(total.totalExpense);
-        ledgerSummary.setBalance(total.totalIncome - total.totalExpense);
-        final List<TransactionsSummary> transactionsSummaries = new ArrayList<>();
+        ledgerSummary.setIncome(total.income);
+        ledgerSummary.setExpense(total.expense);
+        ledgerSummary.setBalance(total.income - total.expense);
+        final List<TransactionsSummary> transactionsSummaries = new ArrayList<>(m.size());
         m.forEach((k, v) -> {
-            double balance = v.getIncome() - v.getExpense();
+            double balance = v.income - v.expense;
             transactionsSummaries.add(new TransactionsSummary(
-                    k,
-                    v.getMeta(),
-                    v.getIncome(),
-                    Math.round((v.getIncome() * 100 / total.totalIncome) * 100.0) / 100.0,
-                    v.getExpense(),
-                    Math.round(v.getExpense() * 100 / total.totalExpense * 100.0) / 100.0,
+                    getName(grouping, k),
+                    grouping.isChronological() ? k : null,
+                    v.income,
+                    Math.round((v.income * 100 / total.income) * 100.0) / 100.0,
+                    v.expense,
+                    Math.round(v.expense * 100 / total.expense * 100.0) / 100.0,
                     balance,
                     Math.round(balance * 100 / ledgerSummary.getBalance() * 100.0) / 100.0
             ));
         });
-        transactionsSummaries.sort(Comparator.comparing(transactionsSummariesComparator));
+        transactionsSummaries.sort(Comparator.comparing(grouping.isChronological() ?
+                TransactionsSummary::getMetadata : TransactionsSummary::getName));
         ledgerSummary.setTransactionsSummaries(transactionsSummaries);
         return ledgerSummary;
     }
 
-    private void processTransaction(List<Transaction> transactions, Total total,
-                                    Consumer<Transaction> transactionHandler) {
-        for (Transaction t : transactions) {
-            transactionHandler.accept(t);
-            TransactionType transactionType = TransactionType.getType(t.getTransactionType());
-            double amount = t.getAmount();
-
-            switch (transactionType) {
-                case INCOME:
-                    total.totalIncome += amount;
-                    break;
-                case EXPENSE:
-                    total.totalExpense += amount;
-                    break;
-            }
+    /**
+     * @param key "yyyy-MM" for MONTH, "yyyy-'W'ww" for WEEK, "yyyy" for YEAR, "yyyy-MM-dd" for DAY,
+     *            payer for PAYER and label name for LABEL
+     */
+    private static String getName(LedgerGrouping grouping, String key) {
+        switch (grouping) {
+            case MONTH:
+                return key.substring(0, 4) + " " + Month.of(Integer.parseInt(key.substring(5, 7))).name();
+            case WEEK:
+                return key.substring(0, 4) + " WEEK " + key.substring(6);
+            default:
+                return key;
         }
     }
 
     private static class Transactions {
         double income = 0.0;
         double expense = 0.0;
-        String meta = null;
-
-        void addIncome(double amount) {
-            this.income += amount;
-        }
-
-        void addExpense(double amount) {
-            this.expense += amount;
-        }
-
-        public double getIncome() {
-            return income;
-        }
-
-        public double getExpense() {
-            return expense;
-        }
-
-        public String getMeta() {
-            return meta;
-        }
 
-        public void setMeta(String meta) {
-            this.meta = meta;
+        void add(LedgerSum sum) {
+            switch (sum.getTransactionType()) {
+                case INCOME:
+                    this.income += sum.getAmount();
+                    break;
+                case EXPENSE:
+                    this.expense += sum.getAmount();
+                    break;
+            }
         }
     }
-
-    private static class Total {
-        double totalIncome = 0.0;
-        double totalExpense = 0.0;
-    }
 }
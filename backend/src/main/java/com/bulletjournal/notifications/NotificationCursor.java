@@ -0,0 +1,63 @@
+package com.bulletjournal.notifications;
+
+import com.bulletjournal.exceptions.BadRequestException;
+import com.bulletjournal.repository.models.Notification;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Opaque cursor of a notifications page, holding the sort key (actionable, updatedAt, id) of the
+ * last notification of the page, from which the next page is sought
+ */
+public final class NotificationCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private final boolean actionable;
+    private final Timestamp updatedAt;
+    private final Long id;
+
+    public NotificationCursor(boolean actionable, Timestamp updatedAt, Long id) {
+        this.actionable = actionable;
+        this.updatedAt = updatedAt;
+        this.id = id;
+    }
+
+    public static String encode(Notification notification) {
+        Timestamp updatedAt = notification.getUpdatedAt();
+        // nanos are kept, postgres timestamps are finer than milliseconds
+        String value = String.join(SEPARATOR, notification.isActionable() ? "1" : "0",
+                Long.toString(updatedAt.getTime()), Integer.toString(updatedAt.getNanos()),
+                Long.toString(notification.getId()));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static NotificationCursor decode(String cursor) {
+        try {
+            String[] values = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split(SEPARATOR);
+            if (values.length != 4) {
+                throw new IllegalArgumentException();
+            }
+            Timestamp updatedAt = new Timestamp(Long.parseLong(values[1]));
+            updatedAt.setNanos(Integer.parseInt(values[2]));
+            return new NotificationCursor("1".equals(values[0]), updatedAt, Long.parseLong(values[3]));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Invalid cursor " + cursor);
+        }
+    }
+
+    public boolean isActionable() {
+        return actionable;
+    }
+
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
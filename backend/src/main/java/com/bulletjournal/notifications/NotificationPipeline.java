@@ -0,0 +1,420 @@
+package com.bulletjournal.notifications;
+
+import com.bulletjournal.repository.models.Notification;
+import com.bulletjournal.util.CustomThreadFactory;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists notifications in the background, in batches
+ * <p>
+ * Notifications are split by target user into {@code workers} partitions, so that the notifications of a user
+ * are persisted in order by a single worker. The notifications of a partition are written ahead as outbox
+ * entries of {@link NotificationStore}, up to {@code batchSize} notifications each, and queued to its worker,
+ * which persists up to {@code batchSize} queued notifications at a time and deletes their entries in the same
+ * transaction. Failed batches are retried with exponential backoff, then entry by entry, so that an entry the
+ * store rejects does not hold back the others.
+ * <p>
+ * Partitions share {@code capacity}: {@link #submit} waits up to {@code offerTimeoutMillis} for room for all
+ * notifications, and otherwise leaves them in the outbox. Submissions larger than {@code capacity} are queued
+ * entry by entry as room frees up, and the entries not queued in time are left in the outbox. Entries left in
+ * the outbox, because queues were full, the store failed or the process restarted, are queued again every
+ * {@code recoveryIntervalMillis}, and dropped after failing {@link #MAX_ATTEMPTS} times.
+ */
+public class NotificationPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationPipeline.class);
+    private static final long POLL_TIMEOUT_MILLIS = 1000;
+    private static final int MAX_RETRIES = 3;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 200;
+    private static final int RECOVERY_PAGE_SIZE = 100;
+    private static final long LOG_STATS_INTERVAL = 100;
+
+    private final NotificationStore store;
+    private final List<BlockingQueue<Entry>> partitions;
+    private final Semaphore capacity;
+    private final int maxQueued;
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final ExecutorService executorService;
+    private final ScheduledExecutorService recoveryService;
+    /**
+     * Outbox entries queued or being persisted
+     */
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    /**
+     * Failed attempts of outbox entries left to recovery
+     */
+    private final Map<Long, Integer> attempts = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong latencyMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public NotificationPipeline(NotificationStore store, int workers, int capacity, int batchSize,
+                                long offerTimeoutMillis, long recoveryIntervalMillis) {
+        if (workers <= 0 || capacity <= 0 || batchSize <= 0 || recoveryIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid notification pipeline settings");
+        }
+        this.store = store;
+        this.partitions = new ArrayList<>(workers);
+        this.capacity = new Semaphore(capacity);
+        this.maxQueued = capacity;
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.executorService = Executors.newFixedThreadPool(workers, new CustomThreadFactory("notification-worker"));
+        for (int i = 0; i < workers; i++) {
+            BlockingQueue<Entry> partition = new LinkedBlockingQueue<>();
+            this.partitions.add(partition);
+            this.executorService.submit(() -> run(partition));
+        }
+        this.recoveryService = Executors.newSingleThreadScheduledExecutor(
+                new CustomThreadFactory("notification-recovery"));
+        this.recoveryService.scheduleWithFixedDelay(
+                this::recover, 0, recoveryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write notifications ahead into the outbox and queue them, waiting for room if the queues are full
+     *
+     * @return false if the notifications were left to be recovered from the outbox
+     */
+    public boolean submit(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return true;
+        }
+        Map<Integer, List<Notification>> byPartition = new TreeMap<>();
+        notifications.forEach(notification -> byPartition.computeIfAbsent(
+                getPartition(notification), k -> new ArrayList<>()).add(notification));
+        // entries have to fit into the queues
+        int entrySize = Math.min(this.batchSize, this.maxQueued);
+        List<List<Notification>> groups = new ArrayList<>();
+        for (List<Notification> partition : byPartition.values()) {
+            for (int i = 0; i < partition.size(); i += entrySize) {
+                groups.add(new ArrayList<>(partition.subList(i, Math.min(partition.size(), i + entrySize))));
+            }
+        }
+        List<Long> outboxIds;
+        try {
+            outboxIds = this.store.addToOutbox(groups);
+        } catch (Exception ex) {
+            LOGGER.error("Error on writing {} notifications into outbox", notifications.size(), ex);
+            outboxIds = Collections.nCopies(groups.size(), null);
+        }
+
+        List<Entry> entries = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            Long outboxId = outboxIds.get(i);
+            // recovery may have queued the entry already
+            if (outboxId == null || this.inFlight.add(outboxId)) {
+                entries.add(new Entry(outboxId, groups.get(i)));
+            }
+        }
+        int queued = offer(entries, this.offerTimeoutMillis);
+        if (queued == entries.size()) {
+            return true;
+        }
+        this.overflowed.incrementAndGet();
+        for (Entry entry : entries.subList(queued, entries.size())) {
+            if (entry.outboxId == null) {
+                this.failed.addAndGet(entry.notifications.size());
+                LOGGER.error("Notification queue full, dropped {} notifications", entry.notifications.size());
+            } else {
+                this.inFlight.remove(entry.outboxId);
+                LOGGER.warn("Notification queue full, left outbox entry {} to recovery", entry.outboxId);
+            }
+        }
+        return false;
+    }
+
+    private int getPartition(Notification notification) {
+        return Math.floorMod(notification.getTargetUser().hashCode(), this.partitions.size());
+    }
+
+    /**
+     * Queue all entries or none, or the first ones if they would never fit into the queues at once
+     *
+     * @return number of entries queued
+     */
+    private int offer(List<Entry> entries, long timeoutMillis) {
+        int count = entries.stream().mapToInt(entry -> entry.notifications.size()).sum();
+        if (count <= this.maxQueued) {
+            if (!acquire(count, timeoutMillis)) {
+                return 0;
+            }
+            entries.forEach(this::queue);
+            return entries.size();
+        }
+        // queue in order as the workers free up room, so that the notifications of a user stay in order
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (!acquire(entry.notifications.size(), Math.max(0, remainingMillis))) {
+                return i;
+            }
+            queue(entry);
+        }
+        return entries.size();
+    }
+
+    private boolean acquire(int count, long timeoutMillis) {
+        try {
+            return this.running && this.capacity.tryAcquire(count, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void queue(Entry entry) {
+        this.partitions.get(getPartition(entry.notifications.get(0))).add(entry);
+    }
+
+    /**
+     * Queue outbox entries that are neither queued nor being persisted
+     */
+    void recover() {
+        try {
+            Long afterId = 0L;
+            while (this.running) {
+                List<Pair<Long, List<Notification>>> page = this.store.getOutbox(afterId, RECOVERY_PAGE_SIZE);
+                if (page.isEmpty()) {
+                    return;
+                }
+                for (Pair<Long, List<Notification>> outbox : page) {
+                    Long outboxId = outbox.getLeft();
+                    afterId = outboxId;
+                    if (!this.inFlight.add(outboxId)) {
+                        continue;
+                    }
+                    if (!this.store.isInOutbox(outboxId)) {
+                        // persisted since it was read
+                        this.inFlight.remove(outboxId);
+                        continue;
+                    }
+                    if (this.attempts.getOrDefault(outboxId, 0) >= MAX_ATTEMPTS) {
+                        drop(outboxId, outbox.getRight());
+                        continue;
+                    }
+                    Entry entry = new Entry(outboxId, outbox.getRight());
+                    if (entry.notifications.size() > this.maxQueued) {
+                        // written ahead with a larger capacity, it would never fit into the queues
+                        persist(Collections.singletonList(entry));
+                        continue;
+                    }
+                    if (offer(Collections.singletonList(entry), 0) == 0) {
+                        this.inFlight.remove(outboxId);
+                        return;
+                    }
+                    this.recovered.incrementAndGet();
+                }
+            }
+        } catch (Exception ex) {
+            LOGGER.error("Error on recovering notifications from outbox", ex);
+        }
+    }
+
+    private void drop(Long outboxId, List<Notification> notifications) {
+        try {
+            this.store.deleteFromOutbox(Collections.singletonList(outboxId));
+            this.attempts.remove(outboxId);
+            this.failed.addAndGet(notifications.size());
+            LOGGER.error("Dropped {} notifications of outbox entry {} after {} attempts",
+                    notifications.size(), outboxId, MAX_ATTEMPTS);
+        } finally {
+            this.inFlight.remove(outboxId);
+        }
+    }
+
+    private void run(BlockingQueue<Entry> partition) {
+        List<Entry> batch = new ArrayList<>();
+        while (this.running || !partition.isEmpty()) {
+            int count = 0;
+            try {
+                Entry entry = partition.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                while (entry != null) {
+                    batch.add(entry);
+                    count += entry.notifications.size();
+                    entry = count < this.batchSize ? partition.poll() : null;
+                }
+                if (!batch.isEmpty()) {
+                    persist(batch);
+                }
+            } catch (Exception ex) {
+                LOGGER.error("Error on persisting notifications", ex);
+            } finally {
+                this.capacity.release(count);
+                batch.clear();
+            }
+        }
+    }
+
+    private void persist(List<Entry> batch) {
+        if (createWithRetries(batch)) {
+            complete(batch);
+            return;
+        }
+        if (batch.size() == 1) {
+            leaveToRecovery(batch.get(0));
+            return;
+        }
+        // persist entry by entry, so that an entry the store rejects does not hold back the others
+        for (Entry entry : batch) {
+            if (createWithRetries(Collections.singletonList(entry))) {
+                complete(Collections.singletonList(entry));
+            } else {
+                leaveToRecovery(entry);
+            }
+        }
+    }
+
+    private boolean createWithRetries(List<Entry> batch) {
+        List<Notification> notifications = new ArrayList<>();
+        List<Long> outboxIds = new ArrayList<>();
+        for (Entry entry : batch) {
+            notifications.addAll(entry.notifications);
+            if (entry.outboxId != null) {
+                outboxIds.add(entry.outboxId);
+            }
+        }
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                this.store.createNotifications(notifications, outboxIds);
+                return true;
+            } catch (Exception ex) {
+                if (attempt >= MAX_RETRIES) {
+                    LOGGER.error("Failed to persist {} notifications", notifications.size(), ex);
+                    return false;
+                }
+                LOGGER.warn("Failed to persist {} notifications: {}", notifications.size(), ex.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoff *= 2;
+        }
+    }
+
+    private void leaveToRecovery(Entry entry) {
+        if (entry.outboxId == null) {
+            this.failed.addAndGet(entry.notifications.size());
+            LOGGER.error("Dropped {} notifications", entry.notifications.size());
+            return;
+        }
+        this.attempts.merge(entry.outboxId, 1, Integer::sum);
+        this.inFlight.remove(entry.outboxId);
+    }
+
+    private void complete(List<Entry> batch) {
+        long now = System.nanoTime();
+        int count = 0;
+        for (Entry entry : batch) {
+            long latency = TimeUnit.NANOSECONDS.toMillis(now - entry.queuedAt);
+            this.latencyMillis.addAndGet(latency * entry.notifications.size());
+            this.maxLatencyMillis.accumulateAndGet(latency, Math::max);
+            count += entry.notifications.size();
+            if (entry.outboxId != null) {
+                this.attempts.remove(entry.outboxId);
+                this.inFlight.remove(entry.outboxId);
+            }
+        }
+        this.persisted.addAndGet(count);
+        if (this.batches.incrementAndGet() % LOG_STATS_INTERVAL == 0) {
+            LOGGER.info("NotificationPipeline queued: {}, batches: {}, average batch size: {}, "
+                            + "average latency: {} ms, max latency: {} ms, overflowed: {}, recovered: {}, failed: {}",
+                    getQueueDepth(), this.batches.get(), getAverageBatchSize(), getAverageLatencyMillis(),
+                    this.maxLatencyMillis.get(), this.overflowed.get(), this.recovered.get(), this.failed.get());
+        }
+    }
+
+    /**
+     * @return notifications queued
+     */
+    public int getQueueDepth() {
+        return this.maxQueued - this.capacity.availablePermits();
+    }
+
+    public long getPersisted() {
+        return this.persisted.get();
+    }
+
+    public long getBatches() {
+        return this.batches.get();
+    }
+
+    public long getAverageBatchSize() {
+        long batches = this.batches.get();
+        return batches == 0 ? 0 : this.persisted.get() / batches;
+    }
+
+    /**
+     * @return average time from queueing to persisting a notification
+     */
+    public long getAverageLatencyMillis() {
+        long persisted = this.persisted.get();
+        return persisted == 0 ? 0 : this.latencyMillis.get() / persisted;
+    }
+
+    public long getMaxLatencyMillis() {
+        return this.maxLatencyMillis.get();
+    }
+
+    public long getOverflowed() {
+        return this.overflowed.get();
+    }
+
+    public long getRecovered() {
+        return this.recovered.get();
+    }
+
+    public long getFailed() {
+        return this.failed.get();
+    }
+
+    /**
+     * Stop accepting notifications and persist the queued ones, the rest stay in the outbox
+     */
+    public void shutdown(long timeoutMillis) {
+        this.running = false;
+        this.recoveryService.shutdownNow();
+        this.executorService.shutdown();
+        try {
+            if (!this.executorService.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("NotificationPipeline stopped with {} notifications queued", getQueueDepth());
+                this.executorService.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Notifications of the same partition written ahead together
+     */
+    private static class Entry {
+        final Long outboxId;
+        final List<Notification> notifications;
+        final long queuedAt = System.nanoTime();
+
+        Entry(Long outboxId, List<Notification> notifications) {
+            this.outboxId = outboxId;
+            this.notifications = notifications;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.bulletjournal.notifications;
 
+import com.bulletjournal.config.NotificationConfig;
 import com.bulletjournal.repository.NotificationDaoJpa;
-import com.bulletjournal.util.CustomThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,28 +9,31 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Turns informed events into notifications, persisted by a {@link NotificationPipeline}
+ */
 @Service
 public class NotificationService {
     private static final Logger LOGGER = LoggerFactory.getLogger(NotificationService.class);
-    private final ExecutorService executorService;
-    private final BlockingQueue<Informed> eventQueue;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
     private final NotificationDaoJpa notificationDaoJpa;
-    private volatile boolean stop = false;
+    private final NotificationConfig notificationConfig;
+    private NotificationPipeline pipeline;
 
     @Autowired
-    public NotificationService(NotificationDaoJpa notificationDaoJpa) {
+    public NotificationService(NotificationDaoJpa notificationDaoJpa, NotificationConfig notificationConfig) {
         this.notificationDaoJpa = notificationDaoJpa;
-        this.executorService = Executors.newSingleThreadExecutor(new CustomThreadFactory("notification-service"));
-        this.eventQueue = new LinkedBlockingQueue<>();
+        this.notificationConfig = notificationConfig;
     }
 
     @PostConstruct
     public void postConstruct() {
-        this.executorService.submit(() -> this.handleNotifications());
+        NotificationConfig.Pipeline config = this.notificationConfig.getPipeline();
+        this.pipeline = new NotificationPipeline(this.notificationDaoJpa, config.getWorkers(),
+                config.getQueueCapacity(), config.getBatchSize(), config.getOfferTimeoutMillis(),
+                TimeUnit.SECONDS.toMillis(config.getRecoveryIntervalInSeconds()));
     }
 
     public void inform(Informed informed) {
@@ -38,44 +41,17 @@ public class NotificationService {
         if (informed.getEvents().isEmpty()) {
             return;
         }
-        this.eventQueue.offer(informed);
+        this.pipeline.submit(informed.toNotifications());
     }
 
-    public void handleNotifications() {
-        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
-        List<Informed> events = new ArrayList<>();
-
-        while (!stop) {
-            try {
-                // waiting until an element becomes available
-                events.add(this.eventQueue.take());
-            } catch (Exception ex) {
-                LOGGER.error("Error on taking from eventQueue", ex);
-            }
-            try {
-                this.eventQueue.drainTo(events);
-            } catch (Exception ex) {
-                LOGGER.error("Error on draining from eventQueue", ex);
-            }
-            try {
-                this.notificationDaoJpa.create(events);
-            } catch (Exception ex) {
-                LOGGER.error("Error on creating records in notificationDaoJpa", ex);
-            }
-            events = new ArrayList<>();
-        }
+    public NotificationPipeline getPipeline() {
+        return this.pipeline;
     }
 
     @PreDestroy
     public void preDestroy() {
-        this.stop = true;
-        if (executorService != null) {
-            try {
-                // wait 5 seconds for closing all threads
-                executorService.awaitTermination(5, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        if (this.pipeline != null) {
+            this.pipeline.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
         }
     }
 }
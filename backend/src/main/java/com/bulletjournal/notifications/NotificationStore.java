@@ -0,0 +1,34 @@
+package com.bulletjournal.notifications;
+
+import com.bulletjournal.repository.models.Notification;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Where {@link NotificationPipeline} writes notifications ahead and persists them
+ */
+public interface NotificationStore {
+
+    /**
+     * Write entries of notifications into the outbox
+     *
+     * @return outbox id of every entry
+     */
+    List<Long> addToOutbox(List<List<Notification>> entries);
+
+    /**
+     * @return outbox id and notifications of entries after afterId, in id order
+     */
+    List<Pair<Long, List<Notification>>> getOutbox(Long afterId, int size);
+
+    boolean isInOutbox(Long outboxId);
+
+    void deleteFromOutbox(Collection<Long> outboxIds);
+
+    /**
+     * Persist notifications and delete the outbox entries they come from, atomically
+     */
+    void createNotifications(List<Notification> notifications, Collection<Long> outboxIds);
+}
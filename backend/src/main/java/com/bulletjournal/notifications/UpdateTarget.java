@@ -0,0 +1,22 @@
+package com.bulletjournal.notifications;
+
+/**
+ * Targets of {@link com.bulletjournal.controller.SystemController#getUpdates}
+ */
+public enum UpdateTarget {
+
+    PROJECTS("projectsEtag"),
+    NOTIFICATIONS("notificationsEtag"),
+    GROUPS("groupsEtag"),
+    TASK_REMINDERS("taskReminders");
+
+    private final String name;
+
+    UpdateTarget(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
@@ -0,0 +1,152 @@
+package com.bulletjournal.notifications;
+
+import com.bulletjournal.repository.utils.DaoHelper;
+import com.bulletjournal.util.CustomThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes changed {@link UpdateTarget}s to users subscribed through server-sent events,
+ * so that clients only call {@link com.bulletjournal.controller.SystemController#getUpdates}
+ * for targets that changed instead of polling it.
+ * <p>
+ * Changes published inside a transaction are sent after it commits. Changes published
+ * for the same user before they are sent get coalesced into one event.
+ */
+@Service
+public class UpdatesPublisher {
+
+    public static final String EVENT_NAME = "update";
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpdatesPublisher.class);
+    private static final long TIMEOUT_IN_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final ExecutorService executorService;
+    private final Supplier<SseEmitter> emitterFactory;
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Map<String, Set<UpdateTarget>> pending = new ConcurrentHashMap<>();
+
+    public UpdatesPublisher() {
+        this(Executors.newSingleThreadExecutor(new CustomThreadFactory("updates-publisher")),
+                () -> new SseEmitter(TIMEOUT_IN_MILLIS));
+    }
+
+    UpdatesPublisher(ExecutorService executorService, Supplier<SseEmitter> emitterFactory) {
+        this.executorService = executorService;
+        this.emitterFactory = emitterFactory;
+    }
+
+    /**
+     * Subscribe to user's updates. The first event contains all targets, so that
+     * a reconnecting client catches up on changes made while it was not subscribed.
+     */
+    public SseEmitter subscribe(String username) {
+        SseEmitter emitter = this.emitterFactory.get();
+        emitter.onCompletion(() -> unsubscribe(username, emitter));
+        emitter.onTimeout(() -> unsubscribe(username, emitter));
+        emitter.onError(e -> unsubscribe(username, emitter));
+        this.subscribers.computeIfAbsent(username, k -> ConcurrentHashMap.newKeySet()).add(emitter);
+        send(username, emitter, EnumSet.allOf(UpdateTarget.class));
+        return emitter;
+    }
+
+    private void unsubscribe(String username, SseEmitter emitter) {
+        this.subscribers.computeIfPresent(username, (k, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    public boolean isSubscribed(String username) {
+        return this.subscribers.containsKey(username);
+    }
+
+    public void publish(String username, UpdateTarget... targets) {
+        publish(Collections.singletonList(username), targets);
+    }
+
+    /**
+     * Publish changed targets of users, after the surrounding transaction commits if there is one
+     */
+    public void publish(Collection<String> usernames, UpdateTarget... targets) {
+        List<String> subscribed = usernames.stream()
+                .filter(this.subscribers::containsKey)
+                .distinct()
+                .collect(Collectors.toList());
+        if (subscribed.isEmpty()) {
+            return;
+        }
+        DaoHelper.afterCommit(() -> publishNow(subscribed, targets));
+    }
+
+    /**
+     * Publish changed targets of a user right away, for callers outside a transaction
+     * or inside a transaction synchronization callback
+     */
+    public void publishNow(String username, UpdateTarget... targets) {
+        if (this.subscribers.containsKey(username)) {
+            publishNow(Collections.singletonList(username), targets);
+        }
+    }
+
+    private void publishNow(Collection<String> usernames, UpdateTarget... targets) {
+        for (String username : usernames) {
+            boolean[] scheduled = new boolean[1];
+            this.pending.compute(username, (k, changed) -> {
+                if (changed == null) {
+                    changed = EnumSet.noneOf(UpdateTarget.class);
+                    scheduled[0] = true;
+                }
+                changed.addAll(Arrays.asList(targets));
+                return changed;
+            });
+            if (scheduled[0]) {
+                this.executorService.execute(() -> flush(username));
+            }
+        }
+    }
+
+    private void flush(String username) {
+        Set<UpdateTarget> changed = this.pending.remove(username);
+        Set<SseEmitter> emitters = this.subscribers.get(username);
+        if (changed == null || emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            send(username, emitter, changed);
+        }
+    }
+
+    /**
+     * Send changed targets, dropping the emitter if its connection is gone
+     */
+    private void send(String username, SseEmitter emitter, Set<UpdateTarget> changed) {
+        String data = changed.stream().map(UpdateTarget::getName).collect(Collectors.joining(","));
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(data));
+        } catch (IOException | IllegalStateException ex) {
+            LOGGER.debug("Sending updates failed", ex);
+            unsubscribe(username, emitter);
+            emitter.completeWithError(ex);
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        this.subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        this.executorService.shutdown();
+        try {
+            this.executorService.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.config.ContentRevisionConfig;
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.controller.models.Revision;
+import com.bulletjournal.exceptions.BadRequestException;
+import com.bulletjournal.repository.models.ContentModel;
+import com.bulletjournal.repository.models.ContentRevision;
+import com.bulletjournal.repository.models.NoteContent;
+import com.bulletjournal.repository.models.TaskContent;
+import com.bulletjournal.repository.models.TransactionContent;
+import com.bulletjournal.repository.utils.DaoHelper;
+import com.bulletjournal.util.ContentDiffTool;
+import com.google.gson.Gson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Revisions of contents in content_revisions, one row per revision.
+ * <p>
+ * - A revision holds the diff from the previous revision. Revisions whose id is a multiple of
+ * checkpointInterval, and the oldest revision kept, also hold their full text, so any revision
+ * is rebuilt from at most checkpointInterval rows.
+ * - An edit appends a row, and deletes the revisions beyond maxRevisionNumber. Appending locks the
+ * content's row, so concurrent edits of a content take the next revision ids in turn.
+ * - Revisions still in the legacy ContentModel.revisions JSON are moved here on first access.
+ * - With revision.coalesceWindowSeconds set, edits by the same user within the window are kept
+ * pending in memory and become one revision, diffed once when the window closes, another user
+ * edits, or a revision's text is read. Listing revisions shows a pending revision as the next one
+ * without adding it. {@link com.bulletjournal.daemon.ContentRevisionFlusher} flushes closed windows.
+ * - Pending revisions change only once the transaction changing the content commits, and a pending
+ * revision whose flush rolls back stays pending.
+ * - Pending revisions are per instance, and the diff of one is computed against the text the
+ * instance last saw. With more than one instance serving edits, set revision.coalesceWindowSeconds
+ * to 0: otherwise instances diff against different base texts, and as applying a diff is fuzzy,
+ * replaying the revisions silently gives wrong texts.
+ */
+@Repository
+public class ContentRevisionDaoJpa {
+
+    private static final Gson GSON = new Gson();
+    private static final Map<String, Class<? extends ContentModel>> CONTENT_CLASSES = new HashMap<>();
+
+    static {
+        CONTENT_CLASSES.put(ContentType.TASK.name(), TaskContent.class);
+        CONTENT_CLASSES.put(ContentType.NOTE.name(), NoteContent.class);
+        CONTENT_CLASSES.put(ContentType.TRANSACTION.name(), TransactionContent.class);
+    }
+
+    /**
+     * Pending revision by content key, replaced rather than updated so that flushing one removed
+     * from the map sees all its edits, and compared by identity to detect concurrent changes
+     */
+    private final Map<String, PendingRevision> pendingRevisions = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ContentRevisionRepository contentRevisionRepository;
+    @Autowired
+    private ContentRevisionConfig revisionConfig;
+    @Autowired
+    private ContentDiffTool contentDiffTool;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Add the revision changing the content's current text to newText, or merge it into the
+     * requester's pending revision of the content
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void addRevision(ContentType contentType, ContentModel content, String newText, String requester) {
+        migrateLegacyRevisions(contentType, content);
+        String type = contentType.name();
+        long now = System.currentTimeMillis();
+        long coalesceWindowMillis = getCoalesceWindowMillis();
+        if (coalesceWindowMillis <= 0) {
+            String diff = this.contentDiffTool.computeDiff(content.getText(), newText);
+            append(type, content.getId(), diff, newText, requester, now);
+            return;
+        }
+
+        Long contentId = content.getId();
+        String key = getKey(type, contentId);
+        String oldText = content.getText();
+        PendingRevision pending = this.pendingRevisions.get(key);
+        PendingRevision expected;
+        PendingRevision next;
+        if (pending != null && pending.username.equals(requester) && now - pending.startedAt < coalesceWindowMillis) {
+            expected = pending;
+            next = new PendingRevision(pending, newText, now);
+        } else {
+            if (pending != null && this.pendingRevisions.remove(key, pending)) {
+                DaoHelper.afterRollback(() -> restorePendingRevision(key, pending));
+                flush(pending);
+            }
+            expected = null;
+            next = new PendingRevision(type, contentId, requester, oldText, newText, now);
+        }
+        // a rolled back edit leaves the pending revision as it was
+        DaoHelper.afterCommit(() -> this.pendingRevisions.compute(key, (k, current) -> {
+            if (current == expected) {
+                return next;
+            }
+            // changed by a concurrent transaction, keep the revision chained on the last text added
+            if (current == null) {
+                return new PendingRevision(type, contentId, requester, expected.text, newText, now);
+            }
+            return new PendingRevision(current, newText, now);
+        }));
+    }
+
+    /**
+     * Add the revision applying a client's diff to revision baseRevisionId of the content, which must be
+     * its latest revision, storing diff as is
+     *
+     * @param baseRevisionId 0 for a content without revisions
+     * @return text of the new revision
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public String addRevision(ContentType contentType, ContentModel content, Long baseRevisionId, String diff,
+                              String requester) {
+        migrateLegacyRevisions(contentType, content);
+        String type = contentType.name();
+        // the base revision has to stay the latest one until the diff is added
+        lockContent(type, content.getId());
+        flushPendingRevision(type, content.getId());
+        ContentRevision last = this.contentRevisionRepository
+                .findFirstByContentTypeAndContentIdOrderByRevisionIdDesc(type, content.getId());
+        long lastRevisionId = last == null ? 0 : last.getRevisionId();
+        if (baseRevisionId != lastRevisionId) {
+            throw new BadRequestException("Stale baseRevisionId: " + baseRevisionId + " for content: "
+                    + content.getId() + ", latest revision is " + lastRevisionId);
+        }
+        // the latest revision is the current text
+        String newText = this.contentDiffTool.applyDiffExactly(content.getText(), diff);
+        if (newText == null) {
+            throw new BadRequestException("Diff does not apply to content: " + content.getId());
+        }
+        append(type, content.getId(), diff, newText, requester, System.currentTimeMillis());
+        return newText;
+    }
+
+    /**
+     * @return text of the content at revisionId
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public String getRevisionText(ContentType contentType, ContentModel content, Long revisionId) {
+        migrateLegacyRevisions(contentType, content);
+        flushPendingRevision(contentType.name(), content.getId());
+        List<ContentRevision> revisions = getCheckpointedRevisions(contentType.name(), content.getId(), revisionId);
+        if (revisions.isEmpty() || !revisions.get(revisions.size() - 1).getRevisionId().equals(revisionId)) {
+            throw new BadRequestException("Invalid revisionId: " + revisionId + " for content: " + content.getId());
+        }
+        return replay(revisions);
+    }
+
+    /**
+     * Get revisions of contents without their diffs, including pending revisions
+     *
+     * @return Map<Long, List<Revision>> - revisions in id order by content id
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public Map<Long, List<Revision>> getRevisions(ContentType contentType, List<? extends ContentModel> contents) {
+        Map<Long, List<Revision>> revisions = new HashMap<>();
+        List<Long> contentIds = new ArrayList<>();
+        for (ContentModel content : contents) {
+            revisions.put(content.getId(), new ArrayList<>());
+            if (content.getRevisions() == null) {
+                contentIds.add(content.getId());
+                continue;
+            }
+            for (Revision revision : GSON.fromJson(content.getRevisions(), Revision[].class)) {
+                revision.setDiff(null);
+                revisions.get(content.getId()).add(revision);
+            }
+        }
+        if (!contentIds.isEmpty()) {
+            this.contentRevisionRepository.findByContentTypeAndContentIdInOrderByRevisionIdAsc(
+                    contentType.name(), contentIds).forEach(info -> revisions.get(info.getContentId()).add(
+                    new Revision(info.getRevisionId(), null, info.getCreatedAt(), info.getUsername())));
+        }
+        revisions.forEach((contentId, contentRevisions) -> {
+            PendingRevision pending = getPendingRevision(contentType.name(), contentId);
+            if (pending != null) {
+                long lastRevisionId = contentRevisions.isEmpty()
+                        ? 0 : contentRevisions.get(contentRevisions.size() - 1).getId();
+                contentRevisions.add(new Revision(lastRevisionId + 1, null, pending.updatedAt, pending.username));
+            }
+        });
+        return revisions;
+    }
+
+    /**
+     * Count revisions of contents whose revisions are not in the legacy JSON, including pending revisions
+     *
+     * @return Map<Long, Integer> - revision count by content id, for contents with revisions
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public Map<Long, Integer> getRevisionCounts(ContentType contentType, List<Long> contentIds) {
+        if (contentIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Integer> counts = this.contentRevisionRepository.countByContentIds(contentType.name(), contentIds)
+                .stream().collect(Collectors.toMap(ContentRevisionRepository.RevisionCount::getContentId,
+                        count -> count.getRevisionCount().intValue(), (a, b) -> a, HashMap::new));
+        contentIds.stream().filter(contentId -> getPendingRevision(contentType.name(), contentId) != null)
+                .forEach(contentId -> counts.merge(contentId, 1, Integer::sum));
+        return counts;
+    }
+
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void deleteRevisions(ContentType contentType, Long contentId) {
+        String key = getKey(contentType.name(), contentId);
+        DaoHelper.afterCommit(() -> this.pendingRevisions.remove(key));
+        this.contentRevisionRepository.deleteByContentIds(contentType.name(), Collections.singletonList(contentId));
+    }
+
+    /**
+     * Delete a chunk of revisions whose contents are gone in its own transaction
+     *
+     * @return number of revisions deleted, less than limit once none is left
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public int deleteOrphanRevisions(int limit) {
+        return this.contentRevisionRepository.deleteChunkOfOrphans(limit);
+    }
+
+    /**
+     * @return keys of pending revisions whose window closed
+     */
+    public List<String> getClosedPendingRevisions() {
+        long startedBefore = System.currentTimeMillis() - getCoalesceWindowMillis();
+        return this.pendingRevisions.entrySet().stream()
+                .filter(e -> e.getValue().startedAt <= startedBefore)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Add the pending revision of key, if still pending. It is pending again if the transaction rolls back.
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void flushPendingRevision(String key) {
+        PendingRevision pending = this.pendingRevisions.remove(key);
+        if (pending != null) {
+            DaoHelper.afterRollback(() -> restorePendingRevision(key, pending));
+            flush(pending);
+        }
+    }
+
+    public List<String> getPendingRevisionKeys() {
+        return new ArrayList<>(this.pendingRevisions.keySet());
+    }
+
+    private void flushPendingRevision(String type, Long contentId) {
+        flushPendingRevision(getKey(type, contentId));
+    }
+
+    /**
+     * @return pending revision of the content, null if none or if it does not change the text
+     */
+    private PendingRevision getPendingRevision(String type, Long contentId) {
+        PendingRevision pending = this.pendingRevisions.get(getKey(type, contentId));
+        return pending == null || Objects.equals(pending.baseText, pending.text) ? null : pending;
+    }
+
+    /**
+     * Put back a pending revision whose flush rolled back, in front of the edits pending since
+     */
+    private void restorePendingRevision(String key, PendingRevision pending) {
+        this.pendingRevisions.merge(key, pending,
+                (current, restored) -> new PendingRevision(restored, current.text, current.updatedAt));
+    }
+
+    private void flush(PendingRevision pending) {
+        if (Objects.equals(pending.baseText, pending.text)) {
+            return;
+        }
+        String diff = this.contentDiffTool.computeDiff(pending.baseText, pending.text);
+        append(pending.contentType, pending.contentId, diff, pending.text, pending.username, pending.updatedAt);
+    }
+
+    private void append(String type, Long contentId, String diff, String newText, String username, long createdAt) {
+        lockContent(type, contentId);
+        ContentRevision last = this.contentRevisionRepository
+                .findFirstByContentTypeAndContentIdOrderByRevisionIdDesc(type, contentId);
+        long revisionId = last == null ? 1 : last.getRevisionId() + 1;
+        ContentRevision revision = new ContentRevision(type, contentId, revisionId, createdAt, username, diff);
+        if (last == null || isCheckpoint(revisionId)) {
+            revision.setSnapshot(newText);
+        }
+        this.contentRevisionRepository.save(revision);
+
+        long oldestKept = revisionId - this.revisionConfig.getMaxRevisionNumber() + 1;
+        if (oldestKept > 1) {
+            trim(type, contentId, oldestKept);
+        }
+    }
+
+    /**
+     * Lock the row of the content until the transaction ends, so the last revision read stays the last one
+     */
+    private void lockContent(String type, Long contentId) {
+        this.entityManager.find(CONTENT_CLASSES.get(type), contentId, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    /**
+     * Delete revisions before oldestKept, keeping the full text of oldestKept
+     */
+    private void trim(String type, Long contentId, long oldestKept) {
+        ContentRevision oldest = this.contentRevisionRepository
+                .findFirstByContentTypeAndContentIdOrderByRevisionIdAsc(type, contentId);
+        if (oldest.getRevisionId() >= oldestKept) {
+            return;
+        }
+        List<ContentRevision> revisions = getCheckpointedRevisions(type, contentId, oldestKept);
+        ContentRevision revision = revisions.get(revisions.size() - 1);
+        if (!revision.hasSnapshot()) {
+            revision.setSnapshot(replay(revisions));
+            this.contentRevisionRepository.save(revision);
+        }
+        this.contentRevisionRepository.deleteUpTo(type, contentId, oldestKept - 1);
+    }
+
+    /**
+     * @return revisions up to revisionId, starting from a full text
+     */
+    private List<ContentRevision> getCheckpointedRevisions(String type, Long contentId, Long revisionId) {
+        long from = Math.max(1, revisionId - this.revisionConfig.getCheckpointInterval() + 1);
+        return this.contentRevisionRepository.findByContentTypeAndContentIdAndRevisionIdBetweenOrderByRevisionIdAsc(
+                type, contentId, from, revisionId);
+    }
+
+    /**
+     * @return text of the last revision, from the last full text and the diffs after it
+     */
+    private String replay(List<ContentRevision> revisions) {
+        int start = revisions.size() - 1;
+        while (!revisions.get(start).hasSnapshot()) {
+            start--;
+        }
+        String text = revisions.get(start).getSnapshot();
+        for (int i = start + 1; i < revisions.size(); i++) {
+            text = this.contentDiffTool.applyDiff(text, revisions.get(i).getDiff());
+        }
+        return text;
+    }
+
+    private long getCoalesceWindowMillis() {
+        return TimeUnit.SECONDS.toMillis(this.revisionConfig.getCoalesceWindowSeconds());
+    }
+
+    static String getKey(String type, Long contentId) {
+        return type + '@' + contentId;
+    }
+
+    private boolean isCheckpoint(long revisionId) {
+        return revisionId % this.revisionConfig.getCheckpointInterval() == 0;
+    }
+
+    private void migrateLegacyRevisions(ContentType contentType, ContentModel content) {
+        if (content.getRevisions() == null) {
+            return;
+        }
+        Revision[] legacyRevisions = GSON.fromJson(content.getRevisions(), Revision[].class);
+        List<ContentRevision> revisions = new ArrayList<>();
+        String text = content.getBaseText();
+        for (Revision legacyRevision : legacyRevisions) {
+            text = this.contentDiffTool.applyDiff(text, legacyRevision.getDiff());
+            ContentRevision revision = new ContentRevision(contentType.name(), content.getId(),
+                    legacyRevision.getId(), legacyRevision.getCreatedAt(), legacyRevision.getUser(),
+                    legacyRevision.getDiff());
+            if (revisions.isEmpty() || isCheckpoint(legacyRevision.getId())) {
+                revision.setSnapshot(text);
+            }
+            revisions.add(revision);
+        }
+        this.contentRevisionRepository.saveAll(revisions);
+        content.setRevisions(null);
+        content.setBaseText(null);
+    }
+
+    /**
+     * Edits by one user since the content's last revision
+     */
+    private static final class PendingRevision {
+        private final String contentType;
+        private final Long contentId;
+        private final String username;
+        private final String baseText;
+        private final String text;
+        private final long startedAt;
+        private final long updatedAt;
+
+        private PendingRevision(String contentType, Long contentId, String username, String baseText,
+                                String text, long updatedAt) {
+            this.contentType = contentType;
+            this.contentId = contentId;
+            this.username = username;
+            this.baseText = baseText;
+            this.text = text;
+            this.startedAt = updatedAt;
+            this.updatedAt = updatedAt;
+        }
+
+        private PendingRevision(PendingRevision pending, String text, long updatedAt) {
+            this.contentType = pending.contentType;
+            this.contentId = pending.contentId;
+            this.username = pending.username;
+            this.baseText = pending.baseText;
+            this.text = text;
+            this.startedAt = pending.startedAt;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.bulletjournal.repository;
+
+/**
+ * Projection of a {@link com.bulletjournal.repository.models.ContentRevision} without its diff and snapshot
+ */
+public interface ContentRevisionInfo {
+
+    Long getContentId();
+
+    Long getRevisionId();
+
+    Long getCreatedAt();
+
+    String getUsername();
+}
@@ -0,0 +1,63 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.repository.models.ContentRevision;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ContentRevisionRepository extends JpaRepository<ContentRevision, Long> {
+
+    List<ContentRevision> findByContentTypeAndContentIdAndRevisionIdBetweenOrderByRevisionIdAsc(
+            String contentType, Long contentId, Long fromRevisionId, Long toRevisionId);
+
+    ContentRevision findFirstByContentTypeAndContentIdOrderByRevisionIdDesc(String contentType, Long contentId);
+
+    ContentRevision findFirstByContentTypeAndContentIdOrderByRevisionIdAsc(String contentType, Long contentId);
+
+    List<ContentRevisionInfo> findByContentTypeAndContentIdInOrderByRevisionIdAsc(
+            String contentType, Collection<Long> contentIds);
+
+    @Query("SELECT r.contentId AS contentId, COUNT(r) AS revisionCount FROM ContentRevision r " +
+            "WHERE r.contentType = :contentType AND r.contentId IN (:contentIds) GROUP BY r.contentId")
+    List<RevisionCount> countByContentIds(@Param("contentType") String contentType,
+                                          @Param("contentIds") Collection<Long> contentIds);
+
+    @Modifying
+    @Query("DELETE FROM ContentRevision r WHERE r.contentType = :contentType AND r.contentId = :contentId " +
+            "AND r.revisionId <= :revisionId")
+    int deleteUpTo(@Param("contentType") String contentType, @Param("contentId") Long contentId,
+                   @Param("revisionId") Long revisionId);
+
+    @Modifying
+    @Query("DELETE FROM ContentRevision r WHERE r.contentType = :contentType AND r.contentId IN (:contentIds)")
+    void deleteByContentIds(@Param("contentType") String contentType,
+                            @Param("contentIds") Collection<Long> contentIds);
+
+    /**
+     * Delete up to limit revisions of contents that no longer exist, e.g. deleted with their project item
+     *
+     * @return number of revisions deleted
+     */
+    @Modifying
+    @Query(value = "DELETE FROM content_revisions WHERE id IN (SELECT r.id FROM content_revisions r WHERE " +
+            "(r.content_type = 'TASK' AND NOT EXISTS (SELECT 1 FROM task_contents c WHERE c.id = r.content_id)) OR " +
+            "(r.content_type = 'NOTE' AND NOT EXISTS (SELECT 1 FROM note_contents c WHERE c.id = r.content_id)) OR " +
+            "(r.content_type = 'TRANSACTION' AND " +
+            "NOT EXISTS (SELECT 1 FROM transaction_contents c WHERE c.id = r.content_id)) " +
+            "LIMIT :limit)",
+            nativeQuery = true)
+    int deleteChunkOfOrphans(@Param("limit") int limit);
+
+    interface RevisionCount {
+
+        Long getContentId();
+
+        Long getRevisionCount();
+    }
+}
@@ -0,0 +1,26 @@
+package com.bulletjournal.repository;
+
+import java.sql.Timestamp;
+
+/**
+ * Projection of a {@link com.bulletjournal.repository.models.ContentModel} with the start of its text only
+ */
+public interface ContentSummaryInfo {
+
+    Long getId();
+
+    String getOwner();
+
+    Timestamp getCreatedAt();
+
+    Timestamp getUpdatedAt();
+
+    String getPreview();
+
+    Integer getTextLength();
+
+    /**
+     * @return whether its revisions are still in the legacy revisions JSON
+     */
+    Boolean getLegacyRevisions();
+}
@@ -1,11 +1,13 @@
 package com.bulletjournal.repository;
 
+import com.bulletjournal.authz.AuthorizationIndex;
 import com.bulletjournal.authz.AuthorizationService;
 import com.bulletjournal.authz.Operation;
 import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.controller.models.AddUserGroupParams;
 import com.bulletjournal.controller.models.RemoveUserGroupParams;
 import com.bulletjournal.controller.models.UpdateGroupParams;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.exceptions.BadRequestException;
 import com.bulletjournal.exceptions.ResourceAlreadyExistException;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
@@ -44,6 +46,12 @@ public class GroupDaoJpa {
     @Autowired
     private AuthorizationService authorizationService;
 
+    @Autowired
+    private AuthorizationIndex authorizationIndex;
+
+    @Autowired
+    private EtagRegistry etagRegistry;
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Group create(String name, String owner) {
         User user = this.userDaoJpa.getByName(owner);
@@ -57,6 +65,8 @@ public class GroupDaoJpa {
         }
         group = this.groupRepository.save(group);
         this.userGroupRepository.save(new UserGroup(user, group, true));
+        this.authorizationIndex.invalidateGroups(owner);
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_GROUPS, owner);
         return group;
     }
 
@@ -80,10 +90,12 @@ public class GroupDaoJpa {
                             " and it cannot be deleted");
         }
 
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_GROUPS, DaoHelper.getUsernames(group));
         List<Event> events = new ArrayList<>();
         for (UserGroup userGroup : group.getUsers()) {
             this.userGroupRepository.delete(userGroup);
             String targetUser = userGroup.getUser().getName();
+            this.authorizationIndex.invalidateGroups(targetUser);
             if (!Objects.equals(targetUser, requester)) {
                 events.add(new Event(targetUser, userGroup.getGroup().getId(), userGroup.getGroup().getName()));
             }
@@ -113,6 +125,7 @@ public class GroupDaoJpa {
 
         DaoHelper.updateIfPresent(
                 updateGroupParams.hasName(), updateGroupParams.getName(), (value) -> group.setName(value));
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_GROUPS, DaoHelper.getUsernames(group));
 
         return this.groupRepository.save(group);
     }
@@ -175,6 +188,10 @@ public class GroupDaoJpa {
             User user = this.userDaoJpa.getByName(username);
             events.add(new Event(username, groupId, group.getName()));
             this.userGroupRepository.save(new UserGroup(user, group, false));
+            this.authorizationIndex.invalidateGroups(username);
+            this.etagRegistry.bump(EtagRegistry.Scope.USER_GROUPS, DaoHelper.getUsernames(group));
+            this.etagRegistry.bump(EtagRegistry.Scope.USER_GROUPS, username);
+            this.etagRegistry.bump(EtagRegistry.Scope.USER_PROJECTS, username);
         }
 
         return new JoinGroupEvent(events, owner);
@@ -198,6 +215,10 @@ public class GroupDaoJpa {
             return null;
         }
         this.userGroupRepository.save(new UserGroup(user, group, false));
+        this.authorizationIndex.invalidateGroups(username);
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_GROUPS, DaoHelper.getUsernames(group));
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_GROUPS, username);
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_PROJECTS, username);
 
         return new JoinGroupEvent(new Event(username, groupId, group.getName()), owner);
     }
@@ -234,6 +255,10 @@ public class GroupDaoJpa {
                     .orElseThrow(() ->
                             new ResourceNotFoundException("UserGroupKey not found"));
             this.userGroupRepository.delete(userGroup);
+            this.authorizationIndex.invalidateGroups(username);
+            this.etagRegistry.bump(EtagRegistry.Scope.USER_GROUPS, DaoHelper.getUsernames(group));
+            this.etagRegistry.bump(EtagRegistry.Scope.USER_GROUPS, username);
+            this.etagRegistry.bump(EtagRegistry.Scope.USER_PROJECTS, username);
             events.add(new Event(username, groupId, group.getName()));
         }
         return events;
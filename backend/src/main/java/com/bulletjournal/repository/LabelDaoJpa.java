@@ -6,6 +6,7 @@ import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.controller.models.ProjectItemType;
 import com.bulletjournal.controller.models.ProjectItems;
 import com.bulletjournal.controller.models.UpdateLabelParams;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.controller.utils.ProjectItemsGrouper;
 import com.bulletjournal.exceptions.ResourceAlreadyExistException;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
@@ -38,6 +39,12 @@ public class LabelDaoJpa {
     @Autowired
     private AuthorizationService authorizationService;
 
+    @Autowired
+    private EtagRegistry etagRegistry;
+
+    @Autowired
+    private LedgerRollupDaoJpa ledgerRollupDaoJpa;
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Label create(String name, String owner, String icon) {
         Label label = new Label();
@@ -76,6 +83,12 @@ public class LabelDaoJpa {
         DaoHelper.updateIfPresent(updateLabelParams.hasIcon(), updateLabelParams.getIcon(),
                 label::setIcon);
 
+        // item lists embed labels, and which items carry this label is not known here
+        this.etagRegistry.bumpAll(EtagRegistry.Scope.PROJECT_TASKS);
+        this.etagRegistry.bumpAll(EtagRegistry.Scope.PROJECT_NOTES);
+        this.etagRegistry.bumpAll(EtagRegistry.Scope.PROJECT_TRANSACTIONS);
+        this.etagRegistry.bumpAll(EtagRegistry.Scope.TASK);
+        this.etagRegistry.bumpAll(EtagRegistry.Scope.NOTE);
         return this.labelRepository.save(label);
     }
 
@@ -109,22 +122,36 @@ public class LabelDaoJpa {
         tasks.stream().forEach(
                 task -> task.setLabels(
                         task.getLabels().stream().filter(id
-                                -> id != labelId).collect(Collectors.toList())));
+                                -> !Objects.equals(id, labelId)).collect(Collectors.toList())));
         this.taskRepository.saveAll(tasks);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TASKS, getProjectIds(tasks));
+        this.etagRegistry.bump(EtagRegistry.Scope.TASK, getIds(tasks));
 
         List<Transaction> transactions = this.transactionRepository.findTransactionsByLabelId(labelId);
         transactions.stream().forEach(
                 transaction -> transaction.setLabels(
                         transaction.getLabels().stream().filter(id
-                                -> id != labelId).collect(Collectors.toList())));
+                                -> !Objects.equals(id, labelId)).collect(Collectors.toList())));
         this.transactionRepository.saveAll(transactions);
+        this.ledgerRollupDaoJpa.deleteByLabelId(labelId);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TRANSACTIONS, getProjectIds(transactions));
 
         List<Note> notes = this.noteRepository.findNotesByLabelId(labelId);
         notes.stream().forEach(
                 note -> note.setLabels(
                         note.getLabels().stream().filter(id
-                                -> id != labelId).collect(Collectors.toList())));
+                                -> !Objects.equals(id, labelId)).collect(Collectors.toList())));
         this.noteRepository.saveAll(notes);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_NOTES, getProjectIds(notes));
+        this.etagRegistry.bump(EtagRegistry.Scope.NOTE, getIds(notes));
+    }
+
+    private static Set<Long> getProjectIds(List<? extends ProjectItemModel> projectItems) {
+        return projectItems.stream().map(item -> item.getProject().getId()).collect(Collectors.toSet());
+    }
+
+    private static List<Long> getIds(List<? extends ProjectItemModel> projectItems) {
+        return projectItems.stream().map(ProjectItemModel::getId).collect(Collectors.toList());
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -0,0 +1,159 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.controller.utils.EtagRegistry;
+import com.bulletjournal.ledger.LedgerGrouping;
+import com.bulletjournal.ledger.LedgerSum;
+import com.bulletjournal.repository.models.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps ledger_rollups in step with transactions
+ * <p>
+ * Every transaction is counted in the row of label 0 of its (project, time zone, month, payer, type),
+ * which answers MONTH, YEAR, PAYER sums and totals, and once more in the row of each of its labels, which
+ * answers LABEL sums.
+ * <p>
+ * Months are local to the time zone of each transaction, while transactions are listed by instant in the
+ * requester's time zone. Rollups answer a request only if all transactions of the project are in the
+ * requester's time zone, otherwise one near a month boundary could be counted in another month than it is
+ * listed in.
+ */
+@Repository
+public class LedgerRollupDaoJpa {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LedgerRollupDaoJpa.class);
+    private static final DateTimeFormatter YEAR_MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final Long NO_LABEL = 0L;
+    private static final LocalTime LAST_MINUTE = LocalTime.of(23, 59);
+
+    @Autowired
+    private LedgerRollupRepository ledgerRollupRepository;
+    @Autowired
+    private EtagRegistry etagRegistry;
+
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void add(Transaction transaction) {
+        update(transaction, 1);
+    }
+
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void remove(Transaction transaction) {
+        update(transaction, -1);
+    }
+
+    private void update(Transaction transaction, int sign) {
+        Long projectId = transaction.getProject().getId();
+        String yearMonth = transaction.getDate().substring(0, 7);
+        String payer = transaction.getPayer() == null ? "" : transaction.getPayer();
+        Integer transactionType = transaction.getTransactionType().getValue();
+        double amount = sign * transaction.getAmount();
+        String timezone = transaction.getTimezone();
+        this.ledgerRollupRepository.add(
+                projectId, timezone, yearMonth, NO_LABEL, payer, transactionType, amount, sign);
+        for (Long labelId : transaction.getLabels()) {
+            this.ledgerRollupRepository.add(
+                    projectId, timezone, yearMonth, labelId, payer, transactionType, amount, sign);
+        }
+    }
+
+    /**
+     * Sum rollups of project in the months covered by the range
+     *
+     * @param grouping - What transactions are summed by, null for totals of the range
+     * @return null if rollups cannot answer the range, its time zone or grouping
+     */
+    public List<LedgerSum> getSums(Long projectId, ZonedDateTime startTime, ZonedDateTime endTime,
+                                   LedgerGrouping grouping) {
+        String[] months = getMonths(startTime, endTime);
+        if (months == null) {
+            return null;
+        }
+        if (this.ledgerRollupRepository.hasRollupsOutside(projectId, startTime.getZone().getId())) {
+            return null;
+        }
+        if (grouping == null) {
+            return this.ledgerRollupRepository.sumRollupsByProjectBetween(projectId, months[0], months[1]);
+        }
+        switch (grouping) {
+            case MONTH:
+            case YEAR:
+            case PAYER:
+            case LABEL:
+                return this.ledgerRollupRepository.sumRollupsByProjectBetween(
+                        projectId, months[0], months[1], grouping);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return first and last "yyyy-MM" of the range if it spans whole months of one time zone, otherwise null
+     */
+    static String[] getMonths(ZonedDateTime startTime, ZonedDateTime endTime) {
+        if (!startTime.getZone().equals(endTime.getZone())) {
+            return null;
+        }
+        if (startTime.getDayOfMonth() != 1 || !startTime.toLocalTime().equals(LocalTime.MIDNIGHT)) {
+            return null;
+        }
+        YearMonth endMonth = YearMonth.from(endTime);
+        if (endTime.getDayOfMonth() != endMonth.lengthOfMonth() || endTime.toLocalTime().isBefore(LAST_MINUTE)) {
+            return null;
+        }
+        YearMonth startMonth = YearMonth.from(startTime);
+        if (startMonth.isAfter(endMonth)) {
+            return null;
+        }
+        return new String[]{startMonth.format(YEAR_MONTH_FORMATTER), endMonth.format(YEAR_MONTH_FORMATTER)};
+    }
+
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void deleteByProjectIds(List<Long> projectIds) {
+        if (projectIds.isEmpty()) {
+            return;
+        }
+        this.ledgerRollupRepository.deleteByProjectIds(projectIds);
+    }
+
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void deleteByLabelId(Long labelId) {
+        this.ledgerRollupRepository.deleteByLabelId(labelId);
+    }
+
+    public List<Long> getProjectIds() {
+        return this.ledgerRollupRepository.findRollupProjectIds();
+    }
+
+    /**
+     * Compare rollups of project with its transactions and rebuild them if they drifted
+     *
+     * @return true if rollups were rebuilt
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public boolean verify(Long projectId) {
+        long drift = this.ledgerRollupRepository.countDrift(projectId);
+        if (drift == 0) {
+            return false;
+        }
+        LOGGER.warn("Ledger rollups of project {} drifted in {} rows, rebuilding", projectId, drift);
+        this.ledgerRollupRepository.rebuild(projectId);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TRANSACTIONS, projectId);
+        return true;
+    }
+
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public int deleteEmptyRollups() {
+        return this.ledgerRollupRepository.deleteEmpty();
+    }
+}
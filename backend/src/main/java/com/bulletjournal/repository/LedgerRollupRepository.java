@@ -0,0 +1,48 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.repository.models.LedgerRollup;
+import com.bulletjournal.repository.models.LedgerRollupKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface LedgerRollupRepository extends JpaRepository<LedgerRollup, LedgerRollupKey>, LedgerRollupRepositoryCustom {
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO ledger_rollups " +
+            "(project_id, timezone, year_month, label_id, payer, transaction_type, amount, count) " +
+            "VALUES (:projectId, :timezone, :yearMonth, :labelId, :payer, :transactionType, :amount, :count) " +
+            "ON CONFLICT (project_id, timezone, year_month, label_id, payer, transaction_type) DO UPDATE SET " +
+            "amount = ledger_rollups.amount + EXCLUDED.amount, count = ledger_rollups.count + EXCLUDED.count",
+            nativeQuery = true)
+    void add(@Param("projectId") Long projectId,
+             @Param("timezone") String timezone,
+             @Param("yearMonth") String yearMonth,
+             @Param("labelId") Long labelId,
+             @Param("payer") String payer,
+             @Param("transactionType") Integer transactionType,
+             @Param("amount") double amount,
+             @Param("count") long count);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LedgerRollup r WHERE r.id.projectId IN :projectIds")
+    void deleteByProjectIds(@Param("projectIds") List<Long> projectIds);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LedgerRollup r WHERE r.id.labelId = :labelId")
+    void deleteByLabelId(@Param("labelId") Long labelId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LedgerRollup r WHERE r.count = 0")
+    int deleteEmpty();
+}
@@ -0,0 +1,41 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.ledger.LedgerGrouping;
+import com.bulletjournal.ledger.LedgerSum;
+
+import java.util.List;
+
+public interface LedgerRollupRepositoryCustom {
+
+    /**
+     * Sum rollups of project between the months ("yyyy-MM", inclusive) by group and transaction type,
+     * keys of LABEL sums are label ids
+     */
+    List<LedgerSum> sumRollupsByProjectBetween(
+            Long projectId, String startMonth, String endMonth, LedgerGrouping grouping);
+
+    /**
+     * Sum rollups of project between the months ("yyyy-MM", inclusive) by transaction type
+     */
+    List<LedgerSum> sumRollupsByProjectBetween(Long projectId, String startMonth, String endMonth);
+
+    /**
+     * Whether project has rollups of transactions in a time zone other than timezone
+     */
+    boolean hasRollupsOutside(Long projectId, String timezone);
+
+    /**
+     * Ids of projects having transactions or rollups
+     */
+    List<Long> findRollupProjectIds();
+
+    /**
+     * Count rollup rows of project that differ from its transactions
+     */
+    long countDrift(Long projectId);
+
+    /**
+     * Replace rollups of project with the ones computed from its transactions
+     */
+    void rebuild(Long projectId);
+}
@@ -0,0 +1,125 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.ledger.LedgerGrouping;
+import com.bulletjournal.ledger.LedgerSum;
+import com.bulletjournal.ledger.TransactionType;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Repository
+@Transactional
+public class LedgerRollupRepositoryImpl implements LedgerRollupRepositoryCustom {
+
+    /**
+     * Rollups of project ?1 computed from its transactions, same rows as LedgerRollupDaoJpa.add writes
+     */
+    private static final String EXPECTED_ROLLUPS =
+            "SELECT t.project_id, t.timezone, substring(t.date, 1, 7) AS year_month, CAST(0 AS bigint) AS label_id, " +
+                    "coalesce(t.payer, '') AS payer, t.transaction_type, SUM(t.amount) AS amount, COUNT(*) AS count " +
+                    "FROM transactions t WHERE t.project_id = ?1 " +
+                    "GROUP BY t.project_id, t.timezone, year_month, payer, t.transaction_type " +
+                    "UNION ALL " +
+                    "SELECT t.project_id, t.timezone, substring(t.date, 1, 7) AS year_month, l.label_id, " +
+                    "coalesce(t.payer, '') AS payer, t.transaction_type, SUM(t.amount) AS amount, COUNT(*) AS count " +
+                    "FROM transactions t CROSS JOIN LATERAL unnest(t.labels) AS l(label_id) WHERE t.project_id = ?1 " +
+                    "GROUP BY t.project_id, t.timezone, year_month, l.label_id, payer, t.transaction_type";
+
+    private static final double AMOUNT_TOLERANCE = 0.005;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    public List<LedgerSum> sumRollupsByProjectBetween(
+            Long projectId, String startMonth, String endMonth, LedgerGrouping grouping) {
+        String key;
+        String labels = "r.label_id = 0";
+        switch (grouping) {
+            case MONTH:
+                key = "r.year_month";
+                break;
+            case YEAR:
+                key = "substring(r.year_month, 1, 4)";
+                break;
+            case PAYER:
+                key = "nullif(r.payer, '')";
+                break;
+            case LABEL:
+                key = "CAST(r.label_id AS varchar)";
+                labels = "r.label_id <> 0";
+                break;
+            default:
+                throw new IllegalArgumentException("Rollups are not kept by " + grouping);
+        }
+        return sum(key, labels, projectId, startMonth, endMonth);
+    }
+
+    @Override
+    public List<LedgerSum> sumRollupsByProjectBetween(Long projectId, String startMonth, String endMonth) {
+        return sum("CAST(NULL AS varchar)", "r.label_id = 0", projectId, startMonth, endMonth);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<LedgerSum> sum(String key, String labels, Long projectId, String startMonth, String endMonth) {
+        Query query = entityManager.createNativeQuery("SELECT " + key + " AS k, r.transaction_type, SUM(r.amount) " +
+                "FROM ledger_rollups r WHERE r.project_id = ?1 AND r.year_month >= ?2 AND r.year_month <= ?3 " +
+                "AND r.count > 0 AND " + labels + " GROUP BY k, r.transaction_type");
+        query.setParameter(1, projectId);
+        query.setParameter(2, startMonth);
+        query.setParameter(3, endMonth);
+        return ((List<Object[]>) query.getResultList()).stream()
+                .map(row -> new LedgerSum((String) row[0],
+                        TransactionType.getType(((Number) row[1]).intValue()),
+                        ((Number) row[2]).doubleValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean hasRollupsOutside(Long projectId, String timezone) {
+        Query query = entityManager.createNativeQuery("SELECT EXISTS (SELECT 1 FROM ledger_rollups r " +
+                "WHERE r.project_id = ?1 AND r.timezone <> ?2 AND r.count > 0)");
+        query.setParameter(1, projectId);
+        query.setParameter(2, timezone);
+        return (Boolean) query.getSingleResult();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Long> findRollupProjectIds() {
+        Query query = entityManager.createNativeQuery("SELECT DISTINCT project_id FROM transactions " +
+                "UNION SELECT DISTINCT project_id FROM ledger_rollups");
+        return ((List<Number>) query.getResultList()).stream()
+                .map(Number::longValue)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long countDrift(Long projectId) {
+        Query query = entityManager.createNativeQuery("SELECT COUNT(*) FROM (" + EXPECTED_ROLLUPS + ") e " +
+                "FULL OUTER JOIN (SELECT * FROM ledger_rollups WHERE project_id = ?1 AND count <> 0) r " +
+                "ON e.timezone = r.timezone AND e.year_month = r.year_month AND e.label_id = r.label_id AND e.payer = r.payer " +
+                "AND e.transaction_type = r.transaction_type " +
+                "WHERE e.count IS NULL OR r.count IS NULL OR e.count <> r.count OR abs(e.amount - r.amount) > ?2");
+        query.setParameter(1, projectId);
+        query.setParameter(2, AMOUNT_TOLERANCE);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    @Override
+    public void rebuild(Long projectId) {
+        Query delete = entityManager.createNativeQuery("DELETE FROM ledger_rollups WHERE project_id = ?1");
+        delete.setParameter(1, projectId);
+        delete.executeUpdate();
+        Query insert = entityManager.createNativeQuery("INSERT INTO ledger_rollups " +
+                "(project_id, timezone, year_month, label_id, payer, transaction_type, amount, count) " +
+                EXPECTED_ROLLUPS);
+        insert.setParameter(1, projectId);
+        insert.executeUpdate();
+    }
+}
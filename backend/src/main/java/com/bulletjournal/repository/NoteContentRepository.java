@@ -3,11 +3,23 @@ package com.bulletjournal.repository;
 import com.bulletjournal.repository.models.Note;
 import com.bulletjournal.repository.models.NoteContent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface NoteContentRepository extends JpaRepository<NoteContent, Long> {
     List<NoteContent> findNoteContentByNote(Note note);
-}
\ No newline at end of file
+
+    List<NoteContent> findNoteContentByNoteIn(Collection<Note> notes);
+
+    @Query("SELECT c.id AS id, c.owner AS owner, c.createdAt AS createdAt, c.updatedAt AS updatedAt, " +
+            "SUBSTRING(c.text, 1, :previewLength) AS preview, LENGTH(c.text) AS textLength, " +
+            "CASE WHEN c.revisions IS NULL THEN false ELSE true END AS legacyRevisions " +
+            "FROM NoteContent c WHERE c.note = :note ORDER BY c.createdAt")
+    List<ContentSummaryInfo> findContentSummariesByNote(@Param("note") Note note,
+                                                        @Param("previewLength") int previewLength);
+}
@@ -6,15 +6,15 @@ import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.controller.models.CreateNoteParams;
 import com.bulletjournal.controller.models.ProjectType;
 import com.bulletjournal.controller.models.UpdateNoteParams;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.exceptions.BadRequestException;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
-import com.bulletjournal.hierarchy.HierarchyItem;
-import com.bulletjournal.hierarchy.HierarchyProcessor;
+import com.bulletjournal.hierarchy.HierarchyCache;
+import com.bulletjournal.hierarchy.HierarchyTree;
 import com.bulletjournal.hierarchy.NoteRelationsProcessor;
 import com.bulletjournal.notifications.Event;
 import com.bulletjournal.repository.models.*;
 import com.bulletjournal.repository.utils.DaoHelper;
-import com.google.gson.Gson;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
@@ -28,7 +28,6 @@ import java.util.stream.Collectors;
 @Repository
 public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
 
-    private static final Gson GSON = new Gson();
     @Autowired
     private NoteRepository noteRepository;
     @Autowired
@@ -41,6 +40,10 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
     private NoteContentRepository noteContentRepository;
     @Autowired
     private SharedProjectItemDaoJpa sharedProjectItemDaoJpa;
+    @Autowired
+    private EtagRegistry etagRegistry;
+    @Autowired
+    private HierarchyCache hierarchyCache;
 
     @Override
     public JpaRepository getJpaRepository() {
@@ -51,6 +54,7 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
     public List<com.bulletjournal.controller.models.Note> getNotes(Long projectId, String requester) {
         Project project = this.projectDaoJpa.getProject(projectId, requester);
         if (project.isShared()) {
+            this.etagRegistry.setUnversioned(EtagRegistry.Scope.PROJECT_NOTES, projectId);
             return this.sharedProjectItemDaoJpa.getSharedProjectItems(requester, ProjectType.NOTE);
         }
 
@@ -61,7 +65,9 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
         ProjectNotes projectNotes = projectNotesOptional.get();
         final Map<Long, Note> notesMap = this.noteRepository.findNoteByProject(project)
                 .stream().collect(Collectors.toMap(n -> n.getId(), n -> n));
-        return NoteRelationsProcessor.processRelations(notesMap, projectNotes.getNotes())
+        String relationsKey = HierarchyCache.getKey(HierarchyCache.Type.PROJECT_NOTES, projectId);
+        return this.hierarchyCache.read(relationsKey, projectNotes.getNotes(),
+                tree -> NoteRelationsProcessor.processRelations(notesMap, tree))
                 .stream()
                 .map(note -> addLabels(note, notesMap))
                 .collect(Collectors.toList());
@@ -90,10 +96,15 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
         note.setName(createNoteParams.getName());
         note = this.noteRepository.save(note);
         final ProjectNotes projectNotes = this.projectNotesRepository.findById(projectId).orElseGet(ProjectNotes::new);
-        String newRelations = HierarchyProcessor.addItem(projectNotes.getNotes(), note.getId());
+        Long noteId = note.getId();
+        byte[] newRelations = this.hierarchyCache.update(
+                HierarchyCache.getKey(HierarchyCache.Type.PROJECT_NOTES, projectId), projectNotes.getNotes(),
+                tree -> tree.add(noteId));
         projectNotes.setNotes(newRelations);
         projectNotes.setProjectId(projectId);
         projectNotesRepository.save(projectNotes);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_NOTES, projectId);
+        indexNewProjectItem(note);
         return note;
     }
 
@@ -108,7 +119,13 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
         DaoHelper.updateIfPresent(updateNoteParams.hasName(), updateNoteParams.getName(),
                 (value) -> note.setName(value));
 
-        return this.noteRepository.save(note);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_NOTES, note.getProject().getId());
+        this.etagRegistry.bump(EtagRegistry.Scope.NOTE, noteId);
+        Note updated = this.noteRepository.save(note);
+        if (updateNoteParams.hasName()) {
+            indexProjectItem(updated, requester);
+        }
+        return updated;
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -124,9 +141,12 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
         final ProjectNotes projectNotes = projectNotesOptional.isPresent() ?
                 projectNotesOptional.get() : new ProjectNotes();
 
-        projectNotes.setNotes(NoteRelationsProcessor.processRelations(notes));
+        projectNotes.setNotes(this.hierarchyCache.replace(
+                HierarchyCache.getKey(HierarchyCache.Type.PROJECT_NOTES, projectId),
+                NoteRelationsProcessor.toHierarchyTree(notes)));
         projectNotes.setProjectId(projectId);
         this.projectNotesRepository.save(projectNotes);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_NOTES, projectId);
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -134,7 +154,10 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
         Note note = this.getProjectItem(noteId, requester);
 
         Project project = deleteNoteAndAdjustRelations(requester, note,
-                (targetNotes) -> this.noteRepository.deleteAll(targetNotes),
+                (targetNotes) -> {
+                    this.noteRepository.deleteAll(targetNotes);
+                    removeFromIndex(targetNotes);
+                },
                 (target) -> {
                 });
 
@@ -144,7 +167,7 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
     private Project deleteNoteAndAdjustRelations(
             String requester, Note note,
             Consumer<List<Note>> targetNotesOperator,
-            Consumer<HierarchyItem> targetOperator) {
+            Consumer<HierarchyTree.Node> targetOperator) {
         Project project = note.getProject();
         Long projectId = project.getId();
         this.authorizationService.checkAuthorizedToOperateOnContent(note.getOwner(), requester, ContentType.NOTE,
@@ -153,20 +176,22 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
         ProjectNotes projectNotes = this.projectNotesRepository.findById(projectId)
                 .orElseThrow(() -> new ResourceNotFoundException("ProjectTasks by " + projectId + " not found"));
 
-        String relations = projectNotes.getNotes();
+        byte[] relations = projectNotes.getNotes();
+        String relationsKey = HierarchyCache.getKey(HierarchyCache.Type.PROJECT_NOTES, projectId);
 
         // delete notes and its subNotes
         List<Note> targetNotes = this.noteRepository.findAllById(
-                HierarchyProcessor.getSubItems(relations, note.getId()));
+                this.hierarchyCache.read(relationsKey, relations, tree -> tree.getSubItems(note.getId())));
         targetNotesOperator.accept(targetNotes);
 
         // Update note relations
-        HierarchyItem[] target = new HierarchyItem[1];
-        List<HierarchyItem> hierarchy = HierarchyProcessor.removeTargetItem(relations, note.getId(), target);
+        HierarchyTree.Node[] target = new HierarchyTree.Node[1];
+        projectNotes.setNotes(this.hierarchyCache.update(
+                relationsKey, relations, tree -> target[0] = tree.remove(note.getId())));
         targetOperator.accept(target[0]);
 
-        projectNotes.setNotes(GSON.toJson(hierarchy));
         this.projectNotesRepository.save(projectNotes);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_NOTES, projectId);
 
         return project;
     }
@@ -205,14 +230,18 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
                 (targetTasks) -> targetTasks.forEach((t) -> {
                     t.setProject(project);
                     this.noteRepository.save(t);
+                    indexProjectItem(t, requester);
                 }),
                 (target) -> {
                     final ProjectNotes projectNotes = this.projectNotesRepository.findById(targetProject)
                             .orElseGet(ProjectNotes::new);
-                    String newRelations = HierarchyProcessor.addItem(projectNotes.getNotes(), target);
+                    byte[] newRelations = this.hierarchyCache.update(
+                            HierarchyCache.getKey(HierarchyCache.Type.PROJECT_NOTES, targetProject),
+                            projectNotes.getNotes(), tree -> tree.add(target));
                     projectNotes.setNotes(newRelations);
                     projectNotes.setProjectId(targetProject);
                     this.projectNotesRepository.save(projectNotes);
+                    this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_NOTES, targetProject);
                 });
     }
 
@@ -230,4 +259,9 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
                 .collect(Collectors.toList());
         return contents;
     }
-}
\ No newline at end of file
+
+    @Override
+    List<ContentSummaryInfo> getContentSummaryInfos(ProjectItemModel projectItem, int previewLength) {
+        return this.noteContentRepository.findContentSummariesByNote((Note) projectItem, previewLength);
+    }
+}
@@ -2,12 +2,21 @@ package com.bulletjournal.repository;
 
 import com.bulletjournal.repository.models.Note;
 import com.bulletjournal.repository.models.Project;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface NoteRepository extends JpaRepository<Note, Long>, NoteRepositoryCustom {
     List<Note> findNoteByProject(Project project);
+
+    List<Note> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @Query("SELECT note FROM Note note JOIN FETCH note.project WHERE note.id IN :ids")
+    List<Note> findAllWithProjectById(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -1,64 +1,161 @@
 package com.bulletjournal.repository;
 
 import com.bulletjournal.clients.UserClient;
+import com.bulletjournal.controller.models.User;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.notifications.Action;
 import com.bulletjournal.notifications.Informed;
+import com.bulletjournal.notifications.NotificationCursor;
+import com.bulletjournal.notifications.NotificationStore;
 import com.bulletjournal.repository.models.Notification;
+import com.bulletjournal.repository.models.NotificationOutbox;
 import com.google.gson.Gson;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Repository
-public class NotificationDaoJpa {
+public class NotificationDaoJpa implements NotificationStore {
 
     private static final Gson GSON = new Gson();
     @Autowired
     private NotificationRepository notificationRepository;
     @Autowired
+    private NotificationOutboxRepository notificationOutboxRepository;
+    @Autowired
     private UserClient userClient;
+    @Autowired
+    private EtagRegistry etagRegistry;
+
+    /**
+     * Get a page of the user's notifications, actionable ones first then latest first, sorted and
+     * paginated by the database on notification_time_index.
+     * DO NOT wrap this function inside @Transactional, originators are resolved by UserClient
+     *
+     * @param cursor cursor of the previous page, null for the first page
+     * @return notifications of the page and cursor of the next page, null if this is the last one
+     */
+    public Pair<List<com.bulletjournal.controller.models.Notification>, String> getNotifications(
+            String username, String cursor, int size) {
+        // one more row tells whether there is a next page
+        PageRequest pageRequest = PageRequest.of(0, size + 1);
+        List<Notification> notifications;
+        if (cursor == null) {
+            notifications = this.notificationRepository.findFirstPage(username, pageRequest);
+        } else {
+            NotificationCursor after = NotificationCursor.decode(cursor);
+            notifications = this.notificationRepository.findNextPage(
+                    username, after.isActionable(), after.getUpdatedAt(), after.getId(), pageRequest);
+        }
+        String nextCursor = null;
+        if (notifications.size() > size) {
+            notifications = notifications.subList(0, size);
+            nextCursor = NotificationCursor.encode(notifications.get(size - 1));
+        }
 
-    public List<com.bulletjournal.controller.models.Notification> getNotifications(String username) {
-        List<Notification> notifications = this.notificationRepository.findByTargetUser(username);
+        Map<String, User> originators = this.userClient.getUsers(
+                notifications.stream().map(Notification::getOriginator).collect(Collectors.toList()));
         List<com.bulletjournal.controller.models.Notification> returnNotifications = notifications.stream().map(n -> {
             com.bulletjournal.controller.models.Notification notification = n.toPresentationModel();
-            notification.setOriginator(this.userClient.getUser(n.getOriginator()));
+            notification.setOriginator(originators.get(n.getOriginator()));
             if (n.getActions() != null) {
                 Action[] actions = GSON.fromJson(n.getActions(), Action[].class);
-                notification.setActions(Arrays.asList(actions)
-                        .stream().map(a -> a.getDescription()).collect(Collectors.toList()));
+                notification.setActions(Arrays.stream(actions)
+                        .map(Action::getDescription).collect(Collectors.toList()));
             }
             return notification;
-        }).sorted((a, b) -> {
-            if (a.getActions().isEmpty() && !b.getActions().isEmpty()) {
-                return 1;
-            }
-            if (!a.getActions().isEmpty() && b.getActions().isEmpty()) {
-                return -1;
-            }
-            if (a.getTimestamp().compareTo(b.getTimestamp()) == 0) {
-                return b.getId().compareTo(a.getId());
-            }
-            return b.getTimestamp().compareTo(a.getTimestamp());
         }).collect(Collectors.toList());
-        return returnNotifications;
+        return Pair.of(returnNotifications, nextCursor);
+    }
+
+    /**
+     * Count the user's notifications without loading them
+     */
+    public long getNotificationCount(String username) {
+        return this.notificationRepository.countByTargetUser(username);
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void create(List<Informed> events) {
-        events.forEach(event -> {
-            event.toNotifications().forEach(n -> this.notificationRepository.save(n));
-        });
+        createNotifications(events.stream()
+                .flatMap(event -> event.toNotifications().stream())
+                .collect(Collectors.toList()), Collections.emptyList());
+    }
+
+    /**
+     * Persist notifications in JDBC batches of hibernate.jdbc.batch_size, with ids taken from the pooled
+     * notification sequence, and delete the outbox entries they come from in the same transaction
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void createNotifications(List<Notification> notifications, Collection<Long> outboxIds) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        this.notificationRepository.saveAll(notifications);
+        if (!outboxIds.isEmpty()) {
+            this.notificationOutboxRepository.deleteByIdIn(outboxIds);
+        }
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_NOTIFICATIONS,
+                notifications.stream().map(Notification::getTargetUser).collect(Collectors.toSet()));
+    }
+
+    /**
+     * Write notifications ahead into the outbox, until they are persisted
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public List<Long> addToOutbox(List<List<Notification>> entries) {
+        return this.notificationOutboxRepository.saveAll(entries.stream()
+                .map(notifications -> new NotificationOutbox(GSON.toJson(notifications)))
+                .collect(Collectors.toList()))
+                .stream()
+                .map(NotificationOutbox::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public List<Pair<Long, List<Notification>>> getOutbox(Long afterId, int size) {
+        return this.notificationOutboxRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, size))
+                .stream()
+                .map(o -> Pair.of(o.getId(), Arrays.asList(GSON.fromJson(o.getNotifications(), Notification[].class))))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean isInOutbox(Long outboxId) {
+        return this.notificationOutboxRepository.existsById(outboxId);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void deleteFromOutbox(Collection<Long> outboxIds) {
+        this.notificationOutboxRepository.deleteByIdIn(outboxIds);
     }
 
+    /**
+     * Delete a chunk of expired notifications in its own transaction
+     *
+     * @return number of notifications deleted, less than limit once none is left
+     */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public void deleteAllExpiredNotifications(Timestamp expirationTime) {
-        this.notificationRepository.deleteByUpdatedAtBefore(expirationTime);
+    public int deleteExpiredNotifications(Timestamp expirationTime, int limit) {
+        int deleted = this.notificationRepository.deleteChunkByUpdatedAtBefore(expirationTime, limit);
+        if (deleted > 0) {
+            this.etagRegistry.bumpAll(EtagRegistry.Scope.USER_NOTIFICATIONS);
+        }
+        return deleted;
     }
 }
@@ -0,0 +1,22 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.repository.models.NotificationOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+    List<NotificationOutbox> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM NotificationOutbox o WHERE o.id IN (:ids)")
+    void deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
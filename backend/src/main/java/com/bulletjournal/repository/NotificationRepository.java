@@ -1,8 +1,11 @@
 package com.bulletjournal.repository;
 
 import com.bulletjournal.repository.models.Notification;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -13,7 +16,36 @@ import java.util.List;
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
     List<Notification> findByTargetUser(String targetUser);
 
+    @Query("SELECT n FROM Notification n WHERE n.targetUser = :targetUser " +
+            "ORDER BY n.actionable DESC, n.updatedAt DESC, n.id DESC")
+    List<Notification> findFirstPage(@Param("targetUser") String targetUser, Pageable pageable);
+
+    /**
+     * Notifications after the given sort key in (actionable DESC, updatedAt DESC, id DESC) order
+     */
+    @Query("SELECT n FROM Notification n WHERE n.targetUser = :targetUser AND (" +
+            "(:actionable = true AND n.actionable = false) OR " +
+            "(n.actionable = :actionable AND (n.updatedAt < :updatedAt OR " +
+            "(n.updatedAt = :updatedAt AND n.id < :id)))) " +
+            "ORDER BY n.actionable DESC, n.updatedAt DESC, n.id DESC")
+    List<Notification> findNextPage(@Param("targetUser") String targetUser,
+                                    @Param("actionable") boolean actionable,
+                                    @Param("updatedAt") Timestamp updatedAt,
+                                    @Param("id") Long id,
+                                    Pageable pageable);
+
+    long countByTargetUser(String targetUser);
+
+    /**
+     * Delete up to limit notifications updated before expiryTime, found on notification_stale_check_index,
+     * without loading them
+     *
+     * @return number of notifications deleted
+     */
     @Modifying
     @Transactional
-    void deleteByUpdatedAtBefore(Timestamp expiryTime);
+    @Query(value = "DELETE FROM notifications WHERE id IN " +
+            "(SELECT id FROM notifications WHERE updated_at < :expiryTime ORDER BY updated_at LIMIT :limit)",
+            nativeQuery = true)
+    int deleteChunkByUpdatedAtBefore(@Param("expiryTime") Timestamp expiryTime, @Param("limit") int limit);
 }
@@ -4,10 +4,11 @@ import com.bulletjournal.authz.AuthorizationService;
 import com.bulletjournal.authz.Operation;
 import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.controller.models.*;
+import com.bulletjournal.controller.utils.EtagRegistry;
+import com.bulletjournal.daemon.ReminderScheduler;
 import com.bulletjournal.exceptions.ResourceAlreadyExistException;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
-import com.bulletjournal.hierarchy.HierarchyItem;
-import com.bulletjournal.hierarchy.HierarchyProcessor;
+import com.bulletjournal.hierarchy.HierarchyCache;
 import com.bulletjournal.hierarchy.ProjectRelationsProcessor;
 import com.bulletjournal.notifications.Event;
 import com.bulletjournal.repository.models.Group;
@@ -41,6 +42,17 @@ public class ProjectDaoJpa {
     private AuthorizationService authorizationService;
     @Autowired
     private UserGroupRepository userGroupRepository;
+    @Autowired
+    private ReminderScheduler reminderScheduler;
+    @Autowired
+    private EtagRegistry etagRegistry;
+
+    @Autowired
+    private HierarchyCache hierarchyCache;
+    @Autowired
+    private LedgerRollupDaoJpa ledgerRollupDaoJpa;
+    @Autowired
+    private SearchIndexDaoJpa searchIndexDaoJpa;
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Projects getProjects(String owner) {
@@ -152,10 +164,11 @@ public class ProjectDaoJpa {
 
         newOwners.add(o);
         List<Project> projects = this.projectRepository.findAllById(new ArrayList<>(projectsByOwner));
-        String projectRelationsByOwner = this.userProjectsRepository.findById(o).get().getOwnedProjects();
-        List<com.bulletjournal.controller.models.Project> l = ProjectRelationsProcessor.processRelations(
-                projects.stream().collect(Collectors.toMap(Project::getId, p -> p)),
-                projectRelationsByOwner, projectsByOwner);
+        byte[] projectRelationsByOwner = this.userProjectsRepository.findById(o).get().getOwnedProjects();
+        Map<Long, Project> projectMap = projects.stream().collect(Collectors.toMap(Project::getId, p -> p));
+        List<com.bulletjournal.controller.models.Project> l = this.hierarchyCache.read(
+                HierarchyCache.getKey(HierarchyCache.Type.USER_PROJECTS, o), projectRelationsByOwner,
+                tree -> ProjectRelationsProcessor.processRelations(projectMap, tree, projectsByOwner));
 
         if (l.isEmpty()) {
             return;
@@ -171,8 +184,9 @@ public class ProjectDaoJpa {
         }
         Map<Long, Project> projects = this.projectRepository.findByOwner(owner)
                 .stream().collect(Collectors.toMap(p -> p.getId(), p -> p));
-        return ProjectRelationsProcessor.processRelations(
-                projects, userProjects.getOwnedProjects(), null);
+        return this.hierarchyCache.read(
+                HierarchyCache.getKey(HierarchyCache.Type.USER_PROJECTS, owner), userProjects.getOwnedProjects(),
+                tree -> ProjectRelationsProcessor.processRelations(projects, tree, null));
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -196,10 +210,14 @@ public class ProjectDaoJpa {
         final UserProjects userProjects = userProjectsOptional.isPresent() ?
                 userProjectsOptional.get() : new UserProjects();
 
-        String newRelations = HierarchyProcessor.addItem(userProjects.getOwnedProjects(), project.getId());
+        Long projectId = project.getId();
+        byte[] newRelations = this.hierarchyCache.update(
+                HierarchyCache.getKey(HierarchyCache.Type.USER_PROJECTS, owner), userProjects.getOwnedProjects(),
+                tree -> tree.add(projectId));
         userProjects.setOwnedProjects(newRelations);
         userProjects.setOwner(owner);
         this.userProjectsRepository.save(userProjects);
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_PROJECTS, DaoHelper.getUsernames(group));
         events.addAll(generateEvents(group, owner, project));
         return project;
     }
@@ -248,9 +266,12 @@ public class ProjectDaoJpa {
             Set<String> newUsers = group.getUsers().stream().filter(u -> u.isAccepted()).map(u -> u.getUser().getName()).collect(Collectors.toSet());
 
             generateEvents(joined, removed, project, oldUsers, newUsers);
-
+            this.etagRegistry.bump(EtagRegistry.Scope.USER_PROJECTS, DaoHelper.getUsernames(oldGroup));
+            // search documents carry the group of their project
+            this.searchIndexDaoJpa.reindexProject(project);
         }
 
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_PROJECTS, DaoHelper.getUsernames(project.getGroup()));
         return this.projectRepository.save(project);
     }
 
@@ -276,10 +297,13 @@ public class ProjectDaoJpa {
         final UserProjects userProjects = userProjectsOptional.isPresent() ?
                 userProjectsOptional.get() : new UserProjects();
 
-        userProjects.setOwnedProjects(ProjectRelationsProcessor.processRelations(projects));
+        userProjects.setOwnedProjects(this.hierarchyCache.replace(
+                HierarchyCache.getKey(HierarchyCache.Type.USER_PROJECTS, user),
+                ProjectRelationsProcessor.toHierarchyTree(projects)));
         userProjects.setOwner(user);
 
         this.userProjectsRepository.save(userProjects);
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_PROJECTS, user);
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -294,6 +318,7 @@ public class ProjectDaoJpa {
                 (value) -> userProjects.setSharedProjects(GSON.toJson(value)));
         userProjects.setOwner(owner);
         this.userProjectsRepository.save(userProjects);
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_PROJECTS, owner);
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -308,16 +333,26 @@ public class ProjectDaoJpa {
         UserProjects userProjects = this.userProjectsRepository.findById(requester)
                 .orElseThrow(() -> new ResourceNotFoundException("UserProjects by " + requester + " not found"));
 
-        String relations = userProjects.getOwnedProjects();
+        byte[] relations = userProjects.getOwnedProjects();
+        String relationsKey = HierarchyCache.getKey(HierarchyCache.Type.USER_PROJECTS, requester);
 
         // delete project and its subProjects
         List<Project> targetProjects = this.projectRepository
-                .findAllById(HierarchyProcessor.getSubItems(relations, projectId));
+                .findAllById(this.hierarchyCache.read(relationsKey, relations, tree -> tree.getSubItems(projectId)));
+        targetProjects.forEach(p ->
+                this.etagRegistry.bump(EtagRegistry.Scope.USER_PROJECTS, DaoHelper.getUsernames(p.getGroup())));
+        this.searchIndexDaoJpa.deleteProjects(targetProjects);
         this.projectRepository.deleteAll(targetProjects);
+        List<Long> targetProjectIds = targetProjects.stream().map(Project::getId).collect(Collectors.toList());
+        this.reminderScheduler.cancelProjects(targetProjectIds);
+        this.ledgerRollupDaoJpa.deleteByProjectIds(targetProjectIds);
+        targetProjects.forEach(p -> {
+            this.hierarchyCache.evict(HierarchyCache.getKey(HierarchyCache.Type.PROJECT_TASKS, p.getId()));
+            this.hierarchyCache.evict(HierarchyCache.getKey(HierarchyCache.Type.PROJECT_NOTES, p.getId()));
+        });
 
         // Update project relations
-        List<HierarchyItem> hierarchy = HierarchyProcessor.removeTargetItem(relations, projectId);
-        userProjects.setOwnedProjects(GSON.toJson(hierarchy));
+        userProjects.setOwnedProjects(this.hierarchyCache.update(relationsKey, relations, tree -> tree.remove(projectId)));
         this.userProjectsRepository.save(userProjects);
 
         // return generated events
@@ -2,9 +2,10 @@ package com.bulletjournal.repository;
 
 import com.bulletjournal.authz.AuthorizationService;
 import com.bulletjournal.authz.Operation;
-import com.bulletjournal.config.ContentRevisionConfig;
 import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.controller.models.*;
+import com.bulletjournal.controller.utils.EtagRegistry;
+import com.bulletjournal.es.SearchService;
 import com.bulletjournal.exceptions.BadRequestException;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
 import com.bulletjournal.notifications.Event;
@@ -14,9 +15,7 @@ import com.bulletjournal.repository.models.ContentModel;
 import com.bulletjournal.repository.models.Group;
 import com.bulletjournal.repository.models.ProjectItemModel;
 import com.bulletjournal.repository.models.UserGroup;
-import com.bulletjournal.util.ContentDiffTool;
 import com.google.common.base.Preconditions;
-import com.google.gson.Gson;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,14 +24,13 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
 abstract class ProjectItemDaoJpa<K extends ContentModel> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ProjectItemDaoJpa.class);
-    private static final Gson GSON = new Gson();
+    private static final int CONTENT_PREVIEW_LENGTH = 200;
 
     @Autowired
     private LabelDaoJpa labelDaoJpa;
@@ -45,9 +43,11 @@ abstract class ProjectItemDaoJpa<K extends ContentModel> {
     @Autowired
     private PublicProjectItemDaoJpa publicProjectItemDaoJpa;
     @Autowired
-    private ContentRevisionConfig revisionConfig;
+    private ContentRevisionDaoJpa contentRevisionDaoJpa;
     @Autowired
-    private ContentDiffTool contentDiffTool;
+    private EtagRegistry etagRegistry;
+    @Autowired
+    private SearchService searchService;
 
     abstract <T extends ProjectItemModel> JpaRepository<T, Long> getJpaRepository();
 
@@ -55,6 +55,8 @@ abstract class ProjectItemDaoJpa<K extends ContentModel> {
 
     abstract List<K> getContents(Long projectItemId, String requester);
 
+    abstract List<ContentSummaryInfo> getContentSummaryInfos(ProjectItemModel projectItem, int previewLength);
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public <T extends ProjectItemModel> SharableLink generatePublicItemLink(
             Long projectItemId, String requester, Long ttl) {
@@ -125,6 +127,7 @@ abstract class ProjectItemDaoJpa<K extends ContentModel> {
         content.setProjectItem(projectItem);
         content.setOwner(owner);
         this.getContentJpaRepository().save(content);
+        indexProjectItem(projectItem, owner);
         return content;
     }
 
@@ -136,6 +139,71 @@ abstract class ProjectItemDaoJpa<K extends ContentModel> {
         return content;
     }
 
+    /**
+     * Get contents of project item with their revisions
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public List<Content> getContentsWithRevisions(Long projectItemId, String requester) {
+        List<K> contents = getContents(projectItemId, requester);
+        if (contents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, List<Revision>> revisions = this.contentRevisionDaoJpa.getRevisions(
+                contents.get(0).getProjectItem().getContentType(), contents);
+        return contents.stream()
+                .map(content -> content.toPresentationModel(revisions.get(content.getId())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get contents of project item with the start of their texts, in creation order
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public List<ContentSummary> getContentSummaries(Long projectItemId, String requester) {
+        ProjectItemModel projectItem = getProjectItem(projectItemId, requester);
+        ContentType contentType = projectItem.getContentType();
+        List<ContentSummaryInfo> infos = getContentSummaryInfos(projectItem, CONTENT_PREVIEW_LENGTH);
+
+        Map<Long, Integer> revisionCounts = new HashMap<>(this.contentRevisionDaoJpa.getRevisionCounts(contentType,
+                infos.stream().filter(info -> !info.getLegacyRevisions()).map(ContentSummaryInfo::getId)
+                        .collect(Collectors.toList())));
+        List<Long> legacyContentIds = infos.stream().filter(ContentSummaryInfo::getLegacyRevisions)
+                .map(ContentSummaryInfo::getId).collect(Collectors.toList());
+        if (!legacyContentIds.isEmpty()) {
+            List<K> legacyContents = this.getContentJpaRepository().findAllById(legacyContentIds);
+            this.contentRevisionDaoJpa.getRevisions(contentType, legacyContents)
+                    .forEach((contentId, revisions) -> revisionCounts.put(contentId, revisions.size()));
+        }
+
+        return infos.stream().map(info -> new ContentSummary(info.getId(), info.getOwner(), info.getPreview(),
+                info.getTextLength() > CONTENT_PREVIEW_LENGTH, info.getCreatedAt().getTime(),
+                info.getUpdatedAt().getTime(), revisionCounts.getOrDefault(info.getId(), 0)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get content of project item with its full text and revisions
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public <T extends ProjectItemModel> Content getContentWithRevisions(
+            Long contentId, Long projectItemId, String requester) {
+        T projectItem = getProjectItem(projectItemId, requester);
+        K content = getContent(contentId, requester);
+        Preconditions.checkState(
+                Objects.equals(projectItem.getId(), content.getProjectItem().getId()),
+                "ProjectItem ID mismatch");
+        return getContentWithRevisions(content);
+    }
+
+    /**
+     * Get content with its revisions
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public Content getContentWithRevisions(K content) {
+        return content.toPresentationModel(this.contentRevisionDaoJpa.getRevisions(
+                content.getProjectItem().getContentType(), Collections.singletonList(content)).get(content.getId()));
+    }
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public <T extends ProjectItemModel> K updateContent(
             Long contentId, Long projectItemId, String requester, UpdateContentParams updateContentParams) {
@@ -147,9 +215,23 @@ abstract class ProjectItemDaoJpa<K extends ContentModel> {
         this.authorizationService.checkAuthorizedToOperateOnContent(
                 content.getOwner(), requester, ContentType.CONTENT, Operation.UPDATE, content.getId(),
                 projectItem.getOwner(), projectItem.getProject().getOwner(), projectItem);
-        updateRevision(content, updateContentParams.getText(), requester);
-        content.setText(updateContentParams.getText());
+        String text;
+        if (updateContentParams.getDiff() == null) {
+            text = updateContentParams.getText();
+            if (StringUtils.isBlank(text)) {
+                throw new BadRequestException("Content text cannot be blank");
+            }
+            this.contentRevisionDaoJpa.addRevision(projectItem.getContentType(), content, text, requester);
+        } else {
+            if (updateContentParams.getBaseRevisionId() == null) {
+                throw new BadRequestException("baseRevisionId is required with diff");
+            }
+            text = this.contentRevisionDaoJpa.addRevision(projectItem.getContentType(), content,
+                    updateContentParams.getBaseRevisionId(), updateContentParams.getDiff(), requester);
+        }
+        content.setText(text);
         this.getContentJpaRepository().save(content);
+        indexProjectItem(projectItem, requester);
         return content;
     }
 
@@ -164,6 +246,41 @@ abstract class ProjectItemDaoJpa<K extends ContentModel> {
                 content.getOwner(), requester, ContentType.CONTENT, Operation.DELETE, content.getId(),
                 projectItem.getOwner(), projectItem.getProject().getOwner(), projectItem);
         this.getContentJpaRepository().delete(content);
+        this.contentRevisionDaoJpa.deleteRevisions(projectItem.getContentType(), contentId);
+        indexProjectItem(projectItem, requester);
+    }
+
+    /**
+     * Reindex project item with its current contents once the transaction commits, and bump its version
+     */
+    protected <T extends ProjectItemModel> void indexProjectItem(T projectItem, String requester) {
+        this.searchService.index(projectItem, getContents(projectItem.getId(), requester));
+        bumpItemVersion(projectItem);
+    }
+
+    /**
+     * Index project item that has no contents yet
+     */
+    protected <T extends ProjectItemModel> void indexNewProjectItem(T projectItem) {
+        this.searchService.index(projectItem, Collections.emptyList());
+    }
+
+    /**
+     * Remove project items from the index once the transaction commits, and bump their versions
+     */
+    protected <T extends ProjectItemModel> void removeFromIndex(List<T> projectItems) {
+        this.searchService.delete(projectItems);
+        projectItems.forEach(this::bumpItemVersion);
+    }
+
+    /**
+     * Bump the version of a single task or note, transactions are not versioned one by one
+     */
+    private void bumpItemVersion(ProjectItemModel projectItem) {
+        EtagRegistry.Scope scope = EtagRegistry.Scope.getItemScope(projectItem.getContentType());
+        if (scope != null) {
+            this.etagRegistry.bump(scope, projectItem.getId());
+        }
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -192,6 +309,9 @@ abstract class ProjectItemDaoJpa<K extends ContentModel> {
         }
 
         this.getJpaRepository().save(projectItem);
+        this.etagRegistry.bump(EtagRegistry.Scope.getProjectItemScope(projectItem.getContentType()),
+                projectItem.getProject().getId());
+        bumpItemVersion(projectItem);
         return new SetLabelEvent(events, requester, projectItem.getContentType());
     }
 
@@ -203,50 +323,7 @@ abstract class ProjectItemDaoJpa<K extends ContentModel> {
         Preconditions.checkState(
             Objects.equals(projectItem.getId(), content.getProjectItem().getId()),
             "ProjectItem ID mismatch");
-        Revision[] revisions = GSON.fromJson(content.getRevisions(), Revision[].class);
-        Preconditions.checkNotNull(
-                revisions,
-                "Revisions for Content: {} is null", contentId);
-        if (!Arrays.stream(revisions).anyMatch(revision -> Objects.equals(revision.getId(), revisionId))) {
-            throw new BadRequestException("Invalid revisionId: " + revisionId + " for content: " + contentId);
-        }
-
-        if (revisionId.equals(revisions[revisions.length - 1].getId())) {
-            return content.getText();
-        }
-
-        String ret = content.getBaseText();
-        for (Revision revision : revisions) {
-            ret = contentDiffTool.applyDiff(ret, revision.getDiff());
-            if (revision.getId().equals(revisionId)) {
-                return ret;
-            }
-        }
-        throw new IllegalStateException("Cannot reach here");
-    }
-
-    private void updateRevision(K content, String newText, String requester) {
-        LinkedList<Revision> revisionList = GSON.fromJson(content.getRevisions(), LinkedList.class);
-        if (revisionList == null) {
-            revisionList = new LinkedList<>();
-        }
-        int maxRevisionNumber = revisionConfig.getMaxRevisionNumber();
-        long nextRevisionId;
-        if (revisionList.isEmpty()) {
-            content.setBaseText(content.getText());
-            nextRevisionId = 1;
-        } else {
-            nextRevisionId = revisionList.getLast().getId() + 1;
-            if (revisionList.size() == maxRevisionNumber) {
-                String oldBaseText = content.getBaseText();
-                String diffToMerge = revisionList.pollFirst().getDiff();
-                content.setBaseText(contentDiffTool.applyDiff(oldBaseText, diffToMerge));
-            }
-        }
-        String diff = contentDiffTool.computeDiff(content.getText(), newText);
-        Revision newRevision = new Revision(nextRevisionId, diff, Instant.now().toEpochMilli(), requester);
-        revisionList.offerLast(newRevision);
-        content.setRevisions(GSON.toJson(revisionList));
+        return this.contentRevisionDaoJpa.getRevisionText(projectItem.getContentType(), content, revisionId);
     }
 
 }
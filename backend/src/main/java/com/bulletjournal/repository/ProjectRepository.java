@@ -2,13 +2,19 @@ package com.bulletjournal.repository;
 
 import com.bulletjournal.repository.models.Project;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProjectRepository extends JpaRepository<Project, Long> {
     List<Project> findByOwner(String owner);
 
     List<Project> findByNameAndOwner(String name, String owner);
-}
\ No newline at end of file
+
+    @Query("SELECT p.group.id FROM Project p WHERE p.id = :projectId")
+    Optional<Long> findGroupIdById(@Param("projectId") Long projectId);
+}
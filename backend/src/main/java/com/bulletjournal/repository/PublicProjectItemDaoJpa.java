@@ -1,5 +1,6 @@
 package com.bulletjournal.repository;
 
+import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.controller.models.SharableLink;
 import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
@@ -7,6 +8,7 @@ import com.bulletjournal.repository.models.Note;
 import com.bulletjournal.repository.models.ProjectItemModel;
 import com.bulletjournal.repository.models.PublicProjectItem;
 import com.bulletjournal.repository.models.Task;
+import com.bulletjournal.repository.utils.PublicItemLinkCache;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +22,7 @@ import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 @Repository
 public class PublicProjectItemDaoJpa {
@@ -30,6 +33,9 @@ public class PublicProjectItemDaoJpa {
     @Autowired
     private PublicProjectItemRepository publicProjectItemRepository;
 
+    @Autowired
+    private PublicItemLinkCache publicItemLinkCache;
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public <T extends ProjectItemModel> SharableLink generatePublicItemLink(T projectItem, String requester, Long ttl) {
         String uuid = RandomStringUtils.randomAlphanumeric(UUID_LENGTH);
@@ -51,31 +57,42 @@ public class PublicProjectItemDaoJpa {
                 throw new IllegalArgumentException();
         }
         publicProjectItem = this.publicProjectItemRepository.save(publicProjectItem);
+        // drop a cached miss of the new uuid
+        this.publicItemLinkCache.invalidate(uuid);
         return publicProjectItem.toSharableLink();
     }
 
-    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public <T extends ProjectItemModel> T getPublicItem(String uuid) {
-        PublicProjectItem publicProjectItem = this.publicProjectItemRepository.findById(uuid)
-                .orElseThrow(() -> new ResourceNotFoundException("PublicProjectItem " + uuid + " not found"));
-
-        if (publicProjectItem.hasExpirationTime() &&
-                publicProjectItem.getExpirationTime().compareTo(Timestamp.from(Instant.now())) < 0) {
+    /**
+     * Resolve a public link through {@link PublicItemLinkCache}.
+     * Expired links are left to the cleaner instead of being deleted on the read path.
+     *
+     * @return the link, null if it expired
+     */
+    public PublicItemLinkCache.Link getPublicItem(String uuid) {
+        PublicItemLinkCache.Link link = this.publicItemLinkCache.get(uuid, this::loadPublicItem);
+        if (link.isMissing()) {
+            throw new ResourceNotFoundException("PublicProjectItem " + uuid + " not found");
+        }
+        if (link.isExpired(System.currentTimeMillis())) {
             LOGGER.info("Link {} expired", uuid);
-            this.publicProjectItemRepository.delete(publicProjectItem);
             return null;
         }
+        return link;
+    }
 
-        T item;
-        if (publicProjectItem.getNote() != null) {
-            item = (T) publicProjectItem.getNote();
-        } else if (publicProjectItem.getTask() != null) {
-            item = (T) publicProjectItem.getTask();
-        } else {
-            throw new IllegalArgumentException();
+    private PublicItemLinkCache.Link loadPublicItem(String uuid) {
+        Optional<PublicProjectItem> publicProjectItem = this.publicProjectItemRepository.findById(uuid);
+        if (!publicProjectItem.isPresent()) {
+            return PublicItemLinkCache.Link.MISSING;
         }
-
-        return item;
+        PublicProjectItem item = publicProjectItem.get();
+        Long expirationTime = item.hasExpirationTime() ? item.getExpirationTime().getTime() : null;
+        if (item.hasNote()) {
+            return new PublicItemLinkCache.Link(ContentType.NOTE, item.getNote().getId(), expirationTime);
+        } else if (item.hasTask()) {
+            return new PublicItemLinkCache.Link(ContentType.TASK, item.getTask().getId(), expirationTime);
+        }
+        throw new IllegalArgumentException();
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -101,10 +118,16 @@ public class PublicProjectItemDaoJpa {
                 .filter(item -> Objects.equals(item.getId(), link))
                 .findAny().orElseThrow(() -> new ResourceNotFoundException("Link " + link + " not found"));
         this.publicProjectItemRepository.delete(publicProjectItem);
+        this.publicItemLinkCache.invalidate(link);
     }
 
+    /**
+     * Delete a chunk of expired public items in its own transaction
+     *
+     * @return number of items deleted, less than limit once none is left
+     */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public void deleteAllExpiredPublicItems() {
-        this.publicProjectItemRepository.deleteByExpirationTimeBefore(new Timestamp(System.currentTimeMillis()));
+    public int deleteExpiredPublicItems(Timestamp expirationTime, int limit) {
+        return this.publicProjectItemRepository.deleteChunkByExpirationTimeBefore(expirationTime, limit);
     }
 }
@@ -5,6 +5,8 @@ import com.bulletjournal.repository.models.PublicProjectItem;
 import com.bulletjournal.repository.models.Task;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,7 +17,18 @@ import java.util.List;
 public interface PublicProjectItemRepository extends JpaRepository<PublicProjectItem, String> {
     List<PublicProjectItem> findByTask(Task task);
     List<PublicProjectItem> findByNote(Note note);
+
+    /**
+     * Delete up to limit items expired before expiryTime, found on public_project_items_expiration_index,
+     * without loading them
+     *
+     * @return number of items deleted
+     */
     @Modifying
     @Transactional
-    void deleteByExpirationTimeBefore(Timestamp expiryTime);
+    @Query(value = "DELETE FROM public_project_items WHERE id IN " +
+            "(SELECT id FROM public_project_items WHERE expiration_time < :expiryTime " +
+            "ORDER BY expiration_time LIMIT :limit)",
+            nativeQuery = true)
+    int deleteChunkByExpirationTimeBefore(@Param("expiryTime") Timestamp expiryTime, @Param("limit") int limit);
 }
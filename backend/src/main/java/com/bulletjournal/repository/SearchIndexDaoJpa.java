@@ -0,0 +1,218 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.authz.AuthorizationIndex;
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.controller.models.ProjectType;
+import com.bulletjournal.es.SearchIndexOperation;
+import com.bulletjournal.es.SearchService;
+import com.bulletjournal.repository.models.*;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Reads project items and their contents as search documents, in id order, for reindexing,
+ * project items of search hits, and project items of projects moved or deleted
+ */
+@Repository
+public class SearchIndexDaoJpa {
+
+    @Autowired
+    private TaskRepository taskRepository;
+    @Autowired
+    private TaskContentRepository taskContentRepository;
+    @Autowired
+    private NoteRepository noteRepository;
+    @Autowired
+    private NoteContentRepository noteContentRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private TransactionContentRepository transactionContentRepository;
+    @Autowired
+    private SearchReindexJobRepository searchReindexJobRepository;
+    @Autowired
+    private AuthorizationIndex authorizationIndex;
+    @Autowired
+    private SearchService searchService;
+
+    /**
+     * Load project items of search hits, one query per content type
+     *
+     * @param documentIds ids of the hit documents, in score order
+     * @return items the requester can access, in score order, skipping items deleted since they were indexed
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public List<com.bulletjournal.controller.models.ProjectItem> getProjectItems(
+            String requester, List<String> documentIds) {
+        Map<ContentType, List<Long>> ids = new EnumMap<>(ContentType.class);
+        for (String documentId : documentIds) {
+            Pair<ContentType, Long> id = SearchService.parseDocumentId(documentId);
+            ids.computeIfAbsent(id.getLeft(), k -> new ArrayList<>()).add(id.getRight());
+        }
+        Map<String, ProjectItemModel> items = new HashMap<>();
+        ids.forEach((type, itemIds) -> findAllWithProjectById(type, itemIds)
+                .forEach(item -> items.put(SearchService.getDocumentId(item), item)));
+        Set<Long> groupIds = this.authorizationIndex.getGroupIds(requester);
+        return documentIds.stream()
+                .map(items::get)
+                .filter(Objects::nonNull)
+                // the index may lag behind items moved out of the requester's groups
+                .filter(item -> groupIds.contains(item.getProject().getGroup().getId())
+                        || this.authorizationIndex.isSharedWith(requester, item))
+                .map(item -> (com.bulletjournal.controller.models.ProjectItem) item.toPresentationModel())
+                .collect(Collectors.toList());
+    }
+
+    private List<? extends ProjectItemModel> findAllWithProjectById(ContentType type, List<Long> ids) {
+        switch (type) {
+            case TASK:
+                return this.taskRepository.findAllWithProjectById(ids);
+            case NOTE:
+                return this.noteRepository.findAllWithProjectById(ids);
+            case TRANSACTION:
+                return this.transactionRepository.findAllWithProjectById(ids);
+            default:
+                throw new IllegalArgumentException("Unsupported ContentType " + type);
+        }
+    }
+
+    /**
+     * Read the next page of items of type after id
+     *
+     * @return id of the last item read, null if there are no more, and documents of the items read
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public Pair<Long, List<SearchIndexOperation>> readPage(ContentType type, Long afterId, int size) {
+        // taken before reading, so that changes committed while reading are versioned after this copy
+        long version = System.currentTimeMillis();
+        PageRequest page = PageRequest.of(0, size);
+        switch (type) {
+            case TASK:
+                List<Task> tasks = this.taskRepository.findByIdGreaterThanOrderByIdAsc(afterId, page);
+                return toDocuments(tasks, tasks.isEmpty() ? Collections.emptyList() :
+                        this.taskContentRepository.findTaskContentByTaskIn(tasks), TaskContent::getTask, version);
+            case NOTE:
+                List<Note> notes = this.noteRepository.findByIdGreaterThanOrderByIdAsc(afterId, page);
+                return toDocuments(notes, notes.isEmpty() ? Collections.emptyList() :
+                        this.noteContentRepository.findNoteContentByNoteIn(notes), NoteContent::getNote, version);
+            case TRANSACTION:
+                List<Transaction> transactions = this.transactionRepository.findByIdGreaterThanOrderByIdAsc(afterId, page);
+                return toDocuments(transactions, transactions.isEmpty() ? Collections.emptyList() :
+                        this.transactionContentRepository.findTransactionContentByTransactionIn(transactions),
+                        TransactionContent::getTransaction, version);
+            default:
+                throw new IllegalArgumentException("Unsupported ContentType " + type);
+        }
+    }
+
+    /**
+     * Index the items of a project again with its current group, after the surrounding transaction commits
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void reindexProject(Project project) {
+        switch (ProjectType.getType(project.getType())) {
+            case TODO:
+                List<Task> tasks = this.taskRepository.findTaskByProject(project);
+                index(tasks, tasks.isEmpty() ? Collections.emptyList() :
+                        this.taskContentRepository.findTaskContentByTaskIn(tasks), TaskContent::getTask);
+                break;
+            case NOTE:
+                List<Note> notes = this.noteRepository.findNoteByProject(project);
+                index(notes, notes.isEmpty() ? Collections.emptyList() :
+                        this.noteContentRepository.findNoteContentByNoteIn(notes), NoteContent::getNote);
+                break;
+            case LEDGER:
+                List<Transaction> transactions = this.transactionRepository.findTransactionByProject(project);
+                index(transactions, transactions.isEmpty() ? Collections.emptyList() :
+                                this.transactionContentRepository.findTransactionContentByTransactionIn(transactions),
+                        TransactionContent::getTransaction);
+                break;
+        }
+    }
+
+    /**
+     * Remove the items of projects about to be deleted from the index, after the surrounding transaction commits
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void deleteProjects(Collection<Project> projects) {
+        for (Project project : projects) {
+            switch (ProjectType.getType(project.getType())) {
+                case TODO:
+                    this.searchService.delete(this.taskRepository.findTaskByProject(project));
+                    break;
+                case NOTE:
+                    this.searchService.delete(this.noteRepository.findNoteByProject(project));
+                    break;
+                case LEDGER:
+                    this.searchService.delete(this.transactionRepository.findTransactionByProject(project));
+                    break;
+            }
+        }
+    }
+
+    private <T extends ProjectItemModel, K extends ContentModel> void index(
+            List<T> items, List<K> contents, Function<K, T> getItem) {
+        Map<Long, List<K>> itemContents = groupByItem(contents, getItem);
+        items.forEach(item -> this.searchService.index(
+                item, itemContents.getOrDefault(item.getId(), Collections.emptyList())));
+    }
+
+    private static <T extends ProjectItemModel, K extends ContentModel> Map<Long, List<K>> groupByItem(
+            List<K> contents, Function<K, T> getItem) {
+        return contents.stream()
+                .sorted(Comparator.comparingLong(c -> c.getCreatedAt().getTime()))
+                .collect(Collectors.groupingBy(c -> getItem.apply(c).getId()));
+    }
+
+    private static <T extends ProjectItemModel, K extends ContentModel> Pair<Long, List<SearchIndexOperation>> toDocuments(
+            List<T> items, List<K> contents, Function<K, T> getItem, long version) {
+        if (items.isEmpty()) {
+            return Pair.of(null, Collections.emptyList());
+        }
+        Map<Long, List<K>> itemContents = groupByItem(contents, getItem);
+        List<SearchIndexOperation> documents = items.stream()
+                .map(item -> SearchIndexOperation.index(SearchService.getDocumentId(item),
+                        SearchService.toDocument(item, itemContents.getOrDefault(item.getId(), Collections.emptyList())),
+                        version))
+                .collect(Collectors.toList());
+        return Pair.of(items.get(items.size() - 1).getId(), documents);
+    }
+
+    public long count(ContentType type) {
+        switch (type) {
+            case TASK:
+                return this.taskRepository.count();
+            case NOTE:
+                return this.noteRepository.count();
+            case TRANSACTION:
+                return this.transactionRepository.count();
+            default:
+                throw new IllegalArgumentException("Unsupported ContentType " + type);
+        }
+    }
+
+    /**
+     * @return the latest reindex that did not complete
+     */
+    public Optional<SearchReindexJob> getUnfinishedJob() {
+        return this.searchReindexJobRepository.findByCompletedFalseOrderByCreatedAtDesc().stream().findFirst();
+    }
+
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public SearchReindexJob save(SearchReindexJob job) {
+        return this.searchReindexJobRepository.save(job);
+    }
+
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void delete(SearchReindexJob job) {
+        this.searchReindexJobRepository.delete(job);
+    }
+}
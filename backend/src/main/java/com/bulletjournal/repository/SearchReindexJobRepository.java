@@ -0,0 +1,12 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.repository.models.SearchReindexJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SearchReindexJobRepository extends JpaRepository<SearchReindexJob, String> {
+    List<SearchReindexJob> findByCompletedFalseOrderByCreatedAtDesc();
+}
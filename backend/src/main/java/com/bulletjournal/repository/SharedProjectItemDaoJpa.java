@@ -1,7 +1,9 @@
 package com.bulletjournal.repository;
 
+import com.bulletjournal.authz.AuthorizationIndex;
 import com.bulletjournal.controller.models.ProjectItem;
 import com.bulletjournal.controller.models.ProjectType;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
 import com.bulletjournal.notifications.Event;
 import com.bulletjournal.notifications.ShareProjectItemEvent;
@@ -40,6 +42,12 @@ public class SharedProjectItemDaoJpa {
     @Autowired
     private GroupDaoJpa groupDaoJpa;
 
+    @Autowired
+    private AuthorizationIndex authorizationIndex;
+
+    @Autowired
+    private EtagRegistry etagRegistry;
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public <T extends ProjectItem> List<T> getSharedProjectItems(
             String user, final ProjectType projectType) {
@@ -74,15 +82,14 @@ public class SharedProjectItemDaoJpa {
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public <T extends ProjectItemModel, K extends ProjectItem> ShareProjectItemEvent save(
+    public <T extends ProjectItemModel> ShareProjectItemEvent save(
             ProjectType projectType, T projectItem, List<String> users, String requester) {
         List<Event> events = new ArrayList<>();
         for (String user : new HashSet<>(users)) {
             if (Objects.equals(user, requester)) {
                 continue;
             }
-            List<K> existingItems = this.getSharedProjectItems(user);
-            if (existingItems.contains(projectItem)) {
+            if (this.authorizationIndex.isSharedWith(user, projectItem)) {
                 LOGGER.error(projectItem.getClass().getSimpleName() + " " + projectItem.getName() +
                         " (ID " + projectItem.getId() +
                         ") is already shared with User " + user);
@@ -120,6 +127,7 @@ public class SharedProjectItemDaoJpa {
                     throw new IllegalArgumentException();
             }
             sharedProjectItem = this.sharedProjectItemsRepository.save(sharedProjectItem);
+            this.authorizationIndex.invalidateSharedItems(user);
             Event event = new Event(user, sharedProjectItem.getId(), projectItem.getName());
             events.add(event);
         }
@@ -142,6 +150,7 @@ public class SharedProjectItemDaoJpa {
 
         userConsumer.accept(project);
         this.userRepository.save(user);
+        this.etagRegistry.bump(EtagRegistry.Scope.USER_PROJECTS, user.getName());
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -168,5 +177,6 @@ public class SharedProjectItemDaoJpa {
                 .filter(item -> Objects.equals(item.getUsername(), user))
                 .findAny().orElseThrow(() -> new ResourceNotFoundException("User " + user + " not found"));
         this.sharedProjectItemsRepository.delete(sharedProjectItem);
+        this.authorizationIndex.invalidateSharedItems(user);
     }
 }
@@ -4,6 +4,8 @@ import com.bulletjournal.repository.models.Note;
 import com.bulletjournal.repository.models.SharedProjectItem;
 import com.bulletjournal.repository.models.Task;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,4 +15,10 @@ public interface SharedProjectItemRepository extends JpaRepository<SharedProject
     List<SharedProjectItem> findByUsername(String username);
     List<SharedProjectItem> findByTask(Task task);
     List<SharedProjectItem> findByNote(Note note);
+
+    @Query("SELECT sharedTask.id, sharedNote.id, sharedTransaction.id FROM SharedProjectItem item " +
+            "LEFT JOIN item.task sharedTask LEFT JOIN item.note sharedNote " +
+            "LEFT JOIN item.transaction sharedTransaction " +
+            "WHERE item.username = :username")
+    List<Object[]> findSharedItemIdsByUsername(@Param("username") String username);
 }
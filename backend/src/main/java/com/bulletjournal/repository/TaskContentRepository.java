@@ -3,11 +3,23 @@ package com.bulletjournal.repository;
 import com.bulletjournal.repository.models.Task;
 import com.bulletjournal.repository.models.TaskContent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface TaskContentRepository extends JpaRepository<TaskContent, Long> {
     List<TaskContent> findTaskContentByTask(Task task);
-}
\ No newline at end of file
+
+    List<TaskContent> findTaskContentByTaskIn(Collection<Task> tasks);
+
+    @Query("SELECT c.id AS id, c.owner AS owner, c.createdAt AS createdAt, c.updatedAt AS updatedAt, " +
+            "SUBSTRING(c.text, 1, :previewLength) AS preview, LENGTH(c.text) AS textLength, " +
+            "CASE WHEN c.revisions IS NULL THEN false ELSE true END AS legacyRevisions " +
+            "FROM TaskContent c WHERE c.task = :task ORDER BY c.createdAt")
+    List<ContentSummaryInfo> findContentSummariesByTask(@Param("task") Task task,
+                                                        @Param("previewLength") int previewLength);
+}
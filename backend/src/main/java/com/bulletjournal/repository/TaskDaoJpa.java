@@ -7,21 +7,22 @@ import com.bulletjournal.controller.models.CreateTaskParams;
 import com.bulletjournal.controller.models.ProjectType;
 import com.bulletjournal.controller.models.ReminderSetting;
 import com.bulletjournal.controller.models.UpdateTaskParams;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
+import com.bulletjournal.daemon.ReminderScheduler;
 import com.bulletjournal.exceptions.BadRequestException;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
-import com.bulletjournal.hierarchy.HierarchyItem;
-import com.bulletjournal.hierarchy.HierarchyProcessor;
+import com.bulletjournal.hierarchy.HierarchyCache;
+import com.bulletjournal.hierarchy.HierarchyTree;
 import com.bulletjournal.hierarchy.TaskRelationsProcessor;
 import com.bulletjournal.notifications.Event;
 import com.bulletjournal.repository.models.*;
 import com.bulletjournal.repository.utils.DaoHelper;
-import com.bulletjournal.util.BuJoRecurrenceRule;
+import com.bulletjournal.util.RecurrenceEngine;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import org.dmfs.rfc5545.DateTime;
 import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
-import org.dmfs.rfc5545.recur.RecurrenceRuleIterator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
@@ -66,6 +67,18 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
     @Autowired
     private SharedProjectItemDaoJpa sharedProjectItemDaoJpa;
 
+    @Autowired
+    private RecurrenceEngine recurrenceEngine;
+
+    @Autowired
+    private ReminderScheduler reminderScheduler;
+
+    @Autowired
+    private EtagRegistry etagRegistry;
+
+    @Autowired
+    private HierarchyCache hierarchyCache;
+
     @Override
     public JpaRepository getJpaRepository() {
         return this.taskRepository;
@@ -82,6 +95,7 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
     public List<com.bulletjournal.controller.models.Task> getTasks(Long projectId, String requester) {
         Project project = this.projectDaoJpa.getProject(projectId, requester);
         if (project.isShared()) {
+            this.etagRegistry.setUnversioned(EtagRegistry.Scope.PROJECT_TASKS, projectId);
             return this.sharedProjectItemDaoJpa.getSharedProjectItems(requester, ProjectType.TODO);
         }
 
@@ -92,7 +106,9 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
         ProjectTasks projectTasks = projectTasksOptional.get();
         final Map<Long, Task> tasksMap = this.taskRepository.findTaskByProject(project)
                 .stream().collect(Collectors.toMap(Task::getId, n -> n));
-        return TaskRelationsProcessor.processRelations(tasksMap, projectTasks.getTasks())
+        String relationsKey = HierarchyCache.getKey(HierarchyCache.Type.PROJECT_TASKS, projectId);
+        return this.hierarchyCache.read(relationsKey, projectTasks.getTasks(),
+                tree -> TaskRelationsProcessor.processRelations(tasksMap, tree))
                 .stream()
                 .map(task -> addLabels(task, tasksMap))
                 .collect(Collectors.toList());
@@ -211,11 +227,11 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<com.bulletjournal.controller.models.Task> getRecurringTaskNeedReminding(String assignee, ZonedDateTime now) {
         ZonedDateTime maxRemindingTime = now.plusHours(ZonedDateTimeHelper.MAX_HOURS_BEFORE);
-        return this.getRecurringTasks(assignee, now, maxRemindingTime)
+        Timestamp currentTime = ZonedDateTimeHelper.getTimestamp(now);
+        return this.getRecurringTaskOccurrences(assignee, now, maxRemindingTime)
                 .stream()
-                .filter(t -> t.getReminderDateTime().before(ZonedDateTimeHelper.getTimestamp(now))
-                        && t.getStartTime().after(ZonedDateTimeHelper.getTimestamp(now)))
-                .map(TaskModel::toPresentationModel)
+                .filter(occurrence -> occurrence.needsReminding(currentTime))
+                .map(TaskOccurrence::toPresentationModel)
                 .collect(Collectors.toList());
     }
 
@@ -224,7 +240,7 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
      * <p>
      * Procedure:
      * 1. Fetch all tasks with recurrence rule
-     * 2. Obtain new DateTime instance by using RecurrenceRule iterator
+     * 2. Obtain occurrences within the time range from RecurrenceEngine
      * 3. Clone the original recurring task and set its start/end time and reminding setting
      *
      * @param assignee  the username of task assignee
@@ -234,48 +250,45 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
      */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<Task> getRecurringTasks(String assignee, ZonedDateTime startTime, ZonedDateTime endTime) {
-        List<Task> recurringTasksBetween = new ArrayList<>();
+        return this.getRecurringTaskOccurrences(assignee, startTime, endTime)
+                .stream()
+                .map(TaskOccurrence::toTask)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get occurrences of all recurrent tasks of an assignee within requested start time and end time
+     * <p>
+     * Occurrences reference the recurring task instead of cloning it.
+     *
+     * @param assignee  the username of task assignee
+     * @param startTime the ZonedDateTime object of start time
+     * @param endTime   the ZonedDateTime object of end time
+     * @return List<TaskOccurrence> - a list of recurrent task occurrences within the time range
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public List<TaskOccurrence> getRecurringTaskOccurrences(
+            String assignee, ZonedDateTime startTime, ZonedDateTime endTime) {
+        List<TaskOccurrence> occurrences = new ArrayList<>();
         List<Task> recurrentTasks = this.taskRepository.findTasksByAssignedToAndRecurrenceRuleNotNull(assignee);
         DateTime startDateTime = ZonedDateTimeHelper.getDateTime(startTime);
         DateTime endDateTime = ZonedDateTimeHelper.getDateTime(endTime);
 
         for (Task t : recurrentTasks) {
             try {
-                String recurrenceRule = t.getRecurrenceRule();
-                String timezone = t.getTimezone();
                 Set<DateTime> completedSlots = ZonedDateTimeHelper.parseDateTimeSet(t.getCompletedSlots());
-                BuJoRecurrenceRule rule = new BuJoRecurrenceRule(recurrenceRule, timezone);
-                RecurrenceRuleIterator it = rule.getIterator();
-                while (it.hasNext()) {
-                    DateTime currDateTime = it.nextDateTime();
-                    if (currDateTime.after(endDateTime)) {
-                        break;
-                    }
-                    if (currDateTime.before(startDateTime) || completedSlots.contains(currDateTime)) {
+                for (DateTime currDateTime : this.recurrenceEngine.getOccurrences(
+                        t.getId(), t.getRecurrenceRule(), t.getTimezone(), startDateTime, endDateTime)) {
+                    if (completedSlots.contains(currDateTime)) {
                         continue;
                     }
-                    Task cloned = (Task) t.clone();
-
-                    String date = ZonedDateTimeHelper.getDate(currDateTime);
-                    String time = ZonedDateTimeHelper.getTime(currDateTime);
-
-                    cloned.setDueDate(date); // Set due date
-                    cloned.setDueTime(time); // Set due time
-
-                    // Set start time and end time
-                    cloned.setStartTime(Timestamp.from(ZonedDateTimeHelper.getStartTime(date, time, timezone).toInstant()));
-                    cloned.setEndTime(Timestamp.from(ZonedDateTimeHelper.getEndTime(date, time, timezone).toInstant()));
-
-                    cloned.setReminderSetting(t.getReminderSetting()); // Set reminding setting to cloned
-                    recurringTasksBetween.add(cloned);
+                    occurrences.add(new TaskOccurrence(t, currDateTime));
                 }
             } catch (InvalidRecurrenceRuleException | NumberFormatException e) {
                 throw new IllegalArgumentException("Recurrence rule format invalid");
-            } catch (CloneNotSupportedException e) {
-                throw new IllegalStateException("Clone new Task failed");
             }
         }
-        return recurringTasksBetween;
+        return occurrences;
     }
 
     /**
@@ -327,10 +340,16 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
 
         final ProjectTasks projectTasks = this.projectTasksRepository.findById(projectId).orElseGet(ProjectTasks::new);
 
-        String newRelations = HierarchyProcessor.addItem(projectTasks.getTasks(), task.getId());
+        Long taskId = task.getId();
+        byte[] newRelations = this.hierarchyCache.update(
+                HierarchyCache.getKey(HierarchyCache.Type.PROJECT_TASKS, projectId), projectTasks.getTasks(),
+                tree -> tree.add(taskId));
         projectTasks.setProjectId(projectId);
         projectTasks.setTasks(newRelations);
         this.projectTasksRepository.save(projectTasks);
+        this.reminderScheduler.schedule(task);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TASKS, projectId);
+        indexNewProjectItem(task);
         return task;
     }
 
@@ -354,6 +373,7 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
         DaoHelper.updateIfPresent(
                 updateTaskParams.hasName(), updateTaskParams.getName(), task::setName);
 
+        String oldAssignee = task.getAssignedTo();
         updateAssignee(requester, taskId, updateTaskParams, task, events);
 
         String date = updateTaskParams.getDueDate();
@@ -385,7 +405,17 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
         DaoHelper.updateIfPresent(updateTaskParams.hasReminderSetting(), updateTaskParams.getReminderSetting(),
                 task::setReminderSetting);
 
-        return this.taskRepository.save(task);
+        task = this.taskRepository.save(task);
+        if (!Objects.equals(oldAssignee, task.getAssignedTo())) {
+            this.reminderScheduler.cancel(oldAssignee, taskId);
+        }
+        this.reminderScheduler.schedule(task);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TASKS, task.getProject().getId());
+        this.etagRegistry.bump(EtagRegistry.Scope.TASK, taskId);
+        if (updateTaskParams.hasName()) {
+            indexProjectItem(task, requester);
+        }
+        return task;
     }
 
     /**
@@ -470,6 +500,8 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
                         }
                     });
                     this.taskRepository.deleteAll(targetTasks);
+                    this.reminderScheduler.cancel(targetTasks);
+                    removeFromIndex(targetTasks);
                 },
                 (target) -> {
                 });
@@ -500,6 +532,9 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
         task.setCompletedSlots(task.getCompletedSlots() == null ?
                 dateTime.toString() : task.getCompletedSlots() + "," + dateTime.toString());
         this.taskRepository.save(task);
+        this.reminderScheduler.schedule(task);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TASKS, task.getProject().getId());
+        this.etagRegistry.bump(EtagRegistry.Scope.TASK, task.getId());
 
         CompletedTask completedTask = new CompletedTask(task, contents);
         completedTask.setRecurrenceRule(null);
@@ -521,10 +556,13 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
         Optional<ProjectTasks> projectTasksOptional = this.projectTasksRepository.findById(projectId);
         final ProjectTasks projectTasks = projectTasksOptional.orElseGet(ProjectTasks::new);
 
-        projectTasks.setTasks(TaskRelationsProcessor.processRelations(tasks));
+        projectTasks.setTasks(this.hierarchyCache.replace(
+                HierarchyCache.getKey(HierarchyCache.Type.PROJECT_TASKS, projectId),
+                TaskRelationsProcessor.toHierarchyTree(tasks)));
         projectTasks.setProjectId(projectId);
 
         this.projectTasksRepository.save(projectTasks);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TASKS, projectId);
     }
 
     /**
@@ -539,7 +577,11 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
         Task task = this.getProjectItem(taskId, requester);
         Project project = deleteTaskAndAdjustRelations(
                 requester, task,
-                (targetTasks) -> this.taskRepository.deleteAll(targetTasks),
+                (targetTasks) -> {
+                    this.taskRepository.deleteAll(targetTasks);
+                    this.reminderScheduler.cancel(targetTasks);
+                    removeFromIndex(targetTasks);
+                },
                 (target) -> {
                 });
 
@@ -552,13 +594,13 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
      * @param requester           the username of action requester
      * @param task                the task object gets deleted
      * @param targetTasksOperator Consumer class or Lambda function operates upon target tasks list
-     * @param targetOperator      Consumer class or Lambda function operates upon target HierarchyItem
+     * @param targetOperator      Consumer class or Lambda function operates upon target subtree, after it is detached
      * @retVal Project
      */
     private Project deleteTaskAndAdjustRelations(
             String requester, Task task,
             Consumer<List<Task>> targetTasksOperator,
-            Consumer<HierarchyItem> targetOperator) {
+            Consumer<HierarchyTree.Node> targetOperator) {
         Project project = task.getProject();
         Long projectId = project.getId();
         this.authorizationService.checkAuthorizedToOperateOnContent(task.getOwner(), requester, ContentType.TASK,
@@ -567,20 +609,22 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
         ProjectTasks projectTasks = this.projectTasksRepository.findById(projectId)
                 .orElseThrow(() -> new ResourceNotFoundException("ProjectTasks by " + projectId + " not found"));
 
-        String relations = projectTasks.getTasks();
+        byte[] relations = projectTasks.getTasks();
+        String relationsKey = HierarchyCache.getKey(HierarchyCache.Type.PROJECT_TASKS, projectId);
 
         // delete tasks and its subTasks
         List<Task> targetTasks = this.taskRepository.findAllById(
-                HierarchyProcessor.getSubItems(relations, task.getId()));
+                this.hierarchyCache.read(relationsKey, relations, tree -> tree.getSubItems(task.getId())));
         targetTasksOperator.accept(targetTasks);
 
         // Update task relations
-        HierarchyItem[] target = new HierarchyItem[1];
-        List<HierarchyItem> hierarchy = HierarchyProcessor.removeTargetItem(relations, task.getId(), target);
+        HierarchyTree.Node[] target = new HierarchyTree.Node[1];
+        projectTasks.setTasks(this.hierarchyCache.update(
+                relationsKey, relations, tree -> target[0] = tree.remove(task.getId())));
         targetOperator.accept(target[0]);
 
-        projectTasks.setTasks(GSON.toJson(hierarchy));
         this.projectTasksRepository.save(projectTasks);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TASKS, projectId);
 
         return project;
     }
@@ -711,14 +755,19 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
                 (targetTasks) -> targetTasks.forEach((t) -> {
                     t.setProject(project);
                     this.taskRepository.save(t);
+                    this.reminderScheduler.schedule(t);
+                    indexProjectItem(t, requester);
                 }),
                 (target) -> {
                     final ProjectTasks projectTasks = this.projectTasksRepository.findById(targetProject)
                             .orElseGet(ProjectTasks::new);
-                    String newRelations = HierarchyProcessor.addItem(projectTasks.getTasks(), target);
+                    byte[] newRelations = this.hierarchyCache.update(
+                            HierarchyCache.getKey(HierarchyCache.Type.PROJECT_TASKS, targetProject),
+                            projectTasks.getTasks(), tree -> tree.add(target));
                     projectTasks.setTasks(newRelations);
                     projectTasks.setProjectId(targetProject);
                     this.projectTasksRepository.save(projectTasks);
+                    this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TASKS, targetProject);
                 });
     }
 
@@ -754,4 +803,9 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
         CompletedTask task = getCompletedTask(taskId, requester);
         return Arrays.asList(GSON.fromJson(task.getContents(), TaskContent[].class));
     }
+
+    @Override
+    List<ContentSummaryInfo> getContentSummaryInfos(ProjectItemModel projectItem, int previewLength) {
+        return this.taskContentRepository.findContentSummariesByTask((Task) projectItem, previewLength);
+    }
 }
@@ -0,0 +1,59 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.repository.utils.CompressedTextConverter;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rewrites values of {@link CompressedTextConverter} columns still stored as converted text
+ */
+@Repository
+public class TextCompressionDaoJpa {
+
+    /**
+     * Table and column of every column stored with CompressedTextConverter
+     */
+    public static final List<String[]> COMPRESSED_COLUMNS = Arrays.asList(
+            new String[]{"task_contents", "base_text"},
+            new String[]{"task_contents", "revisions"},
+            new String[]{"note_contents", "base_text"},
+            new String[]{"note_contents", "revisions"},
+            new String[]{"transaction_contents", "base_text"},
+            new String[]{"transaction_contents", "revisions"},
+            new String[]{"completed_tasks", "contents"},
+            new String[]{"content_revisions", "snapshot"});
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Encode up to limit values of a column in their own transaction. A value written by the application
+     * meanwhile is left as is.
+     *
+     * @return number of values read, less than limit once none is left
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public int compressChunk(String table, String column, int limit) {
+        List<Object[]> rows = this.entityManager.createNativeQuery(
+                "SELECT id, " + column + " FROM " + table + " WHERE " + column + " IS NOT NULL AND " +
+                        "substring(" + column + " FROM 1 FOR 1) <> decode('00', 'hex') ORDER BY id LIMIT ?1")
+                .setParameter(1, limit)
+                .getResultList();
+        for (Object[] row : rows) {
+            byte[] value = (byte[]) row[1];
+            this.entityManager.createNativeQuery(
+                    "UPDATE " + table + " SET " + column + " = ?1 WHERE id = ?2 AND " + column + " = ?3")
+                    .setParameter(1, CompressedTextConverter.encode(CompressedTextConverter.decode(value)))
+                    .setParameter(2, ((Number) row[0]).longValue())
+                    .setParameter(3, value)
+                    .executeUpdate();
+        }
+        return rows.size();
+    }
+}
@@ -3,11 +3,23 @@ package com.bulletjournal.repository;
 import com.bulletjournal.repository.models.Transaction;
 import com.bulletjournal.repository.models.TransactionContent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface TransactionContentRepository extends JpaRepository<TransactionContent, Long> {
     List<TransactionContent> findTransactionContentByTransaction(Transaction transaction);
-}
\ No newline at end of file
+
+    List<TransactionContent> findTransactionContentByTransactionIn(Collection<Transaction> transactions);
+
+    @Query("SELECT c.id AS id, c.owner AS owner, c.createdAt AS createdAt, c.updatedAt AS updatedAt, " +
+            "SUBSTRING(c.text, 1, :previewLength) AS preview, LENGTH(c.text) AS textLength, " +
+            "CASE WHEN c.revisions IS NULL THEN false ELSE true END AS legacyRevisions " +
+            "FROM TransactionContent c WHERE c.transaction = :transaction ORDER BY c.createdAt")
+    List<ContentSummaryInfo> findContentSummariesByTransaction(@Param("transaction") Transaction transaction,
+                                                               @Param("previewLength") int previewLength);
+}
@@ -7,11 +7,16 @@ import com.bulletjournal.controller.models.CreateTransactionParams;
 import com.bulletjournal.controller.models.Label;
 import com.bulletjournal.controller.models.ProjectType;
 import com.bulletjournal.controller.models.UpdateTransactionParams;
+import com.bulletjournal.controller.utils.EtagRegistry;
 import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
 import com.bulletjournal.exceptions.BadRequestException;
+import com.bulletjournal.ledger.LedgerGrouping;
+import com.bulletjournal.ledger.LedgerSum;
 import com.bulletjournal.ledger.TransactionType;
 import com.bulletjournal.notifications.Event;
+import com.bulletjournal.notifications.SetLabelEvent;
 import com.bulletjournal.repository.models.Project;
+import com.bulletjournal.repository.models.ProjectItemModel;
 import com.bulletjournal.repository.models.Transaction;
 import com.bulletjournal.repository.models.TransactionContent;
 import com.bulletjournal.repository.models.UserGroup;
@@ -25,8 +30,11 @@ import org.springframework.transaction.annotation.Transactional;
 import java.sql.Timestamp;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -41,6 +49,12 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
     private AuthorizationService authorizationService;
     @Autowired
     private TransactionContentRepository transactionContentRepository;
+    @Autowired
+    private EtagRegistry etagRegistry;
+    @Autowired
+    private LabelRepository labelRepository;
+    @Autowired
+    private LedgerRollupDaoJpa ledgerRollupDaoJpa;
 
     @Override
     public JpaRepository getJpaRepository() {
@@ -69,6 +83,46 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Sum transactions of project within the range in the database, without loading them
+     *
+     * @param projectId - Project identifier
+     * @param startTime - Range start time
+     * @param endTime   - Range end time
+     * @param grouping  - What transactions are summed by, null for totals of the range
+     * @retVal List<LedgerSum> - sums by group and transaction type, keys of LABEL sums are label names
+     */
+    public List<LedgerSum> getTransactionSums(
+            Long projectId, ZonedDateTime startTime, ZonedDateTime endTime, LedgerGrouping grouping, String requester) {
+        Project project = this.projectDaoJpa.getProject(projectId, requester);
+        List<LedgerSum> rollups = this.ledgerRollupDaoJpa.getSums(project.getId(), startTime, endTime, grouping);
+        if (rollups != null) {
+            return grouping == LedgerGrouping.LABEL ? toLabelNames(rollups) : rollups;
+        }
+        Timestamp start = Timestamp.from(startTime.toInstant());
+        Timestamp end = Timestamp.from(endTime.toInstant());
+        if (grouping == null) {
+            return this.transactionRepository.sumTransactionsByProjectBetween(project.getId(), start, end);
+        }
+
+        List<LedgerSum> sums = this.transactionRepository.sumTransactionsByProjectBetween(
+                project.getId(), start, end, grouping);
+        return grouping == LedgerGrouping.LABEL ? toLabelNames(sums) : sums;
+    }
+
+    private List<LedgerSum> toLabelNames(List<LedgerSum> sums) {
+        if (sums.isEmpty()) {
+            return sums;
+        }
+        Map<String, String> labelNames = this.labelRepository.findAllById(
+                sums.stream().map(s -> Long.valueOf(s.getKey())).distinct().collect(Collectors.toList()))
+                .stream().collect(Collectors.toMap(l -> l.getId().toString(), l -> l.getName()));
+        // skip labels deleted since
+        return sums.stream().filter(s -> labelNames.containsKey(s.getKey()))
+                .map(s -> new LedgerSum(labelNames.get(s.getKey()), s.getTransactionType(), s.getAmount()))
+                .collect(Collectors.toList());
+    }
+
     /**
      * Get transaction from Ledger Repository
      * <p>
@@ -126,7 +180,11 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
         transaction.setStartTime(Timestamp.from(ZonedDateTimeHelper.getStartTime(date, time, timezone).toInstant()));
         transaction.setEndTime(Timestamp.from(ZonedDateTimeHelper.getEndTime(date, time, timezone).toInstant()));
 
-        return this.transactionRepository.save(transaction);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TRANSACTIONS, projectId);
+        transaction = this.transactionRepository.save(transaction);
+        this.ledgerRollupDaoJpa.add(transaction);
+        indexNewProjectItem(transaction);
+        return transaction;
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -136,6 +194,7 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
         this.authorizationService.checkAuthorizedToOperateOnContent(
                 transaction.getOwner(), requester, ContentType.TRANSACTION, Operation.UPDATE,
                 transactionId, transaction.getProject().getOwner());
+        this.ledgerRollupDaoJpa.remove(transaction);
 
         DaoHelper.updateIfPresent(
                 updateTransactionParams.hasName(), updateTransactionParams.getName(), transaction::setName);
@@ -170,6 +229,11 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
                 Timestamp.from(ZonedDateTimeHelper.getEndTime(date, time, timezone).toInstant()), transaction::setEndTime);
 
         this.transactionRepository.save(transaction);
+        this.ledgerRollupDaoJpa.add(transaction);
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TRANSACTIONS, transaction.getProject().getId());
+        if (updateTransactionParams.hasName()) {
+            indexProjectItem(transaction, requester);
+        }
         return events;
     }
 
@@ -203,7 +267,10 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
         this.authorizationService.checkAuthorizedToOperateOnContent(transaction.getOwner(), requester,
                 ContentType.TRANSACTION, Operation.DELETE, projectId, project.getOwner());
 
+        this.ledgerRollupDaoJpa.remove(transaction);
         this.transactionRepository.delete(transaction);
+        removeFromIndex(Collections.singletonList(transaction));
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TRANSACTIONS, projectId);
         return generateEvents(transaction, requester, project);
     }
 
@@ -232,8 +299,23 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
         }
         this.authorizationService.checkAuthorizedToOperateOnContent(projectItem.getOwner(), requester,
                 ContentType.TRANSACTION, Operation.UPDATE, targetProject, project.getOwner());
+        this.etagRegistry.bump(EtagRegistry.Scope.PROJECT_TRANSACTIONS,
+                Arrays.asList(projectItem.getProject().getId(), targetProject));
+        this.ledgerRollupDaoJpa.remove(projectItem);
         projectItem.setProject(project);
         this.getJpaRepository().save(projectItem);
+        this.ledgerRollupDaoJpa.add(projectItem);
+        indexProjectItem(projectItem, requester);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public SetLabelEvent setLabels(String requester, Long projectItemId, List<Long> labels) {
+        Transaction transaction = this.getProjectItem(projectItemId, requester);
+        this.ledgerRollupDaoJpa.remove(transaction);
+        SetLabelEvent event = super.setLabels(requester, projectItemId, labels);
+        this.ledgerRollupDaoJpa.add(transaction);
+        return event;
     }
 
     @Override
@@ -251,4 +333,9 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
                 .collect(Collectors.toList());
         return contents;
     }
-}
\ No newline at end of file
+
+    @Override
+    List<ContentSummaryInfo> getContentSummaryInfos(ProjectItemModel projectItem, int previewLength) {
+        return this.transactionContentRepository.findContentSummariesByTransaction((Transaction) projectItem, previewLength);
+    }
+}
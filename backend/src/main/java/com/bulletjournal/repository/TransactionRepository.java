@@ -2,16 +2,20 @@ package com.bulletjournal.repository;
 
 import com.bulletjournal.repository.models.Project;
 import com.bulletjournal.repository.models.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionRepositoryCustom {
+    List<Transaction> findTransactionByProject(Project project);
+
     @Query("SELECT transaction FROM Transaction transaction where transaction.project = :project AND " +
             "((transaction.startTime >= :startTime AND transaction.startTime <= :endTime) OR " +
             "(transaction.endTime >= :startTime AND transaction.endTime <= :endTime))")
@@ -25,4 +29,9 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>,
     List<Transaction> findTransactionsOfPayerBetween(@Param("payer") String payer,
                                                      @Param("startTime") Timestamp startTime,
                                                      @Param("endTime") Timestamp endTime);
+
+    List<Transaction> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @Query("SELECT transaction FROM Transaction transaction JOIN FETCH transaction.project WHERE transaction.id IN :ids")
+    List<Transaction> findAllWithProjectById(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -1,11 +1,26 @@
 package com.bulletjournal.repository;
 
+import com.bulletjournal.ledger.LedgerGrouping;
+import com.bulletjournal.ledger.LedgerSum;
 import com.bulletjournal.repository.models.Transaction;
 
+import java.sql.Timestamp;
 import java.util.List;
 
 public interface TransactionRepositoryCustom {
     List<Transaction> findTransactionsByLabelIds(List<Long> labelIds);
 
     List<Transaction> findTransactionsByLabelId(Long labelId);
+
+    /**
+     * Sum amounts of project transactions within the range by group and transaction type,
+     * keys of LABEL sums are label ids
+     */
+    List<LedgerSum> sumTransactionsByProjectBetween(
+            Long projectId, Timestamp startTime, Timestamp endTime, LedgerGrouping grouping);
+
+    /**
+     * Sum amounts of project transactions within the range by transaction type
+     */
+    List<LedgerSum> sumTransactionsByProjectBetween(Long projectId, Timestamp startTime, Timestamp endTime);
 }
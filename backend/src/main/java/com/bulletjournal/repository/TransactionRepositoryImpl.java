@@ -1,6 +1,9 @@
 package com.bulletjournal.repository;
 
 
+import com.bulletjournal.ledger.LedgerGrouping;
+import com.bulletjournal.ledger.LedgerSum;
+import com.bulletjournal.ledger.TransactionType;
 import com.bulletjournal.repository.models.Transaction;
 import com.google.common.collect.ImmutableList;
 import org.springframework.stereotype.Repository;
@@ -9,7 +12,9 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 import javax.transaction.Transactional;
+import java.sql.Timestamp;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Repository
 @Transactional
@@ -35,4 +40,57 @@ public class TransactionRepositoryImpl implements TransactionRepositoryCustom {
     public List<Transaction> findTransactionsByLabelId(Long labelId) {
         return findTransactionsByLabelIds(ImmutableList.of(labelId));
     }
+
+    @Override
+    public List<LedgerSum> sumTransactionsByProjectBetween(
+            Long projectId, Timestamp startTime, Timestamp endTime, LedgerGrouping grouping) {
+        String from = "transactions t";
+        String key;
+        switch (grouping) {
+            case WEEK:
+                key = "to_char(to_date(t.date, 'YYYY-MM-DD'), 'IYYY-\"W\"IW')";
+                break;
+            case MONTH:
+                key = "substring(t.date, 1, 7)";
+                break;
+            case YEAR:
+                key = "substring(t.date, 1, 4)";
+                break;
+            case DAY:
+                key = "t.date";
+                break;
+            case PAYER:
+                key = "t.payer";
+                break;
+            case LABEL:
+                from = "transactions t CROSS JOIN LATERAL unnest(t.labels) AS l(label_id)";
+                key = "CAST(l.label_id AS varchar)";
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid LedgerGrouping " + grouping);
+        }
+        return sum(key, from, projectId, startTime, endTime);
+    }
+
+    @Override
+    public List<LedgerSum> sumTransactionsByProjectBetween(Long projectId, Timestamp startTime, Timestamp endTime) {
+        return sum("CAST(NULL AS varchar)", "transactions t", projectId, startTime, endTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<LedgerSum> sum(String key, String from, Long projectId, Timestamp startTime, Timestamp endTime) {
+        // same range as TransactionRepository.findTransactionsByProjectBetween
+        Query query = entityManager.createNativeQuery("SELECT " + key + " AS k, t.transaction_type, SUM(t.amount) " +
+                "FROM " + from + " WHERE t.project_id = ?1 AND " +
+                "((t.start_time >= ?2 AND t.start_time <= ?3) OR (t.end_time >= ?2 AND t.end_time <= ?3)) " +
+                "GROUP BY k, t.transaction_type");
+        query.setParameter(1, projectId);
+        query.setParameter(2, startTime);
+        query.setParameter(3, endTime);
+        return ((List<Object[]>) query.getResultList()).stream()
+                .map(row -> new LedgerSum((String) row[0],
+                        TransactionType.getType(((Number) row[1]).intValue()),
+                        ((Number) row[2]).doubleValue()))
+                .collect(Collectors.toList());
+    }
 }
@@ -1,5 +1,6 @@
 package com.bulletjournal.repository;
 
+import com.bulletjournal.authz.AuthorizationIndex;
 import com.bulletjournal.controller.models.Theme;
 import com.bulletjournal.controller.models.UpdateMyselfParams;
 import com.bulletjournal.exceptions.ResourceAlreadyExistException;
@@ -28,6 +29,9 @@ public class UserDaoJpa {
     @Autowired
     private UserGroupRepository userGroupRepository;
 
+    @Autowired
+    private AuthorizationIndex authorizationIndex;
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public User create(String name, String timezone) {
         List<User> userList = this.userRepository.findByName(name);
@@ -52,6 +56,7 @@ public class UserDaoJpa {
 
         user.addGroup(group);
         this.userGroupRepository.save(new UserGroup(user, group, true));
+        this.authorizationIndex.invalidateGroups(name);
         return this.userRepository.save(user);
     }
 
@@ -3,6 +3,8 @@ package com.bulletjournal.repository;
 import com.bulletjournal.repository.models.UserGroup;
 import com.bulletjournal.repository.models.UserGroupKey;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,4 +12,7 @@ import java.util.List;
 @Repository
 public interface UserGroupRepository extends JpaRepository<UserGroup, UserGroupKey> {
     List<UserGroup> findAllByGroupIdAndAccepted(Long groupId, Boolean accepted);
+
+    @Query("SELECT userGroup.group.id FROM UserGroup userGroup WHERE userGroup.user.name = :username")
+    List<Long> findGroupIdsByUsername(@Param("username") String username);
 }
@@ -1,6 +1,7 @@
 package com.bulletjournal.repository.models;
 
 import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.repository.utils.CompressedTextConverter;
 
 import javax.persistence.*;
 import java.util.Objects;
@@ -19,7 +20,8 @@ public class CompletedTask extends TaskModel {
     )
     private Long id;
 
-    @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(columnDefinition = "bytea")
     private String contents;
 
     public CompletedTask() {
@@ -1,12 +1,16 @@
 package com.bulletjournal.repository.models;
 
 import com.bulletjournal.controller.models.Content;
+import com.bulletjournal.controller.models.Revision;
+import com.bulletjournal.repository.utils.CompressedTextConverter;
 import com.google.gson.annotations.Expose;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.MappedSuperclass;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
+import java.util.List;
 
 @MappedSuperclass
 public abstract class ContentModel<T extends ProjectItemModel> extends AuditModel {
@@ -21,10 +25,12 @@ public abstract class ContentModel<T extends ProjectItemModel> extends AuditMode
     @Column(columnDefinition = "TEXT")
     private String text;
 
-    @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(columnDefinition = "bytea")
     private String baseText;
 
-    @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(columnDefinition = "bytea")
     private String revisions;
 
     public abstract Long getId();
@@ -71,4 +77,13 @@ public abstract class ContentModel<T extends ProjectItemModel> extends AuditMode
             this.getBaseText(), this.getCreatedAt().getTime(),
             this.getUpdatedAt().getTime(), this.getRevisions());
     }
+
+    public Content toPresentationModel(List<Revision> revisions) {
+        Content content = new Content(
+            this.getId(), this.getOwner(), this.getText(),
+            this.getBaseText(), this.getCreatedAt().getTime(),
+            this.getUpdatedAt().getTime(), null);
+        content.setRevisions(revisions.toArray(new Revision[0]));
+        return content;
+    }
 }
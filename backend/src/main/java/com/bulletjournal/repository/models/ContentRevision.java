@@ -0,0 +1,117 @@
+package com.bulletjournal.repository.models;
+
+import com.bulletjournal.controller.models.Revision;
+import com.bulletjournal.repository.utils.CompressedTextConverter;
+
+import javax.persistence.*;
+
+/**
+ * A revision of a task, note or transaction content: the diff from the previous revision,
+ * and every checkpointInterval revisions the full text, so that any revision is at most
+ * checkpointInterval - 1 diffs away from a full text
+ */
+@Entity
+@Table(name = "content_revisions",
+        uniqueConstraints = {
+                @UniqueConstraint(columnNames = {"content_type", "content_id", "revision_id"})
+        })
+public class ContentRevision {
+
+    @Id
+    @GeneratedValue(generator = "content_revision_generator")
+    @SequenceGenerator(
+            name = "content_revision_generator",
+            sequenceName = "content_revision_sequence",
+            initialValue = 100,
+            allocationSize = 50
+    )
+    private Long id;
+
+    /**
+     * Type of the project item owning the content, contents of each type have their own ids
+     */
+    @Column(name = "content_type", length = 20, nullable = false, updatable = false)
+    private String contentType;
+
+    @Column(name = "content_id", nullable = false, updatable = false)
+    private Long contentId;
+
+    @Column(name = "revision_id", nullable = false, updatable = false)
+    private Long revisionId;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Long createdAt;
+
+    @Column(length = 100, nullable = false, updatable = false)
+    private String username;
+
+    /**
+     * Patch from the text of the previous revision to the text of this one
+     */
+    @Column(columnDefinition = "TEXT", updatable = false)
+    private String diff;
+
+    /**
+     * Full text of this revision, set on checkpoints and on the oldest revision kept
+     */
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(columnDefinition = "bytea")
+    private String snapshot;
+
+    public ContentRevision() {
+    }
+
+    public ContentRevision(String contentType, Long contentId, Long revisionId, Long createdAt,
+                           String username, String diff) {
+        this.contentType = contentType;
+        this.contentId = contentId;
+        this.revisionId = revisionId;
+        this.createdAt = createdAt;
+        this.username = username;
+        this.diff = diff;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public Long getContentId() {
+        return contentId;
+    }
+
+    public Long getRevisionId() {
+        return revisionId;
+    }
+
+    public Long getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getDiff() {
+        return diff;
+    }
+
+    public String getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(String snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public boolean hasSnapshot() {
+        return this.snapshot != null;
+    }
+
+    public Revision toPresentationModel() {
+        return new Revision(this.revisionId, null, this.createdAt, this.username);
+    }
+}
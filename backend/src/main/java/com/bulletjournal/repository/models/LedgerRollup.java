@@ -0,0 +1,54 @@
+package com.bulletjournal.repository.models;
+
+import javax.persistence.*;
+
+/**
+ * Sum of the transactions of a project in a month, by label, payer and transaction type
+ */
+@Entity
+@Table(name = "ledger_rollups",
+        indexes = {@Index(name = "ledger_rollup_label_index", columnList = "label_id")})
+public class LedgerRollup {
+
+    @EmbeddedId
+    private LedgerRollupKey id;
+
+    @Column(nullable = false)
+    private double amount;
+
+    @Column(nullable = false)
+    private long count;
+
+    public LedgerRollup() {
+    }
+
+    public LedgerRollup(LedgerRollupKey id, double amount, long count) {
+        this.id = id;
+        this.amount = amount;
+        this.count = count;
+    }
+
+    public LedgerRollupKey getId() {
+        return id;
+    }
+
+    public void setId(LedgerRollupKey id) {
+        this.id = id;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(double amount) {
+        this.amount = amount;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
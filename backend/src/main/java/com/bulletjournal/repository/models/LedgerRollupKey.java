@@ -0,0 +1,126 @@
+package com.bulletjournal.repository.models;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Objects;
+
+@Embeddable
+public class LedgerRollupKey implements Serializable {
+
+    @NotNull
+    @Column(name = "project_id")
+    private Long projectId;
+
+    /**
+     * Time zone of the transactions, which yearMonth is local to
+     */
+    @NotNull
+    @Column(length = 50)
+    private String timezone;
+
+    /**
+     * "yyyy-MM" of transaction date
+     */
+    @NotNull
+    @Column(name = "year_month", length = 7)
+    private String yearMonth;
+
+    /**
+     * 0 for the row counting every transaction once, otherwise one of the transaction labels
+     */
+    @NotNull
+    @Column(name = "label_id")
+    private Long labelId;
+
+    /**
+     * empty for transactions without payer
+     */
+    @NotNull
+    @Column(length = 100)
+    private String payer;
+
+    @NotNull
+    @Column(name = "transaction_type")
+    private Integer transactionType;
+
+    public LedgerRollupKey() {
+    }
+
+    public LedgerRollupKey(Long projectId, String timezone, String yearMonth, Long labelId, String payer,
+                           Integer transactionType) {
+        this.projectId = projectId;
+        this.timezone = timezone;
+        this.yearMonth = yearMonth;
+        this.labelId = labelId;
+        this.payer = payer;
+        this.transactionType = transactionType;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public String getTimezone() {
+        return timezone;
+    }
+
+    public void setTimezone(String timezone) {
+        this.timezone = timezone;
+    }
+
+    public String getYearMonth() {
+        return yearMonth;
+    }
+
+    public void setYearMonth(String yearMonth) {
+        this.yearMonth = yearMonth;
+    }
+
+    public Long getLabelId() {
+        return labelId;
+    }
+
+    public void setLabelId(Long labelId) {
+        this.labelId = labelId;
+    }
+
+    public String getPayer() {
+        return payer;
+    }
+
+    public void setPayer(String payer) {
+        this.payer = payer;
+    }
+
+    public Integer getTransactionType() {
+        return transactionType;
+    }
+
+    public void setTransactionType(Integer transactionType) {
+        this.transactionType = transactionType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LedgerRollupKey)) return false;
+        LedgerRollupKey that = (LedgerRollupKey) o;
+        return Objects.equals(getProjectId(), that.getProjectId()) &&
+                Objects.equals(getTimezone(), that.getTimezone()) &&
+                Objects.equals(getYearMonth(), that.getYearMonth()) &&
+                Objects.equals(getLabelId(), that.getLabelId()) &&
+                Objects.equals(getPayer(), that.getPayer()) &&
+                Objects.equals(getTransactionType(), that.getTransactionType());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getProjectId(), getTimezone(), getYearMonth(), getLabelId(), getPayer(), getTransactionType());
+    }
+}
@@ -6,7 +6,7 @@ import javax.validation.constraints.Size;
 
 @Entity
 @Table(name = "notifications",
-        indexes = {@Index(name = "notification_time_index", columnList = "target_user,updated_at"),
+        indexes = {@Index(name = "notification_time_index", columnList = "target_user,actionable,updated_at,id"),
                 @Index(name = "notification_stale_check_index", columnList = "updated_at")})
 public class Notification extends AuditModel {
 
@@ -15,7 +15,8 @@ public class Notification extends AuditModel {
     @SequenceGenerator(
             name = "notification_generator",
             sequenceName = "notification_sequence",
-            initialValue = 100
+            initialValue = 100,
+            allocationSize = 100
     )
     private Long id;
 
@@ -47,6 +48,9 @@ public class Notification extends AuditModel {
     @Column
     private String actions;
 
+    @Column(nullable = false)
+    private boolean actionable;
+
     public Notification() {
     }
 
@@ -123,6 +127,14 @@ public class Notification extends AuditModel {
 
     public void setActions(String actions) {
         this.actions = actions;
+        this.actionable = actions != null;
+    }
+
+    /**
+     * Notifications waiting for an answer are listed first
+     */
+    public boolean isActionable() {
+        return actionable;
     }
 
     public com.bulletjournal.controller.models.Notification toPresentationModel() {
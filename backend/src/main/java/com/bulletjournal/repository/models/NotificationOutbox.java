@@ -0,0 +1,49 @@
+package com.bulletjournal.repository.models;
+
+import javax.persistence.*;
+
+/**
+ * Notifications of an informed event that are not persisted yet, so that they survive a restart
+ */
+@Entity
+@Table(name = "notification_outbox")
+public class NotificationOutbox extends AuditModel {
+
+    @Id
+    @GeneratedValue(generator = "notification_outbox_generator")
+    @SequenceGenerator(
+            name = "notification_outbox_generator",
+            sequenceName = "notification_outbox_sequence",
+            initialValue = 100
+    )
+    private Long id;
+
+    /**
+     * JSON array of the notifications
+     */
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String notifications;
+
+    public NotificationOutbox() {
+    }
+
+    public NotificationOutbox(String notifications) {
+        this.notifications = notifications;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getNotifications() {
+        return notifications;
+    }
+
+    public void setNotifications(String notifications) {
+        this.notifications = notifications;
+    }
+}
@@ -13,10 +13,10 @@ public class ProjectNotes extends AuditModel {
     private Long projectId;
 
     /**
-     * Store subNotes' hierarchy
+     * Store subNotes' hierarchy, encoded by HierarchyCodec
      */
-    @Column(length = 10485760)
-    private String notes;
+    @Column(columnDefinition = "bytea")
+    private byte[] notes;
 
     public ProjectNotes() {
     }
@@ -33,11 +33,11 @@ public class ProjectNotes extends AuditModel {
         this.projectId = projectId;
     }
 
-    public String getNotes() {
+    public byte[] getNotes() {
         return notes;
     }
 
-    public void setNotes(String notes) {
+    public void setNotes(byte[] notes) {
         this.notes = notes;
     }
 }
\ No newline at end of file
@@ -13,10 +13,10 @@ public class ProjectTasks extends AuditModel {
     private Long projectId;
 
     /**
-     * Store Tasks' hierarchy
+     * Store Tasks' hierarchy, encoded by HierarchyCodec
      */
-    @Column(length = 10485760)
-    private String tasks;
+    @Column(columnDefinition = "bytea")
+    private byte[] tasks;
 
     public ProjectTasks() {
     }
@@ -33,11 +33,11 @@ public class ProjectTasks extends AuditModel {
         this.projectId = projectId;
     }
 
-    public String getTasks() {
+    public byte[] getTasks() {
         return tasks;
     }
 
-    public void setTasks(String tasks) {
+    public void setTasks(byte[] tasks) {
         this.tasks = tasks;
     }
 }
\ No newline at end of file
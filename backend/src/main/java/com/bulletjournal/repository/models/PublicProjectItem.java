@@ -10,7 +10,8 @@ import java.sql.Timestamp;
 @Entity
 @Table(name = "public_project_items",
         indexes = {@Index(name = "public_project_items_task_index", columnList = "task_id"),
-                @Index(name = "public_project_items_note_index", columnList = "note_id")})
+                @Index(name = "public_project_items_note_index", columnList = "note_id"),
+                @Index(name = "public_project_items_expiration_index", columnList = "expiration_time")})
 public class PublicProjectItem extends AuditModel {
 
     @Id
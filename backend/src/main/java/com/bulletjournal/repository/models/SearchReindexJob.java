@@ -0,0 +1,82 @@
+package com.bulletjournal.repository.models;
+
+import javax.persistence.*;
+
+/**
+ * Checkpoint of a reindex into a new project item index, so that it resumes where it stopped
+ */
+@Entity
+@Table(name = "search_reindex_jobs")
+public class SearchReindexJob extends AuditModel {
+
+    @Id
+    @Column(name = "index_name", length = 100)
+    private String indexName;
+
+    /**
+     * Content type being indexed
+     */
+    @Column(nullable = false, length = 20)
+    private String phase;
+
+    /**
+     * Id of the last item of phase indexed
+     */
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    @Column(nullable = false)
+    private long indexed;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    public SearchReindexJob() {
+    }
+
+    public SearchReindexJob(String indexName, String phase) {
+        this.indexName = indexName;
+        this.phase = phase;
+        this.lastId = 0L;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public void setIndexName(String indexName) {
+        this.indexName = indexName;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(Long lastId) {
+        this.lastId = lastId;
+    }
+
+    public long getIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(long indexed) {
+        this.indexed = indexed;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+}
@@ -215,7 +215,23 @@ public abstract class TaskModel extends ProjectItemModel {
         this.recurrenceRule = recurrenceRule;
     }
 
-    private Timestamp getReminderDateTime(Timestamp startTime, Integer before) {
+    /**
+     * Reminder time of the task starting at startTime, as {@link #setReminderSetting} sets it from
+     * {@link #getReminderSetting}: relative to startTime, at the reminder date, or none
+     */
+    public static Timestamp getReminderDateTime(Timestamp startTime, Integer before, String reminderDate,
+                                                String reminderTime, String timezone) {
+        if (before != null) {
+            return getReminderDateTime(startTime, before);
+        }
+        if (reminderDate != null) {
+            return Timestamp.from(ZonedDateTimeHelper.getStartTime(reminderDate, reminderTime, timezone).toInstant());
+        }
+        // set to Before.NONE
+        return null;
+    }
+
+    public static Timestamp getReminderDateTime(Timestamp startTime, Integer before) {
         Instant reminderInstant;
         switch (before) {
             case 0:
@@ -0,0 +1,88 @@
+package com.bulletjournal.repository.models;
+
+import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
+import org.dmfs.rfc5545.DateTime;
+
+import java.sql.Timestamp;
+
+/**
+ * A single occurrence of a recurring {@link Task}.
+ * It references the recurring task instead of cloning it, and derives due date,
+ * start/end time and reminder time from the occurrence date time.
+ */
+public class TaskOccurrence {
+
+    private final Task task;
+    private final String dueDate;
+    private final String dueTime;
+    private final Timestamp startTime;
+    private final Timestamp endTime;
+
+    public TaskOccurrence(Task task, DateTime occurrence) {
+        this.task = task;
+        this.dueDate = ZonedDateTimeHelper.getDate(occurrence);
+        this.dueTime = ZonedDateTimeHelper.getTime(occurrence);
+        this.startTime = Timestamp.from(
+                ZonedDateTimeHelper.getStartTime(this.dueDate, this.dueTime, task.getTimezone()).toInstant());
+        this.endTime = Timestamp.from(
+                ZonedDateTimeHelper.getEndTime(this.dueDate, this.dueTime, task.getTimezone()).toInstant());
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public String getDueDate() {
+        return dueDate;
+    }
+
+    public String getDueTime() {
+        return dueTime;
+    }
+
+    public Timestamp getStartTime() {
+        return startTime;
+    }
+
+    public Timestamp getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Same as {@link TaskModel#setReminderSetting} would compute for this occurrence
+     */
+    public Timestamp getReminderDateTime() {
+        return TaskModel.getReminderDateTime(this.startTime, this.task.getReminderBeforeTask(),
+                this.task.getReminderDate(), this.task.getReminderTime(), this.task.getTimezone());
+    }
+
+    public boolean needsReminding(Timestamp now) {
+        Timestamp reminderDateTime = getReminderDateTime();
+        return reminderDateTime != null && reminderDateTime.before(now) && this.startTime.after(now);
+    }
+
+    /**
+     * Materialize this occurrence as a detached Task entity
+     */
+    public Task toTask() {
+        Task cloned;
+        try {
+            cloned = (Task) this.task.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Clone new Task failed");
+        }
+        cloned.setDueDate(this.dueDate);
+        cloned.setDueTime(this.dueTime);
+        cloned.setStartTime(this.startTime);
+        cloned.setEndTime(this.endTime);
+        cloned.setReminderDateTime(getReminderDateTime());
+        return cloned;
+    }
+
+    public com.bulletjournal.controller.models.Task toPresentationModel() {
+        com.bulletjournal.controller.models.Task presentation = this.task.toPresentationModel();
+        presentation.setDueDate(this.dueDate);
+        presentation.setDueTime(this.dueTime);
+        return presentation;
+    }
+}
@@ -13,10 +13,10 @@ public class UserProjects extends AuditModel {
     private String owner;
 
     /**
-     * Store self-owned projects' hierarchy
+     * Store self-owned projects' hierarchy, encoded by HierarchyCodec
      */
-    @Column(length = 10485760)
-    private String ownedProjects;
+    @Column(columnDefinition = "bytea")
+    private byte[] ownedProjects;
 
     /**
      * Stores projects shared with me - order of project owners
@@ -39,11 +39,11 @@ public class UserProjects extends AuditModel {
         this.owner = owner;
     }
 
-    public String getOwnedProjects() {
+    public byte[] getOwnedProjects() {
         return ownedProjects;
     }
 
-    public void setOwnedProjects(String projects) {
+    public void setOwnedProjects(byte[] projects) {
         this.ownedProjects = projects;
     }
 
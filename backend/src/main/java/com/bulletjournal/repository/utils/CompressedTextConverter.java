@@ -0,0 +1,133 @@
+package com.bulletjournal.repository.utils;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores a large text column as bytea, compressed with Deflate above COMPRESSION_THRESHOLD bytes
+ * <p>
+ * - byte 0: 0, which text columns cannot contain, so values written as text are told apart
+ * - byte 1: format version
+ * - byte 2: codec, RAW or DEFLATE
+ * - RAW: UTF-8 bytes; DEFLATE: 4 bytes of the UTF-8 length, then the deflated UTF-8 bytes
+ * <p>
+ * Values without the header are columns converted from text, read as UTF-8 and compressed on their
+ * next write, or by {@link com.bulletjournal.daemon.TextCompressionMigrator}.
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    static final byte MARKER = 0;
+    static final byte VERSION = 1;
+    static final byte RAW = 0;
+    static final byte DEFLATE = 1;
+    static final int HEADER_LENGTH = 3;
+    /**
+     * Below this, compression saves little and Postgres keeps the row inline anyway
+     */
+    static final int COMPRESSION_THRESHOLD = 512;
+
+    @Override
+    public byte[] convertToDatabaseColumn(String text) {
+        return text == null ? null : encode(text);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] value) {
+        return value == null ? null : decode(value);
+    }
+
+    public static byte[] encode(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= COMPRESSION_THRESHOLD) {
+            byte[] compressed = deflate(bytes);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+        byte[] value = new byte[HEADER_LENGTH + bytes.length];
+        value[0] = MARKER;
+        value[1] = VERSION;
+        value[2] = RAW;
+        System.arraycopy(bytes, 0, value, HEADER_LENGTH, bytes.length);
+        return value;
+    }
+
+    public static String decode(byte[] value) {
+        if (!isEncoded(value)) {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+        if (value[1] != VERSION) {
+            throw new IllegalArgumentException("Unknown text format " + value[1]);
+        }
+        switch (value[2]) {
+            case RAW:
+                return new String(value, HEADER_LENGTH, value.length - HEADER_LENGTH, StandardCharsets.UTF_8);
+            case DEFLATE:
+                return new String(inflate(value), StandardCharsets.UTF_8);
+            default:
+                throw new IllegalArgumentException("Unknown text codec " + value[2]);
+        }
+    }
+
+    public static boolean isEncoded(byte[] value) {
+        return value.length >= HEADER_LENGTH && value[0] == MARKER;
+    }
+
+    /**
+     * @return encoded value, or null if it does not get smaller
+     */
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + HEADER_LENGTH + 4);
+            out.write(MARKER);
+            out.write(VERSION);
+            out.write(DEFLATE);
+            out.write(ByteBuffer.allocate(4).putInt(bytes.length).array(), 0, 4);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+                if (out.size() >= bytes.length + HEADER_LENGTH) {
+                    return null;
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] value) {
+        int length = ByteBuffer.wrap(value, HEADER_LENGTH, 4).getInt();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(value, HEADER_LENGTH + 4, value.length - HEADER_LENGTH - 4);
+            byte[] bytes = new byte[length];
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int count = inflater.inflate(bytes, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length) {
+                throw new IllegalArgumentException("Truncated compressed text");
+            }
+            return bytes;
+        } catch (DataFormatException ex) {
+            throw new IllegalArgumentException("Malformed compressed text", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+}
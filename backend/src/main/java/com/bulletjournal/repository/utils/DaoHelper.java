@@ -1,6 +1,13 @@
 package com.bulletjournal.repository.utils;
 
+import com.bulletjournal.repository.models.Group;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class DaoHelper {
 
@@ -9,4 +16,56 @@ public class DaoHelper {
             getter.accept(value);
         }
     }
+
+    public static List<String> getUsernames(Group group) {
+        return group.getUsers().stream()
+                .map(userGroup -> userGroup.getUser().getName())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Run runnable once the surrounding transaction commits, or right away if there is none
+     */
+    public static void afterCommit(Runnable runnable) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    runnable.run();
+                }
+            });
+        } else {
+            runnable.run();
+        }
+    }
+
+    /**
+     * Run runnable once the surrounding transaction commits or rolls back, nothing if there is none
+     */
+    public static void afterCompletion(Runnable runnable) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    runnable.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Run runnable if the surrounding transaction rolls back, nothing if there is none
+     */
+    public static void afterRollback(Runnable runnable) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != TransactionSynchronization.STATUS_COMMITTED) {
+                        runnable.run();
+                    }
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,217 @@
+package com.bulletjournal.repository.utils;
+
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.util.CustomThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Read-through cache of public item links by uuid, so that anonymous hits of a shared link
+ * do not query the database.
+ * <p>
+ * - Entries are ordered by expiry in a priority queue. A link is dropped when it expires, or after
+ * ttlMillis to bound staleness, and a sweep removes expired entries in the background.
+ * - Unknown and expired uuids are cached for negativeTtlMillis, so scrapers guessing uuids
+ * are answered from memory too.
+ * - At most maxEntries entries are kept, the ones expiring first are evicted.
+ */
+@Component
+public class PublicItemLinkCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 10000;
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    static final long DEFAULT_NEGATIVE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final Logger LOGGER = LoggerFactory.getLogger(PublicItemLinkCache.class);
+    private static final long LOG_STATS_INTERVAL = 10000;
+    private static final long SWEEP_INTERVAL_SECONDS = 10;
+
+    private final Map<String, Entry> links = new ConcurrentHashMap<>();
+    // may hold entries already replaced or invalidated, they are skipped when polled
+    private final PriorityQueue<Entry> expirations = new PriorityQueue<>(Comparator.comparingLong(e -> e.expiresAt));
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService executorService;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // a link loaded while an invalidation happened may be stale and is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PublicItemLinkCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_NEGATIVE_TTL_MILLIS, System::currentTimeMillis);
+        this.executorService.scheduleWithFixedDelay(
+                this::evictExpired, SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    PublicItemLinkCache(int maxEntries, long ttlMillis, long negativeTtlMillis, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.clock = clock;
+        this.executorService = Executors.newSingleThreadScheduledExecutor(
+                new CustomThreadFactory("public-item-link-cache"));
+    }
+
+    /**
+     * Get the link of uuid, loading it on a miss
+     *
+     * @param loader loads the link from the database, {@link Link#MISSING} if there is none
+     */
+    public Link get(String uuid, Function<String, Link> loader) {
+        long now = this.clock.getAsLong();
+        Entry entry = this.links.get(uuid);
+        if (entry != null && entry.expiresAt > now) {
+            logStats(this.hits.incrementAndGet() + this.misses.get());
+            return entry.link;
+        }
+        logStats(this.hits.get() + this.misses.incrementAndGet());
+
+        long invalidations = this.invalidations.get();
+        Link link = loader.apply(uuid);
+        if (invalidations != this.invalidations.get()) {
+            return link;
+        }
+        now = this.clock.getAsLong();
+        long expiresAt;
+        if (link.isMissing() || link.isExpired(now)) {
+            expiresAt = now + this.negativeTtlMillis;
+        } else {
+            expiresAt = Math.min(now + this.ttlMillis, link.getExpirationTime());
+        }
+        put(new Entry(uuid, link, expiresAt));
+        return link;
+    }
+
+    /**
+     * Drop the link of uuid once the current transaction commits, e.g. after it is created or revoked
+     */
+    public void invalidate(String uuid) {
+        DaoHelper.afterCommit(() -> {
+            this.invalidations.incrementAndGet();
+            this.links.remove(uuid);
+        });
+    }
+
+    public int size() {
+        return this.links.size();
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    void evictExpired() {
+        long now = this.clock.getAsLong();
+        synchronized (this.expirations) {
+            while (!this.expirations.isEmpty() && this.expirations.peek().expiresAt <= now) {
+                remove(this.expirations.poll());
+            }
+        }
+    }
+
+    private void put(Entry entry) {
+        this.links.put(entry.uuid, entry);
+        long now = this.clock.getAsLong();
+        synchronized (this.expirations) {
+            this.expirations.add(entry);
+            while (this.expirations.size() > this.maxEntries
+                    || (!this.expirations.isEmpty() && this.expirations.peek().expiresAt <= now)) {
+                remove(this.expirations.poll());
+            }
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (this.links.remove(entry.uuid, entry)) {
+            this.evictions.incrementAndGet();
+        }
+    }
+
+    private void logStats(long lookups) {
+        if (lookups % LOG_STATS_INTERVAL == 0) {
+            LOGGER.info("PublicItemLinkCache hits: {}, misses: {}, evictions: {}, links: {}",
+                    this.hits.get(), this.misses.get(), this.evictions.get(), size());
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        this.executorService.shutdownNow();
+    }
+
+    /**
+     * The project item a public link points to
+     */
+    public static final class Link {
+
+        public static final Link MISSING = new Link(null, null, null);
+
+        private final ContentType contentType;
+        private final Long itemId;
+        private final Long expirationTime;
+
+        public Link(ContentType contentType, Long itemId, Long expirationTime) {
+            this.contentType = contentType;
+            this.itemId = itemId;
+            this.expirationTime = expirationTime;
+        }
+
+        public ContentType getContentType() {
+            return contentType;
+        }
+
+        public Long getItemId() {
+            return itemId;
+        }
+
+        /**
+         * @return expiration time in milliseconds, Long.MAX_VALUE if the link does not expire
+         */
+        public long getExpirationTime() {
+            return this.expirationTime == null ? Long.MAX_VALUE : this.expirationTime;
+        }
+
+        public boolean isMissing() {
+            return this.contentType == null;
+        }
+
+        public boolean isExpired(long now) {
+            return getExpirationTime() < now;
+        }
+    }
+
+    private static final class Entry {
+        private final String uuid;
+        private final Link link;
+        private final long expiresAt;
+
+        private Entry(String uuid, Link link, long expiresAt) {
+            this.uuid = uuid;
+            this.link = link;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -27,19 +27,41 @@ public class ContentDiffTool {
     }
 
     public String applyDiff(String oldText, String diff) {
-        List<DiffMatchPatch.Patch> patches = diffMatchPatch.patchFromText(diff);
-        Object[] output = diffMatchPatch.patchApply(
-                (LinkedList<DiffMatchPatch.Patch>) patches, oldText);
-        String newText = (String) output[0];
-        boolean[] status = (boolean[]) output[1];
+        Object[] output = patchApply(oldText, diff);
         // check if all patches are applied successfully
-        for (boolean s : status) {
+        if (!isApplied(output)) {
+            LOGGER.error("Some patches in diff failed to apply, old text:\n {}, \n diff:\n {}",
+                    oldText, diff);
+        }
+        return (String) output[0];
+    }
+
+    /**
+     * Apply diff from a client
+     *
+     * @return new text, or null if diff is malformed or some of its patches fail to apply
+     */
+    public String applyDiffExactly(String oldText, String diff) {
+        Object[] output;
+        try {
+            output = patchApply(oldText, diff);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        return isApplied(output) ? (String) output[0] : null;
+    }
+
+    private Object[] patchApply(String oldText, String diff) {
+        List<DiffMatchPatch.Patch> patches = diffMatchPatch.patchFromText(diff);
+        return diffMatchPatch.patchApply((LinkedList<DiffMatchPatch.Patch>) patches, oldText);
+    }
+
+    private static boolean isApplied(Object[] output) {
+        for (boolean s : (boolean[]) output[1]) {
             if (!s) {
-                LOGGER.error("Some patches in diff failed to apply, old text:\n {}, \n diff:\n {}",
-                        oldText, diff);
-                break;
+                return false;
             }
         }
-        return newText;
+        return true;
     }
 }
@@ -0,0 +1,189 @@
+package com.bulletjournal.util;
+
+import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.Freq;
+import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.rfc5545.recur.RecurrenceRuleIterator;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Expands recurrence rules into occurrences within a time window.
+ * <p>
+ * - Parsed rules are cached per (taskId, rule, timezone), so a changed rule or timezone simply misses.
+ * - DAILY and WEEKLY rules without COUNT or BYxxx parts are re-anchored at the last period
+ * starting before the window, other rules fast forward the iterator to the window start.
+ * Either way no occurrence before the window is materialized.
+ */
+@Component
+public class RecurrenceEngine {
+
+    static final int DEFAULT_MAX_CACHED_RULES = 10000;
+
+    private final Map<RuleKey, BuJoRecurrenceRule> rules;
+
+    public RecurrenceEngine() {
+        this(DEFAULT_MAX_CACHED_RULES);
+    }
+
+    public RecurrenceEngine(int maxCachedRules) {
+        this.rules = Collections.synchronizedMap(new LinkedHashMap<RuleKey, BuJoRecurrenceRule>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RuleKey, BuJoRecurrenceRule> eldest) {
+                return size() > maxCachedRules;
+            }
+        });
+    }
+
+    /**
+     * Get occurrences of a recurrence rule between startTime and endTime, both inclusive
+     *
+     * @param taskId         the task id the rule belongs to
+     * @param recurrenceRule the recurrence rule string, "DTSTART:... RRULE:..."
+     * @param timezone       the timezone of the task
+     * @param startTime      the window start
+     * @param endTime        the window end
+     * @return List<DateTime> - occurrences in ascending order
+     */
+    public List<DateTime> getOccurrences(
+            Long taskId, String recurrenceRule, String timezone, DateTime startTime, DateTime endTime)
+            throws InvalidRecurrenceRuleException {
+        BuJoRecurrenceRule rule = getRule(taskId, recurrenceRule, timezone);
+        RecurrenceRuleIterator it = seek(rule, startTime);
+
+        List<DateTime> occurrences = new ArrayList<>();
+        while (it.hasNext()) {
+            DateTime currDateTime = it.nextDateTime();
+            if (currDateTime.after(endTime)) {
+                break;
+            }
+            if (currDateTime.before(startTime)) {
+                continue;
+            }
+            occurrences.add(currDateTime);
+        }
+        return occurrences;
+    }
+
+    /**
+     * Get the first occurrence of a recurrence rule strictly after the given time
+     *
+     * @param taskId         the task id the rule belongs to
+     * @param recurrenceRule the recurrence rule string, "DTSTART:... RRULE:..."
+     * @param timezone       the timezone of the task
+     * @param after          the time to search after
+     * @return DateTime - the next occurrence, or null if the rule has no more occurrences
+     */
+    public DateTime getNextOccurrence(Long taskId, String recurrenceRule, String timezone, DateTime after)
+            throws InvalidRecurrenceRuleException {
+        BuJoRecurrenceRule rule = getRule(taskId, recurrenceRule, timezone);
+        RecurrenceRuleIterator it = seek(rule, after);
+        while (it.hasNext()) {
+            DateTime currDateTime = it.nextDateTime();
+            if (currDateTime.after(after)) {
+                return currDateTime;
+            }
+        }
+        return null;
+    }
+
+    public void evict(Long taskId) {
+        synchronized (this.rules) {
+            this.rules.keySet().removeIf(key -> Objects.equals(key.taskId, taskId));
+        }
+    }
+
+    public int size() {
+        return this.rules.size();
+    }
+
+    private BuJoRecurrenceRule getRule(Long taskId, String recurrenceRule, String timezone)
+            throws InvalidRecurrenceRuleException {
+        RuleKey key = new RuleKey(taskId, recurrenceRule, timezone);
+        BuJoRecurrenceRule rule = this.rules.get(key);
+        if (rule == null) {
+            rule = new BuJoRecurrenceRule(recurrenceRule, timezone);
+            this.rules.put(key, rule);
+        }
+        return rule;
+    }
+
+    private RecurrenceRuleIterator seek(BuJoRecurrenceRule rule, DateTime startTime) {
+        RecurrenceRule rrule = rule.getRrule();
+        DateTime start = rule.getStart();
+        if (!start.before(startTime)) {
+            return rule.getIterator();
+        }
+
+        if (start.getTimeZone() != null && isPeriodic(rrule)) {
+            DateTime anchor = getAnchor(rrule, start, startTime);
+            return rrule.iterator(anchor);
+        }
+
+        RecurrenceRuleIterator it = rule.getIterator();
+        it.fastForward(startTime.getTimestamp());
+        return it;
+    }
+
+    /**
+     * Occurrences of DAILY and WEEKLY rules without COUNT and BYxxx parts are exactly
+     * DTSTART plus a multiple of INTERVAL periods in local time
+     */
+    private static boolean isPeriodic(RecurrenceRule rrule) {
+        if (rrule.getFreq() != Freq.DAILY && rrule.getFreq() != Freq.WEEKLY) {
+            return false;
+        }
+        if (rrule.getCount() != null) {
+            return false;
+        }
+        for (RecurrenceRule.Part part : RecurrenceRule.Part.values()) {
+            if (part.name().startsWith("BY") && rrule.hasPart(part)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static DateTime getAnchor(RecurrenceRule rrule, DateTime start, DateTime startTime) {
+        ChronoUnit unit = rrule.getFreq() == Freq.DAILY ? ChronoUnit.DAYS : ChronoUnit.WEEKS;
+        ZonedDateTime zonedStart = ZonedDateTimeHelper.getZonedDateTime(start);
+        ZonedDateTime windowStart = ZonedDateTimeHelper.getZonedDateTime(startTime)
+                .withZoneSameInstant(zonedStart.getZone());
+        long periods = unit.between(zonedStart, windowStart);
+        long skipped = periods - periods % rrule.getInterval();
+        ZonedDateTime anchor = zonedStart.plus(skipped, unit);
+        return new DateTime(start.getTimeZone(), anchor.toInstant().toEpochMilli());
+    }
+
+    private static final class RuleKey {
+        private final Long taskId;
+        private final String recurrenceRule;
+        private final String timezone;
+
+        private RuleKey(Long taskId, String recurrenceRule, String timezone) {
+            this.taskId = taskId;
+            this.recurrenceRule = recurrenceRule;
+            this.timezone = timezone;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RuleKey)) return false;
+            RuleKey ruleKey = (RuleKey) o;
+            return Objects.equals(taskId, ruleKey.taskId) &&
+                    Objects.equals(recurrenceRule, ruleKey.recurrenceRule) &&
+                    Objects.equals(timezone, ruleKey.timezone);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(taskId, recurrenceRule, timezone);
+        }
+    }
+}
@@ -93,36 +93,36 @@ INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (14, 14, tru
 
 -- Join Group - Xavier invites BulletJournal to Join Group "Default" ID 1
 INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (1, 0, true);
-INSERT INTO public.notifications (id, created_at, updated_at, actions, content, content_id, originator, target_user, title, type)
-VALUES (0, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', null, 1, 'Xavier', 'BulletJournal', 'Xavier invited you to join Group Default', 'JoinGroupEvent');
+INSERT INTO public.notifications (id, created_at, updated_at, actions, actionable, content, content_id, originator, target_user, title, type)
+VALUES (0, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', true, null, 1, 'Xavier', 'BulletJournal', 'Xavier invited you to join Group Default', 'JoinGroupEvent');
 
 INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (2, 0, true);
-INSERT INTO public.notifications (id, created_at, updated_at, actions, content, content_id, originator, target_user, title, type)
-VALUES (1, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', null, 2, 'bbs1024', 'BulletJournal', 'bbs1024 invited you to join Group Default', 'JoinGroupEvent');
+INSERT INTO public.notifications (id, created_at, updated_at, actions, actionable, content, content_id, originator, target_user, title, type)
+VALUES (1, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', true, null, 2, 'bbs1024', 'BulletJournal', 'bbs1024 invited you to join Group Default', 'JoinGroupEvent');
 
 INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (3, 0, true);
-INSERT INTO public.notifications (id, created_at, updated_at, actions, content, content_id, originator, target_user, title, type)
-VALUES (2, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', null, 3, 'ccc', 'BulletJournal', 'ccc invited you to join Group Default', 'JoinGroupEvent');
+INSERT INTO public.notifications (id, created_at, updated_at, actions, actionable, content, content_id, originator, target_user, title, type)
+VALUES (2, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', true, null, 3, 'ccc', 'BulletJournal', 'ccc invited you to join Group Default', 'JoinGroupEvent');
 
 INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (4, 0, true);
-INSERT INTO public.notifications (id, created_at, updated_at, actions, content, content_id, originator, target_user, title, type)
-VALUES (3, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', null, 4, 'Thinker', 'BulletJournal', 'Thinker invited you to join Group Default', 'JoinGroupEvent');
+INSERT INTO public.notifications (id, created_at, updated_at, actions, actionable, content, content_id, originator, target_user, title, type)
+VALUES (3, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', true, null, 4, 'Thinker', 'BulletJournal', 'Thinker invited you to join Group Default', 'JoinGroupEvent');
 
 INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (5, 0, true);
-INSERT INTO public.notifications (id, created_at, updated_at, actions, content, content_id, originator, target_user, title, type)
-VALUES (4, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', null, 5, 'Joker', 'BulletJournal', 'Joker invited you to join Group Default', 'JoinGroupEvent');
+INSERT INTO public.notifications (id, created_at, updated_at, actions, actionable, content, content_id, originator, target_user, title, type)
+VALUES (4, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', true, null, 5, 'Joker', 'BulletJournal', 'Joker invited you to join Group Default', 'JoinGroupEvent');
 
 INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (6, 0, true);
-INSERT INTO public.notifications (id, created_at, updated_at, actions, content, content_id, originator, target_user, title, type)
-VALUES (5, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', null, 6, 'mqm', 'BulletJournal', 'mqm invited you to join Group Default', 'JoinGroupEvent');
+INSERT INTO public.notifications (id, created_at, updated_at, actions, actionable, content, content_id, originator, target_user, title, type)
+VALUES (5, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', true, null, 6, 'mqm', 'BulletJournal', 'mqm invited you to join Group Default', 'JoinGroupEvent');
 
 INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (7, 0, true);
-INSERT INTO public.notifications (id, created_at, updated_at, actions, content, content_id, originator, target_user, title, type)
-VALUES (6, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', null, 7, 'hero', 'BulletJournal', 'hero invited you to join Group Default', 'JoinGroupEvent');
+INSERT INTO public.notifications (id, created_at, updated_at, actions, actionable, content, content_id, originator, target_user, title, type)
+VALUES (6, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', true, null, 7, 'hero', 'BulletJournal', 'hero invited you to join Group Default', 'JoinGroupEvent');
 
 INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (8, 0, true);
-INSERT INTO public.notifications (id, created_at, updated_at, actions, content, content_id, originator, target_user, title, type)
-VALUES (7, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', null, 8, 'bean', 'BulletJournal', 'bean invited you to join Group Default', 'JoinGroupEvent');
+INSERT INTO public.notifications (id, created_at, updated_at, actions, actionable, content, content_id, originator, target_user, title, type)
+VALUES (7, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', '["ACCEPT","DECLINE"]', true, null, 8, 'bean', 'BulletJournal', 'bean invited you to join Group Default', 'JoinGroupEvent');
 
 -- My default group
 INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (98, 4, true);
@@ -132,8 +132,8 @@ INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (98, 7, true
 INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (98, 8, true);
 
 -- DeleteGroupEvent
-INSERT INTO public.notifications (id, created_at, updated_at, actions, content, content_id, originator, target_user, title, type)
-VALUES (8, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', null, null, 99, 'ShrimpChips', 'BulletJournal', 'Group Avenger is deleted', 'DeleteGroupEvent');
+INSERT INTO public.notifications (id, created_at, updated_at, actions, actionable, content, content_id, originator, target_user, title, type)
+VALUES (8, '2020-02-13 10:38:59.901000', '2020-02-13 10:38:59.901000', null, false, null, 99, 'ShrimpChips', 'BulletJournal', 'Group Avenger is deleted', 'DeleteGroupEvent');
 
 -- Joined Scarlet's Default Group
 INSERT INTO public.user_groups (group_id, user_id, accepted) VALUES (12, 0, true);
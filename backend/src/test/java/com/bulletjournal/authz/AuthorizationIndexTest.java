@@ -0,0 +1,65 @@
+package com.bulletjournal.authz;
+
+import com.bulletjournal.repository.SharedProjectItemRepository;
+import com.bulletjournal.repository.UserGroupRepository;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link AuthorizationIndex}
+ */
+public class AuthorizationIndexTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private final UserGroupRepository userGroupRepository = mock(UserGroupRepository.class);
+
+    @Test
+    public void testLoadDuringInvalidation() {
+        AuthorizationIndex index = new AuthorizationIndex(
+                this.userGroupRepository, mock(SharedProjectItemRepository.class), 10, 500, this.now::get);
+        // the membership is revoked while it is being read
+        when(this.userGroupRepository.findGroupIdsByUsername("a")).thenAnswer(invocation -> {
+            index.invalidateGroups("a");
+            return Collections.singletonList(1L);
+        }).thenReturn(Collections.emptyList());
+
+        assertTrue(index.isInGroup("a", 1L));
+        assertFalse(index.isInGroup("a", 1L));
+        assertFalse(index.isInGroup("a", 1L));
+        verify(this.userGroupRepository, times(2)).findGroupIdsByUsername("a");
+    }
+
+    @Test
+    public void testExpiry() {
+        AuthorizationIndex index = new AuthorizationIndex(
+                this.userGroupRepository, mock(SharedProjectItemRepository.class), 10, 500, this.now::get);
+        when(this.userGroupRepository.findGroupIdsByUsername("a")).thenReturn(Collections.singletonList(1L));
+
+        assertTrue(index.isInGroup("a", 1L));
+        this.now.set(1499);
+        assertTrue(index.isInGroup("a", 1L));
+        verify(this.userGroupRepository, times(1)).findGroupIdsByUsername("a");
+
+        this.now.set(1500);
+        assertTrue(index.isInGroup("a", 1L));
+        verify(this.userGroupRepository, times(2)).findGroupIdsByUsername("a");
+    }
+
+    @Test
+    public void testMaxUsers() {
+        AuthorizationIndex index = new AuthorizationIndex(
+                this.userGroupRepository, mock(SharedProjectItemRepository.class), 2, 500, this.now::get);
+        when(this.userGroupRepository.findGroupIdsByUsername(anyString())).thenReturn(Collections.emptyList());
+
+        index.getGroupIds("a");
+        index.getGroupIds("b");
+        assertEquals(0, index.getEvictions());
+        index.getGroupIds("c");
+        assertEquals(1, index.getEvictions());
+    }
+}
@@ -7,10 +7,11 @@ import com.bulletjournal.repository.UserDaoJpa;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
 
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 /**
  * Tests {@link UserClient}
@@ -39,4 +40,23 @@ public class UserClientTests {
                 user.getThumbnail());
         Assert.assertEquals(6475, user.getId().intValue());
     }
+
+    @Test
+    public void testGetUsers() throws Exception {
+        RedisUserRepository redisUserRepository = mock(RedisUserRepository.class);
+        when(redisUserRepository.findById("a")).thenReturn(Optional.of(new User("a", "ta", "aa")));
+        when(redisUserRepository.findById("b")).thenReturn(Optional.of(new User("b", "tb", "ab")));
+        UserClient userClient = new UserClient(new SSOConfig(
+                "https://1o24bbs.com"), redisUserRepository, mock(UserDaoJpa.class));
+
+        Map<String, User> users = userClient.getUsers(Arrays.asList("b", "a", "b", null));
+        Assert.assertEquals(Arrays.asList("b", "a"), Arrays.asList(users.keySet().toArray()));
+        Assert.assertEquals("ab", users.get("b").getAvatar());
+
+        // served by the local cache afterwards
+        Assert.assertEquals("aa", userClient.getUser("a").getAvatar());
+        userClient.getUsers(Arrays.asList("a", "b"));
+        verify(redisUserRepository, times(1)).findById("a");
+        verify(redisUserRepository, times(1)).findById("b");
+    }
 }
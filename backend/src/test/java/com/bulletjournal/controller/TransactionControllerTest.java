@@ -180,8 +180,85 @@ public class TransactionControllerTest {
 
     }
 
+    @Test
+    public void testUpdateAndDeleteTransactionWithContent() {
+        Group group = createGroup("Group_TransactionContent");
+        Project p1 = createProject("p_Ledger_content", group, ProjectType.LEDGER);
+        Transaction t1 = createTransaction(p1, "T1", "2020-01-01", USER, 100.0, 0);
+
+        UpdateTransactionParams updateTransactionParams = new UpdateTransactionParams(
+                "T2", USER, 200.0, "2020-01-02", null, TIMEZONE, 1);
+        ResponseEntity<Transaction> updateResponse = this.restTemplate.exchange(
+                ROOT_URL + randomServerPort + TransactionController.TRANSACTION_ROUTE,
+                HttpMethod.PATCH,
+                TestHelpers.actAsOtherUser(updateTransactionParams, USER),
+                Transaction.class,
+                t1.getId());
+        assertEquals(HttpStatus.OK, updateResponse.getStatusCode());
+        assertEquals("T2", updateResponse.getBody().getName());
+
+        ResponseEntity<Content> contentResponse = this.restTemplate.exchange(
+                ROOT_URL + randomServerPort + TransactionController.ADD_CONTENT_ROUTE,
+                HttpMethod.POST,
+                TestHelpers.actAsOtherUser(new CreateContentParams("TEXT1"), USER),
+                Content.class,
+                t1.getId());
+        assertEquals(HttpStatus.OK, contentResponse.getStatusCode());
+        Content content = contentResponse.getBody();
+        assertNotNull(content);
+
+        ResponseEntity<Void> response = this.restTemplate.exchange(
+                ROOT_URL + randomServerPort + TransactionController.CONTENT_ROUTE,
+                HttpMethod.PATCH,
+                TestHelpers.actAsOtherUser(new UpdateContentParams("TEXT2"), USER),
+                Void.class,
+                t1.getId(),
+                content.getId());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+
+        ResponseEntity<Content[]> contentsResponse = this.restTemplate.exchange(
+                ROOT_URL + randomServerPort + TransactionController.CONTENTS_ROUTE,
+                HttpMethod.GET,
+                TestHelpers.actAsOtherUser(null, USER),
+                Content[].class,
+                t1.getId());
+        assertEquals(HttpStatus.OK, contentsResponse.getStatusCode());
+        assertEquals(1, contentsResponse.getBody().length);
+        assertEquals("TEXT2", contentsResponse.getBody()[0].getText());
+
+        response = this.restTemplate.exchange(
+                ROOT_URL + randomServerPort + TransactionController.CONTENT_ROUTE,
+                HttpMethod.DELETE,
+                TestHelpers.actAsOtherUser(null, USER),
+                Void.class,
+                t1.getId(),
+                content.getId());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+
+        contentsResponse = this.restTemplate.exchange(
+                ROOT_URL + randomServerPort + TransactionController.CONTENTS_ROUTE,
+                HttpMethod.GET,
+                TestHelpers.actAsOtherUser(null, USER),
+                Content[].class,
+                t1.getId());
+        assertEquals(HttpStatus.OK, contentsResponse.getStatusCode());
+        assertEquals(0, contentsResponse.getBody().length);
+
+        response = this.restTemplate.exchange(
+                ROOT_URL + randomServerPort + TransactionController.TRANSACTION_ROUTE,
+                HttpMethod.DELETE,
+                TestHelpers.actAsOtherUser(null, USER),
+                Void.class,
+                t1.getId());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
     private Group createGroup() {
-        CreateGroupParams group = new CreateGroupParams("Group_ProjectItem");
+        return createGroup("Group_ProjectItem");
+    }
+
+    private Group createGroup(String groupName) {
+        CreateGroupParams group = new CreateGroupParams(groupName);
 
         ResponseEntity<Group> response = this.restTemplate.exchange(
                 ROOT_URL + randomServerPort + GroupController.GROUPS_ROUTE,
@@ -192,7 +269,7 @@ public class TransactionControllerTest {
 
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
         assertNotNull(created);
-        assertEquals("Group_ProjectItem", created.getName());
+        assertEquals(groupName, created.getName());
         assertEquals("hero", created.getOwner());
 //        assertEquals(1, created.getUsers().size());
 
@@ -214,7 +291,7 @@ public class TransactionControllerTest {
         assertEquals(projectName, created.getName());
         assertEquals("hero", created.getOwner());
         assertEquals(type, created.getProjectType());
-        assertEquals("Group_ProjectItem", created.getGroup().getName());
+        assertEquals(g.getName(), created.getGroup().getName());
         assertEquals("hero", created.getGroup().getOwner());
         assertEquals("d14", created.getDescription());
         return created;
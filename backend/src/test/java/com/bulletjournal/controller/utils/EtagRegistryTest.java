@@ -0,0 +1,77 @@
+package com.bulletjournal.controller.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link EtagRegistry}
+ */
+public class EtagRegistryTest {
+
+    @Test
+    public void testBump() {
+        EtagRegistry etagRegistry = new EtagRegistry();
+        String etag1 = etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TASKS, 1L);
+        String etag2 = etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TASKS, 2L);
+        assertEquals(etag1, etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TASKS, 1L));
+        assertTrue(EtagRegistry.matches(etag1, Optional.of(etag1)));
+        assertFalse(EtagRegistry.matches(etag1, Optional.empty()));
+
+        etagRegistry.bump(EtagRegistry.Scope.PROJECT_TASKS, 1L);
+        assertNotEquals(etag1, etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TASKS, 1L));
+        assertEquals(etag2, etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TASKS, 2L));
+        assertEquals(1, etagRegistry.getVersion(EtagRegistry.Scope.PROJECT_TASKS, 1L));
+        assertEquals(0, etagRegistry.getVersion(EtagRegistry.Scope.PROJECT_NOTES, 1L));
+
+        etag1 = etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TASKS, 1L);
+        etagRegistry.bump(EtagRegistry.Scope.PROJECT_NOTES, Arrays.asList(1L, 2L));
+        assertEquals(etag1, etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TASKS, 1L));
+
+        etagRegistry.bumpAll(EtagRegistry.Scope.PROJECT_TASKS);
+        assertNotEquals(etag1, etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TASKS, 1L));
+        assertNotEquals(etag2, etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TASKS, 2L));
+    }
+
+    @Test
+    public void testVariantsAndUnversioned() {
+        EtagRegistry etagRegistry = new EtagRegistry();
+        String etag = etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TRANSACTIONS, 1L, "WEEKLY");
+        assertEquals(etag, etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TRANSACTIONS, 1L, "WEEKLY"));
+        assertNotEquals(etag, etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TRANSACTIONS, 1L, "MONTHLY"));
+
+        etagRegistry.setUnversioned(EtagRegistry.Scope.PROJECT_TRANSACTIONS, 1L);
+        assertTrue(etagRegistry.isUnversioned(EtagRegistry.Scope.PROJECT_TRANSACTIONS, 1L));
+        assertNull(etagRegistry.getEtag(EtagRegistry.Scope.PROJECT_TRANSACTIONS, 1L, "WEEKLY"));
+        assertFalse(EtagRegistry.matches(null, Optional.of(etag)));
+    }
+
+    @Test
+    public void testEviction() {
+        EtagRegistry etagRegistry = new EtagRegistry(2);
+        String initial = etagRegistry.getEtag(EtagRegistry.Scope.TASK, 1L);
+        etagRegistry.bump(EtagRegistry.Scope.TASK, 1L);
+        String bumped = etagRegistry.getEtag(EtagRegistry.Scope.TASK, 1L);
+        etagRegistry.bump(EtagRegistry.Scope.TASK, 1L);
+        etagRegistry.bump(EtagRegistry.Scope.TASK, 2L);
+        String etag2 = etagRegistry.getEtag(EtagRegistry.Scope.TASK, 2L);
+        String note = etagRegistry.getEtag(EtagRegistry.Scope.NOTE, 1L);
+
+        // evicts 1L, which then reads a version it never had
+        etagRegistry.bump(EtagRegistry.Scope.TASK, 3L);
+        assertEquals(3, etagRegistry.getVersion(EtagRegistry.Scope.TASK, 1L));
+        String evicted = etagRegistry.getEtag(EtagRegistry.Scope.TASK, 1L);
+        assertNotEquals(initial, evicted);
+        assertNotEquals(bumped, evicted);
+        assertEquals(etag2, etagRegistry.getEtag(EtagRegistry.Scope.TASK, 2L));
+        assertEquals(note, etagRegistry.getEtag(EtagRegistry.Scope.NOTE, 1L));
+
+        etagRegistry.bump(EtagRegistry.Scope.TASK, 1L);
+        assertEquals(4, etagRegistry.getVersion(EtagRegistry.Scope.TASK, 1L));
+        assertEquals(4, etagRegistry.getVersion(EtagRegistry.Scope.TASK, 3L));
+        assertEquals(etag2, etagRegistry.getEtag(EtagRegistry.Scope.TASK, 2L));
+    }
+}
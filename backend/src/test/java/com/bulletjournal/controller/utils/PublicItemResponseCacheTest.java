@@ -0,0 +1,63 @@
+package com.bulletjournal.controller.utils;
+
+import com.bulletjournal.contents.ContentType;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link PublicItemResponseCache}
+ */
+public class PublicItemResponseCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private final AtomicInteger renders = new AtomicInteger();
+    private final Supplier<byte[]> renderer =
+            () -> ("{\"render\":" + this.renders.incrementAndGet() + "}").getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testEtag() {
+        PublicItemResponseCache cache = new PublicItemResponseCache(10, 500, this.now::get);
+        PublicItemResponseCache.Response response = cache.get(ContentType.NOTE, 1L, "\"v1\"", this.renderer);
+        assertEquals("\"v1\"", response.getEtag());
+        assertEquals(1000, response.getLastModified());
+        assertSame(response, cache.get(ContentType.NOTE, 1L, "\"v1\"", this.renderer));
+        assertEquals(1, this.renders.get());
+
+        // the task with the same id is another item
+        cache.get(ContentType.TASK, 1L, "\"v1\"", this.renderer);
+        assertEquals(2, this.renders.get());
+
+        // rendered again once the item is updated
+        this.now.set(1100);
+        response = cache.get(ContentType.NOTE, 1L, "\"v2\"", this.renderer);
+        assertEquals("{\"render\":3}", new String(response.getBody(), StandardCharsets.UTF_8));
+        assertEquals(1100, response.getLastModified());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testTtlAndMaxResponses() {
+        PublicItemResponseCache cache = new PublicItemResponseCache(2, 500, this.now::get);
+        cache.get(ContentType.NOTE, 1L, "\"v1\"", this.renderer);
+        this.now.set(1500);
+        cache.get(ContentType.NOTE, 1L, "\"v1\"", this.renderer);
+        assertEquals(2, this.renders.get());
+
+        cache.get(ContentType.NOTE, 2L, "\"v1\"", this.renderer);
+        cache.get(ContentType.NOTE, 1L, "\"v1\"", this.renderer);
+        cache.get(ContentType.NOTE, 3L, "\"v1\"", this.renderer);
+        assertEquals(2, cache.size());
+        assertEquals(4, this.renders.get());
+        // note 2 was the least recently used
+        cache.get(ContentType.NOTE, 1L, "\"v1\"", this.renderer);
+        assertEquals(4, this.renders.get());
+        cache.get(ContentType.NOTE, 2L, "\"v1\"", this.renderer);
+        assertEquals(5, this.renders.get());
+    }
+}
@@ -0,0 +1,85 @@
+package com.bulletjournal.daemon;
+
+import com.bulletjournal.config.NotificationConfig;
+import com.bulletjournal.repository.ContentRevisionDaoJpa;
+import com.bulletjournal.repository.NotificationDaoJpa;
+import com.bulletjournal.repository.PublicProjectItemDaoJpa;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link Cleaner}
+ */
+public class CleanerTest {
+
+    private static final long NOW = 1600000000000L;
+
+    private final NotificationDaoJpa notificationDaoJpa = mock(NotificationDaoJpa.class);
+    private final PublicProjectItemDaoJpa publicProjectItemDaoJpa = mock(PublicProjectItemDaoJpa.class);
+    private final ContentRevisionDaoJpa contentRevisionDaoJpa = mock(ContentRevisionDaoJpa.class);
+    private Cleaner cleaner;
+
+    @Before
+    public void setUp() {
+        NotificationConfig notificationConfig = new NotificationConfig();
+        NotificationConfig.Cleaner config = new NotificationConfig.Cleaner();
+        config.setMaxRetentionTimeInDays(30);
+        config.setIntervalInSeconds(60);
+        config.setChunkSize(3);
+        notificationConfig.setCleaner(config);
+        this.cleaner = new Cleaner(this.notificationDaoJpa, this.publicProjectItemDaoJpa, this.contentRevisionDaoJpa,
+                notificationConfig, () -> NOW);
+    }
+
+    @Test
+    public void testCutoff() {
+        this.cleaner.clean();
+
+        ArgumentCaptor<Timestamp> notificationCutoff = ArgumentCaptor.forClass(Timestamp.class);
+        verify(this.notificationDaoJpa).deleteExpiredNotifications(notificationCutoff.capture(), eq(3));
+        assertEquals(NOW - TimeUnit.DAYS.toMillis(30), notificationCutoff.getValue().getTime());
+        ArgumentCaptor<Timestamp> publicItemCutoff = ArgumentCaptor.forClass(Timestamp.class);
+        verify(this.publicProjectItemDaoJpa).deleteExpiredPublicItems(publicItemCutoff.capture(), eq(3));
+        assertEquals(NOW, publicItemCutoff.getValue().getTime());
+        verify(this.contentRevisionDaoJpa).deleteOrphanRevisions(3);
+    }
+
+    @Test
+    public void testChunks() {
+        when(this.notificationDaoJpa.deleteExpiredNotifications(any(), anyInt())).thenReturn(3, 3, 1);
+        when(this.publicProjectItemDaoJpa.deleteExpiredPublicItems(any(), anyInt())).thenReturn(3, 0);
+        when(this.contentRevisionDaoJpa.deleteOrphanRevisions(anyInt())).thenReturn(2);
+
+        this.cleaner.clean();
+        // every chunk of a run uses the same cutoff
+        ArgumentCaptor<Timestamp> cutoffs = ArgumentCaptor.forClass(Timestamp.class);
+        verify(this.notificationDaoJpa, times(3)).deleteExpiredNotifications(cutoffs.capture(), eq(3));
+        assertEquals(1, cutoffs.getAllValues().stream().distinct().count());
+        verify(this.publicProjectItemDaoJpa, times(2)).deleteExpiredPublicItems(any(), eq(3));
+        verify(this.contentRevisionDaoJpa, times(1)).deleteOrphanRevisions(3);
+        assertEquals(7, this.cleaner.getNotificationsDeleted());
+        assertEquals(3, this.cleaner.getPublicProjectItemsDeleted());
+        assertEquals(2, this.cleaner.getContentRevisionsDeleted());
+    }
+
+    @Test
+    public void testFailure() {
+        when(this.notificationDaoJpa.deleteExpiredNotifications(any(), anyInt()))
+                .thenThrow(new IllegalStateException("Lock timeout"));
+
+        // the failure is logged and the next run starts over
+        this.cleaner.clean();
+        verify(this.publicProjectItemDaoJpa, never()).deleteExpiredPublicItems(any(), anyInt());
+        reset(this.notificationDaoJpa);
+        this.cleaner.clean();
+        verify(this.publicProjectItemDaoJpa).deleteExpiredPublicItems(any(), anyInt());
+        assertEquals(0, this.cleaner.getNotificationsDeleted());
+    }
+}
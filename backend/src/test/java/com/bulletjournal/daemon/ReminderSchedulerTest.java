@@ -0,0 +1,186 @@
+package com.bulletjournal.daemon;
+
+import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
+import com.bulletjournal.notifications.UpdateTarget;
+import com.bulletjournal.notifications.UpdatesPublisher;
+import com.bulletjournal.repository.LabelRepository;
+import com.bulletjournal.repository.TaskRepository;
+import com.bulletjournal.repository.models.Project;
+import com.bulletjournal.repository.models.Task;
+import com.bulletjournal.repository.models.TaskOccurrence;
+import com.bulletjournal.util.RecurrenceEngine;
+import org.dmfs.rfc5545.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link ReminderScheduler}
+ */
+public class ReminderSchedulerTest {
+
+    private static final String USER = "reminder_user";
+    private static final String TIMEZONE = "America/Los_Angeles";
+    private static final String RECURRENCE_RULE = "DTSTART:20200101T170000Z RRULE:FREQ=DAILY;INTERVAL=1";
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long START = ZonedDateTime.of(2020, 1, 10, 8, 0, 0, 0, ZoneId.of(TIMEZONE))
+            .toInstant().toEpochMilli();
+
+    private final AtomicLong now = new AtomicLong(START);
+    private final Map<Long, Task> tasks = new HashMap<>();
+    private final TaskRepository taskRepository = mock(TaskRepository.class);
+    private final LabelRepository labelRepository = mock(LabelRepository.class);
+    private final UpdatesPublisher updatesPublisher = mock(UpdatesPublisher.class);
+    private ReminderScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        when(this.taskRepository.findTasksWithPendingReminders(eq(USER), any()))
+                .thenAnswer(invocation -> new ArrayList<>(this.tasks.values()));
+        when(this.taskRepository.findAllById(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(this.tasks::containsKey).map(this.tasks::get).collect(Collectors.toList());
+        });
+        when(this.labelRepository.findAllById(any())).thenReturn(Collections.emptyList());
+        this.scheduler = new ReminderScheduler(this.taskRepository, this.labelRepository, new RecurrenceEngine(),
+                this.updatesPublisher, this.now::get);
+    }
+
+    @Test
+    public void testReminder() {
+        Task task = task(1L, START + 30 * MINUTE, START + 20 * MINUTE);
+        assertEquals(Collections.emptyList(), getRemindedTaskIds());
+
+        // due at its reminder time
+        this.now.set(START + 20 * MINUTE);
+        this.scheduler.dispatch();
+        verify(this.updatesPublisher, times(1)).publishNow(USER, UpdateTarget.TASK_REMINDERS);
+        assertEquals(Collections.singletonList(task.getId()), getRemindedTaskIds());
+        this.now.set(START + 30 * MINUTE);
+        assertEquals(Collections.singletonList(task.getId()), getRemindedTaskIds());
+
+        // expired a minute after it starts
+        this.now.set(START + 31 * MINUTE);
+        this.scheduler.dispatch();
+        verify(this.updatesPublisher, times(2)).publishNow(USER, UpdateTarget.TASK_REMINDERS);
+        assertEquals(Collections.emptyList(), getRemindedTaskIds());
+    }
+
+    @Test
+    public void testRecurringReminder() throws Exception {
+        Task task = task(1L, null, null);
+        task.setRecurrenceRule(RECURRENCE_RULE);
+        task.setReminderBeforeTask(com.bulletjournal.controller.models.Before.ONE_HR_BEFORE.getValue());
+        assertEquals(Collections.emptyList(), getRemindedTaskIds());
+
+        RecurrenceEngine engine = new RecurrenceEngine();
+        DateTime first = engine.getNextOccurrence(1L, RECURRENCE_RULE, TIMEZONE,
+                ZonedDateTimeHelper.getDateTime(START, TIMEZONE));
+        TaskOccurrence occurrence = new TaskOccurrence(task, first);
+        this.now.set(occurrence.getStartTime().getTime() - 30 * MINUTE);
+        this.scheduler.dispatch();
+        List<com.bulletjournal.controller.models.Task> reminded = getRemindingTasks();
+        assertEquals(1, reminded.size());
+        assertEquals(occurrence.getDueDate(), reminded.get(0).getDueDate());
+        assertEquals(occurrence.getDueTime(), reminded.get(0).getDueTime());
+
+        this.now.set(occurrence.getStartTime().getTime() + MINUTE);
+        this.scheduler.dispatch();
+        assertEquals(Collections.emptyList(), getRemindedTaskIds());
+
+        // the next occurrence was scheduled when the first one became due
+        TaskOccurrence next = new TaskOccurrence(task, engine.getNextOccurrence(1L, RECURRENCE_RULE, TIMEZONE, first));
+        this.now.set(next.getStartTime().getTime() - 30 * MINUTE);
+        this.scheduler.dispatch();
+        reminded = getRemindingTasks();
+        assertEquals(1, reminded.size());
+        assertEquals(next.getDueDate(), reminded.get(0).getDueDate());
+        verify(this.taskRepository, times(1)).findTasksWithPendingReminders(eq(USER), any());
+    }
+
+    @Test
+    public void testRescheduleAndCancel() {
+        task(1L, START + 30 * MINUTE, START + 20 * MINUTE);
+        assertEquals(Collections.emptyList(), getRemindedTaskIds());
+
+        // the task is edited to start an hour later
+        Task edited = task(1L, START + 90 * MINUTE, START + 80 * MINUTE);
+        this.scheduler.schedule(edited);
+        this.now.set(START + 20 * MINUTE);
+        this.scheduler.dispatch();
+        assertEquals(Collections.emptyList(), getRemindedTaskIds());
+        this.now.set(START + 80 * MINUTE);
+        this.scheduler.dispatch();
+        assertEquals(Collections.singletonList(1L), getRemindedTaskIds());
+
+        // deleted
+        this.scheduler.cancel(USER, 1L);
+        assertEquals(Collections.emptyList(), getRemindedTaskIds());
+        this.tasks.remove(1L);
+        this.now.set(START + 81 * MINUTE);
+        this.scheduler.dispatch();
+        assertEquals(Collections.emptyList(), getRemindedTaskIds());
+    }
+
+    @Test
+    public void testReloadAfterIdle() {
+        assertEquals(Collections.emptyList(), getRemindedTaskIds());
+
+        // unloaded after a day without polls, changes while unloaded are read on the next load
+        this.now.set(START + TimeUnit.DAYS.toMillis(1) + MINUTE);
+        this.scheduler.dispatch();
+        long now = this.now.get();
+        Task task = task(1L, now + 30 * MINUTE, now - MINUTE);
+        this.scheduler.schedule(task);
+        assertEquals(Collections.singletonList(task.getId()), getRemindedTaskIds());
+        verify(this.taskRepository, times(2)).findTasksWithPendingReminders(eq(USER), any());
+
+        // not unloaded while subscribed to updates
+        when(this.updatesPublisher.isSubscribed(USER)).thenReturn(true);
+        this.now.set(now + TimeUnit.DAYS.toMillis(2));
+        this.scheduler.dispatch();
+        getRemindedTaskIds();
+        verify(this.taskRepository, times(2)).findTasksWithPendingReminders(eq(USER), any());
+    }
+
+    private Task task(Long id, Long startTime, Long reminderDateTime) {
+        Project project = new Project();
+        project.setId(10L);
+        Task task = new Task();
+        task.setId(id);
+        task.setName("task " + id);
+        task.setOwner(USER);
+        task.setAssignedTo(USER);
+        task.setTimezone(TIMEZONE);
+        task.setProject(project);
+        if (startTime != null) {
+            task.setStartTime(new Timestamp(startTime));
+        }
+        if (reminderDateTime != null) {
+            task.setReminderDateTime(new Timestamp(reminderDateTime));
+        }
+        this.tasks.put(id, task);
+        return task;
+    }
+
+    private List<com.bulletjournal.controller.models.Task> getRemindingTasks() {
+        return this.scheduler.getRemindingTasks(USER,
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(this.now.get()), ZoneId.of(TIMEZONE)));
+    }
+
+    private List<Long> getRemindedTaskIds() {
+        return getRemindingTasks().stream().map(com.bulletjournal.controller.models.Task::getId)
+                .collect(Collectors.toList());
+    }
+}
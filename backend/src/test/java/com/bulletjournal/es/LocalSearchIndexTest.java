@@ -0,0 +1,115 @@
+package com.bulletjournal.es;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link LocalSearchIndex}
+ */
+public class LocalSearchIndexTest {
+
+    private static final Set<Long> GROUPS = Collections.singleton(1L);
+    private final AtomicLong versions = new AtomicLong();
+
+    @Test
+    public void testMatch() {
+        LocalSearchIndex index = new LocalSearchIndex();
+        index.apply(document("TASK@1", 1L, "Weekly grocery shopping", "milk, eggs and bread"));
+        index.apply(document("NOTE@2", 1L, "Reading list", "Designing data-intensive applications"));
+        index.apply(document("NOTE@3", 1L, "Bread recipes", "sourdough"));
+        index.apply(document("NOTE@4", 2L, "Bread in another group", ""));
+
+        // name matches score higher than contents matches
+        assertEquals(Arrays.asList("NOTE@3", "TASK@1"), search(index, "bread"));
+        // fuzzy matches within the edits of Fuzziness.AUTO
+        assertEquals(Arrays.asList("TASK@1"), search(index, "grocey"));
+        assertEquals(Arrays.asList("NOTE@2"), search(index, "applciations"));
+        assertEquals(Arrays.asList(), search(index, "grxxxy"));
+        // the first 3 characters have to match
+        assertEquals(Arrays.asList(), search(index, "brzad"));
+        // prefix matches
+        assertEquals(Arrays.asList("TASK@1"), search(index, "shop"));
+        assertEquals(Arrays.asList(), search(index, "sh"));
+        // shared items outside of the groups
+        assertEquals(Arrays.asList("NOTE@3", "NOTE@4", "TASK@1"), index.search("bread", GROUPS,
+                Collections.singleton("NOTE@4"), null, 10).getIds());
+
+        index.apply(delete("NOTE@3"));
+        assertEquals(Arrays.asList("TASK@1"), search(index, "bread"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testVersions() {
+        LocalSearchIndex index = new LocalSearchIndex();
+        SearchIndexOperation stale = document("TASK@1", 1L, "old name", "");
+        index.apply(document("TASK@1", 1L, "new name", ""));
+        index.apply(stale);
+        assertEquals(Arrays.asList(), search(index, "old"));
+        assertEquals(Arrays.asList("TASK@1"), search(index, "new"));
+
+        index.startLoading();
+        SearchIndexOperation staleCopy = document("TASK@2", 1L, "deleted", "");
+        index.apply(delete("TASK@2"));
+        index.apply(staleCopy);
+        assertEquals(Arrays.asList(), search(index, "deleted"));
+        index.finishLoading();
+
+        // deletes are not remembered after loading
+        staleCopy = document("TASK@3", 1L, "recreated", "");
+        index.apply(delete("TASK@3"));
+        index.apply(staleCopy);
+        assertEquals(Arrays.asList("TASK@3"), search(index, "recreated"));
+    }
+
+    @Test
+    public void testPages() {
+        LocalSearchIndex index = new LocalSearchIndex();
+        for (int i = 0; i < 25; i++) {
+            index.apply(document("TASK@" + i, 1L, "meeting " + i, ""));
+        }
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            SearchPage page = index.search("meeting", GROUPS, Collections.emptySet(), cursor, 10);
+            ids.addAll(page.getIds());
+            cursor = page.getCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(3, pages);
+        assertEquals(25, new HashSet<>(ids).size());
+    }
+
+    @Test
+    public void testDistance() {
+        assertEquals(0, LocalSearchIndex.getMaxEdits(2));
+        assertEquals(1, LocalSearchIndex.getMaxEdits(5));
+        assertEquals(2, LocalSearchIndex.getMaxEdits(6));
+        assertEquals(1, LocalSearchIndex.getDistance("recieve", "receive", 2));
+        assertEquals(2, LocalSearchIndex.getDistance("kitten", "sitting", 1));
+        assertEquals(Arrays.asList("hello", "\u4e16", "\u754c", "a1"),
+                LocalSearchIndex.tokenize("Hello, \u4e16\u754c a1!"));
+    }
+
+    private static List<String> search(LocalSearchIndex index, String term) {
+        return index.search(term, GROUPS, Collections.emptySet(), null, 10).getIds();
+    }
+
+    private SearchIndexOperation document(String id, Long groupId, String name, String contents) {
+        Map<String, Object> source = new HashMap<>();
+        source.put(SearchService.KEY_FIELD, id);
+        source.put(SearchService.NAME_FIELD, name);
+        source.put(SearchService.GROUP_ID_FIELD, groupId);
+        source.put(SearchService.CONTENTS_FIELD, Collections.singletonList(contents));
+        return SearchIndexOperation.index(id, source, this.versions.incrementAndGet());
+    }
+
+    private SearchIndexOperation delete(String id) {
+        return SearchIndexOperation.delete(id, this.versions.incrementAndGet());
+    }
+}
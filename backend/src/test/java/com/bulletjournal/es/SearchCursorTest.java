@@ -0,0 +1,34 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.exceptions.BadRequestException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link SearchCursor}
+ */
+public class SearchCursorTest {
+
+    @Test
+    public void testRoundTrip() {
+        float score = 1.2345679f;
+        Object[] values = SearchCursor.decode(SearchCursor.encode(score, "NOTE@12"));
+        assertEquals(score, (Float) values[0], 0);
+        assertEquals("NOTE@12", values[1]);
+
+        // scores that do not survive a trip through a double
+        float tiny = Float.intBitsToFloat(1);
+        assertEquals(Float.floatToIntBits(tiny),
+                Float.floatToIntBits((Float) SearchCursor.decode(SearchCursor.encode(tiny, "TASK@1"))[0]));
+    }
+
+    @Test
+    public void testInvalidCursor() {
+        try {
+            SearchCursor.decode("not a cursor");
+            fail("Expected BadRequestException");
+        } catch (BadRequestException ex) {
+        }
+    }
+}
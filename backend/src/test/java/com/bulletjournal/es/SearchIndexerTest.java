@@ -0,0 +1,106 @@
+package com.bulletjournal.es;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link SearchIndexer}
+ */
+public class SearchIndexerTest {
+
+    @Test
+    public void testBatching() throws Exception {
+        List<List<SearchIndexOperation>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch sent = new CountDownLatch(2);
+        SearchIndexer indexer = new SearchIndexer(operations -> {
+            batches.add(operations);
+            sent.countDown();
+            return Collections.emptyList();
+        }, 100, 3, 200, 10, 0, 1);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(indexer.submit(index("NOTE@" + i)));
+        }
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        indexer.shutdown(1000);
+        // full batch first, the rest once the flush interval passed
+        assertEquals(3, batches.get(0).size());
+        assertEquals(2, batches.get(1).size());
+        assertEquals(5, indexer.getIndexed());
+    }
+
+    @Test
+    public void testCoalesce() {
+        List<SearchIndexOperation> coalesced = SearchIndexer.coalesce(Arrays.asList(
+                index("NOTE@1"), index("NOTE@2"), SearchIndexOperation.delete("NOTE@1", 2)));
+        assertEquals(2, coalesced.size());
+        assertEquals("NOTE@2", coalesced.get(0).getId());
+        assertTrue(coalesced.get(1).isDelete());
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        SearchIndexer indexer = new SearchIndexer(operations -> {
+            switch (calls.incrementAndGet()) {
+                case 1:
+                    throw new IOException("unavailable");
+                case 2:
+                    // one item rejected, e.g. with 429
+                    return operations.subList(1, 2);
+                default:
+                    done.countDown();
+                    return Collections.emptyList();
+            }
+        }, 100, 2, 50, 10, 3, 1);
+
+        indexer.submit(index("TASK@1"));
+        indexer.submit(index("TASK@2"));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        indexer.shutdown(1000);
+        assertEquals(2, indexer.getIndexed());
+        assertEquals(3, indexer.getRetried());
+        assertEquals(0, indexer.getFailed());
+    }
+
+    @Test
+    public void testBackPressure() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SearchIndexer indexer = new SearchIndexer(operations -> {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.emptyList();
+        }, 1, 1, 10, 20, 0, 1);
+
+        assertTrue(indexer.submit(index("NOTE@1")));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        // the only slot of the queue is taken while the first batch is stuck
+        assertTrue(indexer.submit(index("NOTE@2")));
+        assertFalse(indexer.submit(index("NOTE@3")));
+        assertEquals(1, indexer.getDropped());
+
+        release.countDown();
+        indexer.shutdown(1000);
+        assertEquals(2, indexer.getIndexed());
+    }
+
+    private static SearchIndexOperation index(String id) {
+        Map<String, Object> source = new HashMap<>();
+        source.put("name", id);
+        return SearchIndexOperation.index(id, source, 1);
+    }
+}
@@ -0,0 +1,128 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.config.SearchConfig;
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.repository.SearchIndexDaoJpa;
+import com.bulletjournal.repository.models.SearchReindexJob;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link SearchReindexer}
+ */
+public class SearchReindexerTest {
+
+    private static final String INDEX_NAME = "project_item_test";
+
+    private final Map<ContentType, List<Long>> ids = new EnumMap<>(ContentType.class);
+    private final List<List<SearchIndexOperation>> batches = new CopyOnWriteArrayList<>();
+    private final List<String> checkpoints = new ArrayList<>();
+    private final SearchService searchService = mock(SearchService.class);
+    private final SearchIndexDaoJpa searchIndexDaoJpa = mock(SearchIndexDaoJpa.class);
+    private SearchReindexer reindexer;
+
+    @Before
+    public void setUp() throws Exception {
+        this.ids.put(ContentType.TASK, Arrays.asList(1L, 2L, 3L, 4L, 5L));
+        this.ids.put(ContentType.NOTE, Arrays.asList(1L, 2L, 3L));
+        this.ids.put(ContentType.TRANSACTION, Arrays.asList(10L, 11L));
+        when(this.searchIndexDaoJpa.count(any())).thenAnswer(invocation ->
+                (long) this.ids.get(invocation.<ContentType>getArgument(0)).size());
+        when(this.searchIndexDaoJpa.readPage(any(), any(), anyInt())).thenAnswer(invocation ->
+                readPage(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        when(this.searchIndexDaoJpa.save(any())).thenAnswer(invocation -> {
+            SearchReindexJob job = invocation.getArgument(0);
+            this.checkpoints.add(job.getPhase() + ":" + job.getLastId() + ":" + job.getIndexed());
+            return job;
+        });
+        when(this.searchService.bulk(anyList(), eq(INDEX_NAME))).thenAnswer(invocation -> {
+            this.batches.add(invocation.getArgument(0));
+            return Collections.emptyList();
+        });
+
+        SearchConfig searchConfig = new SearchConfig();
+        SearchConfig.Reindex reindex = new SearchConfig.Reindex();
+        reindex.setPageSize(2);
+        reindex.setWorkers(2);
+        reindex.setMaxDocsPerSecond(100000);
+        searchConfig.setReindex(reindex);
+        this.reindexer = new SearchReindexer(null, this.searchService, this.searchIndexDaoJpa, searchConfig);
+    }
+
+    @Test
+    public void testBatching() throws Exception {
+        assertTrue(this.reindexer.index(new SearchReindexJob(INDEX_NAME, ContentType.TASK.name())));
+
+        // a page per worker between checkpoints
+        assertEquals(Arrays.asList("TASK:4:4", "TASK:5:5", "NOTE:3:8", "NOTE:3:8", "TRANSACTION:11:10"),
+                this.checkpoints);
+        assertTrue(this.batches.stream().allMatch(batch -> batch.size() <= 2));
+        assertEquals(Arrays.asList("NOTE@1", "NOTE@2", "NOTE@3", "TASK@1", "TASK@2", "TASK@3", "TASK@4", "TASK@5",
+                "TRANSACTION@10", "TRANSACTION@11"), getIndexedIds());
+        assertEquals(10, this.reindexer.getIndexed());
+        assertEquals(10, this.reindexer.getTotal());
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        // interrupted after the first checkpoint
+        AtomicBoolean failed = new AtomicBoolean();
+        when(this.searchIndexDaoJpa.readPage(eq(ContentType.TASK), eq(4L), anyInt())).thenAnswer(invocation -> {
+            if (failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("Connection lost");
+            }
+            return readPage(ContentType.TASK, 4L, invocation.getArgument(2));
+        });
+        SearchReindexJob job = new SearchReindexJob(INDEX_NAME, ContentType.TASK.name());
+        try {
+            this.reindexer.index(job);
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals(Collections.singletonList("TASK:4:4"), this.checkpoints);
+        }
+
+        // resumes from the checkpoint without indexing anything twice
+        assertTrue(this.reindexer.index(job));
+        List<String> indexedIds = getIndexedIds();
+        assertEquals(10, indexedIds.size());
+        assertEquals(new HashSet<>(indexedIds).size(), indexedIds.size());
+        assertEquals(10, this.reindexer.getIndexed());
+        assertEquals(10, job.getIndexed());
+
+        // a job checkpointed in a later phase skips the earlier ones
+        this.batches.clear();
+        clearInvocations(this.searchIndexDaoJpa);
+        job = new SearchReindexJob(INDEX_NAME, ContentType.NOTE.name());
+        job.setLastId(1L);
+        job.setIndexed(6);
+        assertTrue(this.reindexer.index(job));
+        assertEquals(Arrays.asList("NOTE@2", "NOTE@3", "TRANSACTION@10", "TRANSACTION@11"), getIndexedIds());
+        assertEquals(10, this.reindexer.getIndexed());
+        verify(this.searchIndexDaoJpa, never()).readPage(eq(ContentType.TASK), any(), anyInt());
+    }
+
+    private Pair<Long, List<SearchIndexOperation>> readPage(ContentType type, Long afterId, int size) {
+        List<Long> page = this.ids.get(type).stream().filter(id -> id > afterId).limit(size)
+                .collect(Collectors.toList());
+        if (page.isEmpty()) {
+            return Pair.of(null, Collections.emptyList());
+        }
+        return Pair.of(page.get(page.size() - 1), page.stream()
+                .map(id -> SearchIndexOperation.index(type.name() + "@" + id, Collections.emptyMap(), 1))
+                .collect(Collectors.toList()));
+    }
+
+    private List<String> getIndexedIds() {
+        return this.batches.stream().flatMap(List::stream).map(SearchIndexOperation::getId).sorted()
+                .collect(Collectors.toList());
+    }
+}
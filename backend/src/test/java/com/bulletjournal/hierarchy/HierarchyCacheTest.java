@@ -0,0 +1,189 @@
+package com.bulletjournal.hierarchy;
+
+import com.bulletjournal.exceptions.BadRequestException;
+import com.google.gson.Gson;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link HierarchyTree}, {@link HierarchyCodec} and {@link HierarchyCache}
+ */
+public class HierarchyCacheTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HierarchyCacheTest.class);
+    private static final Gson GSON = new Gson();
+
+    @Test
+    public void testTree() {
+        HierarchyTree tree = HierarchyTree.parse(
+                "[{\"id\":1,\"s\":[{\"id\":2,\"s\":[]},{\"id\":3,\"s\":[{\"id\":4,\"s\":[]}]}]},{\"id\":5,\"s\":[]}]");
+        assertEquals(5, tree.size());
+        assertEquals("[{\"id\":1,\"s\":[{\"id\":2},{\"id\":3,\"s\":[{\"id\":4}]}]},{\"id\":5}]", tree.encode());
+        assertEquals(Arrays.asList(3L, 4L), tree.getSubItems(3L));
+
+        HierarchyTree.Node target = tree.remove(3L);
+        assertEquals(3, tree.size());
+        assertFalse(tree.contains(4L));
+        assertEquals("[{\"id\":1,\"s\":[{\"id\":2}]},{\"id\":5}]", tree.encode());
+
+        tree.add(target);
+        assertEquals("[{\"id\":1,\"s\":[{\"id\":2}]},{\"id\":5},{\"id\":3,\"s\":[{\"id\":4}]}]", tree.encode());
+
+        // encoded relations stay readable by Gson
+        HierarchyItem[] items = GSON.fromJson(tree.encode(), HierarchyItem[].class);
+        assertEquals(3, items.length);
+        assertEquals(Long.valueOf(4), items[2].getS().get(0).getId());
+
+        assertEquals("[]", HierarchyTree.parse(null).encode());
+        assertBadRequest(() -> tree.getNode(10L));
+        assertBadRequest(() -> tree.add(2L));
+        assertBadRequest(() -> HierarchyTree.parse("[{\"id\":1},{\"id\":1}]"));
+    }
+
+    @Test
+    public void testCache() {
+        HierarchyCache cache = new HierarchyCache(1);
+        String key = HierarchyCache.getKey(HierarchyCache.Type.PROJECT_TASKS, 1L);
+        byte[] relations = cache.update(key, null, tree -> tree.add(1L));
+        assertEquals("[{\"id\":1}]", HierarchyCodec.toJson(relations));
+        assertEquals(1, cache.read(key, relations, HierarchyTree::size).intValue());
+        assertEquals(1, cache.getHits());
+
+        // relations written elsewhere are decoded again
+        byte[] written = HierarchyCodec.fromJson("[{\"id\":1},{\"id\":2}]");
+        assertEquals(2, cache.read(key, written, HierarchyTree::size).intValue());
+        assertEquals(2, cache.getMisses());
+
+        // failed updates do not leave a partially updated tree behind
+        assertBadRequest(() -> cache.update(key, written, tree -> tree.add(2L)));
+        assertEquals(2, cache.read(key, written, HierarchyTree::size).intValue());
+
+        cache.read(HierarchyCache.getKey(HierarchyCache.Type.PROJECT_NOTES, 1L), null, HierarchyTree::size);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testCodec() {
+        String json = "[{\"id\":100,\"s\":[{\"id\":101,\"s\":[{\"id\":102,\"s\":[]}]},{\"id\":103,\"s\":[]}]},"
+                + "{\"id\":104,\"s\":[{\"id\":105,\"s\":[]}]},{\"id\":7}]";
+        byte[] encoded = HierarchyCodec.fromJson(json);
+        assertEquals(HierarchyTree.parse(json).encode(), HierarchyCodec.toJson(encoded));
+        assertTrue(encoded.length < 20);
+
+        assertEquals(Arrays.asList(101L, 102L), HierarchyCodec.getSubItems(encoded, 101L));
+        assertEquals(Arrays.asList(104L, 105L), HierarchyCodec.getSubItems(encoded, 104L));
+        assertEquals(Arrays.asList(7L), HierarchyCodec.getSubItems(encoded, 7L));
+        assertBadRequest(() -> HierarchyCodec.getSubItems(encoded, 8L));
+
+        // relations stored as JSON are still readable
+        byte[] legacy = json.getBytes(StandardCharsets.UTF_8);
+        assertEquals(7, HierarchyCodec.decode(legacy).size());
+        assertEquals(Arrays.asList(101L, 102L), HierarchyCodec.getSubItems(legacy, 101L));
+        assertEquals(0, HierarchyCodec.decode(null).size());
+        assertEquals(0, HierarchyCodec.decode(HierarchyCodec.fromJson("[]")).size());
+    }
+
+    private static void assertBadRequest(Runnable runnable) {
+        try {
+            runnable.run();
+            fail("Expected BadRequestException");
+        } catch (BadRequestException ex) {
+        }
+    }
+
+    /**
+     * Moves and reads subtrees of a large hierarchy through the cached tree and the encoded bytes
+     */
+    @Test
+    public void testLargeHierarchy() {
+        int count = 5000;
+        List<HierarchyItem> roots = new ArrayList<>();
+        for (long i = 1; i <= count; i += 5) {
+            HierarchyItem item = new HierarchyItem(i);
+            for (long j = 1; j < 5; j++) {
+                item.getS().add(new HierarchyItem(i + j));
+            }
+            roots.add(item);
+        }
+        String relations = GSON.toJson(roots);
+        int rounds = 200;
+
+        HierarchyCache cache = new HierarchyCache();
+        String key = HierarchyCache.getKey(HierarchyCache.Type.PROJECT_TASKS, 1L);
+        byte[] encoded = HierarchyCodec.fromJson(relations);
+        for (int i = 0; i < rounds; i++) {
+            long id = 1 + 5 * ((i * 7L) % (count / 5));
+            assertEquals(5, cache.read(key, encoded, tree -> tree.getSubItems(id)).size());
+            encoded = cache.update(key, encoded, tree -> tree.add(tree.remove(id)));
+        }
+
+        for (int i = 0; i < rounds; i++) {
+            long id = 1 + 5 * ((i * 7L) % (count / 5));
+            assertEquals(5, HierarchyCodec.getSubItems(encoded, id).size());
+        }
+        assertEquals(count, HierarchyCodec.decode(encoded).size());
+        assertTrue(encoded.length < relations.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    /**
+     * Compares parsing relations with Gson on every call against the cached tree, run by hand
+     */
+    @Ignore("Benchmark")
+    @Test
+    public void benchmark() {
+        int count = 5000;
+        List<HierarchyItem> roots = new ArrayList<>();
+        for (long i = 1; i <= count; i += 5) {
+            HierarchyItem item = new HierarchyItem(i);
+            for (long j = 1; j < 5; j++) {
+                item.getS().add(new HierarchyItem(i + j));
+            }
+            roots.add(item);
+        }
+        String relations = GSON.toJson(roots);
+        int rounds = 200;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            HierarchyItem[] items = GSON.fromJson(relations, HierarchyItem[].class);
+            List<HierarchyItem> list = new ArrayList<>(Arrays.asList(items));
+            HierarchyItem target = list.remove(list.size() / 2);
+            list.add(target);
+            relations = GSON.toJson(list);
+        }
+        long gson = System.nanoTime() - start;
+
+        HierarchyCache cache = new HierarchyCache();
+        String key = HierarchyCache.getKey(HierarchyCache.Type.PROJECT_TASKS, 1L);
+        byte[] encoded = HierarchyCodec.fromJson(relations);
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            long id = 1 + 5 * ((i * 7L) % (count / 5));
+            assertEquals(5, cache.read(key, encoded, tree -> tree.getSubItems(id)).size());
+            encoded = cache.update(key, encoded, tree -> tree.add(tree.remove(id)));
+        }
+        long cached = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            long id = 1 + 5 * ((i * 7L) % (count / 5));
+            assertEquals(5, HierarchyCodec.getSubItems(encoded, id).size());
+        }
+        long scanned = System.nanoTime() - start;
+
+        assertEquals(count, HierarchyCodec.decode(encoded).size());
+        LOGGER.info("{} items, {} moves: gson {} ms, cached tree {} ms; {} subtree scans {} ms; "
+                        + "json {} bytes, binary {} bytes",
+                count, rounds, gson / 1_000_000, cached / 1_000_000, rounds, scanned / 1_000_000,
+                relations.length(), encoded.length);
+    }
+}
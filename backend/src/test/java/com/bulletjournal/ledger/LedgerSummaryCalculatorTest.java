@@ -0,0 +1,82 @@
+package com.bulletjournal.ledger;
+
+import com.bulletjournal.controller.models.TransactionsSummary;
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link LedgerSummaryCalculator}
+ */
+public class LedgerSummaryCalculatorTest {
+
+    private static final ZonedDateTime START = ZonedDateTime.of(2019, 9, 1, 0, 0, 0, 0, ZoneId.of("UTC"));
+    private static final ZonedDateTime END = START.plusMonths(3);
+
+    private final LedgerSummaryCalculator calculator = new LedgerSummaryCalculator();
+
+    @Test
+    public void testMonthly() {
+        LedgerSummary summary = this.calculator.getLedgerSummary(LedgerGrouping.MONTH, START, END,
+                Collections.emptyList(),
+                Arrays.asList(
+                        new LedgerSum("2019-11", TransactionType.INCOME, 300.0),
+                        new LedgerSum("2019-09", TransactionType.EXPENSE, 100.0),
+                        new LedgerSum("2019-09", TransactionType.INCOME, 100.0)),
+                Arrays.asList(
+                        new LedgerSum(null, TransactionType.INCOME, 400.0),
+                        new LedgerSum(null, TransactionType.EXPENSE, 100.0)));
+
+        assertEquals(300.0, summary.getBalance(), 1e-4);
+        List<TransactionsSummary> summaries = summary.getTransactionsSummaries();
+        assertEquals(2, summaries.size());
+        assertEquals("2019 SEPTEMBER", summaries.get(0).getName());
+        assertEquals("2019-09", summaries.get(0).getMetadata());
+        assertEquals(0.0, summaries.get(0).getBalance(), 1e-4);
+        assertEquals(25.0, summaries.get(0).getIncomePercentage(), 1e-4);
+        assertEquals("2019 NOVEMBER", summaries.get(1).getName());
+        assertEquals("2019-09-01", summary.getStartDate());
+    }
+
+    @Test
+    public void testWeeklyAndLabel() {
+        List<LedgerSum> totals = Collections.singletonList(new LedgerSum(null, TransactionType.EXPENSE, 50.0));
+        LedgerSummary summary = this.calculator.getLedgerSummary(LedgerGrouping.WEEK, START, END,
+                Collections.emptyList(),
+                Arrays.asList(
+                        new LedgerSum("2019-W37", TransactionType.EXPENSE, 30.0),
+                        new LedgerSum("2019-W36", TransactionType.EXPENSE, 20.0)),
+                totals);
+        assertEquals("2019 WEEK 36", summary.getTransactionsSummaries().get(0).getName());
+        assertEquals(60.0, summary.getTransactionsSummaries().get(1).getExpensePercentage(), 1e-4);
+
+        // a transaction with two labels counts in both, but once in totals
+        summary = this.calculator.getLedgerSummary(LedgerGrouping.LABEL, START, END,
+                Collections.emptyList(),
+                Arrays.asList(
+                        new LedgerSum("Food", TransactionType.EXPENSE, 50.0),
+                        new LedgerSum("Daily", TransactionType.EXPENSE, 50.0)),
+                totals);
+        assertEquals(-50.0, summary.getBalance(), 1e-4);
+        assertEquals("Daily", summary.getTransactionsSummaries().get(0).getName());
+        assertNull(summary.getTransactionsSummaries().get(0).getMetadata());
+        assertEquals(100.0, summary.getTransactionsSummaries().get(1).getExpensePercentage(), 1e-4);
+    }
+
+    @Test
+    public void testGrouping() {
+        for (LedgerSummaryType ledgerSummaryType : LedgerSummaryType.values()) {
+            for (FrequencyType frequencyType : FrequencyType.values()) {
+                assertNotNull(LedgerGrouping.of(ledgerSummaryType, frequencyType));
+            }
+        }
+        assertEquals(LedgerGrouping.YEAR, LedgerGrouping.of(LedgerSummaryType.DEFAULT, FrequencyType.YEARLY));
+        assertEquals(LedgerGrouping.DAY, LedgerGrouping.of(LedgerSummaryType.TIMELINE, FrequencyType.WEEKLY));
+    }
+}
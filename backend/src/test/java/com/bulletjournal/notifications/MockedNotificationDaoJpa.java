@@ -2,14 +2,16 @@ package com.bulletjournal.notifications;
 
 import com.bulletjournal.repository.NotificationDaoJpa;
 import com.bulletjournal.repository.models.Notification;
+import org.apache.commons.lang3.tuple.Pair;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MockedNotificationDaoJpa extends NotificationDaoJpa {
 
     private List<Notification> notifications = Collections.synchronizedList(new ArrayList<>());
+    private final NavigableMap<Long, List<Notification>> outbox = new TreeMap<>();
+    private final AtomicLong outboxIds = new AtomicLong();
 
     @Override
     public synchronized void create(List<Informed> events) {
@@ -19,12 +21,60 @@ public class MockedNotificationDaoJpa extends NotificationDaoJpa {
     }
 
     @Override
-    public synchronized List<com.bulletjournal.controller.models.Notification> getNotifications(String username) {
+    public synchronized void createNotifications(List<Notification> notifications, Collection<Long> outboxIds) {
+        this.notifications.addAll(notifications);
+        outboxIds.forEach(this.outbox::remove);
+    }
+
+    @Override
+    public synchronized List<Long> addToOutbox(List<List<Notification>> entries) {
+        List<Long> ids = new ArrayList<>();
+        for (List<Notification> notifications : entries) {
+            long id = this.outboxIds.incrementAndGet();
+            this.outbox.put(id, notifications);
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized List<Pair<Long, List<Notification>>> getOutbox(Long afterId, int size) {
+        List<Pair<Long, List<Notification>>> entries = new ArrayList<>();
+        for (Map.Entry<Long, List<Notification>> entry : this.outbox.tailMap(afterId, false).entrySet()) {
+            if (entries.size() == size) {
+                break;
+            }
+            entries.add(Pair.of(entry.getKey(), entry.getValue()));
+        }
+        return entries;
+    }
+
+    @Override
+    public synchronized boolean isInOutbox(Long outboxId) {
+        return this.outbox.containsKey(outboxId);
+    }
+
+    @Override
+    public synchronized void deleteFromOutbox(Collection<Long> outboxIds) {
+        outboxIds.forEach(this.outbox::remove);
+    }
+
+    @Override
+    public synchronized Pair<List<com.bulletjournal.controller.models.Notification>, String> getNotifications(
+            String username, String cursor, int size) {
         List<com.bulletjournal.controller.models.Notification> results = new ArrayList<>();
         for (Notification n : this.notifications) {
+            if (results.size() == size) {
+                break;
+            }
             results.add(new com.bulletjournal.controller.models.Notification(
                     n.getId(), n.getTitle(), n.getContent(), System.currentTimeMillis(), n.getType()));
         }
-        return results;
+        return Pair.of(results, null);
+    }
+
+    @Override
+    public synchronized long getNotificationCount(String username) {
+        return this.notifications.size();
     }
 }
@@ -0,0 +1,45 @@
+package com.bulletjournal.notifications;
+
+import com.bulletjournal.exceptions.BadRequestException;
+import com.bulletjournal.repository.models.Notification;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link NotificationCursor}
+ */
+public class NotificationCursorTest {
+
+    @Test
+    public void testRoundTrip() {
+        Notification notification = new Notification("BulletJournal", "t", null, "user_0", "JoinGroupEvent", 1L);
+        notification.setId(12L);
+        notification.setActions("[\"ACCEPT\",\"DECLINE\"]");
+        // postgres keeps microseconds
+        Timestamp updatedAt = new Timestamp(1581590339901L);
+        updatedAt.setNanos(901123000);
+        notification.setUpdatedAt(updatedAt);
+
+        NotificationCursor cursor = NotificationCursor.decode(NotificationCursor.encode(notification));
+        assertTrue(cursor.isActionable());
+        assertEquals(updatedAt, cursor.getUpdatedAt());
+        assertEquals(Long.valueOf(12L), cursor.getId());
+
+        notification.setActions(null);
+        assertFalse(NotificationCursor.decode(NotificationCursor.encode(notification)).isActionable());
+    }
+
+    @Test
+    public void testInvalidCursor() {
+        for (String cursor : new String[]{"not a cursor", "MTox", "YTox"}) {
+            try {
+                NotificationCursor.decode(cursor);
+                fail("Expected BadRequestException");
+            } catch (BadRequestException ex) {
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.bulletjournal.notifications;
+
+import com.bulletjournal.repository.models.Notification;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link NotificationPipeline}
+ */
+public class NotificationPipelineTest {
+
+    private static final long RECOVERY_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void testOrderPerUser() throws Exception {
+        Store store = new Store();
+        NotificationPipeline pipeline = new NotificationPipeline(store, 3, 100, 7, 1000, RECOVERY_INTERVAL_MILLIS);
+        for (int i = 0; i < 60; i++) {
+            assertTrue(pipeline.submit(Arrays.asList(
+                    notification("user_" + (i % 4), "t" + i), notification("user_" + ((i + 1) % 4), "t" + i))));
+        }
+        waitFor(() -> pipeline.getPersisted() == 120);
+        for (int user = 0; user < 4; user++) {
+            List<Integer> titles = store.getTitles("user_" + user).stream()
+                    .map(title -> Integer.valueOf(title.substring(1))).collect(Collectors.toList());
+            assertEquals(30, titles.size());
+            List<Integer> sorted = new ArrayList<>(titles);
+            Collections.sort(sorted);
+            assertEquals(sorted, titles);
+        }
+        waitFor(() -> store.outbox.isEmpty());
+        assertTrue(pipeline.getAverageBatchSize() >= 1);
+        pipeline.shutdown(1000);
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        Store store = new Store();
+        store.failures.set(2);
+        NotificationPipeline pipeline = new NotificationPipeline(store, 1, 100, 10, 1000, RECOVERY_INTERVAL_MILLIS);
+        pipeline.submit(Arrays.asList(notification("user_0", "t0"), notification("user_1", "t1")));
+        waitFor(() -> pipeline.getPersisted() == 2);
+        assertEquals(2, store.created.size());
+        waitFor(() -> store.outbox.isEmpty());
+        pipeline.shutdown(1000);
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        Store store = new Store();
+        NotificationPipeline pipeline = new NotificationPipeline(store, 1, 100, 10, 1000, RECOVERY_INTERVAL_MILLIS);
+        pipeline.submit(Collections.singletonList(notification("user_0", "t0")));
+        pipeline.submit(Collections.singletonList(notification("user_0", "bad")));
+        pipeline.submit(Collections.singletonList(notification("user_0", "t2")));
+        waitFor(() -> pipeline.getPersisted() == 2);
+        assertEquals(Arrays.asList("t0", "t2"), store.getTitles("user_0"));
+
+        // the rejected entry is retried by recovery, then dropped
+        waitFor(() -> {
+            pipeline.recover();
+            return pipeline.getFailed() == 1;
+        });
+        assertTrue(store.outbox.isEmpty());
+        pipeline.shutdown(1000);
+    }
+
+    @Test
+    public void testBackPressure() throws Exception {
+        Store store = new Store();
+        store.blocked = new CountDownLatch(1);
+        NotificationPipeline pipeline = new NotificationPipeline(store, 1, 2, 1, 50, RECOVERY_INTERVAL_MILLIS);
+        assertTrue(pipeline.submit(Collections.singletonList(notification("user_0", "t0"))));
+        assertTrue(pipeline.submit(Collections.singletonList(notification("user_0", "t1"))));
+        // waits for room, then leaves the notification in the outbox
+        assertFalse(pipeline.submit(Collections.singletonList(notification("user_0", "t2"))));
+        assertEquals(1, pipeline.getOverflowed());
+        assertEquals(3, store.outbox.size());
+
+        store.blocked.countDown();
+        waitFor(() -> pipeline.getPersisted() == 2);
+        pipeline.recover();
+        waitFor(() -> pipeline.getPersisted() == 3);
+        assertEquals(Arrays.asList("t0", "t1", "t2"), store.getTitles("user_0"));
+        assertEquals(1, pipeline.getRecovered());
+        waitFor(() -> store.outbox.isEmpty());
+        pipeline.shutdown(1000);
+    }
+
+    @Test
+    public void testLargeSubmission() throws Exception {
+        Store store = new Store();
+        NotificationPipeline pipeline = new NotificationPipeline(store, 2, 2, 10, 1000, RECOVERY_INTERVAL_MILLIS);
+        // more notifications than the queues can hold are queued in entries that fit
+        List<Notification> notifications = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            notifications.add(notification("user_0", "t" + i));
+        }
+        notifications.add(notification("user_1", "t5"));
+        assertTrue(pipeline.submit(notifications));
+        assertEquals(4, store.outboxIds.get());
+
+        waitFor(() -> pipeline.getPersisted() == 6);
+        assertEquals(Arrays.asList("t0", "t1", "t2", "t3", "t4"), store.getTitles("user_0"));
+        assertEquals(Collections.singletonList("t5"), store.getTitles("user_1"));
+        assertEquals(0, pipeline.getOverflowed());
+        waitFor(() -> store.outbox.isEmpty());
+        pipeline.shutdown(1000);
+    }
+
+    @Test
+    public void testRecoverAfterRestart() throws Exception {
+        Store store = new Store();
+        store.addToOutbox(Arrays.asList(
+                Arrays.asList(notification("user_0", "t0"), notification("user_1", "t1")),
+                Collections.singletonList(notification("user_0", "t2"))));
+        // recovery runs on start
+        NotificationPipeline pipeline = new NotificationPipeline(store, 2, 100, 10, 1000, RECOVERY_INTERVAL_MILLIS);
+        waitFor(() -> pipeline.getPersisted() == 3);
+        assertEquals(Arrays.asList("t0", "t2"), store.getTitles("user_0"));
+        waitFor(() -> store.outbox.isEmpty());
+        pipeline.recover();
+        assertEquals(3, store.created.size());
+        pipeline.shutdown(1000);
+    }
+
+    private static Notification notification(String targetUser, String title) {
+        return new Notification("BulletJournal", title, null, targetUser, "JoinGroupEvent", 1L);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static class Store implements NotificationStore {
+        final Map<Long, List<Notification>> outbox = Collections.synchronizedMap(new TreeMap<>());
+        final List<Notification> created = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger outboxIds = new AtomicInteger();
+        volatile CountDownLatch blocked;
+
+        @Override
+        public List<Long> addToOutbox(List<List<Notification>> entries) {
+            List<Long> ids = new ArrayList<>();
+            for (List<Notification> notifications : entries) {
+                long id = this.outboxIds.incrementAndGet();
+                this.outbox.put(id, notifications);
+                ids.add(id);
+            }
+            return ids;
+        }
+
+        @Override
+        public List<Pair<Long, List<Notification>>> getOutbox(Long afterId, int size) {
+            synchronized (this.outbox) {
+                return this.outbox.entrySet().stream()
+                        .filter(entry -> entry.getKey() > afterId)
+                        .limit(size)
+                        .map(entry -> Pair.of(entry.getKey(), entry.getValue()))
+                        .collect(Collectors.toList());
+            }
+        }
+
+        @Override
+        public boolean isInOutbox(Long outboxId) {
+            return this.outbox.containsKey(outboxId);
+        }
+
+        @Override
+        public void deleteFromOutbox(Collection<Long> outboxIds) {
+            outboxIds.forEach(this.outbox::remove);
+        }
+
+        @Override
+        public void createNotifications(List<Notification> notifications, Collection<Long> outboxIds) {
+            if (this.blocked != null) {
+                try {
+                    this.blocked.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (this.failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("Database unavailable");
+            }
+            if (notifications.stream().anyMatch(n -> n.getTitle().equals("bad"))) {
+                throw new IllegalArgumentException("Invalid notification");
+            }
+            this.created.addAll(notifications);
+            outboxIds.forEach(this.outbox::remove);
+        }
+
+        List<String> getTitles(String targetUser) {
+            synchronized (this.created) {
+                return this.created.stream()
+                        .filter(n -> n.getTargetUser().equals(targetUser))
+                        .map(Notification::getTitle)
+                        .collect(Collectors.toList());
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.bulletjournal.notifications;
 
+import com.bulletjournal.config.NotificationConfig;
 import com.bulletjournal.controller.models.Notification;
 import org.junit.Assert;
 import org.junit.Test;
@@ -15,7 +16,7 @@ public class NotificationServiceTest {
     @Test
     public void testGetUser() {
         MockedNotificationDaoJpa mockedNotificationDaoJpa = new MockedNotificationDaoJpa();
-        NotificationService notificationService = new NotificationService(mockedNotificationDaoJpa);
+        NotificationService notificationService = new NotificationService(mockedNotificationDaoJpa, getConfig());
         notificationService.postConstruct();
         String originator = "BulletJournal";
         String targetUser = "u1";
@@ -28,12 +29,22 @@ public class NotificationServiceTest {
             notificationService.inform(new DeleteGroupEvent(events, originator));
         }
 
-        List<Notification> notifications;
-        do {
-            notifications = mockedNotificationDaoJpa.getNotifications(targetUser);
-        } while (notifications.size() < 200);
+        while (mockedNotificationDaoJpa.getNotificationCount(targetUser) < 200) {
+            Thread.yield();
+        }
 
+        List<Notification> notifications = mockedNotificationDaoJpa.getNotifications(targetUser, null, 500).getLeft();
         Assert.assertEquals(200, notifications.size());
         notificationService.preDestroy();
     }
+
+    static NotificationConfig getConfig() {
+        NotificationConfig config = new NotificationConfig();
+        config.getPipeline().setWorkers(2);
+        config.getPipeline().setQueueCapacity(100);
+        config.getPipeline().setBatchSize(10);
+        config.getPipeline().setOfferTimeoutMillis(1000);
+        config.getPipeline().setRecoveryIntervalInSeconds(60);
+        return config;
+    }
 }
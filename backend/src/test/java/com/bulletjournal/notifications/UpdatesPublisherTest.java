@@ -0,0 +1,162 @@
+package com.bulletjournal.notifications;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link UpdatesPublisher}
+ */
+public class UpdatesPublisherTest {
+
+    private static final String ALL_TARGETS = Arrays.stream(UpdateTarget.values())
+            .map(UpdateTarget::getName).collect(Collectors.joining(","));
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final Deque<SseEmitter> emitters = new ArrayDeque<>();
+    private final UpdatesPublisher publisher = new UpdatesPublisher(this.executorService, this.emitters::poll);
+
+    @After
+    public void tearDown() {
+        this.executorService.shutdownNow();
+    }
+
+    @Test
+    public void testSubscribe() throws Exception {
+        SseEmitter emitter = addEmitter();
+        assertFalse(this.publisher.isSubscribed("a"));
+        assertSame(emitter, this.publisher.subscribe("a"));
+        assertTrue(this.publisher.isSubscribed("a"));
+        assertFalse(this.publisher.isSubscribed("b"));
+
+        this.publisher.publish("a", UpdateTarget.PROJECTS);
+        this.publisher.publish("b", UpdateTarget.PROJECTS);
+        awaitSent();
+        assertEquals(Arrays.asList(ALL_TARGETS, "projectsEtag"), getSent(emitter));
+
+        // changes published before the previous ones are sent get coalesced
+        CountDownLatch latch = new CountDownLatch(1);
+        this.executorService.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        this.publisher.publish("a", UpdateTarget.GROUPS);
+        this.publisher.publishNow("a", UpdateTarget.PROJECTS, UpdateTarget.GROUPS);
+        latch.countDown();
+        awaitSent();
+        assertEquals(Arrays.asList(ALL_TARGETS, "projectsEtag", "projectsEtag,groupsEtag"), getSent(emitter));
+
+        // unsubscribed once the client disconnects
+        ArgumentCaptor<Runnable> onCompletion = ArgumentCaptor.forClass(Runnable.class);
+        verify(emitter).onCompletion(onCompletion.capture());
+        onCompletion.getValue().run();
+        assertFalse(this.publisher.isSubscribed("a"));
+        this.publisher.publish("a", UpdateTarget.PROJECTS);
+        this.publisher.publishNow("a", UpdateTarget.PROJECTS);
+        awaitSent();
+        assertEquals(3, getSent(emitter).size());
+    }
+
+    @Test
+    public void testPublishAfterCommit() throws Exception {
+        SseEmitter emitter = addEmitter();
+        this.publisher.subscribe("a");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            this.publisher.publish("a", UpdateTarget.NOTIFICATIONS);
+            awaitSent();
+            assertEquals(Collections.singletonList(ALL_TARGETS), getSent(emitter));
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+            awaitSent();
+            assertEquals(Arrays.asList(ALL_TARGETS, "notificationsEtag"), getSent(emitter));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            this.publisher.publish("a", UpdateTarget.GROUPS);
+            TransactionSynchronizationManager.getSynchronizations().forEach(
+                    synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            awaitSent();
+            assertEquals(2, getSent(emitter).size());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testDropEmitters() throws Exception {
+        SseEmitter dead = addEmitter();
+        SseEmitter timedOut = addEmitter();
+        SseEmitter failed = addEmitter();
+        this.publisher.subscribe("a");
+        this.publisher.subscribe("a");
+        this.publisher.subscribe("b");
+        doThrow(new IOException("Broken pipe")).when(dead).send(any(SseEmitter.SseEventBuilder.class));
+
+        // a dead connection is dropped on its first failed send
+        this.publisher.publish("a", UpdateTarget.PROJECTS);
+        awaitSent();
+        verify(dead).completeWithError(any(IOException.class));
+        assertEquals(Arrays.asList(ALL_TARGETS, "projectsEtag"), getSent(timedOut));
+        this.publisher.publish("a", UpdateTarget.GROUPS);
+        awaitSent();
+        verify(dead, times(2)).send(any(SseEmitter.SseEventBuilder.class));
+        assertEquals(Arrays.asList(ALL_TARGETS, "projectsEtag", "groupsEtag"), getSent(timedOut));
+
+        ArgumentCaptor<Runnable> onTimeout = ArgumentCaptor.forClass(Runnable.class);
+        verify(timedOut).onTimeout(onTimeout.capture());
+        onTimeout.getValue().run();
+        assertFalse(this.publisher.isSubscribed("a"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<Throwable>> onError = ArgumentCaptor.forClass(Consumer.class);
+        verify(failed).onError(onError.capture());
+        onError.getValue().accept(new IOException("Connection reset"));
+        assertFalse(this.publisher.isSubscribed("b"));
+    }
+
+    private SseEmitter addEmitter() {
+        SseEmitter emitter = mock(SseEmitter.class);
+        this.emitters.add(emitter);
+        return emitter;
+    }
+
+    private void awaitSent() throws Exception {
+        this.executorService.submit(() -> {
+        }).get();
+    }
+
+    /**
+     * @return the targets of each event sent to emitter
+     */
+    private static List<String> getSent(SseEmitter emitter) throws IOException {
+        ArgumentCaptor<SseEmitter.SseEventBuilder> events = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, atLeast(0)).send(events.capture());
+        String prefix = "event:" + UpdatesPublisher.EVENT_NAME + "\ndata:";
+        return events.getAllValues().stream()
+                .map(event -> event.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining()))
+                .map(event -> event.substring(prefix.length()).trim())
+                .collect(Collectors.toList());
+    }
+}
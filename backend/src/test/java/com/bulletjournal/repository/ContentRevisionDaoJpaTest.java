@@ -0,0 +1,238 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.config.ContentRevisionConfig;
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.controller.models.Content;
+import com.bulletjournal.controller.models.CreateProjectParams;
+import com.bulletjournal.controller.models.CreateTaskParams;
+import com.bulletjournal.controller.models.ProjectType;
+import com.bulletjournal.controller.models.Revision;
+import com.bulletjournal.controller.models.UpdateContentParams;
+import com.bulletjournal.exceptions.BadRequestException;
+import com.bulletjournal.repository.models.ContentRevision;
+import com.bulletjournal.repository.models.Project;
+import com.bulletjournal.repository.models.Task;
+import com.bulletjournal.repository.models.TaskContent;
+import com.bulletjournal.util.ContentDiffTool;
+import com.google.gson.Gson;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link ContentRevisionDaoJpa}
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class ContentRevisionDaoJpaTest {
+
+    private static final String OWNER = "BulletJournal";
+    private static final String TIMEZONE = "America/Los_Angeles";
+    private static final AtomicInteger PROJECTS = new AtomicInteger();
+
+    @Autowired
+    private ContentRevisionDaoJpa contentRevisionDaoJpa;
+
+    @Autowired
+    private ContentRevisionRepository contentRevisionRepository;
+
+    @Autowired
+    private ContentRevisionConfig revisionConfig;
+
+    @Autowired
+    private GroupDaoJpa groupDaoJpa;
+
+    @Autowired
+    private ProjectDaoJpa projectDaoJpa;
+
+    @Autowired
+    private TaskDaoJpa taskDaoJpa;
+
+    @Autowired
+    private TaskContentRepository taskContentRepository;
+
+    @Autowired
+    private ContentDiffTool contentDiffTool;
+
+    private Integer maxRevisionNumber;
+    private Integer checkpointInterval;
+    private Integer coalesceWindowSeconds;
+    private Task task;
+
+    @Before
+    public void setUp() {
+        this.maxRevisionNumber = this.revisionConfig.getMaxRevisionNumber();
+        this.checkpointInterval = this.revisionConfig.getCheckpointInterval();
+        this.coalesceWindowSeconds = this.revisionConfig.getCoalesceWindowSeconds();
+        Project project = this.projectDaoJpa.create(new CreateProjectParams(
+                        "ContentRevisionDaoJpaTest_" + PROJECTS.incrementAndGet(), ProjectType.TODO, null,
+                        this.groupDaoJpa.getDefaultGroup(OWNER).getId()),
+                OWNER, new ArrayList<>());
+        this.task = this.taskDaoJpa.create(project.getId(), OWNER,
+                new CreateTaskParams("task", OWNER, null, null, null, null, TIMEZONE, null));
+    }
+
+    @After
+    public void tearDown() {
+        this.contentRevisionDaoJpa.getPendingRevisionKeys().forEach(this.contentRevisionDaoJpa::flushPendingRevision);
+        this.revisionConfig.setMaxRevisionNumber(this.maxRevisionNumber);
+        this.revisionConfig.setCheckpointInterval(this.checkpointInterval);
+        this.revisionConfig.setCoalesceWindowSeconds(this.coalesceWindowSeconds);
+    }
+
+    @Test
+    public void testCoalesce() {
+        this.revisionConfig.setCoalesceWindowSeconds(60);
+        TaskContent content = addContent("a");
+        update(content, "ab");
+        update(content, "abc");
+
+        // listed as the next revision without being added
+        Content presented = this.taskDaoJpa.getContentWithRevisions(content.getId(), this.task.getId(), OWNER);
+        assertEquals(1, presented.getRevisions().length);
+        assertEquals(Long.valueOf(1), presented.getRevisions()[0].getId());
+        assertEquals(0, getStoredRevisions(content).size());
+
+        this.contentRevisionDaoJpa.flushPendingRevision(
+                ContentRevisionDaoJpa.getKey(ContentType.TASK.name(), content.getId()));
+        assertEquals(1, getStoredRevisions(content).size());
+        assertEquals("abc", getRevisionText(content, 1L));
+    }
+
+    @Test
+    public void testReplay() {
+        this.revisionConfig.setCoalesceWindowSeconds(0);
+        this.revisionConfig.setCheckpointInterval(3);
+        TaskContent content = addContent(getText(0));
+        for (int i = 1; i <= 7; i++) {
+            update(content, getText(i));
+        }
+
+        // the first revision and every third one hold the full text, the others a diff
+        List<Boolean> snapshots = getStoredRevisions(content, 1L, 7L).stream()
+                .map(ContentRevision::hasSnapshot).collect(Collectors.toList());
+        assertEquals(Arrays.asList(true, false, true, false, false, true, false), snapshots);
+        for (long i = 1; i <= 7; i++) {
+            assertEquals(getText((int) i), getRevisionText(content, i));
+        }
+    }
+
+    @Test
+    public void testTrim() {
+        this.revisionConfig.setCoalesceWindowSeconds(0);
+        this.revisionConfig.setCheckpointInterval(3);
+        this.revisionConfig.setMaxRevisionNumber(4);
+        TaskContent content = addContent(getText(0));
+        for (int i = 1; i <= 7; i++) {
+            update(content, getText(i));
+        }
+
+        List<ContentRevision> revisions = getStoredRevisions(content, 1L, 7L);
+        assertEquals(Long.valueOf(4), revisions.get(0).getRevisionId());
+        assertEquals(4, revisions.size());
+        // the oldest revision kept gets the full text it can no longer be replayed to
+        assertTrue(revisions.get(0).hasSnapshot());
+        for (long i = 4; i <= 7; i++) {
+            assertEquals(getText((int) i), getRevisionText(content, i));
+        }
+        try {
+            getRevisionText(content, 3L);
+            fail("Revision 3 should be trimmed");
+        } catch (BadRequestException ex) {
+        }
+    }
+
+    @Test
+    public void testMigrateLegacyRevisions() {
+        this.revisionConfig.setCoalesceWindowSeconds(0);
+        TaskContent content = addContent(getText(2));
+        Revision[] legacyRevisions = new Revision[]{
+                new Revision(1L, this.contentDiffTool.computeDiff(getText(0), getText(1)), 1000L, OWNER),
+                new Revision(2L, this.contentDiffTool.computeDiff(getText(1), getText(2)), 2000L, OWNER)};
+        content.setBaseText(getText(0));
+        content.setRevisions(new Gson().toJson(legacyRevisions));
+        this.taskContentRepository.save(content);
+
+        assertEquals(getText(1), getRevisionText(content, 1L));
+        TaskContent migrated = this.taskContentRepository.findById(content.getId()).get();
+        assertNull(migrated.getRevisions());
+        assertNull(migrated.getBaseText());
+        List<ContentRevision> revisions = getStoredRevisions(content, 1L, 2L);
+        assertEquals(2, revisions.size());
+        assertEquals(Long.valueOf(2000), revisions.get(1).getCreatedAt());
+
+        update(content, getText(3));
+        assertEquals(getText(2), getRevisionText(content, 2L));
+        assertEquals(getText(3), getRevisionText(content, 3L));
+    }
+
+    @Test
+    public void testConcurrentEdits() throws Exception {
+        this.revisionConfig.setCoalesceWindowSeconds(0);
+        TaskContent content = addContent(getText(0));
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> edits = new ArrayList<>();
+            for (int i = 1; i <= 8; i++) {
+                String text = getText(i);
+                edits.add(executorService.submit(() -> update(content, text)));
+            }
+            for (Future<?> edit : edits) {
+                edit.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        List<Long> revisionIds = getStoredRevisions(content).stream()
+                .map(ContentRevisionInfo::getRevisionId).collect(Collectors.toList());
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), revisionIds);
+    }
+
+    private static String getText(int version) {
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 5; line++) {
+            text.append("line ").append(line).append(line == version % 5 ? " edited " + version : "").append('\n');
+        }
+        return text.toString();
+    }
+
+    private TaskContent addContent(String text) {
+        return (TaskContent) this.taskDaoJpa.addContent(this.task.getId(), OWNER, new TaskContent(text));
+    }
+
+    private void update(TaskContent content, String text) {
+        this.taskDaoJpa.updateContent(content.getId(), this.task.getId(), OWNER, new UpdateContentParams(text));
+    }
+
+    private String getRevisionText(TaskContent content, Long revisionId) {
+        return this.taskDaoJpa.getContentRevision(OWNER, this.task.getId(), content.getId(), revisionId);
+    }
+
+    private List<ContentRevision> getStoredRevisions(TaskContent content, Long from, Long to) {
+        return this.contentRevisionRepository.findByContentTypeAndContentIdAndRevisionIdBetweenOrderByRevisionIdAsc(
+                ContentType.TASK.name(), content.getId(), from, to);
+    }
+
+    private List<ContentRevisionInfo> getStoredRevisions(TaskContent content) {
+        return this.contentRevisionRepository.findByContentTypeAndContentIdInOrderByRevisionIdAsc(
+                ContentType.TASK.name(), Collections.singletonList(content.getId()));
+    }
+}
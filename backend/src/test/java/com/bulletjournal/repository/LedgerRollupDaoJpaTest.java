@@ -0,0 +1,42 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link LedgerRollupDaoJpa}
+ */
+public class LedgerRollupDaoJpaTest {
+
+    private static final String TIMEZONE = "America/Los_Angeles";
+
+    @Test
+    public void testGetMonths() {
+        assertArrayEquals(new String[]{"2018-09", "2019-11"},
+                LedgerRollupDaoJpa.getMonths(start("2018-09-01"), end("2019-11-30")));
+        assertArrayEquals(new String[]{"2020-02", "2020-02"},
+                LedgerRollupDaoJpa.getMonths(start("2020-02-01"), end("2020-02-29")));
+
+        // ranges not made of whole months are answered from transactions
+        assertNull(LedgerRollupDaoJpa.getMonths(start("2019-09-02"), end("2019-11-30")));
+        assertNull(LedgerRollupDaoJpa.getMonths(start("2019-09-01"), end("2019-11-29")));
+        assertNull(LedgerRollupDaoJpa.getMonths(start("2019-09-01"),
+                ZonedDateTimeHelper.getEndTime("2019-11-30", "12:00", TIMEZONE)));
+        assertNull(LedgerRollupDaoJpa.getMonths(start("2019-12-01"), end("2019-11-30")));
+        // months are local to one time zone
+        assertNull(LedgerRollupDaoJpa.getMonths(start("2019-09-01"),
+                ZonedDateTimeHelper.getEndTime("2019-11-30", null, "Asia/Tokyo")));
+    }
+
+    private static ZonedDateTime start(String date) {
+        return ZonedDateTimeHelper.getStartTime(date, null, TIMEZONE);
+    }
+
+    private static ZonedDateTime end(String date) {
+        return ZonedDateTimeHelper.getEndTime(date, null, TIMEZONE);
+    }
+}
@@ -0,0 +1,98 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.notifications.DeleteGroupEvent;
+import com.bulletjournal.notifications.Event;
+import com.bulletjournal.notifications.Informed;
+import org.hibernate.Session;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link NotificationDaoJpa}
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class NotificationDaoJpaTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationDaoJpaTest.class);
+
+    @Autowired
+    private NotificationDaoJpa notificationDaoJpa;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Test
+    public void testCreate() {
+        this.notificationDaoJpa.create(getEvents("create", 3, 4));
+        assertEquals(3, this.notificationRepository.findByTargetUser("create_user_0").size());
+        assertEquals(3, this.notificationRepository.findByTargetUser("create_user_3").size());
+
+        this.notificationDaoJpa.create(Collections.emptyList());
+    }
+
+    /**
+     * Compares inserting the notifications of events fanned out to group members one row at a time
+     * against batched inserts, run by hand
+     */
+    @Ignore("Benchmark")
+    @Test
+    public void benchmark() {
+        int eventCount = 20;
+        int recipients = 200;
+        List<Informed> events = getEvents("unbatched", eventCount, recipients);
+        long start = System.nanoTime();
+        new TransactionTemplate(this.transactionManager).execute(status -> {
+            this.entityManager.unwrap(Session.class).setJdbcBatchSize(1);
+            events.forEach(event -> event.toNotifications().forEach(this.notificationRepository::save));
+            return null;
+        });
+        long unbatched = System.nanoTime() - start;
+
+        List<Informed> batchedEvents = getEvents("batched", eventCount, recipients);
+        start = System.nanoTime();
+        this.notificationDaoJpa.create(batchedEvents);
+        long batched = System.nanoTime() - start;
+
+        assertEquals(eventCount, this.notificationRepository.findByTargetUser("unbatched_user_0").size());
+        assertEquals(eventCount, this.notificationRepository.findByTargetUser("batched_user_0").size());
+        LOGGER.info("{} events x {} recipients: one insert per row {} ms, batched inserts {} ms",
+                eventCount, recipients, unbatched / 1_000_000, batched / 1_000_000);
+    }
+
+    private static List<Informed> getEvents(String prefix, int eventCount, int recipients) {
+        List<Informed> informs = new ArrayList<>(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            List<Event> events = new ArrayList<>(recipients);
+            for (int j = 0; j < recipients; j++) {
+                events.add(new Event(prefix + "_user_" + j, (long) i, "Group " + i));
+            }
+            informs.add(new DeleteGroupEvent(events, "BulletJournal"));
+        }
+        return informs;
+    }
+}
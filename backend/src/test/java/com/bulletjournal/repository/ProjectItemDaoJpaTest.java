@@ -0,0 +1,166 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.config.ContentRevisionConfig;
+import com.bulletjournal.controller.models.ContentSummary;
+import com.bulletjournal.controller.models.CreateNoteParams;
+import com.bulletjournal.controller.models.CreateProjectParams;
+import com.bulletjournal.controller.models.CreateTaskParams;
+import com.bulletjournal.controller.models.CreateTransactionParams;
+import com.bulletjournal.controller.models.ProjectType;
+import com.bulletjournal.controller.models.UpdateContentParams;
+import com.bulletjournal.repository.models.ContentModel;
+import com.bulletjournal.repository.models.ContentRevision;
+import com.bulletjournal.repository.models.NoteContent;
+import com.bulletjournal.repository.models.Project;
+import com.bulletjournal.repository.models.TaskContent;
+import com.bulletjournal.repository.models.TransactionContent;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link ProjectItemDaoJpa}
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class ProjectItemDaoJpaTest {
+
+    private static final String OWNER = "BulletJournal";
+    private static final String TIMEZONE = "America/Los_Angeles";
+    private static final AtomicInteger PROJECTS = new AtomicInteger();
+    private static final String LONG_TEXT = String.join("", Collections.nCopies(30, "0123456789"));
+
+    @Autowired
+    private GroupDaoJpa groupDaoJpa;
+
+    @Autowired
+    private ProjectDaoJpa projectDaoJpa;
+
+    @Autowired
+    private TaskDaoJpa taskDaoJpa;
+
+    @Autowired
+    private NoteDaoJpa noteDaoJpa;
+
+    @Autowired
+    private TransactionDaoJpa transactionDaoJpa;
+
+    @Autowired
+    private ContentRevisionConfig revisionConfig;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private Integer coalesceWindowSeconds;
+
+    @Before
+    public void setUp() {
+        // every edit adds its revision right away
+        this.coalesceWindowSeconds = this.revisionConfig.getCoalesceWindowSeconds();
+        this.revisionConfig.setCoalesceWindowSeconds(0);
+    }
+
+    @After
+    public void tearDown() {
+        this.revisionConfig.setCoalesceWindowSeconds(this.coalesceWindowSeconds);
+    }
+
+    @Test
+    public void testTaskContentSummaries() {
+        Project project = createProject(ProjectType.TODO);
+        Long taskId = this.taskDaoJpa.create(project.getId(), OWNER,
+                new CreateTaskParams("task", OWNER, null, null, null, null, TIMEZONE, null)).getId();
+        testContentSummaries(this.taskDaoJpa, taskId, TaskContent::new, TaskContent.class);
+    }
+
+    @Test
+    public void testNoteContentSummaries() {
+        Project project = createProject(ProjectType.NOTE);
+        Long noteId = this.noteDaoJpa.create(project.getId(), OWNER, new CreateNoteParams("note")).getId();
+        testContentSummaries(this.noteDaoJpa, noteId, NoteContent::new, NoteContent.class);
+    }
+
+    @Test
+    public void testTransactionContentSummaries() {
+        Project project = createProject(ProjectType.LEDGER);
+        Long transactionId = this.transactionDaoJpa.create(project.getId(), OWNER,
+                new CreateTransactionParams("transaction", OWNER, 1000.0, "2020-01-01", null, TIMEZONE, 0)).getId();
+        testContentSummaries(this.transactionDaoJpa, transactionId, TransactionContent::new, TransactionContent.class);
+    }
+
+    private <K extends ContentModel> void testContentSummaries(
+            ProjectItemDaoJpa<K> dao, Long projectItemId, Function<String, K> newContent, Class<K> contentClass) {
+        assertEquals(Collections.emptyList(), dao.getContentSummaries(projectItemId, OWNER));
+
+        Long shortId = dao.addContent(projectItemId, OWNER, newContent.apply("short")).getId();
+        Long longId = dao.addContent(projectItemId, OWNER, newContent.apply(LONG_TEXT)).getId();
+        dao.updateContent(longId, projectItemId, OWNER, new UpdateContentParams(LONG_TEXT + "a"));
+        dao.updateContent(longId, projectItemId, OWNER, new UpdateContentParams(LONG_TEXT + "ab"));
+
+        List<ContentSummary> summaries = new TransactionTemplate(this.transactionManager).execute(status -> {
+            this.entityManager.clear();
+            List<ContentSummary> result = dao.getContentSummaries(projectItemId, OWNER);
+            // read through the projection, neither texts nor revisions are loaded
+            Set<String> loaded = getLoadedEntityNames();
+            assertFalse(loaded.contains(contentClass.getName()));
+            assertFalse(loaded.contains(ContentRevision.class.getName()));
+            return result;
+        });
+        assertEquals(2, summaries.size());
+        Map<Long, ContentSummary> byId = summaries.stream()
+                .collect(Collectors.toMap(ContentSummary::getId, summary -> summary));
+
+        ContentSummary summary = byId.get(shortId);
+        assertEquals(OWNER, summary.getOwner());
+        assertEquals("short", summary.getPreview());
+        assertFalse(summary.isTruncated());
+        assertEquals(0, summary.getRevisionCount());
+        assertNotNull(summary.getCreatedAt());
+        assertTrue(summary.getUpdatedAt() >= summary.getCreatedAt());
+
+        summary = byId.get(longId);
+        assertEquals(OWNER, summary.getOwner());
+        assertEquals(LONG_TEXT.substring(0, 200), summary.getPreview());
+        assertTrue(summary.isTruncated());
+        assertEquals(2, summary.getRevisionCount());
+        assertTrue(summary.getUpdatedAt() >= summary.getCreatedAt());
+    }
+
+    private Set<String> getLoadedEntityNames() {
+        Set<?> keys = this.entityManager.unwrap(Session.class).getStatistics().getEntityKeys();
+        return keys.stream().map(key -> ((EntityKey) key).getEntityName()).collect(Collectors.toSet());
+    }
+
+    private Project createProject(ProjectType type) {
+        return this.projectDaoJpa.create(new CreateProjectParams(
+                        "ProjectItemDaoJpaTest_" + PROJECTS.incrementAndGet(), type, null,
+                        this.groupDaoJpa.getDefaultGroup(OWNER).getId()),
+                OWNER, new ArrayList<>());
+    }
+}
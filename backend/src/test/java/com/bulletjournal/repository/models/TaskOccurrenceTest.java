@@ -0,0 +1,69 @@
+package com.bulletjournal.repository.models;
+
+import com.bulletjournal.controller.models.Before;
+import com.bulletjournal.controller.models.ReminderSetting;
+import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests {@link TaskOccurrence}
+ */
+public class TaskOccurrenceTest {
+
+    private static final String TIMEZONE = "America/Los_Angeles";
+    private static final ZonedDateTime OCCURRENCE = ZonedDateTime.of(2020, 3, 10, 9, 0, 0, 0, ZoneId.of(TIMEZONE));
+
+    @Test
+    public void testReminderBeforeTask() {
+        Task task = task(new ReminderSetting(null, null, Before.FIVE_MIN_BEFORE.getValue()));
+        TaskOccurrence occurrence = new TaskOccurrence(task, ZonedDateTimeHelper.getDateTime(OCCURRENCE));
+        assertEquals(Timestamp.from(OCCURRENCE.minusMinutes(5).toInstant()), occurrence.getReminderDateTime());
+    }
+
+    /**
+     * Occurrences get the reminder time a cloned task gets from the task's reminder setting
+     */
+    @Test
+    public void testReminderDate() {
+        Task task = task(new ReminderSetting("2020-03-09", "20:00", null));
+        TaskOccurrence occurrence = new TaskOccurrence(task, ZonedDateTimeHelper.getDateTime(OCCURRENCE));
+        assertEquals(clone(task, occurrence).getReminderDateTime(), occurrence.getReminderDateTime());
+        assertEquals(Timestamp.from(ZonedDateTimeHelper.getStartTime("2020-03-09", "20:00", TIMEZONE).toInstant()),
+                occurrence.getReminderDateTime());
+
+        // a reminder time left from an earlier setting is not used
+        task.setReminderDate(null);
+        task.setReminderTime(null);
+        task.setReminderBeforeTask(null);
+        occurrence = new TaskOccurrence(task, ZonedDateTimeHelper.getDateTime(OCCURRENCE));
+        assertEquals(clone(task, occurrence).getReminderDateTime(), occurrence.getReminderDateTime());
+        assertNull(occurrence.getReminderDateTime());
+    }
+
+    private static Task task(ReminderSetting reminderSetting) {
+        Task task = new Task();
+        task.setId(1L);
+        task.setTimezone(TIMEZONE);
+        task.setRecurrenceRule("DTSTART:20200101T170000Z RRULE:FREQ=DAILY;INTERVAL=1");
+        task.setReminderSetting(reminderSetting);
+        return task;
+    }
+
+    /**
+     * Reminder time of the task cloned for the occurrence, as recurring tasks were expanded before
+     */
+    private static Task clone(Task task, TaskOccurrence occurrence) {
+        Task cloned = new Task();
+        cloned.setTimezone(task.getTimezone());
+        cloned.setStartTime(occurrence.getStartTime());
+        cloned.setReminderSetting(task.getReminderSetting());
+        return cloned;
+    }
+}
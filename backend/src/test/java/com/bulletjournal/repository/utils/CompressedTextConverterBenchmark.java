@@ -0,0 +1,65 @@
+package com.bulletjournal.repository.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Size and latency of {@link CompressedTextConverter} on Quill delta contents of growing size.
+ * Run its main method, it is not part of the test suite.
+ */
+public class CompressedTextConverterBenchmark {
+
+    private static final String[] WORDS = {"the", "task", "note", "meeting", "bullet", "journal", "project",
+            "remember", "to", "buy", "call", "review", "draft", "and", "with", "for", "tomorrow", "weekly"};
+    private static final int[] SIZES = {256, 1024, 4096, 16384, 65536, 262144};
+    private static final int ITERATIONS = 2000;
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %10s %8s %12s %12s%n", "text", "stored", "ratio", "encode us", "decode us");
+        for (int size : SIZES) {
+            String text = delta(size, new Random(size));
+            int length = text.getBytes(StandardCharsets.UTF_8).length;
+            byte[] value = CompressedTextConverter.encode(text);
+            int iterations = Math.max(20, ITERATIONS * 1024 / size);
+            // warm up
+            time(text, value, iterations);
+            long[] nanos = time(text, value, iterations);
+            System.out.printf("%10d %10d %8.2f %12.1f %12.1f%n", length, value.length,
+                    (double) length / value.length, nanos[0] / 1000.0 / iterations, nanos[1] / 1000.0 / iterations);
+        }
+    }
+
+    private static long[] time(String text, byte[] value, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            CompressedTextConverter.encode(text);
+        }
+        long encode = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            CompressedTextConverter.decode(value);
+        }
+        return new long[]{encode, System.nanoTime() - start};
+    }
+
+    /**
+     * @return delta of about size characters, lines of random words with some formatting
+     */
+    private static String delta(int size, Random random) {
+        StringBuilder sb = new StringBuilder("{\"ops\":[");
+        while (sb.length() < size) {
+            sb.append("{\"insert\":\"");
+            int words = 3 + random.nextInt(12);
+            for (int i = 0; i < words; i++) {
+                sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            sb.append(random.nextInt(1000)).append("\\n\"}");
+            if (random.nextInt(4) == 0) {
+                sb.append(",{\"attributes\":{\"bold\":true},\"insert\":\"").append(random.nextInt(100000)).append("\"}");
+            }
+            sb.append(',');
+        }
+        sb.setLength(sb.length() - 1);
+        return sb.append("]}").toString();
+    }
+}
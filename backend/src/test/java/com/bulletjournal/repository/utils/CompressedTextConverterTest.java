@@ -0,0 +1,82 @@
+package com.bulletjournal.repository.utils;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link CompressedTextConverter}
+ */
+public class CompressedTextConverterTest {
+
+    private final CompressedTextConverter converter = new CompressedTextConverter();
+
+    @Test
+    public void testRoundTrip() {
+        assertNull(this.converter.convertToDatabaseColumn(null));
+        assertNull(this.converter.convertToEntityAttribute(null));
+        String unicode = "{\"ops\":[{\"insert\":\"\u7b14\u8bb0 \ud83d\udcdd\\n\"}]}";
+        for (String text : new String[]{"", "short", unicode, repeat("delta ", 1000)}) {
+            byte[] value = this.converter.convertToDatabaseColumn(text);
+            assertTrue(CompressedTextConverter.isEncoded(value));
+            assertEquals(text, this.converter.convertToEntityAttribute(value));
+        }
+    }
+
+    @Test
+    public void testThreshold() {
+        String text = repeat("a", CompressedTextConverter.COMPRESSION_THRESHOLD - 1);
+        byte[] value = CompressedTextConverter.encode(text);
+        assertEquals(CompressedTextConverter.RAW, value[2]);
+
+        text += "a";
+        value = CompressedTextConverter.encode(text);
+        assertEquals(CompressedTextConverter.DEFLATE, value[2]);
+        assertTrue(value.length < 50);
+        assertEquals(text, CompressedTextConverter.decode(value));
+    }
+
+    @Test
+    public void testRandomText() {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 4096; i++) {
+            text.append((char) ('!' + random.nextInt(64)));
+        }
+        byte[] value = CompressedTextConverter.encode(text.toString());
+        assertEquals(CompressedTextConverter.DEFLATE, value[2]);
+        assertTrue(value.length < text.length());
+        assertEquals(text.toString(), CompressedTextConverter.decode(value));
+    }
+
+    @Test
+    public void testConvertedText() {
+        String text = "[{\"id\":1,\"diff\":\"@@ -1 +1 @@\"}]";
+        byte[] value = text.getBytes(StandardCharsets.UTF_8);
+        assertFalse(CompressedTextConverter.isEncoded(value));
+        assertEquals(text, this.converter.convertToEntityAttribute(value));
+    }
+
+    @Test
+    public void testUnknownVersion() {
+        byte[] value = CompressedTextConverter.encode("text");
+        value[1] = 2;
+        try {
+            CompressedTextConverter.decode(value);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Unknown text format 2", ex.getMessage());
+        }
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package com.bulletjournal.repository.utils;
+
+import com.bulletjournal.contents.ContentType;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link PublicItemLinkCache}
+ */
+public class PublicItemLinkCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private final Map<String, PublicItemLinkCache.Link> links = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, PublicItemLinkCache.Link> loader = uuid -> {
+        this.loads.incrementAndGet();
+        return this.links.getOrDefault(uuid, PublicItemLinkCache.Link.MISSING);
+    };
+
+    @Test
+    public void testReadThrough() {
+        PublicItemLinkCache cache = new PublicItemLinkCache(100, 500, 50, this.now::get);
+        this.links.put("a", new PublicItemLinkCache.Link(ContentType.NOTE, 1L, null));
+        assertEquals(Long.valueOf(1L), cache.get("a", this.loader).getItemId());
+        assertEquals(Long.valueOf(1L), cache.get("a", this.loader).getItemId());
+        assertEquals(1, this.loads.get());
+        assertEquals(1, cache.getHits());
+
+        // reloaded after ttl
+        this.now.addAndGet(500);
+        cache.get("a", this.loader);
+        assertEquals(2, this.loads.get());
+
+        this.links.remove("a");
+        cache.invalidate("a");
+        assertTrue(cache.get("a", this.loader).isMissing());
+        assertEquals(3, this.loads.get());
+    }
+
+    @Test
+    public void testNegativeCaching() {
+        PublicItemLinkCache cache = new PublicItemLinkCache(100, 500, 50, this.now::get);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cache.get("unknown", this.loader).isMissing());
+        }
+        assertEquals(1, this.loads.get());
+
+        // a link created with that uuid is visible right away
+        this.links.put("unknown", new PublicItemLinkCache.Link(ContentType.TASK, 2L, null));
+        cache.invalidate("unknown");
+        assertFalse(cache.get("unknown", this.loader).isMissing());
+    }
+
+    @Test
+    public void testExpiration() {
+        PublicItemLinkCache cache = new PublicItemLinkCache(100, 500, 50, this.now::get);
+        this.links.put("a", new PublicItemLinkCache.Link(ContentType.NOTE, 1L, 1100L));
+        this.links.put("b", new PublicItemLinkCache.Link(ContentType.NOTE, 2L, null));
+        cache.get("a", this.loader);
+        cache.get("b", this.loader);
+        assertEquals(2, cache.size());
+
+        // dropped when the link expires, not after ttl
+        this.now.set(1100);
+        cache.evictExpired();
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        // an expired link is cached like a miss
+        this.now.set(1200);
+        PublicItemLinkCache.Link link = cache.get("a", this.loader);
+        assertTrue(link.isExpired(this.now.get()));
+        assertEquals(3, this.loads.get());
+        this.now.set(1249);
+        cache.get("a", this.loader);
+        assertEquals(3, this.loads.get());
+        this.now.set(1250);
+        cache.evictExpired();
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testMaxEntries() {
+        PublicItemLinkCache cache = new PublicItemLinkCache(3, 500, 50, this.now::get);
+        for (int i = 0; i < 10; i++) {
+            this.links.put("l" + i, new PublicItemLinkCache.Link(ContentType.NOTE, (long) i, 1400L - i));
+            cache.get("l" + i, this.loader);
+        }
+        assertEquals(3, cache.size());
+        // the ones expiring last are kept
+        this.loads.set(0);
+        cache.get("l0", this.loader);
+        cache.get("l1", this.loader);
+        cache.get("l2", this.loader);
+        assertEquals(0, this.loads.get());
+    }
+}
@@ -56,4 +56,14 @@ public class ContentDiffToolTest {
         String result34 = contentDiffTool.applyDiff(text3, diff34);
         Assert.assertEquals(text4, result34);
     }
+
+    @Test
+    public void testApplyDiffExactly() {
+        String text1 = "The first element specifies if it is an insertion (1), a deletion (-1) or an equality (0).";
+        String text2 = "The first element specifies if it is an insertion (1) or a deletion (-1).";
+        String diff12 = contentDiffTool.computeDiff(text1, text2);
+        Assert.assertEquals(text2, contentDiffTool.applyDiffExactly(text1, diff12));
+        Assert.assertNull(contentDiffTool.applyDiffExactly("Something else entirely", diff12));
+        Assert.assertNull(contentDiffTool.applyDiffExactly(text1, "not a diff"));
+    }
 }
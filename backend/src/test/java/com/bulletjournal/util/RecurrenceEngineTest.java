@@ -0,0 +1,164 @@
+package com.bulletjournal.util;
+
+import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.RecurrenceRuleIterator;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests {@link RecurrenceEngine}
+ */
+public class RecurrenceEngineTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecurrenceEngineTest.class);
+
+    private static final String TIMEZONE = "America/Los_Angeles";
+
+    private static final String[] RULES = {
+            "DTSTART:20180101T090000Z RRULE:FREQ=DAILY;INTERVAL=1",
+            "DTSTART:20180103T233000Z RRULE:FREQ=DAILY;INTERVAL=3",
+            "DTSTART:20180105T080000Z RRULE:FREQ=WEEKLY;INTERVAL=2",
+            "DTSTART:20180101T100000Z RRULE:FREQ=WEEKLY;INTERVAL=1;BYDAY=MO,WE,FR",
+            "DTSTART:20180131T070000Z RRULE:FREQ=MONTHLY;INTERVAL=1;BYMONTHDAY=31",
+            "DTSTART:20180101T120000Z RRULE:FREQ=HOURLY;INTERVAL=5",
+            "DTSTART:20180101T090000Z RRULE:FREQ=DAILY;INTERVAL=1;COUNT=1000",
+            "DTSTART:20180101T090000Z RRULE:FREQ=DAILY;INTERVAL=1;UNTIL=20200601T000000Z"
+    };
+
+    /**
+     * Reference implementation: iterate from DTSTART through the window
+     */
+    private static List<DateTime> expand(String rule, DateTime startTime, DateTime endTime) throws Exception {
+        List<DateTime> result = new ArrayList<>();
+        RecurrenceRuleIterator it = new BuJoRecurrenceRule(rule, TIMEZONE).getIterator();
+        while (it.hasNext()) {
+            DateTime currDateTime = it.nextDateTime();
+            if (currDateTime.after(endTime)) {
+                break;
+            }
+            if (currDateTime.before(startTime)) {
+                continue;
+            }
+            result.add(currDateTime);
+        }
+        return result;
+    }
+
+    @Test
+    public void testGetOccurrences() throws Exception {
+        RecurrenceEngine engine = new RecurrenceEngine();
+        ZonedDateTime windowStart = ZonedDateTime.of(2020, 3, 7, 22, 0, 0, 0, ZoneId.of(TIMEZONE));
+        for (int days = 0; days < 60; days += 7) {
+            for (int hours : new int[]{2, 48, 24 * 30}) {
+                ZonedDateTime start = windowStart.plusDays(days);
+                DateTime startTime = ZonedDateTimeHelper.getDateTime(start);
+                DateTime endTime = ZonedDateTimeHelper.getDateTime(start.plusHours(hours));
+                for (int i = 0; i < RULES.length; i++) {
+                    Assert.assertEquals(RULES[i],
+                            expand(RULES[i], startTime, endTime),
+                            engine.getOccurrences((long) i, RULES[i], TIMEZONE, startTime, endTime));
+                }
+            }
+        }
+        Assert.assertEquals(RULES.length, engine.size());
+        engine.evict(0L);
+        Assert.assertEquals(RULES.length - 1, engine.size());
+    }
+
+    @Test
+    public void testBeforeStart() throws Exception {
+        RecurrenceEngine engine = new RecurrenceEngine();
+        ZonedDateTime start = ZonedDateTime.of(2017, 12, 30, 0, 0, 0, 0, ZoneId.of(TIMEZONE));
+        DateTime startTime = ZonedDateTimeHelper.getDateTime(start);
+        DateTime endTime = ZonedDateTimeHelper.getDateTime(start.plusDays(10));
+        List<DateTime> occurrences = engine.getOccurrences(1L, RULES[0], TIMEZONE, startTime, endTime);
+        Assert.assertEquals(expand(RULES[0], startTime, endTime), occurrences);
+        Assert.assertEquals(8, occurrences.size());
+    }
+
+    @Test
+    public void testGetNextOccurrence() throws Exception {
+        RecurrenceEngine engine = new RecurrenceEngine();
+        ZonedDateTime start = ZonedDateTime.of(2020, 3, 7, 22, 0, 0, 0, ZoneId.of(TIMEZONE));
+        DateTime startTime = ZonedDateTimeHelper.getDateTime(start);
+        DateTime endTime = ZonedDateTimeHelper.getDateTime(start.plusDays(90));
+        for (int i = 0; i < RULES.length; i++) {
+            List<DateTime> expected = expand(RULES[i], startTime, endTime);
+            DateTime after = startTime;
+            for (DateTime occurrence : expected) {
+                if (!occurrence.after(startTime)) {
+                    continue;
+                }
+                after = engine.getNextOccurrence((long) i, RULES[i], TIMEZONE, after);
+                Assert.assertEquals(RULES[i], occurrence, after);
+            }
+        }
+        Assert.assertNull(engine.getNextOccurrence(7L, RULES[7], TIMEZONE, endTime));
+    }
+
+    /**
+     * Expands the 2-hour reminder windows of two days, two years after DTSTART
+     */
+    @Test
+    public void testReminderWindow() throws Exception {
+        RecurrenceEngine engine = new RecurrenceEngine();
+        ZonedDateTime now = ZonedDateTime.of(2020, 1, 1, 8, 0, 0, 0, ZoneId.of(TIMEZONE));
+        for (int i = 0; i < 2 * 24 * 60; i += 7) {
+            ZonedDateTime start = now.plusMinutes(i);
+            DateTime startTime = ZonedDateTimeHelper.getDateTime(start);
+            DateTime endTime = ZonedDateTimeHelper.getDateTime(start.plusHours(ZonedDateTimeHelper.MAX_HOURS_BEFORE));
+            for (int j = 0; j < RULES.length; j++) {
+                Assert.assertEquals(RULES[j], expand(RULES[j], startTime, endTime),
+                        engine.getOccurrences((long) j, RULES[j], TIMEZONE, startTime, endTime));
+            }
+        }
+    }
+
+    /**
+     * Compares expanding a 2-hour reminder window two years after DTSTART, run by hand
+     */
+    @Ignore("Benchmark")
+    @Test
+    public void benchmarkReminderWindow() throws Exception {
+        RecurrenceEngine engine = new RecurrenceEngine();
+        ZonedDateTime now = ZonedDateTime.of(2020, 1, 1, 8, 0, 0, 0, ZoneId.of(TIMEZONE));
+        int iterations = 2000;
+
+        long expected = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ZonedDateTime start = now.plusMinutes(i);
+            DateTime startTime = ZonedDateTimeHelper.getDateTime(start);
+            DateTime endTime = ZonedDateTimeHelper.getDateTime(start.plusHours(ZonedDateTimeHelper.MAX_HOURS_BEFORE));
+            for (String rule : RULES) {
+                expected += expand(rule, startTime, endTime).size();
+            }
+        }
+        long baseline = System.nanoTime() - begin;
+
+        long actual = 0;
+        begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ZonedDateTime start = now.plusMinutes(i);
+            DateTime startTime = ZonedDateTimeHelper.getDateTime(start);
+            DateTime endTime = ZonedDateTimeHelper.getDateTime(start.plusHours(ZonedDateTimeHelper.MAX_HOURS_BEFORE));
+            for (int j = 0; j < RULES.length; j++) {
+                actual += engine.getOccurrences((long) j, RULES[j], TIMEZONE, startTime, endTime).size();
+            }
+        }
+        long optimized = System.nanoTime() - begin;
+
+        Assert.assertEquals(expected, actual);
+        LOGGER.info("Recurrence expansion: full iteration {} ms, RecurrenceEngine {} ms",
+                baseline / 1000000, optimized / 1000000);
+    }
+}